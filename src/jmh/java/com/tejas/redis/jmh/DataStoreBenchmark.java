@@ -0,0 +1,81 @@
+package com.tejas.redis.jmh;
+
+import com.tejas.redis.store.ByteKey;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.EvictionPolicy;
+import com.tejas.redis.store.StorageEngine;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DataStore} get and set on 64-byte strings, with keys picked uniformly or from a
+ * Zipfian distribution (a few hot keys, where threads meet on the same map bins), for both
+ * storage engines. The thread count comes from JMH's {@code -t}; {@link #main} runs the whole
+ * set at 1, 4, 16 and 64 threads with the GC profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataStoreBenchmark {
+
+    private static final int KEYS = 1_000_000;
+
+    @Param({"uniform", "zipfian"})
+    String distribution;
+
+    @Param({"heap", "offheap"})
+    String storage;
+
+    private DataStore store;
+    private ByteKey[] keys;
+    private Workload.Distribution picker;
+    private final byte[] value = Workload.value(64);
+
+    @Setup
+    public void setup() {
+        store = new DataStore(DataStore.defaultShards(), 0, EvictionPolicy.NOEVICTION, 5, StorageEngine.parse(storage));
+        keys = new ByteKey[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = ByteKey.of(Workload.key(i));
+            store.set(keys[i], value, 0);
+        }
+        picker = Workload.distribution(distribution, KEYS);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadRandom {
+        final SplittableRandom rnd = new SplittableRandom();
+    }
+
+    @Benchmark
+    public Optional<byte[]> get(ThreadRandom r) {
+        return store.get(keys[picker.next(r.rnd)]);
+    }
+
+    @Benchmark
+    public void set(ThreadRandom r) {
+        store.set(keys[picker.next(r.rnd)], value, 0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 4, 16, 64}) {
+            Options opts = new OptionsBuilder()
+                    .include(DataStoreBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            new Runner(opts).run();
+        }
+    }
+}
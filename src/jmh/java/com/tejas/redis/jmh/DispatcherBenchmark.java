@@ -0,0 +1,80 @@
+package com.tejas.redis.jmh;
+
+import com.tejas.redis.resp.RespBulkString;
+import com.tejas.redis.resp.RespCommand;
+import com.tejas.redis.resp.RespObject;
+import com.tejas.redis.server.CommandDispatcher;
+import com.tejas.redis.store.ByteKey;
+import com.tejas.redis.store.DataStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One command through {@link CommandDispatcher#dispatch(RespCommand)}: lookup, arity and
+ * key-lock handling, the store operation and building the reply, without any I/O. Commands
+ * are parsed once up front, the way the event loop hands them over.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatcherBenchmark {
+
+    private static final int KEYS = 100_000;
+    /** Distinct prepared commands per kind, cycled through; a power of two. */
+    private static final int PREPARED = 1024;
+
+    private CommandDispatcher dispatcher;
+    private final RespCommand[] gets = new RespCommand[PREPARED];
+    private final RespCommand[] sets = new RespCommand[PREPARED];
+    private RespCommand ping;
+
+    @Setup
+    public void setup() {
+        DataStore store = new DataStore();
+        byte[] value = Workload.value(64);
+        for (int i = 0; i < KEYS; i++) store.set(ByteKey.of(Workload.key(i)), value, 0);
+        dispatcher = new CommandDispatcher(store);
+        for (int i = 0; i < PREPARED; i++) {
+            int k = i * (KEYS / PREPARED);
+            gets[i] = command(Workload.ascii("GET"), Workload.key(k));
+            sets[i] = command(Workload.ascii("SET"), Workload.key(k), value);
+        }
+        ping = command(Workload.ascii("PING"));
+    }
+
+    private static RespCommand command(byte[]... args) {
+        List<RespObject> parts = new ArrayList<>();
+        for (byte[] a : args) parts.add(new RespBulkString(a));
+        return RespCommand.of(parts);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int i;
+
+        int next() {
+            return i++ & (PREPARED - 1);
+        }
+    }
+
+    @Benchmark
+    public RespObject get(Cursor c) {
+        return dispatcher.dispatch(gets[c.next()]);
+    }
+
+    @Benchmark
+    public RespObject set(Cursor c) {
+        return dispatcher.dispatch(sets[c.next()]);
+    }
+
+    @Benchmark
+    public RespObject ping() {
+        return dispatcher.dispatch(ping);
+    }
+}
@@ -0,0 +1,57 @@
+package com.tejas.redis.jmh;
+
+import com.tejas.redis.resp.RespBufferParser;
+import com.tejas.redis.resp.RespCommand;
+import com.tejas.redis.resp.RespParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a pipelined stream of client commands (see {@link Workload#pipeline}) with the
+ * blocking {@link RespParser} of the thread-per-connection modes and the in-place
+ * {@link RespBufferParser} of the event loops. Scores are per command.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RespParserBenchmark {
+
+    private static final int COMMANDS = 1000;
+
+    @Param({"16", "1024"})
+    int valueSize;
+
+    private byte[] stream;
+    private final RespBufferParser bufferParser = new RespBufferParser();
+    private final RespCommand command = new RespCommand();
+
+    @Setup
+    public void setup() {
+        stream = Workload.pipeline(COMMANDS, 100_000, valueSize);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COMMANDS)
+    public void streamParser(Blackhole bh) throws IOException {
+        RespParser parser = new RespParser(new ByteArrayInputStream(stream));
+        for (int i = 0; i < COMMANDS; i++) bh.consume(parser.parse());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COMMANDS)
+    public void bufferParser(Blackhole bh) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(stream);
+        for (int i = 0; i < COMMANDS; i++) {
+            if (!bufferParser.parse(buf, command)) throw new IllegalStateException("truncated stream");
+            bh.consume(command.argc());
+        }
+    }
+}
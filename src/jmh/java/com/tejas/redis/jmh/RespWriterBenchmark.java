@@ -0,0 +1,83 @@
+package com.tejas.redis.jmh;
+
+import com.tejas.redis.resp.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding the common replies with {@link RespWriter}, into a stream that discards the
+ * bytes so only the encoder is measured. Run with {@code -prof gc} to check that the shared
+ * encodings keep OK, nil, small integers and bulk headers allocation-free.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RespWriterBenchmark {
+
+    private final RespWriter writer = new RespWriter(OutputStream.nullOutputStream());
+    private final RespBulkString bulk = new RespBulkString(Workload.value(64));
+    private final RespInteger bigInteger = RespInteger.of(1_234_567_890L);
+    private RespArray mgetReply;
+
+    @Setup
+    public void setup() {
+        List<RespObject> items = new ArrayList<>();
+        for (int i = 0; i < 10; i++) items.add(i % 5 == 4 ? RespBulkString.NULL : new RespBulkString(Workload.value(64)));
+        mgetReply = new RespArray(items);
+    }
+
+    @Benchmark
+    public void ok() throws IOException {
+        writer.write(RespSimpleString.OK);
+    }
+
+    @Benchmark
+    public void nil() throws IOException {
+        writer.write(RespBulkString.NULL);
+    }
+
+    @Benchmark
+    public void smallInteger() throws IOException {
+        writer.write(RespInteger.of(42));
+    }
+
+    @Benchmark
+    public void largeInteger() throws IOException {
+        writer.write(bigInteger);
+    }
+
+    @Benchmark
+    public void bulk64() throws IOException {
+        writer.write(bulk);
+    }
+
+    /** MGET of ten 64-byte values, two of them missing. */
+    @Benchmark
+    public void array10() throws IOException {
+        writer.write(mgetReply);
+    }
+
+    @Benchmark
+    public void error() throws IOException {
+        writer.write(new RespError("ERR unknown command 'FOO'"));
+    }
+
+    /** The encode-once path PUBLISH uses for fan-out. */
+    @Benchmark
+    public byte[] encodeArray10() {
+        return RespWriter.encode(mgetReply);
+    }
+
+    @TearDown(Level.Iteration)
+    public void flush() throws IOException {
+        writer.flush();
+    }
+}
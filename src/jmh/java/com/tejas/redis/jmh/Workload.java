@@ -0,0 +1,111 @@
+package com.tejas.redis.jmh;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * Keys, values and encoded commands shared by the benchmarks, plus the key distributions.
+ */
+final class Workload {
+
+    private Workload() {
+    }
+
+    static byte[] key(int i) {
+        return ascii("key:" + i);
+    }
+
+    static byte[] value(int size) {
+        byte[] v = new byte[size];
+        new SplittableRandom(size).nextBytes(v);
+        return v;
+    }
+
+    /** One command as a client sends it: an array of bulk strings. */
+    static byte[] command(byte[]... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(ascii("*" + args.length + "\r\n"));
+        for (byte[] a : args) {
+            out.writeBytes(ascii("$" + a.length + "\r\n"));
+            out.writeBytes(a);
+            out.writeBytes(ascii("\r\n"));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A pipelined stream of n commands in a cache-like mix: 80% GET, 15% SET of a value of
+     * valueSize bytes, 5% MGET of four keys.
+     */
+    static byte[] pipeline(int n, int keys, int valueSize) {
+        SplittableRandom rnd = new SplittableRandom(42);
+        byte[] value = value(valueSize);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < n; i++) {
+            int p = rnd.nextInt(100);
+            if (p < 80) {
+                out.writeBytes(command(ascii("GET"), key(rnd.nextInt(keys))));
+            } else if (p < 95) {
+                out.writeBytes(command(ascii("SET"), key(rnd.nextInt(keys)), value));
+            } else {
+                out.writeBytes(command(ascii("MGET"), key(rnd.nextInt(keys)), key(rnd.nextInt(keys)),
+                        key(rnd.nextInt(keys)), key(rnd.nextInt(keys))));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Picks key indexes in [0, n). */
+    interface Distribution {
+        int next(SplittableRandom rnd);
+    }
+
+    static Distribution distribution(String name, int n) {
+        return switch (name) {
+            case "uniform" -> rnd -> rnd.nextInt(n);
+            case "zipfian" -> new Zipfian(n, 0.99);
+            default -> throw new IllegalArgumentException("unknown distribution " + name);
+        };
+    }
+
+    /**
+     * Zipfian ranks (rank 0 the most popular), with the constant-time sampling of Gray et al.,
+     * "Quickly Generating Billion-Record Synthetic Databases", as in YCSB. With theta 0.99 a few
+     * keys take most of the traffic, the hot-key case uniform keys never show.
+     */
+    static final class Zipfian implements Distribution {
+        private final int n;
+        private final double theta;
+        private final double alpha;
+        private final double zetaN;
+        private final double eta;
+
+        Zipfian(int n, double theta) {
+            this.n = n;
+            this.theta = theta;
+            this.alpha = 1 / (1 - theta);
+            this.zetaN = zeta(n, theta);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) sum += 1 / Math.pow(i, theta);
+            return sum;
+        }
+
+        @Override
+        public int next(SplittableRandom rnd) {
+            double u = rnd.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) return 0;
+            if (uz < 1 + Math.pow(0.5, theta)) return 1;
+            return (int) Math.min(n - 1, n * Math.pow(eta * u - eta + 1, alpha));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.tejas.redis.cluster;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * A static cluster layout: which node serves each of the {@link HashSlot#SLOTS} slots, and
+ * which node this is. Read from a file with one node per line:
+ * <pre>
+ * # id  host:port        slots
+ * a     127.0.0.1:7000   0-5460
+ * b     127.0.0.1:7001   5461-10922
+ * c     127.0.0.1:7002   10923-16383
+ * </pre>
+ * Slots are single numbers or inclusive ranges. Every node loads the same file; a slot no
+ * node lists is not served by the cluster.
+ */
+public final class ClusterTopology {
+
+    /** One node of the cluster and the slot ranges it serves, in ascending order. */
+    public static final class Node {
+        private final String id;
+        private final String host;
+        private final int port;
+        private final List<int[]> ranges = new ArrayList<>();
+
+        Node(String id, String host, int port) {
+            this.id = id;
+            this.host = host;
+            this.port = port;
+        }
+
+        public String id() {
+            return id;
+        }
+
+        public String host() {
+            return host;
+        }
+
+        public int port() {
+            return port;
+        }
+
+        /** Inclusive {start, end} slot ranges, merged where adjacent. */
+        public List<int[]> ranges() {
+            return Collections.unmodifiableList(ranges);
+        }
+
+        public String address() {
+            return host + ":" + port;
+        }
+    }
+
+    private final List<Node> nodes;
+    private final Node[] owners;
+    private final Node myself;
+
+    private ClusterTopology(List<Node> nodes, Node[] owners, Node myself) {
+        this.nodes = nodes;
+        this.owners = owners;
+        this.myself = myself;
+    }
+
+    /**
+     * @param myId this node's id, or null to pick the node listed with myPort
+     */
+    public static ClusterTopology load(Path file, String myId, int myPort) throws IOException {
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8), myId, myPort);
+    }
+
+    static ClusterTopology parse(List<String> lines, String myId, int myPort) {
+        List<Node> nodes = new ArrayList<>();
+        Node[] owners = new Node[HashSlot.SLOTS];
+        Map<String, Node> byId = new HashMap<>();
+        for (String raw : lines) {
+            String line = raw.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] f = line.split("\\s+");
+            if (f.length < 2) throw new IllegalArgumentException("cluster config: expected 'id host:port slots...', got '" + line + "'");
+            int colon = f[1].lastIndexOf(':');
+            if (colon <= 0) throw new IllegalArgumentException("cluster config: bad address '" + f[1] + "'");
+            Node node = new Node(f[0], f[1].substring(0, colon), Integer.parseInt(f[1].substring(colon + 1)));
+            if (byId.put(node.id, node) != null) throw new IllegalArgumentException("cluster config: duplicate node id " + node.id);
+            nodes.add(node);
+            for (int i = 2; i < f.length; i++) {
+                int dash = f[i].indexOf('-');
+                int start = Integer.parseInt(dash < 0 ? f[i] : f[i].substring(0, dash));
+                int end = dash < 0 ? start : Integer.parseInt(f[i].substring(dash + 1));
+                if (start < 0 || end >= HashSlot.SLOTS || start > end)
+                    throw new IllegalArgumentException("cluster config: bad slot range '" + f[i] + "'");
+                for (int s = start; s <= end; s++) {
+                    if (owners[s] != null)
+                        throw new IllegalArgumentException("cluster config: slot " + s + " assigned to both " + owners[s].id + " and " + node.id);
+                    owners[s] = node;
+                }
+            }
+        }
+        for (int s = 0; s < HashSlot.SLOTS; s++) {
+            Node n = owners[s];
+            if (n == null) continue;
+            int[] last = n.ranges.isEmpty() ? null : n.ranges.get(n.ranges.size() - 1);
+            if (last != null && last[1] == s - 1) last[1] = s;
+            else n.ranges.add(new int[]{s, s});
+        }
+
+        Node myself = null;
+        if (myId != null) {
+            myself = byId.get(myId);
+            if (myself == null) throw new IllegalArgumentException("cluster config: no node with id " + myId);
+        } else {
+            for (Node n : nodes) {
+                if (n.port != myPort) continue;
+                if (myself != null)
+                    throw new IllegalArgumentException("cluster config: several nodes use port " + myPort + "; set cluster-node-id");
+                myself = n;
+            }
+            if (myself == null) throw new IllegalArgumentException("cluster config: no node with port " + myPort);
+        }
+        return new ClusterTopology(List.copyOf(nodes), owners, myself);
+    }
+
+    public Node myself() {
+        return myself;
+    }
+
+    public List<Node> nodes() {
+        return nodes;
+    }
+
+    /** The node serving the slot, or null if none does. */
+    public Node owner(int slot) {
+        return owners[slot];
+    }
+
+    public int assignedSlots() {
+        int n = 0;
+        for (Node o : owners) if (o != null) n++;
+        return n;
+    }
+}
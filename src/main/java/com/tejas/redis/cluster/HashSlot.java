@@ -0,0 +1,50 @@
+package com.tejas.redis.cluster;
+
+/**
+ * Redis Cluster key slots: CRC16 (XMODEM) of the key modulo 16384. If the key contains a
+ * non-empty hash tag {@code {...}}, only the tag is hashed, so {@code {user1}.name} and
+ * {@code {user1}.mail} land in the same slot and can be used together in one command.
+ */
+public final class HashSlot {
+
+    public static final int SLOTS = 16384;
+
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int b = 0; b < 8; b++) crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            TABLE[i] = crc & 0xFFFF;
+        }
+    }
+
+    private HashSlot() {
+    }
+
+    public static int of(byte[] key) {
+        return of(key, 0, key.length);
+    }
+
+    /** Slot of the key in a[off, off + len), e.g. an argument still in a read buffer. */
+    public static int of(byte[] a, int off, int len) {
+        int end = off + len;
+        for (int open = off; open < end; open++) {
+            if (a[open] != '{') continue;
+            for (int close = open + 1; close < end; close++) {
+                if (a[close] != '}') continue;
+                // only the first '{' and the first '}' after it count; "{}" means no tag
+                if (close > open + 1) return crc16(a, open + 1, close) & (SLOTS - 1);
+                break;
+            }
+            break;
+        }
+        return crc16(a, off, end) & (SLOTS - 1);
+    }
+
+    static int crc16(byte[] a, int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ a[i]) & 0xFF]) & 0xFFFF;
+        return crc;
+    }
+}
@@ -0,0 +1,562 @@
+package com.tejas.redis.persistence;
+
+import com.tejas.redis.resp.RespCommand;
+import com.tejas.redis.resp.RespParser;
+import com.tejas.redis.resp.RespArray;
+import com.tejas.redis.resp.RespObject;
+import com.tejas.redis.store.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Append-only file of write commands in RESP, with group commit.
+ * <p>
+ * Command threads only encode into a shared in-memory buffer under a short lock
+ * ({@link #append}). A dedicated writer thread swaps that buffer out, writes it with one
+ * system call and fsyncs according to the {@link FsyncPolicy}, so many commands share one
+ * write and one fsync. Under {@code always} the connection waits, before sending the replies
+ * to a batch of pipelined commands, until the fsync that covers the batch's last append has
+ * completed; otherwise nothing waits.
+ * <p>
+ * A failed write or fsync is not skipped over: the unwritten batch stays queued ahead of
+ * newer commands and is retried about once a second, so the log never has a gap. Until a
+ * retry succeeds {@link #writeError()} reports the failure, which keeps the server from
+ * accepting writes (MISCONF, as in Redis), and under {@code always} waiters are told their
+ * command is not durable.
+ * <p>
+ * {@link #rewrite} compacts the log in the background: it writes the live keyspace as SET
+ * commands from a point-in-time view while new commands are also collected in a rewrite
+ * buffer, then appends that buffer to the new file and swaps it in.
+ */
+public final class AppendOnlyFile implements Propagator.Sink {
+
+    private static final Logger log = LoggerFactory.getLogger(AppendOnlyFile.class);
+    private static final byte[] SET = "SET".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PXAT = "PXAT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RPUSH = "RPUSH".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HSET = "HSET".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SADD = "SADD".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ZADD = "ZADD".getBytes(StandardCharsets.US_ASCII);
+    /** Elements per command when rewriting collections (Redis' AOF_REWRITE_ITEMS_PER_CMD). */
+    private static final int ITEMS_PER_COMMAND = 64;
+    /** Pause before retrying a failed write or fsync. */
+    private static final long RETRY_MS = 1000;
+
+    /** Opens the log for appending; replaced in tests to inject I/O errors. */
+    @FunctionalInterface
+    interface Opener {
+        FileChannel open(Path file) throws IOException;
+    }
+
+    private final Path file;
+    private final FsyncPolicy fsync;
+    private final Opener opener;
+
+    // guards the buffers and sequence numbers below
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasData = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+    private Buffer pending = new Buffer();
+    private Buffer writing = new Buffer();
+    private Buffer rewriteBuffer; // non-null while a rewrite is collecting new commands
+    private long appendedSeq;
+    private long durableSeq;
+    private final ThreadLocal<long[]> lastAppended = ThreadLocal.withInitial(() -> new long[1]);
+    private long generation; // bumped when a rewrite swaps in a new file; changed under both locks
+    // the last write or fsync error, until a retry succeeds; set under lock
+    private volatile IOException failure;
+    private long retryAtMs;
+
+    // owned by the writer thread, except while a rewrite swaps files (under ioLock)
+    private final Object ioLock = new Object();
+    private FileChannel channel;
+    private long lastFsyncMs;
+    private boolean unsynced; // written to since the last fsync; an idle server has nothing to force
+
+    private final AtomicBoolean rewriting = new AtomicBoolean();
+    private volatile boolean running;
+    private Thread writer;
+
+    public AppendOnlyFile(Path file, FsyncPolicy fsync) {
+        this(file, fsync, f -> FileChannel.open(f, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND));
+    }
+
+    AppendOnlyFile(Path file, FsyncPolicy fsync, Opener opener) {
+        this.file = file;
+        this.fsync = fsync;
+        this.opener = opener;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public FsyncPolicy fsyncPolicy() {
+        return fsync;
+    }
+
+    /** The error of the last failed write or fsync, or null once the log is written again. */
+    public IOException writeError() {
+        return failure;
+    }
+
+    /**
+     * Replay the log through apply, e.g. the dispatcher. A command cut off by a crash at the
+     * end of the file is dropped and the file truncated to the last complete command, like
+     * Redis with aof-load-truncated.
+     *
+     * @return number of commands replayed, or -1 if there is no file
+     */
+    public long replay(Consumer<RespCommand> apply) throws IOException {
+        if (!Files.exists(file)) return -1;
+        long t0 = System.nanoTime();
+        long commands = 0;
+        long validEnd = 0;
+        try (CountingInputStream counting = new CountingInputStream(new FileInputStream(file.toFile()))) {
+            RespParser parser = new RespParser(counting);
+            while (true) {
+                RespObject obj;
+                try {
+                    obj = parser.parse();
+                } catch (EOFException eof) {
+                    break;
+                }
+                if (!(obj instanceof RespArray arr) || arr.items().isEmpty())
+                    throw new IOException("bad command in " + file + " at offset " + validEnd);
+                apply.accept(RespCommand.of(arr.items().get()));
+                commands++;
+                validEnd = counting.count - parser.available();
+            }
+        }
+        long size = Files.size(file);
+        if (validEnd < size) {
+            log.warn("AOF {} ends with an incomplete command; truncating from {} to {} bytes", file, size, validEnd);
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.truncate(validEnd);
+            }
+        }
+        log.info("Replayed {} commands from {} in {} ms", commands, file, (System.nanoTime() - t0) / 1_000_000);
+        return commands;
+    }
+
+    /** Open the file for appending and start the writer thread. */
+    public void open() throws IOException {
+        channel = opener.open(file);
+        lastFsyncMs = System.currentTimeMillis();
+        running = true;
+        writer = new Thread(this::writeLoop, "aof-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queue one command. Encodes straight into the pending buffer; under fsync=always the
+     * caller then waits in {@link #awaitDurable()}, which group commit turns into one fsync
+     * for everyone who appended in the meantime.
+     */
+    @Override
+    public void append(byte[][] argv) {
+        lock.lock();
+        try {
+            if (!running) return;
+            pending.writeCommand(argv);
+            if (rewriteBuffer != null) rewriteBuffer.writeCommand(argv);
+            lastAppended.get()[0] = ++appendedSeq;
+            hasData.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Under {@link FsyncPolicy#ALWAYS}, wait until this thread's last append is fsynced.
+     *
+     * @return false if writing or syncing it failed, so it is not durable (yet)
+     */
+    @Override
+    public boolean awaitDurable() {
+        if (fsync != FsyncPolicy.ALWAYS) return true;
+        long seq = lastAppended.get()[0];
+        lock.lock();
+        try {
+            while (durableSeq < seq && failure == null && running) synced.awaitUninterruptibly();
+            return durableSeq >= seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Buffer batch;
+            long seq;
+            long gen;
+            lock.lock();
+            try {
+                while (running && failure != null && System.currentTimeMillis() < retryAtMs) {
+                    hasData.await(retryAtMs - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                }
+                while (pending.len == 0 && running && failure == null) {
+                    // wake up now and then so everysec can fsync a write that arrived just after the last one
+                    hasData.await(200, TimeUnit.MILLISECONDS);
+                    if (pending.len == 0) break;
+                }
+                if (pending.len == 0 && !running) return;
+                batch = pending;
+                pending = writing;
+                writing = batch;
+                seq = appendedSeq;
+                gen = generation;
+            } catch (InterruptedException ie) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                synchronized (ioLock) {
+                    // if a rewrite finished since the swap, the new file already holds this batch
+                    if (batch.len > 0 && gen == generation) {
+                        unsynced = true;
+                        write(batch);
+                    }
+                    batch.len = 0;
+                    maybeFsync();
+                }
+            } catch (IOException e) {
+                if (failure == null) log.error("AOF write failed, refusing writes until it succeeds: {}", e.getMessage(), e);
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                if (error == null) {
+                    if (failure != null) log.warn("AOF is being written again");
+                    failure = null;
+                    durableSeq = Math.max(durableSeq, seq);
+                } else {
+                    failure = error;
+                    retryAtMs = System.currentTimeMillis() + RETRY_MS;
+                    // keep what was not written ahead of what arrived since; a rewrite that
+                    // swapped files meanwhile has it already
+                    if (gen == generation && batch.len > 0) {
+                        batch.put(pending.buf, 0, pending.len);
+                        pending.len = 0;
+                        writing = pending;
+                        pending = batch;
+                    } else {
+                        batch.len = 0;
+                    }
+                    if (!running) {
+                        log.error("AOF closed with {} bytes that could not be written", pending.len);
+                        synced.signalAll();
+                        return;
+                    }
+                }
+                synced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Write batch out whole. If only part of it made it, that part is cut off the file
+     * again, so the retry does not leave a broken command in the middle of the log; if even
+     * that fails, the part is dropped from the batch instead and the retry writes the rest.
+     */
+    private void write(Buffer batch) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(batch.buf, 0, batch.len);
+        try {
+            while (bb.hasRemaining()) channel.write(bb);
+        } catch (IOException e) {
+            int written = bb.position();
+            if (written > 0) {
+                try {
+                    channel.truncate(channel.size() - written);
+                } catch (IOException truncateFailed) {
+                    batch.discard(written);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void maybeFsync() throws IOException {
+        if (!unsynced) return;
+        long now = System.currentTimeMillis();
+        if (fsync == FsyncPolicy.ALWAYS || (fsync == FsyncPolicy.EVERYSEC && now - lastFsyncMs >= 1000)) {
+            channel.force(false);
+            lastFsyncMs = now;
+            unsynced = false;
+        }
+    }
+
+    /**
+     * Start a background rewrite.
+     *
+     * @return false if one is already running
+     */
+    public boolean rewrite(DataStore store, Propagator propagator) {
+        if (!rewriting.compareAndSet(false, true)) return false;
+        // pin the view and start collecting new commands at the same instant
+        PointInTimeView view = propagator.atConsistentPoint(() -> {
+            lock.lock();
+            try {
+                rewriteBuffer = new Buffer();
+            } finally {
+                lock.unlock();
+            }
+            return store.openView();
+        });
+        Thread t = new Thread(() -> {
+            try (view) {
+                doRewrite(view);
+            } catch (IOException | RuntimeException e) {
+                log.error("AOF rewrite failed: {}", e.getMessage(), e);
+                lock.lock();
+                try {
+                    rewriteBuffer = null;
+                } finally {
+                    lock.unlock();
+                }
+            } finally {
+                rewriting.set(false);
+            }
+        }, "aof-rewrite");
+        t.setDaemon(true);
+        t.start();
+        return true;
+    }
+
+    public boolean isRewriting() {
+        return rewriting.get();
+    }
+
+    private void doRewrite(PointInTimeView view) throws IOException {
+        long t0 = System.nanoTime();
+        Path tmp = file.resolveSibling("temp-rewriteaof-" + file.getFileName());
+        long keys;
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Buffer buf = new Buffer();
+            long now = System.currentTimeMillis();
+            long[] count = new long[1];
+            view.forEach((key, value) -> {
+                if (value.isExpired(now)) return;
+                rewriteEntry(buf, key, value);
+                count[0]++;
+                if (buf.len >= 1 << 16) {
+                    buf.writeTo(out);
+                    buf.len = 0;
+                }
+            });
+            buf.writeTo(out);
+            keys = count[0];
+
+            // final swap: block appends briefly, add what arrived meanwhile, then switch files
+            lock.lock();
+            try {
+                synchronized (ioLock) {
+                    // anything the writer has not written yet is already in the rewrite buffer
+                    rewriteBuffer.writeTo(out);
+                    out.force(true);
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    channel.close();
+                    channel = opener.open(file);
+                    unsynced = false;
+                    // pending data was copied into the rewrite buffer too, drop it from the old stream
+                    pending.len = 0;
+                    rewriteBuffer = null;
+                    generation++;
+                    durableSeq = appendedSeq;
+                    failure = null; // everything so far is in the new file, fsynced
+                    synced.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        log.info("AOF rewritten with {} keys in {} ms", keys, (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    /** The shortest commands that recreate key: SET for strings, batched pushes/adds for collections. */
+    private static void rewriteEntry(Buffer buf, ByteKey key, Value value) {
+        RedisObject obj = value.object();
+        if (value.type() == ValueType.STRING) {
+            if (value.expiresAt() == 0) {
+                buf.writeCommand(new byte[][]{SET, key.bytes(), value.data()});
+            } else {
+                byte[] at = Long.toString(value.expiresAt()).getBytes(StandardCharsets.US_ASCII);
+                buf.writeCommand(new byte[][]{SET, key.bytes(), value.data(), PXAT, at});
+            }
+            return;
+        }
+        List<byte[]> args = new ArrayList<>();
+        byte[] name = switch (obj.type()) {
+            case LIST -> RPUSH;
+            case HASH -> HSET;
+            case SET -> SADD;
+            default -> ZADD;
+        };
+        Runnable flush = () -> {
+            if (args.isEmpty()) return;
+            byte[][] argv = new byte[args.size() + 2][];
+            argv[0] = name;
+            argv[1] = key.bytes();
+            for (int i = 0; i < args.size(); i++) argv[i + 2] = args.get(i);
+            buf.writeCommand(argv);
+            args.clear();
+        };
+        if (obj instanceof RedisList list) {
+            list.forEach(e -> {
+                args.add(e);
+                if (args.size() == ITEMS_PER_COMMAND) flush.run();
+            });
+        } else if (obj instanceof RedisSet set) {
+            set.forEach(m -> {
+                args.add(m);
+                if (args.size() == ITEMS_PER_COMMAND) flush.run();
+            });
+        } else if (obj instanceof RedisHash hash) {
+            hash.forEach((f, v) -> {
+                args.add(f);
+                args.add(v);
+                if (args.size() == 2 * ITEMS_PER_COMMAND) flush.run();
+            });
+        } else if (obj instanceof RedisZSet zset) {
+            zset.forEach((m, score) -> {
+                args.add(RedisZSet.formatScore(score).getBytes(StandardCharsets.US_ASCII));
+                args.add(m);
+                if (args.size() == 2 * ITEMS_PER_COMMAND) flush.run();
+            });
+        }
+        flush.run();
+    }
+
+    /** Write out and fsync everything queued, then stop the writer thread. */
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            hasData.signal();
+            synced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (writer != null) writer.join(5000);
+            synchronized (ioLock) {
+                if (channel != null && channel.isOpen()) {
+                    channel.force(true);
+                    channel.close();
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Error closing AOF: {}", e.getMessage());
+        }
+    }
+
+    /** Growable byte array that RESP-encodes commands. */
+    private static final class Buffer {
+        private byte[] buf = new byte[64 * 1024];
+        private int len;
+
+        void writeCommand(byte[][] argv) {
+            header('*', argv.length);
+            for (byte[] arg : argv) {
+                header('$', arg.length);
+                put(arg, 0, arg.length);
+                crlf();
+            }
+        }
+
+        private void header(char type, int n) {
+            ensure(1 + 11 + 2);
+            buf[len++] = (byte) type;
+            if (n == 0) {
+                buf[len++] = '0';
+            } else {
+                int start = len;
+                for (int v = n; v > 0; v /= 10) buf[len++] = (byte) ('0' + v % 10);
+                // digits were written least significant first
+                for (int i = start, j = len - 1; i < j; i++, j--) {
+                    byte tmp = buf[i];
+                    buf[i] = buf[j];
+                    buf[j] = tmp;
+                }
+            }
+            crlf();
+        }
+
+        private void crlf() {
+            ensure(2);
+            buf[len++] = '\r';
+            buf[len++] = '\n';
+        }
+
+        void put(byte[] src, int off, int n) {
+            ensure(n);
+            System.arraycopy(src, off, buf, len, n);
+            len += n;
+        }
+
+        private void ensure(int n) {
+            if (len + n > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+        }
+
+        /** Drop the first n bytes. */
+        void discard(int n) {
+            System.arraycopy(buf, n, buf, 0, len - n);
+            len -= n;
+        }
+
+        void writeTo(FileChannel ch) throws IOException {
+            ByteBuffer bb = ByteBuffer.wrap(buf, 0, len);
+            while (bb.hasRemaining()) ch.write(bb);
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.tejas.redis.persistence;
+
+import java.util.Locale;
+
+/**
+ * When the append-only file is fsynced (Redis' appendfsync).
+ */
+public enum FsyncPolicy {
+    /** After every group commit; the client gets its reply only once the write is durable. */
+    ALWAYS,
+    /** At most once per second; up to a second of writes can be lost on power failure. */
+    EVERYSEC,
+    /** Never explicitly; the OS flushes when it likes. */
+    NO;
+
+    public static FsyncPolicy parse(String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+}
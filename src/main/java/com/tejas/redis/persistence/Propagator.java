@@ -0,0 +1,114 @@
+package com.tejas.redis.persistence;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Fans the effects of write commands out to command logs (the AOF, replicas).
+ * <p>
+ * A write command runs between {@link #enter()} and {@link #exit(long)} and reports what it
+ * did with {@link #propagate(byte[]...)}. A log that needs a cut where "applied to the store"
+ * and "logged" agree, such as an AOF rewrite opening its snapshot, runs its setup through
+ * {@link #atConsistentPoint(Supplier)}, which waits for in-flight write commands to finish
+ * and holds new ones back for the duration. With no sinks registered the barrier is skipped
+ * and a write costs one striped counter update, so sinks can come and go at runtime (a
+ * replica connecting) without every write paying for the lock.
+ */
+public final class Propagator {
+
+    /** Receives each propagated command as its argument vector. */
+    @FunctionalInterface
+    public interface Sink {
+        void append(byte[][] argv);
+
+        /**
+         * Block until what this thread appended is as durable as the sink promises. Called
+         * by connections before they send replies, with no key locks held, so other clients
+         * are not held up.
+         *
+         * @return false if the sink failed to make it durable
+         */
+        default boolean awaitDurable() {
+            return true;
+        }
+    }
+
+    /** Stamp of a write command that ran while there were no sinks; never a lock stamp. */
+    private static final long UNGUARDED = 0;
+
+    private final StampedLock barrier = new StampedLock();
+    private final LongAdder unguarded = new LongAdder();
+    private volatile Sink[] sinks = new Sink[0];
+
+    /**
+     * Register a sink. Returns once every write command that started without a barrier has
+     * finished, so a following {@link #atConsistentPoint} really sees all writes either
+     * applied and logged, or not started.
+     */
+    public synchronized void addSink(Sink sink) {
+        Sink[] next = Arrays.copyOf(sinks, sinks.length + 1);
+        next[sinks.length] = sink;
+        sinks = next;
+        // commands that read "no sinks" before the line above bumped the counter before
+        // reading; any that are still running show up here
+        while (unguarded.sum() != 0) LockSupport.parkNanos(100_000);
+    }
+
+    public synchronized void removeSink(Sink sink) {
+        sinks = Arrays.stream(sinks).filter(s -> s != sink).toArray(Sink[]::new);
+    }
+
+    public boolean isActive() {
+        return sinks.length > 0;
+    }
+
+    /**
+     * Start a write command; returns the stamp to pass to {@link #exit(long)}. With no sinks
+     * the barrier is skipped and the command is only counted, so {@link #addSink} can wait
+     * for such commands to finish: they would be missing from a sink added under them.
+     */
+    public long enter() {
+        if (sinks.length == 0) {
+            unguarded.increment();
+            if (sinks.length == 0) return UNGUARDED;
+            unguarded.decrement();
+        }
+        return barrier.readLock();
+    }
+
+    public void exit(long stamp) {
+        if (stamp == UNGUARDED) unguarded.decrement();
+        else barrier.unlockRead(stamp);
+    }
+
+    /** Record the effect of the current write command, in a form that replays deterministically. */
+    public void propagate(byte[]... argv) {
+        for (Sink sink : sinks) sink.append(argv);
+    }
+
+    /**
+     * Wait for the current thread's propagated commands to be durable in every sink.
+     *
+     * @return false if some sink could not make them durable
+     */
+    public boolean awaitDurable() {
+        boolean durable = true;
+        for (Sink sink : sinks) durable &= sink.awaitDurable();
+        return durable;
+    }
+
+    /**
+     * Run action while no write command is between enter and exit.
+     */
+    public <T> T atConsistentPoint(Supplier<T> action) {
+        long stamp = barrier.writeLock();
+        try {
+            return action.get();
+        } finally {
+            barrier.unlockWrite(stamp);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.tejas.redis.persistence;
+
+import com.tejas.redis.store.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary snapshot of the keyspace.
+ * <pre>
+ * header   "RLITESNP" u8 version
+ * entry    u8 type  i64 expiresAt (epoch ms, 0 = none)  varint keyLen  key  payload
+ * payload  string (1):         varint len  bytes
+ *          list (2), set (4):  varint count  count x (varint len  bytes)
+ *          hash (3):           varint count  count x (field  value), each varint len  bytes
+ *          zset (5):           varint count  count x (varint len  member  f64 score)
+ * trailer  u8 0xFF  i64 entryCount  i32 crc32 (of every byte before the crc)
+ * </pre>
+ * Integers are big-endian; varints are unsigned LEB128. Expiry is absolute, so keys keep
+ * their deadline across a restart and already-expired ones are skipped on load.
+ */
+public final class SnapshotFile {
+
+    private static final byte[] MAGIC = "RLITESNP".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 2; // 1 only had strings and is still readable
+    private static final int TYPE_STRING = 1;
+    private static final int TYPE_LIST = 2;
+    private static final int TYPE_HASH = 3;
+    private static final int TYPE_SET = 4;
+    private static final int TYPE_ZSET = 5;
+    private static final int EOF = 0xFF;
+
+    /** Mapped window size when loading; entries never straddle a window (we remap instead). */
+    private static final long LOAD_WINDOW = 1L << 30;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Write a point-in-time snapshot of store to file, atomically: the data goes to a temp file
+     * which is fsynced and then renamed over the target.
+     *
+     * @return number of keys written
+     */
+    public static long write(DataStore store, Path file) throws IOException {
+        Path tmp = file.resolveSibling("temp-" + ProcessHandle.current().pid() + "-" + file.getFileName());
+        long count;
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile())) {
+            count = write(store, (OutputStream) fos);
+            fos.getFD().sync();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Stream a point-in-time snapshot of store (e.g. to a file or a socket). Does not close out.
+     *
+     * @return number of keys written
+     */
+    public static long write(DataStore store, OutputStream out) throws IOException {
+        try (PointInTimeView view = store.openView()) {
+            return write(view, out);
+        }
+    }
+
+    /**
+     * Stream a snapshot of an already opened view, e.g. one opened at a point that must line
+     * up with a replication offset. Does not close out or the view.
+     *
+     * @return number of keys written
+     */
+    public static long write(PointInTimeView view, OutputStream out) throws IOException {
+        CRC32 crc = new CRC32();
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(out, crc), 1 << 16));
+        data.write(MAGIC);
+        data.writeByte(VERSION);
+        long now = System.currentTimeMillis();
+        long[] count = new long[1];
+        view.forEach((key, value) -> {
+            if (value.isExpired(now)) return;
+            writeEntry(data, key, value);
+            count[0]++;
+        });
+        data.writeByte(EOF);
+        data.writeLong(count[0]);
+        data.flush();
+        // the checksum covers everything above, so it is written around the checked stream
+        DataOutputStream trailer = new DataOutputStream(out);
+        trailer.writeInt((int) crc.getValue());
+        trailer.flush();
+        return count[0];
+    }
+
+    private static void writeEntry(DataOutputStream out, ByteKey key, Value value) throws IOException {
+        RedisObject obj = value.object();
+        out.writeByte(switch (value.type()) {
+            case STRING -> TYPE_STRING;
+            case LIST -> TYPE_LIST;
+            case HASH -> TYPE_HASH;
+            case SET -> TYPE_SET;
+            case ZSET -> TYPE_ZSET;
+        });
+        out.writeLong(value.expiresAt());
+        writeBytes(out, key.bytes());
+        if (value.type() == ValueType.STRING) {
+            writeBytes(out, value.data());
+            return;
+        }
+        writeVarint(out, obj.size());
+        // the collections' visitors can't throw IOException, so it is tunnelled through
+        try {
+            if (obj instanceof RedisList list) list.forEach(e -> writeUnchecked(out, e));
+            else if (obj instanceof RedisSet set) set.forEach(m -> writeUnchecked(out, m));
+            else if (obj instanceof RedisHash hash) hash.forEach((f, v) -> {
+                writeUnchecked(out, f);
+                writeUnchecked(out, v);
+            });
+            else if (obj instanceof RedisZSet zset) zset.forEach((m, score) -> {
+                writeUnchecked(out, m);
+                try {
+                    out.writeDouble(score);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+        writeVarint(out, b.length);
+        out.write(b);
+    }
+
+    private static void writeUnchecked(DataOutputStream out, byte[] b) {
+        try {
+            writeBytes(out, b);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    /**
+     * Load a snapshot into store through memory-mapped windows of the file.
+     *
+     * @return number of keys loaded (expired entries are skipped)
+     * @throws IOException if the file is truncated, corrupt or not a snapshot
+     */
+    public static long load(Path file, DataStore store) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Loader(ch).loadInto(store);
+        }
+    }
+
+    /**
+     * Sequential reader over a file mapped one window at a time; the checksum is updated
+     * with each window's consumed bytes before the window moves on.
+     */
+    private static final class Loader {
+        private final FileChannel ch;
+        private final long size;
+        private final CRC32 crc = new CRC32();
+        private MappedByteBuffer buf;
+        private long windowStart;
+        private int crcMark;
+        private byte[] keyScratch = new byte[256];
+
+        Loader(FileChannel ch) throws IOException {
+            this.ch = ch;
+            this.size = ch.size();
+            map(0);
+        }
+
+        long loadInto(DataStore store) throws IOException {
+            byte[] magic = new byte[MAGIC.length];
+            need(MAGIC.length + 1);
+            buf.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("not a redis-lite snapshot");
+            int version = buf.get() & 0xFF;
+            if (version < 1 || version > VERSION) throw new IOException("unsupported snapshot version " + version);
+
+            long now = System.currentTimeMillis();
+            long loaded = 0;
+            long entries = 0;
+            while (true) {
+                need(1);
+                int type = buf.get() & 0xFF;
+                if (type == EOF) break;
+                need(8);
+                long expiresAt = buf.getLong();
+                int keyLen = readVarint();
+                need(keyLen);
+                if (keyLen > keyScratch.length) keyScratch = new byte[Math.max(keyLen, keyScratch.length * 2)];
+                buf.get(keyScratch, 0, keyLen);
+                Value value = readPayload(type, expiresAt);
+                entries++;
+                if (expiresAt > 0 && expiresAt <= now) continue;
+                store.restore(ByteKey.copyOf(keyScratch, 0, keyLen), value);
+                loaded++;
+            }
+            need(8);
+            long expected = buf.getLong();
+            updateCrc();
+            need(4);
+            int stored = buf.getInt();
+            if (stored != (int) crc.getValue()) throw new IOException("snapshot checksum mismatch");
+            if (expected != entries) throw new IOException("snapshot entry count mismatch");
+            return loaded;
+        }
+
+        private Value readPayload(int type, long expiresAt) throws IOException {
+            if (type == TYPE_STRING) return Value.ofString(readBytes(), expiresAt);
+            int n = readVarint();
+            switch (type) {
+                case TYPE_LIST -> {
+                    RedisList list = new RedisList();
+                    for (int i = 0; i < n; i++) list.push(false, readBytes());
+                    return new Value(list, expiresAt);
+                }
+                case TYPE_HASH -> {
+                    RedisHash hash = new RedisHash();
+                    for (int i = 0; i < n; i++) hash.put(readBytes(), readBytes());
+                    return new Value(hash, expiresAt);
+                }
+                case TYPE_SET -> {
+                    RedisSet set = new RedisSet();
+                    for (int i = 0; i < n; i++) set.add(readBytes());
+                    return new Value(set, expiresAt);
+                }
+                case TYPE_ZSET -> {
+                    RedisZSet zset = new RedisZSet();
+                    for (int i = 0; i < n; i++) {
+                        byte[] member = readBytes();
+                        need(8);
+                        zset.add(buf.getDouble(), member, false, false);
+                    }
+                    return new Value(zset, expiresAt);
+                }
+                default -> throw new IOException("unknown entry type " + type);
+            }
+        }
+
+        private byte[] readBytes() throws IOException {
+            byte[] b = new byte[readVarint()];
+            need(b.length);
+            buf.get(b);
+            return b;
+        }
+
+        private int readVarint() throws IOException {
+            int v = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                need(1);
+                byte b = buf.get();
+                v |= (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+            throw new IOException("malformed varint");
+        }
+
+        /** Make sure n bytes (or whatever is left of the file) are readable in the window. */
+        private void need(int n) throws IOException {
+            if (buf.remaining() >= n) return;
+            long pos = windowStart + buf.position();
+            if (size - pos < n) throw new EOFException("snapshot truncated");
+            updateCrc();
+            map(pos);
+        }
+
+        private void updateCrc() {
+            ByteBuffer consumed = buf.duplicate();
+            consumed.position(crcMark).limit(buf.position());
+            crc.update(consumed);
+            crcMark = buf.position();
+        }
+
+        private void map(long start) throws IOException {
+            windowStart = start;
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, start, Math.min(LOAD_WINDOW, size - start));
+            crcMark = 0;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.tejas.redis.persistence;
+
+import com.tejas.redis.store.DataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * SAVE / BGSAVE / LASTSAVE and startup loading for one snapshot file.
+ * Both kinds of save use the store's point-in-time walk, so clients keep being served
+ * while the file is written; BGSAVE just does it on its own thread.
+ */
+public final class SnapshotManager {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotManager.class);
+
+    private final DataStore store;
+    private final Path file;
+    private final AtomicBoolean saving = new AtomicBoolean();
+    private volatile long lastSaveSeconds = System.currentTimeMillis() / 1000;
+    private volatile boolean lastSaveOk = true;
+
+    public SnapshotManager(DataStore store, Path file) {
+        this.store = store;
+        this.file = file;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * Load the snapshot file if it exists.
+     *
+     * @return keys loaded, 0 if there was no file
+     */
+    public long load() throws IOException {
+        if (!Files.exists(file)) return 0;
+        long t0 = System.nanoTime();
+        long n = SnapshotFile.load(file, store);
+        log.info("Loaded {} keys from {} in {} ms", n, file, (System.nanoTime() - t0) / 1_000_000);
+        return n;
+    }
+
+    /**
+     * Save in the calling thread.
+     *
+     * @throws IllegalStateException if a save is already in progress
+     */
+    public void save() throws IOException {
+        if (!saving.compareAndSet(false, true)) throw new IllegalStateException("Background save already in progress");
+        try {
+            doSave();
+        } finally {
+            saving.set(false);
+        }
+    }
+
+    /**
+     * Start a save on a background thread.
+     *
+     * @return false if a save is already in progress
+     */
+    public boolean bgsave() {
+        if (!saving.compareAndSet(false, true)) return false;
+        Thread t = new Thread(() -> {
+            try {
+                doSave();
+            } catch (IOException | RuntimeException e) {
+                log.error("Background save failed: {}", e.getMessage(), e);
+            } finally {
+                saving.set(false);
+            }
+        }, "bgsave");
+        t.setDaemon(true);
+        t.start();
+        return true;
+    }
+
+    private void doSave() throws IOException {
+        long t0 = System.nanoTime();
+        try {
+            long n = SnapshotFile.write(store, file);
+            lastSaveSeconds = System.currentTimeMillis() / 1000;
+            lastSaveOk = true;
+            log.info("Saved {} keys to {} in {} ms", n, file, (System.nanoTime() - t0) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            lastSaveOk = false;
+            throw e;
+        }
+    }
+
+    public boolean isSaving() {
+        return saving.get();
+    }
+
+    /** Unix time of the last successful save (or of startup). */
+    public long lastSaveSeconds() {
+        return lastSaveSeconds;
+    }
+
+    public boolean lastSaveOk() {
+        return lastSaveOk;
+    }
+}
@@ -0,0 +1,234 @@
+package com.tejas.redis.replication;
+
+import com.tejas.redis.resp.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * A replica's connection to its master: handshake, PSYNC, loading a full sync if the master
+ * sends one, then applying the command stream. Reconnects after a second whenever the link
+ * drops, asking to continue from the last applied offset.
+ */
+public final class ReplicaLink {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLink.class);
+    /** Like Redis' repl-timeout: the master pings every 10 s, so silence this long means it is gone. */
+    private static final int TIMEOUT_MS = 60_000;
+    private static final long RETRY_MS = 1000;
+    private static final long ACK_PERIOD_MS = 1000;
+
+    public enum State {
+        CONNECT, CONNECTING, SYNC, CONNECTED;
+
+        public String redisName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Replication replication;
+    private final String host;
+    private final int port;
+    private final int listeningPort;
+    private final Consumer<RespCommand> apply;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile Socket socket;
+    private volatile State state = State.CONNECT;
+    // the master's stream we follow: its replid and the offset of the next byte to apply
+    private volatile String masterReplid = "?";
+    private volatile long masterOffset = -1;
+
+    ReplicaLink(Replication replication, String host, int port, int listeningPort, Consumer<RespCommand> apply) {
+        this.replication = replication;
+        this.host = host;
+        this.port = port;
+        this.listeningPort = listeningPort;
+        this.apply = apply;
+        this.thread = new Thread(this::run, "repl-link");
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        closeSocket();
+        thread.interrupt();
+    }
+
+    public String host() {
+        return host;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /** Offset of the master's stream applied so far, -1 before the first sync. */
+    public long masterOffset() {
+        return masterOffset;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                session();
+            } catch (IOException e) {
+                if (running) log.warn("Replication link to {}:{} failed: {}", host, port, e.getMessage());
+            } finally {
+                closeSocket();
+                state = State.CONNECT;
+            }
+            try {
+                Thread.sleep(RETRY_MS);
+            } catch (InterruptedException ie) {
+                return;
+            }
+        }
+    }
+
+    private void session() throws IOException {
+        state = State.CONNECTING;
+        Socket s = new Socket();
+        socket = s;
+        if (!running) return;
+        s.connect(new InetSocketAddress(host, port), TIMEOUT_MS);
+        s.setSoTimeout(TIMEOUT_MS);
+        s.setTcpNoDelay(true);
+        BufferedInputStream in = new BufferedInputStream(s.getInputStream(), 64 * 1024);
+        OutputStream out = new BufferedOutputStream(s.getOutputStream());
+
+        send(out, "PING");
+        String pong = readLine(in);
+        if (!pong.startsWith("+")) throw new IOException("master replied to PING with " + pong);
+
+        send(out, "PSYNC", masterReplid, Long.toString(masterOffset));
+        String reply = readLine(in);
+        if (reply.startsWith("+FULLRESYNC ")) {
+            String[] parts = reply.split(" ");
+            if (parts.length != 3) throw new IOException("bad FULLRESYNC reply: " + reply);
+            state = State.SYNC;
+            receiveSnapshot(in);
+            masterReplid = parts[1];
+            masterOffset = Long.parseLong(parts[2]);
+        } else if (reply.startsWith("+CONTINUE")) {
+            log.info("Partial resync with {}:{} from offset {}", host, port, masterOffset);
+        } else {
+            throw new IOException("master replied to PSYNC with " + reply);
+        }
+        state = State.CONNECTED;
+
+        Thread acker = new Thread(() -> ackLoop(out), "repl-ack");
+        acker.setDaemon(true);
+        acker.start();
+        try {
+            RespParser parser = new RespParser(in);
+            while (running) {
+                RespObject obj = parser.parse();
+                if (!(obj instanceof RespArray arr) || arr.items().isEmpty())
+                    throw new IOException("master sent a non-command: " + obj);
+                List<RespObject> parts = arr.items().get();
+                apply.accept(RespCommand.of(parts));
+                masterOffset += encodedLength(parts);
+            }
+        } finally {
+            acker.interrupt();
+        }
+    }
+
+    /** Read "$size\r\n" and size bytes of snapshot, then load them in place of our data. */
+    private void receiveSnapshot(InputStream in) throws IOException {
+        String header = readLine(in);
+        if (!header.startsWith("$")) throw new IOException("expected snapshot, got " + header);
+        long size = Long.parseLong(header.substring(1));
+        Path tmp = replication.syncFile();
+        try {
+            try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                byte[] buf = new byte[64 * 1024];
+                long left = size;
+                while (left > 0) {
+                    int n = in.read(buf, 0, (int) Math.min(buf.length, left));
+                    if (n < 0) throw new EOFException("master closed the link during the full sync");
+                    file.write(buf, 0, n);
+                    left -= n;
+                }
+            }
+            replication.loadFullSync(tmp);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Tell the master where we serve clients, then how far we got, once a second. */
+    private void ackLoop(OutputStream out) {
+        try {
+            send(out, "REPLCONF", "LISTENING-PORT", Integer.toString(listeningPort));
+            while (running) {
+                send(out, "REPLCONF", "ACK", Long.toString(masterOffset));
+                Thread.sleep(ACK_PERIOD_MS);
+            }
+        } catch (IOException | InterruptedException e) {
+            // the link is going down; the reader notices too
+        }
+    }
+
+    /** Size of a command as the master's backlog encodes it, to keep our offset in step. */
+    static long encodedLength(List<RespObject> parts) {
+        long n = 1 + digits(parts.size()) + 2;
+        for (RespObject part : parts) {
+            int len = ((RespBulkString) part).data().length;
+            n += 1 + digits(len) + 2 + len + 2;
+        }
+        return n;
+    }
+
+    private static int digits(int v) {
+        return Integer.toString(v).length();
+    }
+
+    private static void send(OutputStream out, String... args) throws IOException {
+        StringBuilder sb = new StringBuilder().append('*').append(args.length).append("\r\n");
+        for (String a : args) sb.append('$').append(a.length()).append("\r\n").append(a).append("\r\n");
+        synchronized (out) {
+            out.write(sb.toString().getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            int b = in.read();
+            if (b == -1) throw new EOFException("master closed the link");
+            if (b == '\n' && sb.length() > 0 && sb.charAt(sb.length() - 1) == '\r') {
+                return sb.substring(0, sb.length() - 1);
+            }
+            sb.append((char) b);
+        }
+    }
+
+    private void closeSocket() {
+        Socket s = socket;
+        if (s == null) return;
+        try {
+            s.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
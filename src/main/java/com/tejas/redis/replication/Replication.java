@@ -0,0 +1,329 @@
+package com.tejas.redis.replication;
+
+import com.tejas.redis.persistence.AppendOnlyFile;
+import com.tejas.redis.persistence.Propagator;
+import com.tejas.redis.persistence.SnapshotFile;
+import com.tejas.redis.resp.*;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.PointInTimeView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Primary-replica replication over RESP, in the spirit of Redis' PSYNC.
+ * <p>
+ * As a master, the node's write stream is its {@link ReplicationBacklog}, identified by a
+ * random replication id. A replica opens a normal connection and sends
+ * {@code PSYNC <replid> <offset>}; the connection is then handed to {@link #serveReplica},
+ * which either continues the stream from that offset ({@code +CONTINUE}) or sends
+ * {@code +FULLRESYNC <replid> <offset>} followed by a snapshot as a bulk string, and then
+ * streams from the offset the snapshot was taken at. The snapshot's view is opened at the
+ * propagator's consistent point, so it holds exactly the writes before that offset.
+ * Replicas report {@code REPLCONF ACK <offset>} every second.
+ * <p>
+ * As a replica (after {@link #replicaOf}), a {@link ReplicaLink} keeps a connection to the
+ * master and applies what it streams; writes from clients are refused. A replica can serve
+ * replicas of its own: what it applies goes through its own propagator and backlog.
+ */
+public final class Replication {
+
+    private static final Logger log = LoggerFactory.getLogger(Replication.class);
+    private static final byte[] PING = "PING".getBytes(StandardCharsets.US_ASCII);
+    /** Like Redis' repl-ping-replica-period: keeps idle links from timing out. */
+    private static final long PING_PERIOD_MS = 10_000;
+
+    private final DataStore store;
+    private final Propagator propagator;
+    private final AppendOnlyFile aof; // rewritten after a full sync replaced the data; may be null
+    private final Path dir;
+    private final int listeningPort;
+    private final ReplicationBacklog backlog;
+    private final Set<ReplicaFeed> replicas = ConcurrentHashMap.newKeySet();
+    private final AtomicLong syncFiles = new AtomicLong();
+    private volatile String replid = newReplid();
+    private boolean backlogActive; // guarded by this
+    private Thread pinger;         // guarded by this
+    private volatile ReplicaLink link;
+    private volatile boolean running = true;
+
+    public Replication(DataStore store, Propagator propagator, AppendOnlyFile aof, Path dir, int listeningPort,
+                       int backlogSize) {
+        this.store = store;
+        this.propagator = propagator;
+        this.aof = aof;
+        this.dir = dir;
+        this.listeningPort = listeningPort;
+        this.backlog = new ReplicationBacklog(backlogSize);
+    }
+
+    private static String newReplid() {
+        StringBuilder sb = new StringBuilder(40);
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < 40; i++) sb.append(Character.forDigit(rnd.nextInt(16), 16));
+        return sb.toString();
+    }
+
+    /** Whether a connection's command asks to become a replica, so the connection must be handed over. */
+    public static boolean isSyncCommand(RespCommand cmd) {
+        return cmd.argc() > 0 && (cmd.equalsIgnoreCase(0, "PSYNC") || cmd.equalsIgnoreCase(0, "SYNC"));
+    }
+
+    public static boolean isSyncCommand(List<RespObject> parts) {
+        if (parts.isEmpty() || !(parts.get(0) instanceof RespBulkString name) || name.data() == null) return false;
+        String s = new String(name.data(), StandardCharsets.US_ASCII);
+        return s.equalsIgnoreCase("PSYNC") || s.equalsIgnoreCase("SYNC");
+    }
+
+    public boolean isReplica() {
+        return link != null;
+    }
+
+    public String replid() {
+        return replid;
+    }
+
+    /** Offset of the end of this node's replication stream. */
+    public long offset() {
+        return backlog.offset();
+    }
+
+    public ReplicaLink link() {
+        return link;
+    }
+
+    /** Replicas currently being fed. */
+    public List<ReplicaFeed> replicas() {
+        return new ArrayList<>(replicas);
+    }
+
+    // ---- master side ----
+
+    /**
+     * Serve a replica on a connection that just sent PSYNC (or SYNC) and has no other
+     * unanswered commands. Blocks until the replica disconnects or falls out of the backlog.
+     */
+    public void serveReplica(Socket socket, RespCommand sync) throws IOException {
+        String wantedId = sync.argc() >= 3 ? sync.asString(1) : "?";
+        long wantedOffset;
+        try {
+            wantedOffset = sync.argc() >= 3 ? sync.parseLong(2) : -1;
+        } catch (NumberFormatException nfe) {
+            wantedOffset = -1;
+        }
+        socket.setSoTimeout(0);
+        socket.setTcpNoDelay(true);
+        ReplicaFeed feed = new ReplicaFeed(socket);
+        activateBacklog();
+        replicas.add(feed);
+        try {
+            long start;
+            String id = replid;
+            if (wantedId.equals(id) && backlog.canResumeAt(wantedOffset)) {
+                feed.out.write(("+CONTINUE " + id + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                start = wantedOffset;
+                log.info("Partial resync of replica {} from offset {}", feed.address(), start);
+            } else {
+                start = fullSync(feed);
+            }
+            feed.out.flush();
+            stream(feed, start);
+        } finally {
+            replicas.remove(feed);
+            feed.close();
+            log.info("Replica {} disconnected", feed.address());
+        }
+    }
+
+    /** The backlog only starts recording, and writes only start paying for it, once a replica shows up. */
+    private synchronized void activateBacklog() {
+        if (backlogActive) return;
+        propagator.addSink(backlog);
+        backlogActive = true;
+        pinger = new Thread(this::pingLoop, "repl-ping");
+        pinger.setDaemon(true);
+        pinger.start();
+    }
+
+    private long fullSync(ReplicaFeed feed) throws IOException {
+        long t0 = System.nanoTime();
+        PointInTimeView[] view = new PointInTimeView[1];
+        String id = replid;
+        long offset = propagator.atConsistentPoint(() -> {
+            view[0] = store.openView();
+            return backlog.offset();
+        });
+        Path tmp = syncFile();
+        try {
+            long keys;
+            try (PointInTimeView v = view[0]; OutputStream file = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                keys = SnapshotFile.write(v, file);
+            }
+            long size = Files.size(tmp);
+            feed.out.write(("+FULLRESYNC " + id + " " + offset + "\r\n$" + size + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            Files.copy(tmp, feed.out);
+            log.info("Full resync of replica {}: {} keys, {} bytes, offset {} in {} ms", feed.address(), keys, size,
+                    offset, (System.nanoTime() - t0) / 1_000_000);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return offset;
+    }
+
+    private void stream(ReplicaFeed feed, long from) throws IOException {
+        byte[] buf = new byte[64 * 1024];
+        long pos = from;
+        while (running && !feed.closed) {
+            int n = backlog.read(pos, buf);
+            if (n < 0) {
+                log.warn("Replica {} fell behind the replication backlog at offset {}; it will have to resync",
+                        feed.address(), pos);
+                return;
+            }
+            if (n > 0) {
+                feed.out.write(buf, 0, n);
+                pos += n;
+                continue;
+            }
+            feed.out.flush();
+            feed.readAcks();
+            try {
+                backlog.awaitBeyond(pos, 100);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void pingLoop() {
+        while (running) {
+            try {
+                Thread.sleep(PING_PERIOD_MS);
+            } catch (InterruptedException ie) {
+                return;
+            }
+            // straight into the stream: replicas need it, the AOF does not
+            if (!replicas.isEmpty()) backlog.append(new byte[][]{PING});
+        }
+    }
+
+    /** One connected replica, as seen from its master. */
+    public static final class ReplicaFeed {
+        private final Socket socket;
+        private final OutputStream out;
+        private final RespParser acks;
+        private volatile long ackOffset = -1;
+        private volatile int listeningPort;
+        private volatile boolean closed;
+
+        ReplicaFeed(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            this.acks = new RespParser(socket.getInputStream());
+        }
+
+        public String address() {
+            return socket.getInetAddress().getHostAddress();
+        }
+
+        /** Port the replica serves clients on, once it has told us. */
+        public int listeningPort() {
+            return listeningPort;
+        }
+
+        /** Last offset the replica reported as applied, -1 before the first ack. */
+        public long ackOffset() {
+            return ackOffset;
+        }
+
+        /** Handle REPLCONF ACK / LISTENING-PORT sent by the replica, without blocking. */
+        void readAcks() throws IOException {
+            while (acks.available() > 0) {
+                if (!(acks.parse() instanceof RespArray arr) || arr.items().isEmpty()) continue;
+                RespCommand cmd = RespCommand.of(arr.items().get());
+                if (cmd.argc() != 3 || !cmd.equalsIgnoreCase(0, "REPLCONF")) continue;
+                try {
+                    if (cmd.equalsIgnoreCase(1, "ACK")) ackOffset = cmd.parseLong(2);
+                    else if (cmd.equalsIgnoreCase(1, "LISTENING-PORT")) listeningPort = (int) cmd.parseLong(2);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+
+        void close() {
+            closed = true;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // ---- replica side ----
+
+    /**
+     * Become a replica of host:port (again), dropping any current link. Returns at once; the
+     * link connects and syncs in the background.
+     *
+     * @param apply runs each command from the master, bypassing read-only mode
+     */
+    public synchronized void replicaOf(String host, int port, Consumer<RespCommand> apply) {
+        ReplicaLink old = link;
+        if (old != null) old.stop();
+        ReplicaLink next = new ReplicaLink(this, host, port, listeningPort, apply);
+        link = next;
+        next.start();
+        log.info("Replicating {}:{}", host, port);
+    }
+
+    /**
+     * REPLICAOF NO ONE: stop replicating and accept writes, keeping the data. Our own stream
+     * (and replid) carries on, so replicas of this node are unaffected.
+     */
+    public synchronized void promote() {
+        ReplicaLink old = link;
+        if (old == null) return;
+        old.stop();
+        link = null;
+        log.info("Promoted to master");
+    }
+
+    /**
+     * Replace the keyspace with a snapshot received from the master. This node's own history
+     * ends here: its replicas are dropped and will need a full sync under the new replid.
+     */
+    void loadFullSync(Path file) throws IOException {
+        for (ReplicaFeed feed : replicas) feed.close();
+        replid = newReplid();
+        store.flushAll();
+        long keys = SnapshotFile.load(file, store);
+        log.info("Loaded {} keys from the master", keys);
+        if (aof != null) aof.rewrite(store, propagator);
+    }
+
+    /** A fresh temp file in the data directory for a snapshot in transit. */
+    Path syncFile() {
+        return dir.resolve("temp-repl-" + ProcessHandle.current().pid() + "-" + syncFiles.incrementAndGet() + ".rlite");
+    }
+
+    public synchronized void close() {
+        running = false;
+        if (link != null) link.stop();
+        for (ReplicaFeed feed : replicas) feed.close();
+        if (pinger != null) pinger.interrupt();
+        if (backlogActive) propagator.removeSink(backlog);
+    }
+}
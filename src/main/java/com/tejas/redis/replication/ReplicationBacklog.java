@@ -0,0 +1,125 @@
+package com.tejas.redis.replication;
+
+import com.tejas.redis.persistence.Propagator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The replication stream: every propagated write, RESP-encoded, in a fixed-size ring. The
+ * stream position of a byte (its offset) only ever grows; the ring keeps the most recent
+ * {@code capacity} bytes of it.
+ * <p>
+ * Each replica is fed by reading the ring from its own offset, so the ring doubles as the
+ * replicas' shared output buffer and a write is encoded once however many replicas there
+ * are. A replica that reconnects resumes from its offset (partial resync) if that part of
+ * the stream is still in the ring; one that falls further behind than the ring holds needs
+ * a full sync.
+ */
+public final class ReplicationBacklog implements Propagator.Sink {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final byte[] ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition grew = lock.newCondition();
+    private long offset; // offset of the next byte to be appended
+
+    public ReplicationBacklog(int capacity) {
+        if (capacity < 1024) throw new IllegalArgumentException("repl-backlog-size must be at least 1kb");
+        this.ring = new byte[capacity];
+    }
+
+    @Override
+    public void append(byte[][] argv) {
+        lock.lock();
+        try {
+            put((byte) '*');
+            putDecimal(argv.length);
+            put(CRLF);
+            for (byte[] arg : argv) {
+                put((byte) '$');
+                putDecimal(arg.length);
+                put(CRLF);
+                put(arg);
+                put(CRLF);
+            }
+            grew.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(byte b) {
+        ring[(int) (offset % ring.length)] = b;
+        offset++;
+    }
+
+    private void put(byte[] b) {
+        int done = 0;
+        while (done < b.length) {
+            int at = (int) (offset % ring.length);
+            int n = Math.min(b.length - done, ring.length - at);
+            System.arraycopy(b, done, ring, at, n);
+            offset += n;
+            done += n;
+        }
+    }
+
+    private void putDecimal(int v) {
+        put(Integer.toString(v).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /** Offset the next appended byte will have. */
+    public long offset() {
+        lock.lock();
+        try {
+            return offset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Whether the stream can be resumed at from, i.e. it is still (or already) in the ring. */
+    public boolean canResumeAt(long from) {
+        lock.lock();
+        try {
+            return from <= offset && from >= offset - ring.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copy stream bytes starting at offset from into dst.
+     *
+     * @return bytes copied, 0 if there is nothing new yet, or -1 if from is no longer in the ring
+     */
+    public int read(long from, byte[] dst) {
+        lock.lock();
+        try {
+            if (from > offset || from < offset - ring.length) return -1;
+            int n = (int) Math.min(dst.length, offset - from);
+            int at = (int) (from % ring.length);
+            int first = Math.min(n, ring.length - at);
+            System.arraycopy(ring, at, dst, 0, first);
+            System.arraycopy(ring, 0, dst, first, n - first);
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Wait until the stream grows past from, for at most timeoutMs. */
+    public void awaitBeyond(long from, long timeoutMs) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            while (offset <= from && nanos > 0) nanos = grew.awaitNanos(nanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
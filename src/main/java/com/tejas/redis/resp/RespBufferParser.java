@@ -0,0 +1,89 @@
+package com.tejas.redis.resp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Allocation-free RESP command parser for non-blocking connections.
+ * <p>
+ * Works directly on a heap ByteBuffer: lengths are parsed digit by digit in place and
+ * arguments are exposed as slices of the buffer through a reused {@link RespCommand}.
+ * A command that has not fully arrived yet leaves the buffer untouched, so the caller
+ * simply retries once more bytes have been read. Not thread-safe; use one per event loop.
+ */
+public final class RespBufferParser {
+
+    /** Same defaults as Redis: proto-max-bulk-len and the multibulk argument limit. */
+    public static final int MAX_BULK_LEN = 512 * 1024 * 1024;
+    public static final int MAX_ARGS = 1024 * 1024;
+
+    private static final long INCOMPLETE = Long.MIN_VALUE;
+
+    // end of the last number parsed by readNumber (index just past its CRLF)
+    private int next;
+
+    /**
+     * Parse one command ({@code *N} array of bulk strings) starting at the buffer's position.
+     *
+     * @return true and advance the position past the command if it is complete;
+     * false and leave the position unchanged if more bytes are needed
+     * @throws IOException on malformed input
+     */
+    public boolean parse(ByteBuffer buf, RespCommand cmd) throws IOException {
+        byte[] a = buf.array();
+        int base = buf.arrayOffset();
+        int p = base + buf.position();
+        int end = base + buf.limit();
+        if (p >= end) return false;
+        if (a[p] != '*') throw new IOException("expected '*', got '" + (char) a[p] + "'");
+
+        long n = readNumber(a, p + 1, end);
+        if (n == INCOMPLETE) return false;
+        if (n > MAX_ARGS) throw new IOException("invalid multibulk length");
+        p = next;
+        // don't trust the header for preallocation; RespCommand grows as arguments arrive
+        cmd.reset((int) Math.min(Math.max(n, 0), 1024));
+
+        for (long i = 0; i < n; i++) {
+            if (p >= end) return false;
+            if (a[p] != '$') throw new IOException("expected '$', got '" + (char) a[p] + "'");
+            long len = readNumber(a, p + 1, end);
+            if (len == INCOMPLETE) return false;
+            if (len < 0 || len > MAX_BULK_LEN) throw new IOException("invalid bulk length");
+            p = next;
+            if (end - p < len + 2) return false;
+            int dataEnd = p + (int) len;
+            if (a[dataEnd] != '\r' || a[dataEnd + 1] != '\n') throw new IOException("missing CRLF after bulk string");
+            cmd.add(a, p, (int) len);
+            p = dataEnd + 2;
+        }
+        buf.position(p - base);
+        return true;
+    }
+
+    /**
+     * Read an optionally negative decimal terminated by CRLF. Sets {@link #next} past the CRLF.
+     */
+    private long readNumber(byte[] a, int p, int end) throws IOException {
+        boolean neg = false;
+        if (p < end && a[p] == '-') {
+            neg = true;
+            p++;
+        }
+        long v = 0;
+        int digits = 0;
+        while (p < end) {
+            byte b = a[p];
+            if (b == '\r') {
+                if (p + 1 >= end) return INCOMPLETE;
+                if (a[p + 1] != '\n' || digits == 0) throw new IOException("invalid length line");
+                next = p + 2;
+                return neg ? -v : v;
+            }
+            if (b < '0' || b > '9' || ++digits > 18) throw new IOException("invalid length line");
+            v = v * 10 + (b - '0');
+            p++;
+        }
+        return INCOMPLETE;
+    }
+}
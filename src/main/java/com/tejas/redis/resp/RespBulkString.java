@@ -4,6 +4,8 @@ import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 public final class RespBulkString implements RespObject {
+    public static final RespBulkString NULL = new RespBulkString(null);
+
     // data == null means RESP null bulk string ($-1)
     private final byte[] data;
 
@@ -0,0 +1,174 @@
+package com.tejas.redis.resp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A command and its arguments as slices of byte arrays. {@link RespBufferParser} fills one
+ * instance per connection over and over, pointing every argument into its read buffer, so
+ * parsing a command allocates nothing. Slices are only valid until the next parse; anything
+ * that must outlive the command (keys, values) is copied with {@link #copy(int)}.
+ */
+public final class RespCommand {
+
+    private byte[][] arrays = new byte[8][];
+    private int[] offsets = new int[8];
+    private int[] lengths = new int[8];
+    private int argc;
+
+    /**
+     * Wrap already-parsed RESP objects (the blocking RespParser path). Every item must be a
+     * non-null bulk string.
+     */
+    public static RespCommand of(List<RespObject> parts) {
+        RespCommand cmd = new RespCommand();
+        cmd.reset(parts.size());
+        for (RespObject part : parts) {
+            if (!(part instanceof RespBulkString bs) || bs.data() == null)
+                throw new IllegalArgumentException("expected bulk string arguments");
+            cmd.add(bs.data(), 0, bs.data().length);
+        }
+        return cmd;
+    }
+
+    void reset(int expectedArgs) {
+        argc = 0;
+        if (expectedArgs > arrays.length) grow(expectedArgs);
+    }
+
+    void add(byte[] array, int offset, int length) {
+        if (argc == arrays.length) grow(argc + 1);
+        arrays[argc] = array;
+        offsets[argc] = offset;
+        lengths[argc] = length;
+        argc++;
+    }
+
+    private void grow(int min) {
+        int cap = Math.max(min, arrays.length * 2);
+        arrays = Arrays.copyOf(arrays, cap);
+        offsets = Arrays.copyOf(offsets, cap);
+        lengths = Arrays.copyOf(lengths, cap);
+    }
+
+    /** Number of arguments, including the command name. */
+    public int argc() {
+        return argc;
+    }
+
+    public byte[] array(int i) {
+        return arrays[i];
+    }
+
+    public int offset(int i) {
+        return offsets[i];
+    }
+
+    public int length(int i) {
+        return lengths[i];
+    }
+
+    public byte byteAt(int i, int pos) {
+        return arrays[i][offsets[i] + pos];
+    }
+
+    /** Copy of argument i that stays valid after the next parse. */
+    public byte[] copy(int i) {
+        return Arrays.copyOfRange(arrays[i], offsets[i], offsets[i] + lengths[i]);
+    }
+
+    /** Copy of the whole command that stays valid after the next parse, e.g. to queue it. */
+    public RespCommand detach() {
+        RespCommand cmd = new RespCommand();
+        cmd.reset(argc);
+        for (int i = 0; i < argc; i++) {
+            byte[] arg = copy(i);
+            cmd.add(arg, 0, arg.length);
+        }
+        return cmd;
+    }
+
+    public String asString(int i) {
+        return new String(arrays[i], offsets[i], lengths[i], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * ASCII case-insensitive comparison against an upper-case token such as "EX".
+     */
+    public boolean equalsIgnoreCase(int i, String upper) {
+        int len = lengths[i];
+        if (len != upper.length()) return false;
+        byte[] a = arrays[i];
+        int off = offsets[i];
+        for (int j = 0; j < len; j++) {
+            int c = a[off + j];
+            if (c >= 'a' && c <= 'z') c -= 'a' - 'A';
+            if (c != upper.charAt(j)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parse argument i as a signed decimal long without going through a String.
+     *
+     * @throws NumberFormatException if it is not a valid, in-range integer
+     */
+    public long parseLong(int i) {
+        byte[] a = arrays[i];
+        int p = offsets[i];
+        int end = p + lengths[i];
+        if (p == end) throw new NumberFormatException("empty");
+        boolean neg = a[p] == '-';
+        if (neg && ++p == end) throw new NumberFormatException("no digits");
+        long v = 0;
+        for (; p < end; p++) {
+            int d = a[p] - '0';
+            if (d < 0 || d > 9) throw new NumberFormatException("not a digit");
+            // accumulate negatively so Long.MIN_VALUE fits
+            if (v < (Long.MIN_VALUE + d) / 10) throw new NumberFormatException("overflow");
+            v = v * 10 - d;
+        }
+        if (neg) return v;
+        if (v == Long.MIN_VALUE) throw new NumberFormatException("overflow");
+        return -v;
+    }
+
+    /**
+     * Parse argument i as a double the way Redis reads scores: decimal or exponent notation,
+     * or inf / +inf / -inf.
+     *
+     * @throws NumberFormatException if it is not a number (NaN included)
+     */
+    public double parseDouble(int i) {
+        return parseDouble(i, 0);
+    }
+
+    /**
+     * Like {@link #parseDouble(int)}, ignoring the first skip bytes (e.g. the '(' of an
+     * exclusive range bound).
+     */
+    public double parseDouble(int i, int skip) {
+        byte[] a = arrays[i];
+        int off = offsets[i] + skip;
+        int len = lengths[i] - skip;
+        if (len == 0 || len > 64) throw new NumberFormatException("not a float");
+        String s = new String(a, off, len, StandardCharsets.US_ASCII);
+        if (s.equalsIgnoreCase("inf") || s.equalsIgnoreCase("+inf")) return Double.POSITIVE_INFINITY;
+        if (s.equalsIgnoreCase("-inf")) return Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < len; j++) {
+            char c = s.charAt(j);
+            // Double.parseDouble would also take "NaN", "Infinity", hex and a trailing d/f
+            if (!(c >= '0' && c <= '9') && c != '.' && c != '-' && c != '+' && c != 'e' && c != 'E')
+                throw new NumberFormatException("not a float");
+        }
+        return Double.parseDouble(s);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("*").append(argc);
+        for (int i = 0; i < argc; i++) sb.append(' ').append(asString(i));
+        return sb.toString();
+    }
+}
@@ -1,12 +1,23 @@
 package com.tejas.redis.resp;
 
 public final class RespInteger implements RespObject {
+    private static final RespInteger[] SHARED = new RespInteger[1024];
+
+    static {
+        for (int i = 0; i < SHARED.length; i++) SHARED[i] = new RespInteger(i);
+    }
+
     private final long value;
 
     public RespInteger(long value) {
         this.value = value;
     }
 
+    /** Shared instance for small non-negative values, a new one otherwise. */
+    public static RespInteger of(long value) {
+        return value >= 0 && value < SHARED.length ? SHARED[(int) value] : new RespInteger(value);
+    }
+
     public long value() {
         return value;
     }
@@ -0,0 +1,30 @@
+package com.tejas.redis.resp;
+
+import java.util.List;
+
+/**
+ * RESP3 map (%), kept as a flat key, value, key, value... list; RESP2 clients get that list
+ * as a plain array, the way Redis answers them.
+ */
+public final class RespMap implements RespObject {
+    private final List<RespObject> entries;
+
+    public RespMap(List<RespObject> entries) {
+        if (entries.size() % 2 != 0) throw new IllegalArgumentException("map needs a value for every key");
+        this.entries = entries;
+    }
+
+    public List<RespObject> entries() {
+        return entries;
+    }
+
+    /** Number of key/value pairs. */
+    public int size() {
+        return entries.size() / 2;
+    }
+
+    @Override
+    public String toString() {
+        return "%" + size();
+    }
+}
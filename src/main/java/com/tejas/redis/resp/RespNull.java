@@ -0,0 +1,14 @@
+package com.tejas.redis.resp;
+
+/** RESP3 null (_); RESP2 clients get the null bulk string ($-1) instead. */
+public final class RespNull implements RespObject {
+    public static final RespNull NULL = new RespNull();
+
+    private RespNull() {
+    }
+
+    @Override
+    public String toString() {
+        return "_";
+    }
+}
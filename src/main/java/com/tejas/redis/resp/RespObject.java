@@ -1,4 +1,5 @@
 package com.tejas.redis.resp;
 
 /** Marker interface for RESP objects. */
-public sealed interface RespObject permits RespSimpleString, RespError, RespInteger, RespBulkString, RespArray {}
+public sealed interface RespObject permits RespSimpleString, RespError, RespInteger, RespBulkString, RespArray,
+        RespNull, RespMap, RespPush {}
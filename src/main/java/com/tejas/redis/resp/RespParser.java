@@ -8,6 +8,8 @@ import java.util.List;
 /**
  * Simple RESP parser. Reads a single RESP object per call.
  * It uses a BufferedInputStream to allow unread bytes to remain for the next parse.
+ * Besides the RESP2 types it reads RESP3 null, map and push frames, as sent to a connection
+ * that switched protocols with HELLO 3.
  */
 public class RespParser {
 
@@ -43,10 +45,20 @@ public class RespParser {
             case ':' -> new RespInteger(Long.parseLong(readLineCRLF()));
             case '$' -> parseBulkString();
             case '*' -> parseArray();
+            case '_' -> parseNull();
+            case '%' -> new RespMap(parseItems(2));
+            case '>' -> new RespPush(parseItems(1));
             default -> throw new IOException("Unknown RESP type: " + t);
         };
     }
 
+    /**
+     * Number of bytes that can be read without blocking, including bytes already buffered.
+     */
+    public int available() throws IOException {
+        return in.available();
+    }
+
     private RespBulkString parseBulkString() throws IOException {
         String lenLine = readLineCRLF();
         int len = Integer.parseInt(lenLine);
@@ -73,4 +85,18 @@ public class RespParser {
         for (int i = 0; i < n; i++) items.add(parse());
         return new RespArray(items);
     }
+
+    private RespNull parseNull() throws IOException {
+        if (!readLineCRLF().isEmpty()) throw new IOException("Unexpected data after RESP3 null");
+        return RespNull.NULL;
+    }
+
+    /** The elements of an aggregate whose header counts groups of perEntry elements. */
+    private List<RespObject> parseItems(int perEntry) throws IOException {
+        int n = Integer.parseInt(readLineCRLF()) * perEntry;
+        if (n < 0) throw new IOException("Invalid RESP3 aggregate length");
+        List<RespObject> items = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) items.add(parse());
+        return items;
+    }
 }
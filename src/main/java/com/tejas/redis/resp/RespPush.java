@@ -0,0 +1,24 @@
+package com.tejas.redis.resp;
+
+import java.util.List;
+
+/**
+ * RESP3 out-of-band push (>), e.g. a pub/sub message or a key invalidation, which a client
+ * tells apart from command replies by its type. RESP2 clients get it as a plain array.
+ */
+public final class RespPush implements RespObject {
+    private final List<RespObject> items;
+
+    public RespPush(List<RespObject> items) {
+        this.items = items;
+    }
+
+    public List<RespObject> items() {
+        return items;
+    }
+
+    @Override
+    public String toString() {
+        return ">" + items.size();
+    }
+}
@@ -1,6 +1,10 @@
 package com.tejas.redis.resp;
 
 public final class RespSimpleString implements RespObject {
+    /** Shared replies; RespWriter writes these from pre-encoded bytes. */
+    public static final RespSimpleString OK = new RespSimpleString("OK");
+    public static final RespSimpleString PONG = new RespSimpleString("PONG");
+
     private final String value;
 
     public RespSimpleString(String value) {
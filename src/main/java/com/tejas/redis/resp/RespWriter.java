@@ -2,61 +2,196 @@ package com.tejas.redis.resp;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
+/**
+ * RESP encoder. Replies are buffered and only reach the stream on {@link #flush()},
+ * so a pipelined batch can be answered with a single write.
+ * <p>
+ * Common replies are written from shared pre-encoded byte arrays and numbers are rendered
+ * digit by digit into a scratch buffer, so encoding OK / nil / integers / bulk strings
+ * allocates nothing.
+ * <p>
+ * Writes RESP2 until switched to RESP3 with {@link #protocol(int)} (HELLO 3): then nulls go
+ * out as {@code _}, and maps and pushes keep their own types instead of being flattened
+ * into arrays.
+ */
 public class RespWriter {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] OK = ascii("+OK\r\n");
+    private static final byte[] PONG = ascii("+PONG\r\n");
+    private static final byte[] NULL_BULK = ascii("$-1\r\n");
+    private static final byte[] NULL_ARRAY = ascii("*-1\r\n");
+    private static final byte[] NULL = ascii("_\r\n");
+
+    /** Same spirit as Redis' shared integers / bulk headers. */
+    private static final int SHARED_INTEGERS = 1024;
+    private static final int SHARED_BULK_HEADERS = 32;
+    private static final byte[][] INTEGERS = new byte[SHARED_INTEGERS][];
+    private static final byte[][] BULK_HEADERS = new byte[SHARED_BULK_HEADERS][];
+
+    static {
+        for (int i = 0; i < SHARED_INTEGERS; i++) INTEGERS[i] = ascii(":" + i + "\r\n");
+        for (int i = 0; i < SHARED_BULK_HEADERS; i++) BULK_HEADERS[i] = ascii("$" + i + "\r\n");
+    }
+
     private final BufferedOutputStream out;
+    // room for Long.MIN_VALUE
+    private final byte[] digits = new byte[20];
+    private int protocol = 2;
 
     public RespWriter(OutputStream out) {
         this.out = new BufferedOutputStream(out);
     }
 
+    /** Protocol version replies are encoded for: 2 or 3. */
+    public synchronized void protocol(int version) {
+        if (version != 2 && version != 3) throw new IllegalArgumentException("unsupported protocol version " + version);
+        this.protocol = version;
+    }
+
+    public synchronized int protocol() {
+        return protocol;
+    }
+
     public synchronized void writeSimpleString(String s) throws IOException {
-        writeBytes("+");
+        out.write('+');
         writeBytes(s);
-        writeBytes("\r\n");
-        flush();
+        out.write(CRLF);
     }
 
     public synchronized void writeError(String err) throws IOException {
-        writeBytes("-");
+        out.write('-');
         writeBytes(err);
-        writeBytes("\r\n");
-        flush();
+        out.write(CRLF);
     }
 
     public synchronized void writeInteger(long v) throws IOException {
-        writeBytes(":" + v + "\r\n");
-        flush();
+        if (v >= 0 && v < SHARED_INTEGERS) {
+            out.write(INTEGERS[(int) v]);
+            return;
+        }
+        out.write(':');
+        writeDecimal(v);
+        out.write(CRLF);
     }
 
     public synchronized void writeBulkString(String s) throws IOException {
-        if (s == null) {
-            writeBytes("$-1\r\n");
-        } else {
-            byte[] b = s.getBytes(StandardCharsets.UTF_8);
-            writeBytes("$" + b.length + "\r\n");
-            out.write(b);
-            writeBytes("\r\n");
-        }
-        flush();
+        writeBulkBytes(s == null ? null : s.getBytes(StandardCharsets.UTF_8));
     }
 
     public synchronized void writeBulkBytes(byte[] b) throws IOException {
         if (b == null) {
-            writeBytes("$-1\r\n");
-        } else {
-            writeBytes("$" + b.length + "\r\n");
-            out.write(b);
-            writeBytes("\r\n");
+            out.write(protocol == 3 ? NULL : NULL_BULK);
+            return;
+        }
+        writeBulkHeader(b.length);
+        out.write(b);
+        out.write(CRLF);
+    }
+
+    /**
+     * Encode a dispatcher reply using the matching write method.
+     */
+    public synchronized void write(RespObject resp) throws IOException {
+        if (resp == RespSimpleString.OK) out.write(OK);
+        else if (resp == RespSimpleString.PONG) out.write(PONG);
+        else if (resp instanceof RespSimpleString s) writeSimpleString(s.value());
+        else if (resp instanceof RespError e) writeError(e.message());
+        else if (resp instanceof RespInteger i) writeInteger(i.value());
+        else if (resp instanceof RespBulkString b) writeBulkBytes(b.data());
+        else if (resp instanceof RespArray a) writeArray(a.items().orElse(null));
+        else if (resp instanceof RespMap m && protocol == 3) writeAggregate('%', m.size(), m.entries());
+        else if (resp instanceof RespMap m) writeAggregate('*', m.entries().size(), m.entries());
+        else if (resp instanceof RespPush p) writeAggregate(protocol == 3 ? '>' : '*', p.items().size(), p.items());
+        else if (resp instanceof RespNull) out.write(protocol == 3 ? NULL : NULL_BULK);
+        else writeError("ERR unsupported response type");
+    }
+
+    /**
+     * Write an array reply; null writes the null array (*-1).
+     */
+    public synchronized void writeArray(List<RespObject> items) throws IOException {
+        if (items == null) {
+            out.write(protocol == 3 ? NULL : NULL_ARRAY);
+            return;
         }
-        flush();
+        writeAggregate('*', items.size(), items);
+    }
+
+    /** An aggregate header announcing count elements (pairs, for a map), then items. */
+    private void writeAggregate(char type, int count, List<RespObject> items) throws IOException {
+        out.write(type);
+        writeDecimal(count);
+        out.write(CRLF);
+        for (RespObject item : items) write(item);
+    }
+
+    private void writeBulkHeader(int len) throws IOException {
+        if (len < SHARED_BULK_HEADERS) {
+            out.write(BULK_HEADERS[len]);
+            return;
+        }
+        out.write('$');
+        writeDecimal(len);
+        out.write(CRLF);
+    }
+
+    /**
+     * Render v right-aligned into the scratch buffer. Works on the negative value so that
+     * Long.MIN_VALUE needs no special case.
+     */
+    private void writeDecimal(long v) throws IOException {
+        int pos = digits.length;
+        long n = v < 0 ? v : -v;
+        do {
+            digits[--pos] = (byte) ('0' - n % 10);
+            n /= 10;
+        } while (n != 0);
+        if (v < 0) digits[--pos] = '-';
+        out.write(digits, pos, digits.length - pos);
     }
 
     private void writeBytes(String s) throws IOException {
         out.write(s.getBytes(StandardCharsets.UTF_8));
     }
 
-    private void flush() throws IOException {
+    /**
+     * Write bytes that are already RESP-encoded, e.g. a frame from {@link #encode}.
+     */
+    public synchronized void writeRaw(byte[] encoded) throws IOException {
+        out.write(encoded);
+    }
+
+    /**
+     * Encode a reply once, for sending the same bytes to many connections.
+     */
+    public static byte[] encode(RespObject resp) {
+        return encode(resp, 2);
+    }
+
+    /**
+     * Encode a reply once for connections speaking the given protocol version.
+     */
+    public static byte[] encode(RespObject resp, int protocol) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        RespWriter w = new RespWriter(bytes);
+        w.protocol(protocol);
+        try {
+            w.write(resp);
+            w.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not thrown by a byte array
+        }
+        return bytes.toByteArray();
+    }
+
+    public synchronized void flush() throws IOException {
         out.flush();
     }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
 }
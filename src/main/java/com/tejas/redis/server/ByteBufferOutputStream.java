@@ -0,0 +1,61 @@
+package com.tejas.redis.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Growable heap ByteBuffer exposed as an OutputStream, so RespWriter can encode replies
+ * straight into a connection's pending output. The buffer is always kept in write mode.
+ */
+final class ByteBufferOutputStream extends OutputStream {
+
+    private final LongAdder written; // bytes handed to the channel, for INFO stats
+    private ByteBuffer buf;
+
+    ByteBufferOutputStream(int initialCapacity, LongAdder written) {
+        this.buf = ByteBuffer.allocate(initialCapacity);
+        this.written = written;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        buf.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(len);
+        buf.put(b, off, len);
+    }
+
+    boolean hasRemaining() {
+        return buf.position() > 0;
+    }
+
+    /**
+     * Write as much pending output as the channel accepts. Returns true when everything was written.
+     */
+    boolean writeTo(WritableByteChannel ch) throws IOException {
+        buf.flip();
+        try {
+            written.add(ch.write(buf));
+            return !buf.hasRemaining();
+        } finally {
+            buf.compact();
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (buf.remaining() >= extra) return;
+        int needed = buf.position() + extra;
+        int cap = Math.max(buf.capacity() * 2, needed);
+        ByteBuffer bigger = ByteBuffer.allocate(cap);
+        buf.flip();
+        bigger.put(buf);
+        buf = bigger;
+    }
+}
@@ -0,0 +1,145 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.*;
+import com.tejas.redis.store.ByteKey;
+import com.tejas.redis.store.DataStore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Server side of client-side caching (CLIENT TRACKING): which connections may hold a copy of
+ * which keys, and the invalidation pushes sent when those keys change.
+ * <p>
+ * In the default mode a connection is remembered for every key its read-only commands name,
+ * and told once when the key is written, deleted, expired or evicted; the key is then
+ * forgotten until it is read again, as in Redis. In broadcast mode (BCAST) nothing is
+ * remembered: a connection is told about every changed key that starts with one of its
+ * prefixes. Changes come from the store's key listener, which is only installed while at
+ * least one connection tracks, so servers without caching clients pay nothing per write.
+ * <p>
+ * The key table holds at most {@link #maxKeys()} keys: beyond that, keys are invalidated
+ * early to make room (Redis' tracking-table-max-keys), which costs clients a cache miss,
+ * never a stale read.
+ */
+final class ClientTracking {
+
+    private static final RespBulkString INVALIDATE = new RespBulkString("invalidate".getBytes(StandardCharsets.US_ASCII));
+
+    private final DataStore store;
+    private final Map<ByteKey, Set<Subscriber>> keys = new ConcurrentHashMap<>();
+    private final Map<ByteKey, Set<Subscriber>> prefixes = new ConcurrentHashMap<>();
+    private volatile long maxKeys = 1_000_000;
+    private int clients; // guarded by this
+
+    ClientTracking(DataStore store) {
+        this.store = store;
+    }
+
+    long maxKeys() {
+        return maxKeys;
+    }
+
+    void maxKeys(long n) {
+        if (n < 1) throw new IllegalArgumentException("tracking table max keys must be positive");
+        this.maxKeys = n;
+    }
+
+    /** A connection turned tracking on; the first one starts listening to the store. */
+    synchronized void enable() {
+        if (clients++ == 0) store.keyListener(this::invalidate);
+    }
+
+    /** A connection turned tracking off or closed; the last one stops listening and forgets all keys. */
+    synchronized void disable() {
+        if (--clients > 0) return;
+        store.keyListener(null);
+        keys.clear();
+    }
+
+    synchronized int clients() {
+        return clients;
+    }
+
+    /** Number of keys some connection is remembered for. */
+    int trackedKeys() {
+        return keys.size();
+    }
+
+    int prefixCount() {
+        return prefixes.size();
+    }
+
+    /**
+     * Remember that s is about to read key. Called before the read, so a change that lands
+     * while the command runs still reaches s (after its reply; see {@link Subscriber}).
+     */
+    void remember(ByteKey key, Subscriber s) {
+        add(keys, key, s);
+        if (keys.size() > maxKeys) trim();
+    }
+
+    void subscribe(ByteKey prefix, Subscriber s) {
+        add(prefixes, prefix, s);
+    }
+
+    void unsubscribe(ByteKey prefix, Subscriber s) {
+        prefixes.computeIfPresent(prefix, (k, set) -> {
+            set.remove(s);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    // under the map's bin lock, so a concurrent invalidation either sees s or drops the whole set
+    private static void add(Map<ByteKey, Set<Subscriber>> map, ByteKey name, Subscriber s) {
+        map.compute(name, (k, set) -> {
+            if (set == null) set = ConcurrentHashMap.newKeySet();
+            set.add(s);
+            return set;
+        });
+    }
+
+    /** The store's key listener: tell everyone who may cache key that it changed. */
+    void invalidate(ByteKey key) {
+        byte[] frame = forget(key);
+        if (prefixes.isEmpty()) return;
+        byte[] k = key.bytes();
+        for (Map.Entry<ByteKey, Set<Subscriber>> e : prefixes.entrySet()) {
+            if (!startsWith(k, e.getKey().bytes())) continue;
+            if (frame == null) frame = frame(key);
+            for (Subscriber s : e.getValue()) s.invalidate(frame);
+        }
+    }
+
+    /** Invalidate arbitrary keys until the table is back within its limit. */
+    private void trim() {
+        Iterator<ByteKey> it = keys.keySet().iterator();
+        while (keys.size() > maxKeys && it.hasNext()) forget(it.next());
+    }
+
+    /** Drop key from the table and tell the connections it held; the frame sent, or null. */
+    private byte[] forget(ByteKey key) {
+        Set<Subscriber> readers = keys.remove(key);
+        if (readers == null) return null;
+        byte[] frame = frame(key);
+        for (Subscriber s : readers) s.invalidate(frame);
+        return frame;
+    }
+
+    private byte[] frame(ByteKey key) {
+        return RespWriter.encode(new RespPush(List.of(INVALIDATE,
+                new RespArray(List.of(new RespBulkString(key.bytes()))))), 3);
+    }
+
+    static boolean startsWith(byte[] key, byte[] prefix) {
+        if (prefix.length > key.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (key[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+}
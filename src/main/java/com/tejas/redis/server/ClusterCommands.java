@@ -0,0 +1,126 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.cluster.ClusterTopology;
+import com.tejas.redis.cluster.HashSlot;
+import com.tejas.redis.replication.Replication;
+import com.tejas.redis.resp.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.tejas.redis.server.CommandDispatcher.bulk;
+
+/**
+ * CLUSTER SLOTS / SHARDS / NODES / KEYSLOT / INFO / MYID over a static {@link ClusterTopology},
+ * enough for cluster-aware clients to build their slot map.
+ */
+final class ClusterCommands {
+
+    private final ClusterTopology cluster;
+    private final Replication replication; // for our offset in CLUSTER SHARDS; may be null
+    private final CommandDispatcher dispatcher;
+
+    ClusterCommands(ClusterTopology cluster, Replication replication, CommandDispatcher dispatcher) {
+        this.cluster = cluster;
+        this.replication = replication;
+        this.dispatcher = dispatcher;
+    }
+
+    void registerAll() {
+        dispatcher.register("cluster", -2, 0, 0, 0, 0, this::cluster);
+    }
+
+    /**
+     * CLUSTER SLOTS | SHARDS | NODES | MYID | INFO | KEYSLOT key
+     */
+    private RespObject cluster(RespCommand cmd) {
+        if (cmd.argc() == 2) {
+            if (cmd.equalsIgnoreCase(1, "SLOTS")) return slots();
+            if (cmd.equalsIgnoreCase(1, "SHARDS")) return shards();
+            if (cmd.equalsIgnoreCase(1, "NODES")) return nodes();
+            if (cmd.equalsIgnoreCase(1, "MYID")) return text(cluster.myself().id());
+            if (cmd.equalsIgnoreCase(1, "INFO")) return info();
+        }
+        if (cmd.argc() == 3 && cmd.equalsIgnoreCase(1, "KEYSLOT")) {
+            return RespInteger.of(HashSlot.of(cmd.array(2), cmd.offset(2), cmd.length(2)));
+        }
+        return new RespError("ERR unknown subcommand or wrong number of arguments for '" + cmd.asString(1)
+                + "'. Try CLUSTER SLOTS, SHARDS, NODES, KEYSLOT, INFO or MYID.");
+    }
+
+    /**
+     * CLUSTER SLOTS -> [[start, end, [host, port, id]] ...]
+     */
+    private RespObject slots() {
+        List<RespObject> out = new ArrayList<>();
+        for (ClusterTopology.Node n : cluster.nodes()) {
+            for (int[] r : n.ranges()) {
+                out.add(new RespArray(List.of(RespInteger.of(r[0]), RespInteger.of(r[1]),
+                        new RespArray(List.of(text(n.host()), RespInteger.of(n.port()), text(n.id()))))));
+            }
+        }
+        return new RespArray(out);
+    }
+
+    /**
+     * CLUSTER SHARDS -> one map per node (as a flat array, RESP2 style): its slots and its
+     * single master entry
+     */
+    private RespObject shards() {
+        List<RespObject> out = new ArrayList<>();
+        for (ClusterTopology.Node n : cluster.nodes()) {
+            List<RespObject> slots = new ArrayList<>();
+            for (int[] r : n.ranges()) {
+                slots.add(RespInteger.of(r[0]));
+                slots.add(RespInteger.of(r[1]));
+            }
+            long offset = n == cluster.myself() && replication != null ? replication.offset() : 0;
+            RespArray node = new RespArray(List.of(
+                    text("id"), text(n.id()),
+                    text("port"), RespInteger.of(n.port()),
+                    text("ip"), text(n.host()),
+                    text("endpoint"), text(n.host()),
+                    text("role"), text("master"),
+                    text("replication-offset"), RespInteger.of(offset),
+                    text("health"), text("online")));
+            out.add(new RespArray(List.of(text("slots"), new RespArray(slots),
+                    text("nodes"), new RespArray(List.of(node)))));
+        }
+        return new RespArray(out);
+    }
+
+    /**
+     * CLUSTER NODES -> one line per node in Redis' format; there are no epochs or failure
+     * reports in a static topology, so those fields are fixed
+     */
+    private RespObject nodes() {
+        StringBuilder sb = new StringBuilder();
+        for (ClusterTopology.Node n : cluster.nodes()) {
+            sb.append(n.id()).append(' ').append(n.address()).append('@').append(n.port() + 10000).append(' ');
+            if (n == cluster.myself()) sb.append("myself,");
+            sb.append("master - 0 0 0 connected");
+            for (int[] r : n.ranges()) {
+                sb.append(' ').append(r[0]);
+                if (r[1] != r[0]) sb.append('-').append(r[1]);
+            }
+            sb.append('\n');
+        }
+        return text(sb.toString());
+    }
+
+    private RespObject info() {
+        int assigned = cluster.assignedSlots();
+        String state = assigned == HashSlot.SLOTS ? "ok" : "fail";
+        return text("cluster_enabled:1\r\n"
+                + "cluster_state:" + state + "\r\n"
+                + "cluster_slots_assigned:" + assigned + "\r\n"
+                + "cluster_slots_ok:" + assigned + "\r\n"
+                + "cluster_known_nodes:" + cluster.nodes().size() + "\r\n"
+                + "cluster_size:" + cluster.nodes().stream().filter(n -> !n.ranges().isEmpty()).count() + "\r\n");
+    }
+
+    private static RespObject text(String s) {
+        return bulk(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,22 +1,191 @@
 package com.tejas.redis.server;
 
+import com.tejas.redis.cluster.ClusterTopology;
+import com.tejas.redis.cluster.HashSlot;
+import com.tejas.redis.persistence.AppendOnlyFile;
+import com.tejas.redis.persistence.Propagator;
+import com.tejas.redis.persistence.SnapshotManager;
+import com.tejas.redis.replication.Replication;
 import com.tejas.redis.resp.*;
+import com.tejas.redis.store.ByteKey;
 import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.RedisObject;
+import com.tejas.redis.store.Value;
+import com.tejas.redis.store.ValueType;
+import com.tejas.redis.store.WrongTypeException;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.function.IntConsumer;
+
+import static com.tejas.redis.server.RedisCommand.*;
 
 /**
  * Dispatcher for RESP commands that operate on a DataStore.
- * Supports: PING, ECHO, SET, GET (minimal).
+ * Commands are registered in a {@link CommandTable} with their arity and flags;
+ * dispatch looks them up on the raw request bytes.
  */
 public final class CommandDispatcher {
 
+    private static final RespError OOM = new RespError("OOM command not allowed when used memory > 'maxmemory'.");
+    private static final RespError READONLY_REPLICA = new RespError("READONLY You can't write against a read only replica.");
+    private static final RespError CROSSSLOT = new RespError("CROSSSLOT Keys in request don't hash to the same slot");
+    private static final RespError CLUSTERDOWN = new RespError("CLUSTERDOWN Hash slot not served");
+    private static final RespError WRONGTYPE = new RespError("WRONGTYPE Operation against a key holding the wrong kind of value");
+    private static final byte[] SET = "SET".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PXAT = "PXAT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DEL = "DEL".getBytes(StandardCharsets.US_ASCII);
+
     private final DataStore store;
+    private final SnapshotManager snapshots;
+    private final Propagator propagator;
+    private final AppendOnlyFile aof;
+    private final Replication replication;
+    private final ClusterTopology cluster;
+    private final CommandTable commands = new CommandTable();
+    private final KeyLocks keyLocks = new KeyLocks();
+    private final PubSub pubSub = new PubSub();
+    private final SlowLog slowLog = new SlowLog();
+    private final ServerStats stats = new ServerStats();
+    private final ClientTracking tracking;
+    private volatile boolean latencyTracking = true;
 
     public CommandDispatcher(DataStore store) {
+        this(store, null);
+    }
+
+    public CommandDispatcher(DataStore store, SnapshotManager snapshots) {
+        this(store, snapshots, new Propagator(), null);
+    }
+
+    /**
+     * @param snapshots  enables SAVE / BGSAVE / LASTSAVE; may be null
+     * @param propagator receives the effects of write commands
+     * @param aof        enables BGREWRITEAOF; may be null
+     */
+    public CommandDispatcher(DataStore store, SnapshotManager snapshots, Propagator propagator, AppendOnlyFile aof) {
+        this(store, snapshots, propagator, aof, null);
+    }
+
+    /**
+     * @param replication enables REPLICAOF / ROLE and makes writes fail while this node is a
+     *                    replica; may be null
+     */
+    public CommandDispatcher(DataStore store, SnapshotManager snapshots, Propagator propagator, AppendOnlyFile aof,
+                             Replication replication) {
+        this(store, snapshots, propagator, aof, replication, null);
+    }
+
+    /**
+     * @param cluster enables cluster mode: keys in slots this node doesn't serve are
+     *                redirected with -MOVED; may be null
+     */
+    public CommandDispatcher(DataStore store, SnapshotManager snapshots, Propagator propagator, AppendOnlyFile aof,
+                             Replication replication, ClusterTopology cluster) {
         this.store = store;
+        this.snapshots = snapshots;
+        this.propagator = propagator;
+        this.aof = aof;
+        this.replication = replication;
+        this.cluster = cluster;
+        this.tracking = new ClientTracking(store);
+        // replicas and the AOF learn about evictions as DELs, as in Redis; replicas do not
+        // evict on their own (commands from the master skip the maxmemory check)
+        store.evictionListener(key -> {
+            if (propagator.isActive()) propagator.propagate(DEL, key.bytes());
+        });
+        register("ping", -1, FAST, 0, 0, 0, this::handlePing);
+        register("echo", 2, FAST, 0, 0, 0, this::handleEcho);
+        register("set", -3, WRITE | DENYOOM, 1, 1, 1, this::handleSet);
+        register("get", 2, READONLY | FAST, 1, 1, 1, this::handleGet);
+        register("mget", -2, READONLY | FAST, 1, -1, 1, this::handleMget);
+        register("mset", -3, WRITE | DENYOOM, 1, -1, 2, this::handleMset);
+        register("del", -2, WRITE, 1, -1, 1, cmd -> delete(cmd, false));
+        register("unlink", -2, WRITE | FAST, 1, -1, 1, cmd -> delete(cmd, true));
+        register("exists", -2, READONLY | FAST, 1, -1, 1, this::handleExists);
+        register("scan", -2, READONLY, 0, 0, 0, this::handleScan);
+        register("incr", 2, WRITE | DENYOOM | FAST, 1, 1, 1, cmd -> incrBy(cmd, 1));
+        register("decr", 2, WRITE | DENYOOM | FAST, 1, 1, 1, cmd -> incrBy(cmd, -1));
+        register("incrby", 3, WRITE | DENYOOM | FAST, 1, 1, 1, cmd -> incrBy(cmd, integer(cmd, 2)));
+        register("decrby", 3, WRITE | DENYOOM | FAST, 1, 1, 1, this::handleDecrby);
+        register("incrbyfloat", 3, WRITE | DENYOOM | FAST, 1, 1, 1, this::handleIncrbyfloat);
+        register("command", -1, 0, 0, 0, 0, this::handleCommand);
+        register("type", 2, READONLY | FAST, 1, 1, 1, this::handleType);
+        register("object", -2, READONLY, 2, 2, 1, this::handleObject);
+        register("publish", 3, FAST, 0, 0, 0, this::handlePublish);
+        register("pubsub", -2, 0, 0, 0, 0, this::handlePubsub);
+        // a connection's (P)SUBSCRIBE is run by its Subscriber; these only answer outside one
+        register("subscribe", -2, 0, 0, 0, 0, cmd -> new RespError("ERR SUBSCRIBE needs a client connection"));
+        register("psubscribe", -2, 0, 0, 0, 0, cmd -> new RespError("ERR PSUBSCRIBE needs a client connection"));
+        register("unsubscribe", -1, 0, 0, 0, 0, cmd -> notSubscribed("unsubscribe"));
+        register("punsubscribe", -1, 0, 0, 0, 0, cmd -> notSubscribed("punsubscribe"));
+        // likewise a connection's Transaction runs these; outside one there is nothing to queue or watch
+        register("multi", 1, FAST, 0, 0, 0, cmd -> new RespError("ERR MULTI needs a client connection"));
+        register("watch", -2, FAST, 1, -1, 1, cmd -> new RespError("ERR WATCH needs a client connection"));
+        register("exec", 1, 0, 0, 0, 0, cmd -> new RespError("ERR EXEC without MULTI"));
+        register("discard", 1, FAST, 0, 0, 0, cmd -> new RespError("ERR DISCARD without MULTI"));
+        register("unwatch", 1, FAST, 0, 0, 0, cmd -> RespSimpleString.OK);
+        // and HELLO / CLIENT act on the sending connection; see connection(...)
+        register("hello", -1, FAST, 0, 0, 0, cmd -> new RespError("ERR HELLO needs a client connection"));
+        register("client", -2, 0, 0, 0, 0, cmd -> new RespError("ERR CLIENT needs a client connection"));
+        new InfoCommands(store, snapshots, aof, replication, cluster, this).registerAll();
+        new ListCommands(store, this).registerAll();
+        new HashCommands(store, this).registerAll();
+        new SetCommands(store, this).registerAll();
+        new ZSetCommands(store, this).registerAll();
+        if (snapshots != null) {
+            register("save", 1, NOMULTI, 0, 0, 0, this::handleSave);
+            register("bgsave", 1, 0, 0, 0, 0, this::handleBgsave);
+            register("lastsave", 1, FAST, 0, 0, 0, cmd -> RespInteger.of(snapshots.lastSaveSeconds()));
+        }
+        if (aof != null) {
+            register("bgrewriteaof", 1, NOMULTI, 0, 0, 0, this::handleBgrewriteaof);
+        }
+        if (replication != null) new ReplicationCommands(replication, this).registerAll();
+        if (cluster != null) new ClusterCommands(cluster, replication, this).registerAll();
+    }
+
+    void register(String name, int arity, int flags, int firstKey, int lastKey, int keyStep,
+                          RedisCommand.Handler handler) {
+        commands.register(new RedisCommand(name, arity, flags, firstKey, lastKey, keyStep, handler));
+    }
+
+    public CommandTable commands() {
+        return commands;
+    }
+
+    public Propagator propagator() {
+        return propagator;
+    }
+
+    PubSub pubSub() {
+        return pubSub;
+    }
+
+    ClientTracking tracking() {
+        return tracking;
+    }
+
+    SlowLog slowLog() {
+        return slowLog;
+    }
+
+    /**
+     * Whether commands are timed for INFO commandstats / latencystats and LATENCY HISTOGRAM.
+     * With this off and the slowlog disabled, a call is only counted: reading the clock
+     * twice is most of what instrumentation costs a fast command.
+     */
+    void latencyTracking(boolean on) {
+        this.latencyTracking = on;
+    }
+
+    /** Connection and traffic counters, filled in by the network layer. */
+    ServerStats stats() {
+        return stats;
     }
 
     /**
@@ -24,39 +193,231 @@ public final class CommandDispatcher {
      */
     public RespObject dispatch(List<RespObject> parts) {
         if (parts == null || parts.isEmpty()) return new RespError("ERR empty command");
-        RespObject maybeCmd = parts.get(0);
-        if (!(maybeCmd instanceof RespBulkString cmdBs)) return new RespError("ERR expected bulk string for command");
-        Optional<String> cmdOpt = cmdBs.asString();
-        if (cmdOpt.isEmpty()) return new RespError("ERR empty command");
-        String cmd = cmdOpt.get().toUpperCase(Locale.ROOT);
-
+        if (!(parts.get(0) instanceof RespBulkString)) return new RespError("ERR expected bulk string for command");
         try {
-            return switch (cmd) {
-                case "PING" -> handlePing(parts);
-                case "ECHO" -> handleEcho(parts);
-                case "SET" -> handleSet(parts);
-                case "GET" -> handleGet(parts);
-                default -> new RespError("ERR unknown command '" + cmd + "'");
-            };
+            return dispatch(RespCommand.of(parts));
         } catch (IllegalArgumentException iae) {
             return new RespError("ERR " + iae.getMessage());
+        }
+    }
+
+    /**
+     * Dispatch a parsed command. Arguments are only read during the call, so the command
+     * may point into a connection's read buffer.
+     */
+    public RespObject dispatch(RespCommand cmd) {
+        return dispatch(cmd, false);
+    }
+
+    /**
+     * Apply a command from this replica's master: writes are allowed even though clients of
+     * a replica are read-only, and are never refused for lack of memory.
+     */
+    public RespObject dispatchFromMaster(RespCommand cmd) {
+        return dispatch(cmd, true);
+    }
+
+    private RespObject dispatch(RespCommand cmd, boolean fromMaster) {
+        if (cmd.argc() == 0) return new RespError("ERR empty command");
+        RedisCommand command = commands.lookup(cmd);
+        if (command == null) return new RespError("ERR unknown command '" + cmd.asString(0) + "'");
+        RespError refused = check(command, cmd, fromMaster);
+        if (refused != null) return refused;
+
+        boolean timed = timed();
+        long start = timed ? System.nanoTime() : 0;
+        RespObject reply = execute(command, cmd);
+        record(command, cmd, timed, start, reply);
+        return reply;
+    }
+
+    /** Whether a call needs the clock, for latency tracking or the slowlog. */
+    private boolean timed() {
+        return latencyTracking || slowLog.slowerThan() >= 0;
+    }
+
+    private void record(RedisCommand command, RespCommand cmd, boolean timed, long start, RespObject reply) {
+        if (!timed) {
+            command.stats().record(reply instanceof RespError);
+            return;
+        }
+        long took = System.nanoTime() - start;
+        if (latencyTracking) command.stats().record(took, reply instanceof RespError);
+        else command.stats().record(reply instanceof RespError);
+        slowLog.record(cmd, took);
+    }
+
+    /** Arity and, unless the command comes from our master, {@link #refusal}; counted as a rejected call. */
+    private RespError check(RedisCommand command, RespCommand cmd, boolean fromMaster) {
+        RespError refused = !command.acceptsArgc(cmd.argc())
+                ? new RespError("ERR wrong number of arguments for '" + command.name().toUpperCase(Locale.ROOT) + "' command")
+                : fromMaster ? null : refusal(command, cmd);
+        if (refused != null) command.stats().reject();
+        return refused;
+    }
+
+    private RespObject execute(RedisCommand command, RespCommand cmd) {
+        try {
+            if (!command.hasFlag(WRITE)) return keyLocks.call(command, cmd);
+            // keep an AOF rewrite or a replica's full sync from cutting between applying a
+            // write and logging it
+            long stamp = propagator.enter();
+            try {
+                return keyLocks.call(command, cmd);
+            } finally {
+                propagator.exit(stamp);
+            }
         } catch (Exception e) {
-            return new RespError("ERR internal error");
+            return errorReply(e);
         }
     }
 
-    private RespObject handlePing(List<RespObject> parts) {
-        if (parts.size() == 1) return new RespSimpleString("PONG");
-        RespObject arg = parts.get(1);
-        if (!(arg instanceof RespBulkString bs)) return new RespError("ERR expected bulk string as PING message");
-        return new RespBulkString(bs.data());
+    /**
+     * Wait until the write commands this thread dispatched are durable, as fsync=always
+     * promises. Connections call it once per batch of pipelined commands, before any of the
+     * batch's replies reach the socket, so a batch costs one wait instead of one per write.
+     *
+     * @return false if the AOF failed to write them; their replies must not be sent
+     */
+    public boolean awaitDurable() {
+        return propagator.awaitDurable();
+    }
+
+    private static RespObject errorReply(Exception e) {
+        if (e instanceof WrongTypeException) return WRONGTYPE;
+        if (e instanceof IllegalArgumentException) return new RespError("ERR " + e.getMessage());
+        return new RespError("ERR internal error");
+    }
+
+    /**
+     * Whether a command may be queued by MULTI: the checks of {@link #dispatch}, done up
+     * front like Redis does, so a transaction with a bad command is refused as a whole.
+     */
+    RespError checkQueued(RespCommand cmd) {
+        if (cmd.argc() == 0) return new RespError("ERR empty command");
+        RedisCommand command = commands.lookup(cmd);
+        if (command == null) return new RespError("ERR unknown command '" + cmd.asString(0) + "'");
+        if (command.hasFlag(NOMULTI)) return new RespError("ERR Command not allowed inside a transaction");
+        return check(command, cmd, false);
     }
 
-    private RespObject handleEcho(List<RespObject> parts) {
-        if (parts.size() != 2) return new RespError("ERR wrong number of arguments for 'ECHO' command");
-        RespObject arg = parts.get(1);
-        if (!(arg instanceof RespBulkString bs)) return new RespError("ERR expected bulk string for ECHO");
-        return new RespBulkString(bs.data());
+    /** See {@link DataStore#version}. */
+    long version(ByteKey key) {
+        return store.version(key);
+    }
+
+    /**
+     * EXEC: run a transaction's queued commands as one unit. The stripes of all their keys and
+     * of the watched ones are taken once, in order, and writes enter the propagator once, so
+     * no other command on those keys and no AOF rewrite or full sync can come between them.
+     * Then the watched keys' versions are compared with those seen by WATCH: if any changed,
+     * nothing runs and the reply is a null array. Nothing is held between WATCH and EXEC.
+     */
+    RespObject exec(List<RespCommand> queued, List<ByteKey> watched, long[] versions) {
+        List<RedisCommand> resolved = new ArrayList<>(queued.size());
+        boolean writes = false;
+        for (RespCommand cmd : queued) {
+            RedisCommand command = commands.lookup(cmd);
+            // memory, role or slot ownership may have changed since the command was queued
+            RespError refused = check(command, cmd, false);
+            if (refused != null) return new RespError("EXECABORT Transaction discarded because of: " + refused.message());
+            resolved.add(command);
+            writes |= command.hasFlag(WRITE);
+        }
+        if (cluster != null && !sameSlot(resolved, queued)) {
+            return new RespError("EXECABORT Transaction discarded because of: " + CROSSSLOT.message());
+        }
+        if (!writes) return keyLocks.callAll(resolved, queued, watched, false, () -> runQueued(resolved, queued, watched, versions));
+        long stamp = propagator.enter();
+        try {
+            return keyLocks.callAll(resolved, queued, watched, true, () -> runQueued(resolved, queued, watched, versions));
+        } finally {
+            propagator.exit(stamp);
+        }
+    }
+
+    private RespObject runQueued(List<RedisCommand> resolved, List<RespCommand> queued, List<ByteKey> watched, long[] versions) {
+        for (int i = 0; i < watched.size(); i++) {
+            if (store.version(watched.get(i)) != versions[i]) return new RespArray(null);
+        }
+        boolean timed = timed();
+        List<RespObject> replies = new ArrayList<>(queued.size());
+        for (int i = 0; i < queued.size(); i++) {
+            RedisCommand command = resolved.get(i);
+            RespCommand cmd = queued.get(i);
+            long start = timed ? System.nanoTime() : 0;
+            RespObject reply;
+            try {
+                reply = command.handler().handle(cmd);
+            } catch (Exception e) {
+                reply = errorReply(e);
+            }
+            record(command, cmd, timed, start, reply);
+            replies.add(reply);
+        }
+        return new RespArray(replies);
+    }
+
+    /** In cluster mode a transaction's keys must all hash to one slot, as one command's must. */
+    private static boolean sameSlot(List<RedisCommand> resolved, List<RespCommand> queued) {
+        int slot = -1;
+        for (int c = 0; c < resolved.size(); c++) {
+            RedisCommand command = resolved.get(c);
+            RespCommand cmd = queued.get(c);
+            int first = command.firstKey();
+            if (first == 0 || first >= cmd.argc()) continue;
+            int s = HashSlot.of(cmd.array(first), cmd.offset(first), cmd.length(first));
+            if (slot >= 0 && s != slot) return false;
+            slot = s;
+        }
+        return true;
+    }
+
+    /** Why a client may not run this command here and now, or null if it may. */
+    private RespError refusal(RedisCommand command, RespCommand cmd) {
+        if (cluster != null) {
+            RespError redirect = checkSlot(command, cmd);
+            if (redirect != null) return redirect;
+        }
+        if (command.hasFlag(WRITE) && replication != null && replication.isReplica()) return READONLY_REPLICA;
+        if (command.hasFlag(WRITE) && aof != null && aof.writeError() != null) return aofError();
+        if (command.hasFlag(DENYOOM) && !store.ensureMemory()) return OOM;
+        return null;
+    }
+
+    /** Writes are refused while the AOF cannot be written, as they could not be persisted. */
+    private RespError aofError() {
+        IOException e = aof == null ? null : aof.writeError();
+        return new RespError("MISCONF Errors writing to the AOF file" + (e == null ? "" : ": " + e.getMessage()));
+    }
+
+    /**
+     * In cluster mode all keys of a command must share a slot, and this node must serve it;
+     * otherwise the client is told where to go, like Redis' getNodeByQuery.
+     */
+    private RespError checkSlot(RedisCommand command, RespCommand cmd) {
+        int first = command.firstKey();
+        if (first == 0 || first >= cmd.argc()) return null;
+        int last = command.lastKey() < 0 ? cmd.argc() + command.lastKey() : Math.min(command.lastKey(), cmd.argc() - 1);
+        int step = Math.max(1, command.keyStep());
+        int slot = HashSlot.of(cmd.array(first), cmd.offset(first), cmd.length(first));
+        for (int i = first + step; i <= last; i += step) {
+            if (HashSlot.of(cmd.array(i), cmd.offset(i), cmd.length(i)) != slot) return CROSSSLOT;
+        }
+        ClusterTopology.Node owner = cluster.owner(slot);
+        if (owner == cluster.myself()) return null;
+        if (owner == null) return CLUSTERDOWN;
+        return new RespError("MOVED " + slot + " " + owner.address());
+    }
+
+    private RespObject handlePing(RespCommand cmd) {
+        if (cmd.argc() > 2) return new RespError("ERR wrong number of arguments for 'PING' command");
+        if (cmd.argc() == 1) return RespSimpleString.PONG;
+        return new RespBulkString(cmd.copy(1));
+    }
+
+    private RespObject handleEcho(RespCommand cmd) {
+        return new RespBulkString(cmd.copy(1));
     }
 
     /**
@@ -65,71 +426,29 @@ public final class CommandDispatcher {
      * We only implement expiry options here (no NX/XX/KEEPTTL/GET).
      * If multiple expiry options appear, the last one wins.
      */
-    private RespObject handleSet(List<RespObject> parts) {
-        if (parts.size() < 3) return new RespError("ERR wrong number of arguments for 'SET' command");
-
-        // key and value
-        RespObject k = parts.get(1);
-        RespObject v = parts.get(2);
-        if (!(k instanceof RespBulkString keyBs)) return new RespError("ERR expected bulk string for key");
-        if (!(v instanceof RespBulkString valBs)) return new RespError("ERR expected bulk string for value");
-
-        String key = keyBs.asString().orElse("");
-        byte[] value = valBs.data(); // may be null -> treat as delete
-
+    private RespObject handleSet(RespCommand cmd) {
         // parse optional args
         long expiresAtMs = 0; // 0 means no expiry
         int idx = 3;
-        while (idx < parts.size()) {
-            RespObject p = parts.get(idx);
-            if (!(p instanceof RespBulkString optBs)) return new RespError("ERR expected bulk string for option");
-            String opt = optBs.asString().orElse("").toUpperCase(Locale.ROOT);
-
+        while (idx < cmd.argc()) {
             try {
-                switch (opt) {
-                    case "EX" -> {
-                        // relative seconds
-                        idx++;
-                        if (idx >= parts.size()) return new RespError("ERR syntax error: EX needs an argument");
-                        RespObject arg = parts.get(idx);
-                        if (!(arg instanceof RespBulkString argBs))
-                            return new RespError("ERR expected bulk string for EX argument");
-                        long seconds = Long.parseLong(argBs.asString().orElseThrow());
-                        long now = System.currentTimeMillis();
-                        expiresAtMs = now + seconds * 1000L;
-                    }
-                    case "PX" -> {
-                        idx++;
-                        if (idx >= parts.size()) return new RespError("ERR syntax error: PX needs an argument");
-                        RespObject arg = parts.get(idx);
-                        if (!(arg instanceof RespBulkString argBs))
-                            return new RespError("ERR expected bulk string for PX argument");
-                        long ms = Long.parseLong(argBs.asString().orElseThrow());
-                        long now = System.currentTimeMillis();
-                        expiresAtMs = now + ms;
-                    }
-                    case "EXAT" -> {
-                        idx++;
-                        if (idx >= parts.size()) return new RespError("ERR syntax error: EXAT needs an argument");
-                        RespObject arg = parts.get(idx);
-                        if (!(arg instanceof RespBulkString argBs))
-                            return new RespError("ERR expected bulk string for EXAT argument");
-                        long unixSeconds = Long.parseLong(argBs.asString().orElseThrow());
-                        expiresAtMs = unixSeconds * 1000L;
-                    }
-                    case "PXAT" -> {
-                        idx++;
-                        if (idx >= parts.size()) return new RespError("ERR syntax error: PXAT needs an argument");
-                        RespObject arg = parts.get(idx);
-                        if (!(arg instanceof RespBulkString argBs))
-                            return new RespError("ERR expected bulk string for PXAT argument");
-                        long unixMs = Long.parseLong(argBs.asString().orElseThrow());
-                        expiresAtMs = unixMs;
-                    }
-                    default -> {
-                        // for now we don't support other options (NX/XX/KEEPTTL/GET); return syntax error
-                        return new RespError("ERR unsupported option '" + opt + "' in SET");
-                    }
+                if (cmd.equalsIgnoreCase(idx, "EX")) {
+                    // relative seconds
+                    if (++idx >= cmd.argc()) return new RespError("ERR syntax error: EX needs an argument");
+                    expiresAtMs = System.currentTimeMillis() + cmd.parseLong(idx) * 1000L;
+                } else if (cmd.equalsIgnoreCase(idx, "PX")) {
+                    if (++idx >= cmd.argc()) return new RespError("ERR syntax error: PX needs an argument");
+                    expiresAtMs = System.currentTimeMillis() + cmd.parseLong(idx);
+                } else if (cmd.equalsIgnoreCase(idx, "EXAT")) {
+                    if (++idx >= cmd.argc()) return new RespError("ERR syntax error: EXAT needs an argument");
+                    expiresAtMs = cmd.parseLong(idx) * 1000L;
+                } else if (cmd.equalsIgnoreCase(idx, "PXAT")) {
+                    if (++idx >= cmd.argc()) return new RespError("ERR syntax error: PXAT needs an argument");
+                    expiresAtMs = cmd.parseLong(idx);
+                } else {
+                    // for now we don't support other options (NX/XX/KEEPTTL/GET); return syntax error
+                    String opt = cmd.asString(idx).toUpperCase(Locale.ROOT);
+                    return new RespError("ERR unsupported option '" + opt + "' in SET");
                 }
             } catch (NumberFormatException nfe) {
                 return new RespError("ERR value is not an integer or out of range");
@@ -138,8 +457,15 @@ public final class CommandDispatcher {
         }
 
         // commit to store. DataStore handles immediate-expiry logic.
+        ByteKey key = key(cmd, 1);
+        byte[] value = cmd.copy(2);
         store.set(key, value, expiresAtMs);
-        return new RespSimpleString("OK");
+        if (propagator.isActive()) {
+            // relative TTLs are logged as absolute deadlines so a replay does not extend them
+            if (expiresAtMs == 0) propagator.propagate(SET, key.bytes(), value);
+            else propagator.propagate(SET, key.bytes(), value, PXAT, Long.toString(expiresAtMs).getBytes(StandardCharsets.US_ASCII));
+        }
+        return RespSimpleString.OK;
     }
 
 
@@ -147,15 +473,340 @@ public final class CommandDispatcher {
      * GET key
      * Returns bulk string with value or null bulk ($-1) if absent.
      */
-    private RespObject handleGet(List<RespObject> parts) {
-        if (parts.size() != 2) return new RespError("ERR wrong number of arguments for 'GET' command");
-        RespObject k = parts.get(1);
-        if (!(k instanceof RespBulkString keyBs)) return new RespError("ERR expected bulk string for key");
-
-        Optional<String> keyOpt = keyBs.asString();
-        String key = keyOpt.orElse("");
-        Optional<byte[]> val = store.get(key);
-        if (val.isEmpty()) return new RespBulkString(null); // $-1
+    private RespObject handleGet(RespCommand cmd) {
+        Optional<byte[]> val = store.get(key(cmd, 1));
+        if (val.isEmpty()) return RespBulkString.NULL; // $-1
         return new RespBulkString(val.get());
     }
+
+    /**
+     * MGET key [key ...]: values in order, nil for missing keys and keys holding a collection.
+     * The key locks make the result one consistent moment across all keys.
+     */
+    private RespObject handleMget(RespCommand cmd) {
+        List<RespObject> values = new ArrayList<>(cmd.argc() - 1);
+        for (int i = 1; i < cmd.argc(); i++) {
+            Optional<Value> v = store.getValue(key(cmd, i));
+            values.add(v.isPresent() && v.get().type() == ValueType.STRING ? new RespBulkString(v.get().data()) : RespBulkString.NULL);
+        }
+        return new RespArray(values);
+    }
+
+    /**
+     * MSET key value [key value ...]: replaces all values (and drops their TTLs) atomically
+     * with respect to every other command on those keys.
+     */
+    private RespObject handleMset(RespCommand cmd) {
+        if (cmd.argc() % 2 == 0) return new RespError("ERR wrong number of arguments for 'MSET' command");
+        for (int i = 1; i < cmd.argc(); i += 2) store.set(key(cmd, i), cmd.copy(i + 1), 0);
+        propagate(cmd);
+        return RespSimpleString.OK;
+    }
+
+    /**
+     * DEL / UNLINK key [key ...]: number of keys removed. UNLINK removes them just as
+     * immediately, but leaves releasing large values to the store's lazy-free thread.
+     */
+    private RespObject delete(RespCommand cmd, boolean lazy) {
+        long removed = 0;
+        for (int i = 1; i < cmd.argc(); i++) {
+            ByteKey key = key(cmd, i);
+            if (lazy ? store.unlink(key) : store.del(key)) removed++;
+        }
+        if (removed > 0) propagate(cmd);
+        return RespInteger.of(removed);
+    }
+
+    /**
+     * EXISTS key [key ...]: number of the given keys that exist; a key named twice counts twice.
+     */
+    private RespObject handleExists(RespCommand cmd) {
+        long n = 0;
+        for (int i = 1; i < cmd.argc(); i++) {
+            if (store.getValue(key(cmd, i)).isPresent()) n++;
+        }
+        return RespInteger.of(n);
+    }
+
+    /**
+     * SCAN cursor [MATCH pattern] [COUNT count] [TYPE type]
+     * <p>
+     * COUNT bounds the keys looked at by this call, not the keys returned: MATCH and TYPE
+     * filter afterwards, as in Redis, so a call may return few or no keys before the walk ends.
+     */
+    private RespObject handleScan(RespCommand cmd) {
+        long cursor;
+        try {
+            cursor = Long.parseUnsignedLong(cmd.asString(1));
+        } catch (NumberFormatException nfe) {
+            return new RespError("ERR invalid cursor");
+        }
+        byte[] pattern = null;
+        long count = 10;
+        String type = null;
+        for (int i = 2; i < cmd.argc(); i += 2) {
+            if (i + 1 >= cmd.argc()) return new RespError("ERR syntax error");
+            if (cmd.equalsIgnoreCase(i, "MATCH")) pattern = cmd.copy(i + 1);
+            else if (cmd.equalsIgnoreCase(i, "COUNT")) count = integer(cmd, i + 1);
+            else if (cmd.equalsIgnoreCase(i, "TYPE")) type = cmd.asString(i + 1);
+            else return new RespError("ERR syntax error");
+        }
+        if (count < 1) return new RespError("ERR syntax error");
+
+        byte[] match = pattern;
+        String wantType = type;
+        List<RespObject> keys = new ArrayList<>();
+        long next = store.scan(cursor, (int) Math.min(count, Integer.MAX_VALUE), key -> {
+            if (match != null && !Glob.matches(match, key.bytes())) return;
+            Optional<ValueType> t = store.type(key); // also skips keys that expired meanwhile
+            if (t.isEmpty() || (wantType != null && !t.get().redisName().equalsIgnoreCase(wantType))) return;
+            keys.add(new RespBulkString(key.bytes()));
+        });
+        return new RespArray(List.of(new RespBulkString(Long.toUnsignedString(next).getBytes(StandardCharsets.US_ASCII)),
+                new RespArray(keys)));
+    }
+
+    /**
+     * INCR / DECR / INCRBY key: atomic per key, the counter is updated in place under the
+     * key's map lock.
+     */
+    private RespObject incrBy(RespCommand cmd, long delta) {
+        long v = store.incrBy(key(cmd, 1), delta);
+        propagate(cmd);
+        return RespInteger.of(v);
+    }
+
+    private RespObject handleDecrby(RespCommand cmd) {
+        long decrement = integer(cmd, 2);
+        if (decrement == Long.MIN_VALUE) return new RespError("ERR decrement would overflow");
+        return incrBy(cmd, -decrement);
+    }
+
+    /**
+     * INCRBYFLOAT key increment. Logged as a SET of the result, so replaying it cannot drift
+     * with floating-point rounding.
+     */
+    private RespObject handleIncrbyfloat(RespCommand cmd) {
+        double incr;
+        try {
+            incr = cmd.parseDouble(2);
+        } catch (NumberFormatException nfe) {
+            return new RespError("ERR value is not a valid float");
+        }
+        if (Double.isInfinite(incr)) return new RespError("ERR increment would produce NaN or Infinity");
+        ByteKey key = key(cmd, 1);
+        Value v = store.incrByFloat(key, incr);
+        if (propagator.isActive()) {
+            if (v.expiresAt() == 0) propagator.propagate(SET, key.bytes(), v.data());
+            else propagator.propagate(SET, key.bytes(), v.data(), PXAT, Long.toString(v.expiresAt()).getBytes(StandardCharsets.US_ASCII));
+        }
+        return new RespBulkString(v.data());
+    }
+
+    /**
+     * SAVE: write the snapshot from this connection's thread. Other clients keep being served
+     * because the save reads a point-in-time view instead of locking the store.
+     */
+    private RespObject handleSave(RespCommand cmd) {
+        try {
+            snapshots.save();
+            return RespSimpleString.OK;
+        } catch (IllegalStateException busy) {
+            return new RespError("ERR " + busy.getMessage());
+        } catch (IOException e) {
+            return new RespError("ERR " + e.getMessage());
+        }
+    }
+
+    private RespObject handleBgsave(RespCommand cmd) {
+        if (!snapshots.bgsave()) return new RespError("ERR Background save already in progress");
+        return new RespSimpleString("Background saving started");
+    }
+
+    private RespObject handleBgrewriteaof(RespCommand cmd) {
+        if (!aof.rewrite(store, propagator)) return new RespError("ERR Background append only file rewriting already in progress");
+        return new RespSimpleString("Background append only file rewriting started");
+    }
+
+    static ByteKey key(RespCommand cmd, int i) {
+        return ByteKey.copyOf(cmd.array(i), cmd.offset(i), cmd.length(i));
+    }
+
+    /** Argument i as an integer, or an error reply through the IllegalArgumentException path. */
+    static long integer(RespCommand cmd, int i) {
+        try {
+            return cmd.parseLong(i);
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("value is not an integer or out of range");
+        }
+    }
+
+    /**
+     * Log the current write command verbatim; for commands whose effect does not depend on
+     * when or where they run (HSET, LPUSH, ZADD...).
+     */
+    void propagate(RespCommand cmd) {
+        if (!propagator.isActive()) return;
+        byte[][] argv = new byte[cmd.argc()][];
+        for (int i = 0; i < argv.length; i++) argv[i] = cmd.copy(i);
+        propagator.propagate(argv);
+    }
+
+    static RespObject bulk(byte[] b) {
+        return b == null ? RespBulkString.NULL : new RespBulkString(b);
+    }
+
+    /**
+     * TYPE key
+     */
+    private RespObject handleType(RespCommand cmd) {
+        return new RespSimpleString(store.type(key(cmd, 1)).map(t -> t.redisName()).orElse("none"));
+    }
+
+    /**
+     * OBJECT ENCODING key
+     */
+    private RespObject handleObject(RespCommand cmd) {
+        if (!cmd.equalsIgnoreCase(1, "ENCODING") || cmd.argc() != 3)
+            return new RespError("ERR unknown subcommand '" + cmd.asString(1) + "'. Try OBJECT ENCODING.");
+        Optional<Value> v = store.getValue(key(cmd, 2));
+        if (v.isEmpty()) return RespBulkString.NULL;
+        RedisObject obj = v.get().object();
+        // plain strings are always raw here; Redis' embstr is about allocator layout
+        String encoding = obj != null ? obj.encoding() : "raw";
+        return new RespBulkString(encoding.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * PUBLISH channel message -> number of subscriptions it was queued to
+     */
+    private RespObject handlePublish(RespCommand cmd) {
+        return RespInteger.of(pubSub.publish(cmd.copy(1), cmd.copy(2)));
+    }
+
+    /**
+     * PUBSUB CHANNELS [pattern] | PUBSUB NUMSUB [channel ...] | PUBSUB NUMPAT
+     */
+    private RespObject handlePubsub(RespCommand cmd) {
+        if (cmd.equalsIgnoreCase(1, "CHANNELS") && cmd.argc() <= 3) {
+            List<RespObject> out = new ArrayList<>();
+            for (byte[] ch : pubSub.channels(cmd.argc() == 3 ? cmd.copy(2) : null)) out.add(new RespBulkString(ch));
+            return new RespArray(out);
+        }
+        if (cmd.equalsIgnoreCase(1, "NUMSUB")) {
+            List<RespObject> out = new ArrayList<>();
+            for (int i = 2; i < cmd.argc(); i++) {
+                out.add(new RespBulkString(cmd.copy(i)));
+                out.add(RespInteger.of(pubSub.subscribers(key(cmd, i))));
+            }
+            return new RespArray(out);
+        }
+        if (cmd.equalsIgnoreCase(1, "NUMPAT") && cmd.argc() == 2) return RespInteger.of(pubSub.patternCount());
+        return new RespError("ERR unknown subcommand or wrong number of arguments for '" + cmd.asString(1)
+                + "'. Try PUBSUB CHANNELS, NUMSUB or NUMPAT.");
+    }
+
+    private static RespObject notSubscribed(String kind) {
+        return new RespArray(List.of(new RespBulkString(kind.getBytes(StandardCharsets.US_ASCII)), RespBulkString.NULL,
+                RespInteger.of(0)));
+    }
+
+    /** Whether the command is one a connection runs through {@link #connection}: HELLO or CLIENT. */
+    static boolean isConnectionCommand(RespCommand cmd) {
+        return cmd.argc() > 0 && (cmd.equalsIgnoreCase(0, "HELLO") || cmd.equalsIgnoreCase(0, "CLIENT"));
+    }
+
+    static boolean isConnectionCommand(List<RespObject> parts) {
+        if (parts.isEmpty() || !(parts.get(0) instanceof RespBulkString name) || name.data() == null) return false;
+        String s = new String(name.data(), StandardCharsets.US_ASCII);
+        return s.equalsIgnoreCase("HELLO") || s.equalsIgnoreCase("CLIENT");
+    }
+
+    /**
+     * HELLO and CLIENT for the connection with the given id, which speaks protocol so far:
+     * HELLO 3 calls switchTo before the reply is built, so the reply already goes out in
+     * RESP3. CLIENT TRACKING ON is run by the connection's {@link Subscriber}.
+     */
+    RespObject connection(RespCommand cmd, long id, int protocol, IntConsumer switchTo) {
+        if (cmd.equalsIgnoreCase(0, "HELLO")) return hello(cmd, id, protocol, switchTo);
+        if (cmd.argc() < 2) return new RespError("ERR wrong number of arguments for 'client' command");
+        if (cmd.equalsIgnoreCase(1, "ID") && cmd.argc() == 2) return RespInteger.of(id);
+        if (cmd.equalsIgnoreCase(1, "TRACKING") && cmd.argc() >= 3 && cmd.equalsIgnoreCase(2, "OFF"))
+            return RespSimpleString.OK; // was not tracking
+        return new RespError("ERR unknown subcommand or wrong number of arguments for '" + cmd.asString(1)
+                + "'. Try CLIENT ID or CLIENT TRACKING.");
+    }
+
+    /**
+     * HELLO [protover [AUTH username password] [SETNAME clientname]]: the server's identity as
+     * a map. There are no passwords, so AUTH passes like for Redis' nopass default user; names
+     * are accepted but not kept, as there is no CLIENT LIST to show them.
+     */
+    private RespObject hello(RespCommand cmd, long id, int protocol, IntConsumer switchTo) {
+        int version = protocol;
+        if (cmd.argc() >= 2) {
+            long v;
+            try {
+                v = cmd.parseLong(1);
+            } catch (NumberFormatException nfe) {
+                return new RespError("ERR Protocol version is not an integer or out of range");
+            }
+            if (v != 2 && v != 3) return new RespError("NOPROTO unsupported protocol version");
+            version = (int) v;
+        }
+        for (int i = 2; i < cmd.argc(); i++) {
+            if (cmd.equalsIgnoreCase(i, "AUTH") && i + 2 < cmd.argc()) i += 2;
+            else if (cmd.equalsIgnoreCase(i, "SETNAME") && i + 1 < cmd.argc()) i++;
+            else return new RespError("ERR Syntax error in HELLO option '" + cmd.asString(i) + "'");
+        }
+        if (version != protocol) switchTo.accept(version);
+        boolean replica = replication != null && replication.link() != null;
+        return new RespMap(List.of(
+                text("server"), text("redis"),
+                text("version"), text(InfoCommands.REDIS_VERSION),
+                text("proto"), RespInteger.of(version),
+                text("id"), RespInteger.of(id),
+                text("mode"), text(cluster != null ? "cluster" : "standalone"),
+                text("role"), text(replica ? "replica" : "master"),
+                text("modules"), new RespArray(List.of())));
+    }
+
+    private static RespObject text(String s) {
+        return new RespBulkString(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * COMMAND | COMMAND COUNT | COMMAND INFO name [name ...]
+     */
+    private RespObject handleCommand(RespCommand cmd) {
+        if (cmd.argc() == 1) {
+            List<RespObject> all = new ArrayList<>();
+            for (RedisCommand c : commands.commands()) all.add(commandInfo(c));
+            return new RespArray(all);
+        }
+        if (cmd.equalsIgnoreCase(1, "COUNT") && cmd.argc() == 2) {
+            return RespInteger.of(commands.commands().size());
+        }
+        if (cmd.equalsIgnoreCase(1, "INFO")) {
+            List<RespObject> infos = new ArrayList<>(cmd.argc() - 2);
+            for (int i = 2; i < cmd.argc(); i++) {
+                RedisCommand c = commands.lookup(cmd.array(i), cmd.offset(i), cmd.length(i));
+                infos.add(c == null ? new RespArray(null) : commandInfo(c));
+            }
+            return new RespArray(infos);
+        }
+        return new RespError("ERR unknown subcommand '" + cmd.asString(1) + "'. Try COMMAND INFO or COMMAND COUNT.");
+    }
+
+    private static RespObject commandInfo(RedisCommand c) {
+        List<RespObject> flags = new ArrayList<>();
+        for (String f : c.flagNames()) flags.add(new RespSimpleString(f));
+        return new RespArray(List.of(
+                new RespBulkString(c.name().getBytes(StandardCharsets.US_ASCII)),
+                new RespInteger(c.arity()),
+                new RespArray(flags),
+                new RespInteger(c.firstKey()),
+                new RespInteger(c.lastKey()),
+                new RespInteger(c.keyStep())));
+    }
 }
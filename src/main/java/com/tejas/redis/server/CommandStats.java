@@ -0,0 +1,84 @@
+package com.tejas.redis.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Calls and latency of one command, for INFO commandstats / latencystats and LATENCY
+ * HISTOGRAM. Every call records here, so nothing is a single shared counter: totals are
+ * LongAdders, and the latency histogram is kept in stripes picked by thread, summed only
+ * when read.
+ * <p>
+ * The histogram is a {@link LatencyHistogram} in nanoseconds with 8 sub-buckets per power of
+ * two, so percentiles are exact to within 12.5%.
+ */
+final class CommandStats {
+
+    private static final int SUB_BITS = 3;
+    private static final int BUCKETS = LatencyHistogram.buckets(SUB_BITS);
+    private static final int STRIPES = stripes();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    // allocated by the first call that lands on each stripe
+    private final AtomicLongArray[] histogram = new AtomicLongArray[STRIPES];
+
+    /** One stripe per core, up to 16, as a power of two. */
+    private static int stripes() {
+        int cpus = Math.min(16, Runtime.getRuntime().availableProcessors());
+        return Integer.highestOneBit(cpus) == cpus ? cpus : Integer.highestOneBit(cpus) << 1;
+    }
+
+    /** A call that ran untimed, and whether it replied with an error. */
+    void record(boolean error) {
+        calls.increment();
+        if (error) failed.increment();
+    }
+
+    /** A timed call that ran, and whether it replied with an error. */
+    void record(long tookNanos, boolean error) {
+        record(error);
+        nanos.add(tookNanos);
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        AtomicLongArray h = histogram[stripe];
+        if (h == null) h = newStripe(stripe);
+        h.getAndIncrement(LatencyHistogram.index(SUB_BITS, Math.max(0, tookNanos)));
+    }
+
+    private synchronized AtomicLongArray newStripe(int stripe) {
+        if (histogram[stripe] == null) histogram[stripe] = new AtomicLongArray(BUCKETS);
+        return histogram[stripe];
+    }
+
+    /** A call refused before it ran: wrong arity, OOM, READONLY, a redirection. */
+    void reject() {
+        rejected.increment();
+    }
+
+    long calls() {
+        return calls.sum();
+    }
+
+    long micros() {
+        return nanos.sum() / 1000;
+    }
+
+    long rejected() {
+        return rejected.sum();
+    }
+
+    long failed() {
+        return failed.sum();
+    }
+
+    /** Sum of all stripes; a copy, so the reader can walk it while calls go on. */
+    LatencyHistogram histogram() {
+        LatencyHistogram sum = new LatencyHistogram(SUB_BITS);
+        for (AtomicLongArray h : histogram) {
+            if (h != null) for (int i = 0; i < BUCKETS; i++) sum.add(i, h.get(i));
+        }
+        return sum;
+    }
+}
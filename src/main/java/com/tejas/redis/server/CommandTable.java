@@ -0,0 +1,80 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.RespCommand;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registry of commands with case-insensitive lookup straight on the request bytes.
+ * <p>
+ * Open addressing over an array sized to a power of two; the hash folds ASCII case so
+ * "get", "GET" and "Get" land in the same slot, and probing compares bytes directly.
+ * Lookup therefore never builds a String. Registration happens at startup only.
+ */
+public final class CommandTable {
+
+    private RedisCommand[] slots = new RedisCommand[64];
+    private final List<RedisCommand> commands = new ArrayList<>();
+
+    public synchronized void register(RedisCommand command) {
+        if (lookup(command.nameBytes(), 0, command.nameBytes().length) != null)
+            throw new IllegalStateException("command already registered: " + command.name());
+        commands.add(command);
+        if (commands.size() * 2 > slots.length) rehash(slots.length * 2);
+        else insert(slots, command);
+    }
+
+    /** The command named by argument 0, or null if unknown. */
+    public RedisCommand lookup(RespCommand cmd) {
+        return lookup(cmd.array(0), cmd.offset(0), cmd.length(0));
+    }
+
+    public RedisCommand lookup(byte[] name, int off, int len) {
+        RedisCommand[] table = slots;
+        int mask = table.length - 1;
+        for (int i = hash(name, off, len) & mask; ; i = (i + 1) & mask) {
+            RedisCommand c = table[i];
+            if (c == null) return null;
+            if (matches(c.nameBytes(), name, off, len)) return c;
+        }
+    }
+
+    public List<RedisCommand> commands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    private void rehash(int capacity) {
+        RedisCommand[] bigger = new RedisCommand[capacity];
+        for (RedisCommand c : commands) insert(bigger, c);
+        slots = bigger;
+    }
+
+    private static void insert(RedisCommand[] table, RedisCommand c) {
+        int mask = table.length - 1;
+        int i = hash(c.nameBytes(), 0, c.nameBytes().length) & mask;
+        while (table[i] != null) i = (i + 1) & mask;
+        table[i] = c;
+    }
+
+    private static int hash(byte[] a, int off, int len) {
+        int h = 0x811c9dc5;
+        for (int i = off; i < off + len; i++) {
+            h ^= a[i] | 0x20; // ASCII lower-case (also harmless for digits and '-')
+            h *= 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /** lower is a lower-case registered name; a is request bytes in any case. */
+    private static boolean matches(byte[] lower, byte[] a, int off, int len) {
+        if (lower.length != len) return false;
+        for (int i = 0; i < len; i++) {
+            int c = a[off + i];
+            if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+            if (c != lower[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,338 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.replication.Replication;
+import com.tejas.redis.resp.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One selector thread serving many non-blocking client channels.
+ * Channels are handed over by the acceptor via {@link #register(SocketChannel)}.
+ */
+final class EventLoop implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(EventLoop.class);
+    /** Bytes of queued pub/sub frames moved to a connection per turn, so one busy subscriber can't hog the loop. */
+    private static final int PUSH_CHUNK = 64 * 1024;
+
+    private final Selector selector;
+    private final CommandDispatcher dispatcher;
+    private final ServerStats stats;
+    private final Replication replication; // null when replication is off
+    private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+    // subscribers with queued frames, handed over by publishing threads
+    private final Queue<Connection> ready = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean woken = new AtomicBoolean();
+    // shared by every connection of this loop; only touched from the loop thread
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(16 * 1024);
+    private final RespBufferParser parser = new RespBufferParser();
+    private final RespCommand command = new RespCommand();
+    private volatile boolean running = true;
+
+    EventLoop(CommandDispatcher dispatcher, Replication replication) throws IOException {
+        this.selector = Selector.open();
+        this.dispatcher = dispatcher;
+        this.stats = dispatcher.stats();
+        this.replication = replication;
+    }
+
+    void register(SocketChannel ch) {
+        pending.add(ch);
+        selector.wakeup();
+    }
+
+    void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                woken.set(false);
+                registerPending();
+                pushReady();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    Connection conn = (Connection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isReadable()) onReadable(key, conn);
+                        if (key.isValid() && key.isWritable()) onWritable(key, conn);
+                    } catch (IOException e) {
+                        log.debug("IO error with client {}: {}", conn.remote, e.getMessage());
+                        close(key, conn);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.error("Event loop failed: {}", e.getMessage(), e);
+        } finally {
+            for (SelectionKey key : selector.keys()) close(key, (Connection) key.attachment());
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void registerPending() {
+        SocketChannel ch;
+        while ((ch = pending.poll()) != null) {
+            try {
+                ch.configureBlocking(false);
+                Connection conn = new Connection(ch, stats.netOutput());
+                conn.key = ch.register(selector, SelectionKey.OP_READ, conn);
+                conn.id = stats.clientConnected();
+                log.debug("Client connected: {}", conn.remote);
+            } catch (IOException e) {
+                log.warn("Failed to register client: {}", e.getMessage());
+                try {
+                    ch.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void onReadable(SelectionKey key, Connection conn) throws IOException {
+        // idle connections hold no input buffer: read into the loop's shared buffer and only
+        // give the connection its own buffer when a command is left half-received
+        ByteBuffer buf = conn.pendingIn;
+        if (buf == null) {
+            buf = readBuffer;
+            buf.clear();
+        } else if (!buf.hasRemaining()) {
+            buf = conn.growPendingIn();
+        }
+        int n = conn.channel.read(buf);
+        if (n == -1) {
+            close(key, conn);
+            return;
+        }
+        if (n == 0) return;
+        stats.read(n);
+
+        buf.flip();
+        try {
+            processInput(conn, buf);
+        } finally {
+            conn.keepRemaining(buf, buf == readBuffer);
+        }
+        if (conn.sync != null) {
+            handOff(key, conn);
+            return;
+        }
+        if (conn.subscriber != null) {
+            push(conn);
+            return;
+        }
+        if (!conn.out.writeTo(conn.channel)) {
+            // stop reading until the client drains its replies
+            key.interestOps(SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Dispatch every complete command in the buffer; a trailing partial command is left
+     * unconsumed until more bytes arrive.
+     */
+    private void processInput(Connection conn, ByteBuffer buf) throws IOException {
+        try {
+            while (parser.parse(buf, command)) {
+                if (conn.transaction != null && conn.transaction.isQueueing()) {
+                    conn.writer.write(conn.transaction.execute(command));
+                    continue;
+                }
+                if (replication != null && Replication.isSyncCommand(command)) {
+                    // the connection becomes a replication link; stop reading it as a client
+                    conn.sync = command.detach();
+                    break;
+                }
+                if (conn.subscriber != null || Subscriber.isSubscribe(command)) {
+                    if (conn.subscriber == null) {
+                        conn.subscriber = new Subscriber(dispatcher.pubSub(), dispatcher.tracking(), conn.id,
+                                conn.writer, conn.transaction, () -> schedule(conn), () -> schedule(conn));
+                    }
+                    conn.subscriber.execute(command, dispatcher);
+                    continue;
+                }
+                if (conn.transaction != null || Transaction.isTransaction(command)) {
+                    if (conn.transaction == null) conn.transaction = new Transaction(dispatcher);
+                    conn.writer.write(conn.transaction.execute(command));
+                    continue;
+                }
+                if (CommandDispatcher.isConnectionCommand(command)) {
+                    conn.writer.write(dispatcher.connection(command, conn.id, conn.writer.protocol(), conn.writer::protocol));
+                    continue;
+                }
+                conn.writer.write(dispatcher.dispatch(command));
+            }
+        } catch (IOException protocolError) {
+            awaitDurable();
+            conn.writer.writeError("ERR Protocol error: " + protocolError.getMessage());
+            conn.writer.flush();
+            conn.out.writeTo(conn.channel);
+            throw protocolError;
+        }
+        awaitDurable();
+        conn.writer.flush();
+    }
+
+    /**
+     * fsync=always: the batch's replies go out only once its writes are on disk. If they
+     * cannot be written, the connection is dropped rather than acknowledging them.
+     */
+    private void awaitDurable() throws IOException {
+        if (!dispatcher.awaitDurable()) throw new IOException("AOF write failed, closing the connection");
+    }
+
+    /**
+     * Take a connection that sent PSYNC off this loop and serve the replica from its own
+     * thread: feeding a replica blocks on the backlog, which a selector thread must not do.
+     */
+    private void handOff(SelectionKey key, Connection conn) throws IOException {
+        key.cancel();
+        stats.clientDisconnected();
+        selector.selectNow(); // completes the deregistration, so the channel may block again
+        SocketChannel ch = conn.channel;
+        ch.configureBlocking(true);
+        conn.out.writeTo(ch); // blocking now, so this sends all replies to commands before PSYNC
+        RespCommand sync = conn.sync;
+        Thread feeder = new Thread(() -> {
+            try {
+                replication.serveReplica(ch.socket(), sync);
+            } catch (IOException e) {
+                log.info("Replica {} link failed: {}", conn.remote, e.getMessage());
+            } finally {
+                try {
+                    ch.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }, "repl-feed");
+        feeder.setDaemon(true);
+        feeder.start();
+    }
+
+    private void onWritable(SelectionKey key, Connection conn) throws IOException {
+        if (!conn.out.writeTo(conn.channel)) return;
+        key.interestOps(SelectionKey.OP_READ);
+        if (conn.subscriber != null) push(conn);
+    }
+
+    /** Called from publishing threads: have the loop push a subscriber's queue (or close it). */
+    private void schedule(Connection conn) {
+        ready.add(conn);
+        if (woken.compareAndSet(false, true)) selector.wakeup();
+    }
+
+    private void pushReady() {
+        Connection conn;
+        while ((conn = ready.poll()) != null) {
+            if (!conn.key.isValid()) continue;
+            try {
+                push(conn);
+            } catch (IOException e) {
+                log.debug("IO error with subscriber {}: {}", conn.remote, e.getMessage());
+                close(conn.key, conn);
+            }
+        }
+    }
+
+    /**
+     * Move queued pub/sub frames into the connection's output buffer and write them. Only
+     * done while the socket keeps up: frames left in the queue count against the subscriber's
+     * limit, while the output buffer would grow without one.
+     */
+    private void push(Connection conn) throws IOException {
+        Subscriber sub = conn.subscriber;
+        if (sub.overflowed()) {
+            log.info("Disconnecting subscriber {}: pub/sub output buffer limit reached", conn.remote);
+            close(conn.key, conn);
+            return;
+        }
+        if ((conn.key.interestOps() & SelectionKey.OP_WRITE) != 0) return; // onWritable pushes on
+        sub.draining();
+        int budget = PUSH_CHUNK;
+        for (byte[] frame = sub.next(); frame != null; frame = budget > 0 ? sub.next() : null) {
+            conn.out.write(frame);
+            budget -= frame.length;
+        }
+        if (!conn.out.writeTo(conn.channel)) conn.key.interestOps(SelectionKey.OP_WRITE);
+        else if (budget <= 0) schedule(conn); // there may be more; other connections go first
+    }
+
+    private void close(SelectionKey key, Connection conn) {
+        key.cancel();
+        if (conn.subscriber != null) conn.subscriber.close();
+        if (!conn.channel.isOpen()) return; // already closed, e.g. again when the loop stops
+        stats.clientDisconnected();
+        try {
+            conn.channel.close();
+        } catch (IOException ignored) {
+        }
+        log.debug("Client disconnected: {}", conn.remote);
+    }
+
+    /**
+     * Per-connection state: a partially received command, if any, and replies not yet written.
+     */
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final Object remote;
+        private final ByteBufferOutputStream out;
+        private final RespWriter writer;
+        // null unless a partial command is waiting for more bytes; kept in write mode
+        private ByteBuffer pendingIn;
+        // set once the client sent PSYNC and is to be handed over to replication
+        private RespCommand sync;
+        // set by the first (P)SUBSCRIBE; from then on replies go through its queue
+        private Subscriber subscriber;
+        // set by the first MULTI or WATCH; a subscriber created later takes it over
+        private Transaction transaction;
+        private SelectionKey key;
+        private long id; // CLIENT ID
+
+        Connection(SocketChannel channel, LongAdder written) throws IOException {
+            this.channel = channel;
+            this.out = new ByteBufferOutputStream(1024, written);
+            this.writer = new RespWriter(out);
+            this.remote = channel.getRemoteAddress();
+        }
+
+        ByteBuffer growPendingIn() {
+            ByteBuffer bigger = ByteBuffer.allocate(pendingIn.capacity() * 2);
+            pendingIn.flip();
+            bigger.put(pendingIn);
+            pendingIn = bigger;
+            return bigger;
+        }
+
+        /**
+         * Keep unconsumed bytes (read mode {@code buf}) for the next read event.
+         */
+        void keepRemaining(ByteBuffer buf, boolean shared) {
+            if (!buf.hasRemaining()) {
+                pendingIn = null;
+            } else if (shared) {
+                pendingIn = ByteBuffer.allocate(Math.max(1024, buf.remaining() * 2));
+                pendingIn.put(buf);
+            } else {
+                buf.compact();
+            }
+        }
+    }
+}
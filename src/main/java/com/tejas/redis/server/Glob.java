@@ -0,0 +1,77 @@
+package com.tejas.redis.server;
+
+/**
+ * Redis-style glob patterns over raw bytes: {@code *} (any run), {@code ?} (any byte),
+ * {@code [abc]}, {@code [^abc]}, {@code [a-z]} and {@code \} to escape the next byte.
+ * Matching is case-sensitive, like Redis' stringmatchlen.
+ */
+final class Glob {
+
+    private Glob() {
+    }
+
+    static boolean matches(byte[] pattern, byte[] s) {
+        int p = 0;
+        int i = 0;
+        // where to resume after the last '*' if the rest fails: backtracking one star is
+        // enough, so matching stays O(pattern * string) however many stars there are
+        int starP = -1;
+        int starI = -1;
+        while (i < s.length) {
+            if (p < pattern.length) {
+                if (pattern[p] == '*') {
+                    starP = ++p;
+                    starI = i;
+                    continue;
+                }
+                int next = matchOne(pattern, p, s[i]);
+                if (next >= 0) {
+                    p = next;
+                    i++;
+                    continue;
+                }
+            }
+            if (starP < 0) return false;
+            p = starP;
+            i = ++starI;
+        }
+        while (p < pattern.length && pattern[p] == '*') p++;
+        return p == pattern.length;
+    }
+
+    /** @return the pattern index after the element at p if it matches c, else -1 */
+    private static int matchOne(byte[] pattern, int p, byte c) {
+        byte pc = pattern[p];
+        if (pc == '?') return p + 1;
+        if (pc == '\\' && p + 1 < pattern.length) return pattern[p + 1] == c ? p + 2 : -1;
+        if (pc != '[') return pc == c ? p + 1 : -1;
+
+        int q = p + 1;
+        boolean negate = q < pattern.length && pattern[q] == '^';
+        if (negate) q++;
+        boolean hit = false;
+        // an unterminated class runs to the end of the pattern, as in Redis
+        while (q < pattern.length && pattern[q] != ']') {
+            if (pattern[q] == '\\' && q + 1 < pattern.length) {
+                hit |= pattern[q + 1] == c;
+                q += 2;
+            } else if (q + 2 < pattern.length && pattern[q + 1] == '-' && pattern[q + 2] != ']') {
+                int lo = pattern[q] & 0xFF;
+                int hi = pattern[q + 2] & 0xFF;
+                if (lo > hi) {
+                    int t = lo;
+                    lo = hi;
+                    hi = t;
+                }
+                int u = c & 0xFF;
+                hit |= u >= lo && u <= hi;
+                q += 3;
+            } else {
+                hit |= pattern[q] == c;
+                q++;
+            }
+        }
+        if (hit == negate) return -1;
+        return q < pattern.length ? q + 1 : q;
+    }
+}
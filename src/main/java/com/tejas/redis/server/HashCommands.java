@@ -0,0 +1,92 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.*;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.RedisHash;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.tejas.redis.server.CommandDispatcher.*;
+import static com.tejas.redis.server.RedisCommand.*;
+
+/**
+ * HSET / HGET / HDEL / HLEN / HEXISTS / HGETALL on {@link RedisHash} values.
+ */
+final class HashCommands {
+
+    private final DataStore store;
+    private final CommandDispatcher dispatcher;
+
+    HashCommands(DataStore store, CommandDispatcher dispatcher) {
+        this.store = store;
+        this.dispatcher = dispatcher;
+    }
+
+    void registerAll() {
+        dispatcher.register("hset", -4, WRITE | DENYOOM | FAST, 1, 1, 1, this::hset);
+        dispatcher.register("hget", 3, READONLY | FAST, 1, 1, 1, this::hget);
+        dispatcher.register("hdel", -3, WRITE | FAST, 1, 1, 1, this::hdel);
+        dispatcher.register("hlen", 2, READONLY | FAST, 1, 1, 1, this::hlen);
+        dispatcher.register("hexists", 3, READONLY | FAST, 1, 1, 1, this::hexists);
+        dispatcher.register("hgetall", 2, READONLY, 1, 1, 1, this::hgetall);
+    }
+
+    /**
+     * HSET key field value [field value ...] -> number of new fields
+     */
+    private RespObject hset(RespCommand cmd) {
+        if (cmd.argc() % 2 != 0) return new RespError("ERR wrong number of arguments for 'HSET' command");
+        byte[][] args = new byte[cmd.argc() - 2][];
+        for (int i = 2; i < cmd.argc(); i++) args[i - 2] = cmd.copy(i);
+        int added = store.modify(key(cmd, 1), RedisHash.class, RedisHash::new, hash -> {
+            int n = 0;
+            for (int i = 0; i < args.length; i += 2) if (hash.put(args[i], args[i + 1])) n++;
+            return n;
+        }, 0);
+        dispatcher.propagate(cmd);
+        return RespInteger.of(added);
+    }
+
+    private RespObject hget(RespCommand cmd) {
+        byte[] field = cmd.copy(2);
+        return bulk(store.read(key(cmd, 1), RedisHash.class, hash -> hash.get(field), null));
+    }
+
+    /**
+     * HDEL key field [field ...] -> number of fields removed
+     */
+    private RespObject hdel(RespCommand cmd) {
+        byte[][] fields = new byte[cmd.argc() - 2][];
+        for (int i = 2; i < cmd.argc(); i++) fields[i - 2] = cmd.copy(i);
+        int removed = store.modify(key(cmd, 1), RedisHash.class, null, hash -> {
+            int n = 0;
+            for (byte[] f : fields) if (hash.remove(f)) n++;
+            return n;
+        }, 0);
+        if (removed > 0) dispatcher.propagate(cmd);
+        return RespInteger.of(removed);
+    }
+
+    private RespObject hlen(RespCommand cmd) {
+        return RespInteger.of(store.read(key(cmd, 1), RedisHash.class, RedisHash::size, 0));
+    }
+
+    private RespObject hexists(RespCommand cmd) {
+        byte[] field = cmd.copy(2);
+        boolean found = store.read(key(cmd, 1), RedisHash.class, hash -> hash.get(field) != null, false);
+        return RespInteger.of(found ? 1 : 0);
+    }
+
+    private RespObject hgetall(RespCommand cmd) {
+        List<RespObject> out = new ArrayList<>();
+        store.read(key(cmd, 1), RedisHash.class, hash -> {
+            hash.forEach((f, v) -> {
+                out.add(new RespBulkString(f));
+                out.add(new RespBulkString(v));
+            });
+            return null;
+        }, null);
+        return new RespArray(out);
+    }
+}
@@ -0,0 +1,326 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.cluster.ClusterTopology;
+import com.tejas.redis.persistence.AppendOnlyFile;
+import com.tejas.redis.persistence.SnapshotManager;
+import com.tejas.redis.replication.ReplicaLink;
+import com.tejas.redis.replication.Replication;
+import com.tejas.redis.resp.*;
+import com.tejas.redis.store.DataStore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static com.tejas.redis.server.CommandDispatcher.bulk;
+
+/**
+ * INFO / SLOWLOG / LATENCY HISTOGRAM: what the dispatcher, the network layer and the store
+ * count, in Redis' formats. Reading sums striped counters, so these are the costly side;
+ * recording stays cheap.
+ */
+final class InfoCommands {
+
+    /** The Redis version whose commands and INFO fields we follow, for clients that feature-check it. */
+    static final String REDIS_VERSION = "7.0.0";
+    private static final List<String> DEFAULT_SECTIONS =
+            List.of("server", "clients", "memory", "persistence", "stats", "replication", "cluster", "keyspace");
+    private static final List<String> ALL_SECTIONS = List.of("server", "clients", "memory", "persistence", "stats",
+            "replication", "commandstats", "latencystats", "cluster", "keyspace");
+
+    private final DataStore store;
+    private final SnapshotManager snapshots;   // may be null
+    private final AppendOnlyFile aof;          // may be null
+    private final Replication replication;     // may be null
+    private final ClusterTopology cluster;     // may be null
+    private final CommandDispatcher dispatcher;
+
+    InfoCommands(DataStore store, SnapshotManager snapshots, AppendOnlyFile aof, Replication replication,
+                 ClusterTopology cluster, CommandDispatcher dispatcher) {
+        this.store = store;
+        this.snapshots = snapshots;
+        this.aof = aof;
+        this.replication = replication;
+        this.cluster = cluster;
+        this.dispatcher = dispatcher;
+    }
+
+    void registerAll() {
+        dispatcher.register("info", -1, 0, 0, 0, 0, this::info);
+        dispatcher.register("slowlog", -2, 0, 0, 0, 0, this::slowlog);
+        dispatcher.register("latency", -2, 0, 0, 0, 0, this::latency);
+    }
+
+    /**
+     * INFO [section ...]: the default sections, or "all" / "everything" for those plus
+     * commandstats and latencystats.
+     */
+    private RespObject info(RespCommand cmd) {
+        Set<String> wanted = new HashSet<>();
+        List<String> order = DEFAULT_SECTIONS;
+        for (int i = 1; i < cmd.argc(); i++) {
+            String name = cmd.asString(i).toLowerCase(Locale.ROOT);
+            if (name.equals("all") || name.equals("everything")) wanted.addAll(ALL_SECTIONS);
+            else if (name.equals("default")) wanted.addAll(DEFAULT_SECTIONS);
+            else wanted.add(name);
+        }
+        if (cmd.argc() > 1) order = ALL_SECTIONS;
+        else wanted.addAll(DEFAULT_SECTIONS);
+
+        StringBuilder sb = new StringBuilder(2048);
+        for (String section : order) {
+            if (!wanted.contains(section)) continue;
+            if (sb.length() > 0) sb.append("\r\n");
+            sb.append("# ").append(Character.toUpperCase(section.charAt(0))).append(section.substring(1)).append("\r\n");
+            switch (section) {
+                case "server" -> server(sb);
+                case "clients" -> clients(sb);
+                case "memory" -> memory(sb);
+                case "persistence" -> persistence(sb);
+                case "stats" -> stats(sb);
+                case "replication" -> replication(sb);
+                case "commandstats" -> commandStats(sb);
+                case "latencystats" -> latencyStats(sb);
+                case "cluster" -> field(sb, "cluster_enabled", cluster != null ? 1 : 0);
+                case "keyspace" -> keyspace(sb);
+                default -> throw new IllegalStateException(section);
+            }
+        }
+        return text(sb.toString());
+    }
+
+    private void server(StringBuilder sb) {
+        ServerStats stats = dispatcher.stats();
+        ServerConfig config = stats.config();
+        field(sb, "redis_version", REDIS_VERSION);
+        field(sb, "redis_mode", cluster != null ? "cluster" : "standalone");
+        field(sb, "process_id", ProcessHandle.current().pid());
+        field(sb, "java_version", Runtime.version());
+        if (config != null) {
+            field(sb, "tcp_port", config.port());
+            field(sb, "io_mode", config.ioMode().name().toLowerCase(Locale.ROOT));
+            field(sb, "hz", config.hz());
+        }
+        long uptime = (System.currentTimeMillis() - stats.startMillis()) / 1000;
+        field(sb, "uptime_in_seconds", uptime);
+        field(sb, "uptime_in_days", uptime / 86400);
+        field(sb, "shards", store.shardCount());
+    }
+
+    private void clients(StringBuilder sb) {
+        field(sb, "connected_clients", dispatcher.stats().connectedClients());
+        field(sb, "tracking_clients", dispatcher.tracking().clients());
+    }
+
+    private void memory(StringBuilder sb) {
+        Runtime rt = Runtime.getRuntime();
+        long used = store.usedMemory();
+        field(sb, "used_memory", used);
+        field(sb, "used_memory_human", human(used));
+        field(sb, "used_memory_heap", rt.totalMemory() - rt.freeMemory());
+        field(sb, "max_memory_heap", rt.maxMemory());
+        field(sb, "maxmemory", store.maxMemory());
+        field(sb, "maxmemory_human", human(store.maxMemory()));
+        field(sb, "maxmemory_policy", store.evictionPolicy().redisName());
+        field(sb, "storage", store.storage().configName());
+        field(sb, "offheap_allocated", store.offHeapAllocated());
+        field(sb, "offheap_used", store.offHeapUsed());
+        field(sb, "lazyfree_pending_objects", store.lazyfreePendingObjects());
+        field(sb, "lazyfreed_objects", store.lazyfreedObjects());
+    }
+
+    private void persistence(StringBuilder sb) {
+        field(sb, "loading", 0);
+        if (snapshots != null) {
+            field(sb, "rdb_bgsave_in_progress", snapshots.isSaving() ? 1 : 0);
+            field(sb, "rdb_last_save_time", snapshots.lastSaveSeconds());
+            field(sb, "rdb_last_bgsave_status", snapshots.lastSaveOk() ? "ok" : "err");
+        }
+        field(sb, "aof_enabled", aof != null ? 1 : 0);
+        field(sb, "aof_rewrite_in_progress", aof != null && aof.isRewriting() ? 1 : 0);
+        field(sb, "aof_last_write_status", aof != null && aof.writeError() != null ? "err" : "ok");
+    }
+
+    private void stats(StringBuilder sb) {
+        ServerStats stats = dispatcher.stats();
+        long calls = 0, rejected = 0, failed = 0;
+        for (RedisCommand c : dispatcher.commands().commands()) {
+            calls += c.stats().calls();
+            rejected += c.stats().rejected();
+            failed += c.stats().failed();
+        }
+        field(sb, "total_connections_received", stats.totalConnections());
+        field(sb, "total_commands_processed", calls);
+        field(sb, "total_net_input_bytes", stats.netInputBytes());
+        field(sb, "total_net_output_bytes", stats.netOutputBytes());
+        field(sb, "rejected_calls", rejected);
+        field(sb, "failed_calls", failed);
+        field(sb, "expired_keys", store.expiredKeys());
+        field(sb, "expired_keys_per_sec", store.expiredPerSecond());
+        field(sb, "expire_lag_ms", store.expiryLagMs());
+        field(sb, "evicted_keys", store.evictedKeys());
+        field(sb, "pubsub_channels", dispatcher.pubSub().channels(null).size());
+        field(sb, "pubsub_patterns", dispatcher.pubSub().patternCount());
+        field(sb, "pubsub_slow_disconnects", dispatcher.pubSub().slowDisconnects());
+        field(sb, "tracking_total_keys", dispatcher.tracking().trackedKeys());
+        field(sb, "tracking_total_prefixes", dispatcher.tracking().prefixCount());
+        field(sb, "slowlog_len", dispatcher.slowLog().len());
+    }
+
+    private void replication(StringBuilder sb) {
+        ReplicaLink link = replication == null ? null : replication.link();
+        field(sb, "role", link != null ? "slave" : "master");
+        if (link != null) {
+            field(sb, "master_host", link.host());
+            field(sb, "master_port", link.port());
+            field(sb, "master_link_status", link.state() == ReplicaLink.State.CONNECTED ? "up" : "down");
+            field(sb, "master_repl_offset", link.masterOffset());
+            return;
+        }
+        field(sb, "connected_slaves", replication == null ? 0 : replication.replicas().size());
+        if (replication != null) {
+            field(sb, "master_replid", replication.replid());
+            field(sb, "master_repl_offset", replication.offset());
+        }
+    }
+
+    private void commandStats(StringBuilder sb) {
+        for (RedisCommand c : dispatcher.commands().commands()) {
+            CommandStats s = c.stats();
+            long calls = s.calls();
+            if (calls == 0 && s.rejected() == 0) continue;
+            long usec = s.micros();
+            sb.append("cmdstat_").append(c.name()).append(":calls=").append(calls).append(",usec=").append(usec)
+                    .append(",usec_per_call=").append(String.format(Locale.ROOT, "%.2f", calls == 0 ? 0.0 : (double) usec / calls))
+                    .append(",rejected_calls=").append(s.rejected()).append(",failed_calls=").append(s.failed()).append("\r\n");
+        }
+    }
+
+    private void latencyStats(StringBuilder sb) {
+        for (RedisCommand c : dispatcher.commands().commands()) {
+            if (c.stats().calls() == 0) continue;
+            LatencyHistogram h = c.stats().histogram();
+            sb.append("latency_percentiles_usec_").append(c.name())
+                    .append(":p50=").append(micros(h.percentile(0.50)))
+                    .append(",p99=").append(micros(h.percentile(0.99)))
+                    .append(",p99.9=").append(micros(h.percentile(0.999))).append("\r\n");
+        }
+    }
+
+    private void keyspace(StringBuilder sb) {
+        int keys = store.size();
+        if (keys > 0) sb.append("db0:keys=").append(keys).append(",expires=").append(store.expires()).append(",avg_ttl=0\r\n");
+    }
+
+    /**
+     * SLOWLOG GET [count] | LEN | RESET | HELP. GET entries are
+     * [id, unix-time, microseconds, [arg ...], client-addr, client-name]; the client fields
+     * are empty, since commands don't know their connection.
+     */
+    private RespObject slowlog(RespCommand cmd) {
+        SlowLog log = dispatcher.slowLog();
+        if (cmd.equalsIgnoreCase(1, "GET") && cmd.argc() <= 3) {
+            long count = cmd.argc() == 3 ? CommandDispatcher.integer(cmd, 2) : 10;
+            if (count < -1) throw new IllegalArgumentException("count should be greater than or equal to -1");
+            List<RespObject> out = new ArrayList<>();
+            for (SlowLog.Entry e : log.get((int) Math.min(count, Integer.MAX_VALUE))) {
+                List<RespObject> args = new ArrayList<>(e.args().size());
+                for (byte[] a : e.args()) args.add(bulk(a));
+                out.add(new RespArray(List.of(RespInteger.of(e.id()), RespInteger.of(e.timeSeconds()),
+                        RespInteger.of(e.micros()), new RespArray(args), text(""), text(""))));
+            }
+            return new RespArray(out);
+        }
+        if (cmd.argc() == 2) {
+            if (cmd.equalsIgnoreCase(1, "LEN")) return RespInteger.of(log.len());
+            if (cmd.equalsIgnoreCase(1, "RESET")) {
+                log.reset();
+                return RespSimpleString.OK;
+            }
+            if (cmd.equalsIgnoreCase(1, "HELP")) {
+                return help("SLOWLOG GET [<count>]", "    Return top <count> entries from the slowlog (default: 10, -1 means all).",
+                        "SLOWLOG LEN", "    Return the length of the slowlog.",
+                        "SLOWLOG RESET", "    Reset the slowlog.");
+            }
+        }
+        return new RespError("ERR unknown subcommand or wrong number of arguments for '" + cmd.asString(1)
+                + "'. Try SLOWLOG HELP.");
+    }
+
+    /**
+     * LATENCY HISTOGRAM [command ...] | HELP. For each command that has run:
+     * name -> ["calls", n, "histogram_usec", [bucket, cumulative-calls ...]], with power-of-two
+     * microsecond buckets as in Redis; a bucket is only listed when its count differs from the
+     * previous one.
+     */
+    private RespObject latency(RespCommand cmd) {
+        if (cmd.equalsIgnoreCase(1, "HISTOGRAM")) {
+            List<RedisCommand> selected = new ArrayList<>();
+            if (cmd.argc() == 2) {
+                selected.addAll(dispatcher.commands().commands());
+            } else {
+                for (int i = 2; i < cmd.argc(); i++) {
+                    RedisCommand c = dispatcher.commands().lookup(cmd.array(i), cmd.offset(i), cmd.length(i));
+                    if (c != null && !selected.contains(c)) selected.add(c);
+                }
+            }
+            List<RespObject> out = new ArrayList<>();
+            for (RedisCommand c : selected) {
+                if (c.stats().calls() == 0) continue;
+                out.add(text(c.name()));
+                out.add(new RespArray(List.of(text("calls"), RespInteger.of(c.stats().calls()),
+                        text("histogram_usec"), new RespArray(powerOfTwoBuckets(c.stats().histogram())))));
+            }
+            return new RespArray(out);
+        }
+        if (cmd.equalsIgnoreCase(1, "HELP") && cmd.argc() == 2) {
+            return help("LATENCY HISTOGRAM [<command> ...]",
+                    "    Return a cumulative distribution of latencies in the format of a histogram for the specified",
+                    "    command names. If no commands are specified then all histograms are replied.");
+        }
+        return new RespError("ERR unknown subcommand or wrong number of arguments for '" + cmd.asString(1)
+                + "'. Try LATENCY HELP.");
+    }
+
+    /** Cumulative calls up to 1, 2, 4, ... us; each fine bucket goes to the first power of two above it. */
+    private static List<RespObject> powerOfTwoBuckets(LatencyHistogram histogram) {
+        List<RespObject> out = new ArrayList<>();
+        long cumulative = 0, listed = 0, total = histogram.count();
+        for (long bound = 1; cumulative < total && bound < Long.MAX_VALUE / 2000; bound <<= 1) {
+            cumulative = histogram.countBelow(bound * 1000);
+            if (cumulative != listed) {
+                out.add(RespInteger.of(bound));
+                out.add(RespInteger.of(cumulative));
+                listed = cumulative;
+            }
+        }
+        return out;
+    }
+
+    private static RespObject help(String... lines) {
+        List<RespObject> out = new ArrayList<>(lines.length);
+        for (String line : lines) out.add(new RespSimpleString(line));
+        return new RespArray(out);
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000.0);
+    }
+
+    private static String human(long bytes) {
+        if (bytes < 1024) return bytes + "B";
+        int exp = Math.min(4, (63 - Long.numberOfLeadingZeros(bytes)) / 10);
+        return String.format(Locale.ROOT, "%.2f%c", bytes / Math.pow(1024, exp), "BKMGT".charAt(exp));
+    }
+
+    private static void field(StringBuilder sb, String name, Object value) {
+        sb.append(name).append(':').append(value).append("\r\n");
+    }
+
+    private static RespObject text(String s) {
+        return bulk(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
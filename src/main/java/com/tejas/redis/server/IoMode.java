@@ -0,0 +1,13 @@
+package com.tejas.redis.server;
+
+/**
+ * How RedisServer handles client connections.
+ */
+public enum IoMode {
+    /** One pooled platform thread per connection, blocking RespParser/RespWriter. */
+    THREADS,
+    /** One virtual thread per connection (Java 21+), same blocking parser/writer as THREADS. */
+    VIRTUAL,
+    /** A few selector-based event loops multiplexing non-blocking channels. */
+    NIO
+}
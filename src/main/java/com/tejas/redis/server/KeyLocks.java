@@ -0,0 +1,173 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.RespCommand;
+import com.tejas.redis.resp.RespObject;
+import com.tejas.redis.store.ByteKey;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped locks over the keys named by a command's key spec (first key, last key, step),
+ * which make multi-key commands atomic: MSET never shows half of its keys updated, and MGET
+ * never mixes values from before and after another command.
+ * <p>
+ * Write commands hold their stripes exclusively. Read-only commands run optimistically and
+ * only fall back to shared locks if a writer touched one of their stripes meanwhile, so a
+ * plain GET stays lock-free. Several stripes are always taken in ascending order, so two
+ * multi-key commands cannot deadlock. The store's per-key map locks still do the work of
+ * keeping each single value consistent; these only order whole commands.
+ */
+final class KeyLocks {
+
+    private static final int STRIPES = 1024;
+
+    private final StampedLock[] locks = new StampedLock[STRIPES];
+
+    KeyLocks() {
+        for (int i = 0; i < STRIPES; i++) locks[i] = new StampedLock();
+    }
+
+    /**
+     * Run the command's handler under the locks for its keys. Commands without keys run
+     * unlocked.
+     */
+    RespObject call(RedisCommand command, RespCommand cmd) {
+        int first = command.firstKey();
+        if (first == 0 || first >= cmd.argc()) return command.handler().handle(cmd);
+        int last = command.lastKey() < 0 ? cmd.argc() + command.lastKey() : Math.min(command.lastKey(), cmd.argc() - 1);
+        boolean exclusive = command.hasFlag(RedisCommand.WRITE);
+        if (first >= last) return callOne(locks[stripe(cmd, first)], exclusive, command, cmd);
+        return callMany(stripes(cmd, first, last, Math.max(1, command.keyStep())), exclusive, command, cmd);
+    }
+
+    private static RespObject callOne(StampedLock lock, boolean exclusive, RedisCommand command, RespCommand cmd) {
+        if (exclusive) {
+            long stamp = lock.writeLock();
+            try {
+                return command.handler().handle(cmd);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            RespObject reply = attempt(command, cmd);
+            if (lock.validate(stamp) && reply != null) return reply;
+        }
+        stamp = lock.readLock();
+        try {
+            return command.handler().handle(cmd);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private RespObject callMany(int[] stripes, boolean exclusive, RedisCommand command, RespCommand cmd) {
+        long[] stamps = new long[stripes.length];
+        if (!exclusive && optimistic(stripes, stamps)) {
+            RespObject reply = attempt(command, cmd);
+            if (validate(stripes, stamps) && reply != null) return reply;
+        }
+        for (int i = 0; i < stripes.length; i++) {
+            stamps[i] = exclusive ? locks[stripes[i]].writeLock() : locks[stripes[i]].readLock();
+        }
+        try {
+            return command.handler().handle(cmd);
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) locks[stripes[i]].unlock(stamps[i]);
+        }
+    }
+
+    /**
+     * Run body holding the stripes of every key of the given commands and of extra keys,
+     * all exclusively or all shared: a transaction's queued commands and its watched keys,
+     * taken once in ascending order like any multi-key command's.
+     */
+    RespObject callAll(List<RedisCommand> commands, List<RespCommand> cmds, List<ByteKey> extra, boolean exclusive,
+                       Supplier<RespObject> body) {
+        int[] s = new int[16];
+        int n = 0;
+        for (int c = 0; c < commands.size(); c++) {
+            RedisCommand command = commands.get(c);
+            RespCommand cmd = cmds.get(c);
+            int first = command.firstKey();
+            if (first == 0 || first >= cmd.argc()) continue;
+            int last = command.lastKey() < 0 ? cmd.argc() + command.lastKey() : Math.min(command.lastKey(), cmd.argc() - 1);
+            for (int i = first; i <= last; i += Math.max(1, command.keyStep())) {
+                if (n == s.length) s = Arrays.copyOf(s, n * 2);
+                s[n++] = stripe(cmd, i);
+            }
+        }
+        for (ByteKey key : extra) {
+            if (n == s.length) s = Arrays.copyOf(s, n * 2);
+            s[n++] = stripe(key.bytes(), 0, key.bytes().length);
+        }
+        int[] stripes = distinct(s, n);
+        long[] stamps = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            stamps[i] = exclusive ? locks[stripes[i]].writeLock() : locks[stripes[i]].readLock();
+        }
+        try {
+            return body.get();
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) locks[stripes[i]].unlock(stamps[i]);
+        }
+    }
+
+    /**
+     * An optimistic run may see a key change type under it; any failure is retried under the
+     * locks, where it is either real or gone.
+     */
+    private static RespObject attempt(RedisCommand command, RespCommand cmd) {
+        try {
+            return command.handler().handle(cmd);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private boolean optimistic(int[] stripes, long[] stamps) {
+        for (int i = 0; i < stripes.length; i++) {
+            if ((stamps[i] = locks[stripes[i]].tryOptimisticRead()) == 0) return false;
+        }
+        return true;
+    }
+
+    private boolean validate(int[] stripes, long[] stamps) {
+        for (int i = 0; i < stripes.length; i++) {
+            if (!locks[stripes[i]].validate(stamps[i])) return false;
+        }
+        return true;
+    }
+
+    /** Distinct stripes of the keys at first, first + step, ... last, in ascending order. */
+    private static int[] stripes(RespCommand cmd, int first, int last, int step) {
+        int[] s = new int[(last - first) / step + 1];
+        int n = 0;
+        for (int i = first; i <= last; i += step) s[n++] = stripe(cmd, i);
+        return distinct(s, n);
+    }
+
+    /** The first n stripes of s, sorted and without repeats; s itself if they all differ. */
+    private static int[] distinct(int[] s, int n) {
+        Arrays.sort(s, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || s[distinct - 1] != s[i]) s[distinct++] = s[i];
+        }
+        return distinct == s.length ? s : Arrays.copyOf(s, distinct);
+    }
+
+    private static int stripe(RespCommand cmd, int i) {
+        return stripe(cmd.array(i), cmd.offset(i), cmd.length(i));
+    }
+
+    private static int stripe(byte[] a, int off, int len) {
+        int h = 1;
+        for (int p = off, end = off + len; p < end; p++) h = 31 * h + a[p];
+        return (h * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(STRIPES));
+    }
+}
@@ -0,0 +1,105 @@
+package com.tejas.redis.server;
+
+/**
+ * Fixed-size latency histogram in the style of HdrHistogram: values below 2^(subBits + 1)
+ * get a bucket each, and every power of two above that is split into 2^subBits linear
+ * sub-buckets, so a value is reported to within 1 / 2^subBits of itself whatever its
+ * magnitude (12.5% for 3 bits, under 1% for 7). Recording is an array increment; merging adds
+ * the arrays. Not thread-safe: keep one per thread and merge, or count buckets elsewhere
+ * with {@link #index} and read them back with {@link #add(int, long)}, as CommandStats does.
+ */
+public final class LatencyHistogram {
+
+    private final int subBits;
+    private final long[] counts;
+    private long total;
+    private long max;
+    private double sum;
+
+    public LatencyHistogram(int subBits) {
+        if (subBits < 1 || subBits > 16) throw new IllegalArgumentException("subBits must be in [1, 16]");
+        this.subBits = subBits;
+        this.counts = new long[buckets(subBits)];
+    }
+
+    /** Number of buckets of a histogram with 2^subBits sub-buckets per power of two. */
+    static int buckets(int subBits) {
+        return (2 << subBits) + ((63 - subBits) << subBits);
+    }
+
+    /** Bucket that value v falls in. */
+    static int index(int subBits, long v) {
+        int sub = 1 << subBits;
+        int linear = 2 * sub; // values recorded exactly
+        if (v < linear) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - subBits; // v >>> shift is in [sub, 2 * sub)
+        return linear + (shift - 1) * sub + (int) ((v >>> shift) - sub);
+    }
+
+    /** Largest value that falls in bucket i. */
+    static long highestInBucket(int subBits, int i) {
+        int sub = 1 << subBits;
+        int linear = 2 * sub;
+        if (i < linear) return i;
+        int shift = (i - linear) / sub + 1;
+        long s = (i - linear) % sub + sub;
+        return (s << shift) + (1L << shift) - 1;
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts[index(subBits, value)]++;
+        total++;
+        sum += value;
+        if (value > max) max = value;
+    }
+
+    /** Count n values known only by their bucket; the max and mean then hold to bucket precision. */
+    void add(int bucket, long n) {
+        if (n == 0) return;
+        long highest = highestInBucket(subBits, bucket);
+        counts[bucket] += n;
+        total += n;
+        sum += (double) highest * n;
+        if (highest > max) max = highest;
+    }
+
+    public void add(LatencyHistogram other) {
+        if (other.subBits != subBits) throw new IllegalArgumentException("histograms differ in precision");
+        for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+        total += other.total;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    public long count() {
+        return total;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return total == 0 ? 0 : sum / total;
+    }
+
+    /** Smallest recorded value (to bucket precision) that at least fraction p of values do not exceed. */
+    public long percentile(double p) {
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(highestInBucket(subBits, i), max);
+        }
+        return max;
+    }
+
+    /** Values in the buckets that lie wholly below bound. */
+    long countBelow(long bound) {
+        long n = 0;
+        for (int i = 0; i < counts.length && highestInBucket(subBits, i) < bound; i++) n += counts[i];
+        return n;
+    }
+}
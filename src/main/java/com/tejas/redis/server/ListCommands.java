@@ -0,0 +1,88 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.*;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.RedisList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.tejas.redis.server.CommandDispatcher.*;
+import static com.tejas.redis.server.RedisCommand.*;
+
+/**
+ * LPUSH / RPUSH / LPOP / RPOP / LRANGE / LLEN on {@link RedisList} values.
+ */
+final class ListCommands {
+
+    private final DataStore store;
+    private final CommandDispatcher dispatcher;
+
+    ListCommands(DataStore store, CommandDispatcher dispatcher) {
+        this.store = store;
+        this.dispatcher = dispatcher;
+    }
+
+    void registerAll() {
+        dispatcher.register("lpush", -3, WRITE | DENYOOM | FAST, 1, 1, 1, cmd -> push(cmd, true));
+        dispatcher.register("rpush", -3, WRITE | DENYOOM | FAST, 1, 1, 1, cmd -> push(cmd, false));
+        dispatcher.register("lpop", -2, WRITE | FAST, 1, 1, 1, cmd -> pop(cmd, true));
+        dispatcher.register("rpop", -2, WRITE | FAST, 1, 1, 1, cmd -> pop(cmd, false));
+        dispatcher.register("lrange", 4, READONLY, 1, 1, 1, this::lrange);
+        dispatcher.register("llen", 2, READONLY | FAST, 1, 1, 1, this::llen);
+    }
+
+    /**
+     * LPUSH|RPUSH key element [element ...] -> length after the push
+     */
+    private RespObject push(RespCommand cmd, boolean left) {
+        byte[][] elements = new byte[cmd.argc() - 2][];
+        for (int i = 2; i < cmd.argc(); i++) elements[i - 2] = cmd.copy(i);
+        int len = store.modify(key(cmd, 1), RedisList.class, RedisList::new, list -> {
+            for (byte[] e : elements) list.push(left, e);
+            return list.size();
+        }, 0);
+        dispatcher.propagate(cmd);
+        return RespInteger.of(len);
+    }
+
+    /**
+     * LPOP|RPOP key [count] -> element (or nil), or with count an array (or nil)
+     */
+    private RespObject pop(RespCommand cmd, boolean left) {
+        if (cmd.argc() > 3) return new RespError("ERR syntax error");
+        if (cmd.argc() == 2) {
+            byte[] v = store.modify(key(cmd, 1), RedisList.class, null, list -> list.pop(left), null);
+            if (v != null) dispatcher.propagate(cmd);
+            return bulk(v);
+        }
+        long count = integer(cmd, 2);
+        if (count < 0) return new RespError("ERR value is out of range, must be positive");
+        List<RespObject> popped = store.modify(key(cmd, 1), RedisList.class, null, list -> {
+            List<RespObject> out = new ArrayList<>();
+            for (long i = 0; i < count && list.size() > 0; i++) out.add(new RespBulkString(list.pop(left)));
+            return out;
+        }, null);
+        if (popped == null) return new RespArray(null);
+        if (!popped.isEmpty()) dispatcher.propagate(cmd);
+        return new RespArray(popped);
+    }
+
+    /**
+     * LRANGE key start stop
+     */
+    private RespObject lrange(RespCommand cmd) {
+        long start = integer(cmd, 2);
+        long stop = integer(cmd, 3);
+        List<RespObject> out = new ArrayList<>();
+        store.read(key(cmd, 1), RedisList.class, list -> {
+            list.range(start, stop, e -> out.add(new RespBulkString(e)));
+            return null;
+        }, null);
+        return new RespArray(out);
+    }
+
+    private RespObject llen(RespCommand cmd) {
+        return RespInteger.of(store.read(key(cmd, 1), RedisList.class, RedisList::size, 0));
+    }
+}
@@ -0,0 +1,80 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.replication.Replication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Selector-based server: the calling thread accepts connections and spreads them
+ * round-robin over a fixed set of {@link EventLoop}s, each owning one thread.
+ */
+final class NioServer {
+
+    private static final Logger log = LoggerFactory.getLogger(NioServer.class);
+
+    private final int port;
+    private final EventLoop[] loops;
+    private final Thread[] threads;
+    private volatile ServerSocketChannel serverChannel;
+
+    NioServer(int port, int ioThreads, CommandDispatcher dispatcher, Replication replication) throws IOException {
+        this.port = port;
+        this.loops = new EventLoop[ioThreads];
+        this.threads = new Thread[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            loops[i] = new EventLoop(dispatcher, replication);
+            threads[i] = new Thread(loops[i], "io-loop-" + i);
+        }
+    }
+
+    /**
+     * Bind, start the event loops and accept until {@link #close()} is called.
+     */
+    void run() throws IOException {
+        try (ServerSocketChannel ssc = ServerSocketChannel.open()) {
+            this.serverChannel = ssc;
+            ssc.bind(new InetSocketAddress(port), 1024);
+            for (Thread t : threads) t.start();
+            log.info("RESP server (nio, {} event loops) listening on port {}", loops.length, port);
+
+            int next = 0;
+            while (ssc.isOpen()) {
+                SocketChannel ch;
+                try {
+                    ch = ssc.accept();
+                } catch (ClosedChannelException closed) {
+                    break;
+                }
+                ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                loops[next].register(ch);
+                next = (next + 1) % loops.length;
+            }
+        } finally {
+            close();
+        }
+    }
+
+    void close() {
+        try {
+            ServerSocketChannel ssc = serverChannel;
+            if (ssc != null) ssc.close();
+        } catch (IOException e) {
+            log.warn("Error closing server channel: {}", e.getMessage());
+        }
+        for (EventLoop loop : loops) loop.stop();
+        for (Thread t : threads) {
+            try {
+                t.join(2000);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
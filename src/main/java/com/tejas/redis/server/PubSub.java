@@ -0,0 +1,149 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.*;
+import com.tejas.redis.store.ByteKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Channel and pattern subscriptions of all connections, and PUBLISH fan-out.
+ * <p>
+ * A message is encoded once per publish (once per matching pattern for pmessages) and the
+ * same frame is queued to every subscriber, so publishing never touches a socket: a
+ * subscriber's connection writes its queue out on its own time. A subscriber whose queue
+ * outgrows {@link #outputBufferLimit()} is disconnected, like Redis' client-output-buffer-limit
+ * for pubsub clients, so one stalled reader costs memory up to the limit, never publisher time.
+ * Subscribers that switched to RESP3 get the same frame as a push ({@code >} instead of
+ * {@code *}), copied at most once per publish.
+ */
+final class PubSub {
+
+    private static final byte[] MESSAGE = bytes("message");
+    private static final byte[] PMESSAGE = bytes("pmessage");
+
+    private final Map<ByteKey, Set<Subscriber>> channels = new ConcurrentHashMap<>();
+    private final Map<ByteKey, Set<Subscriber>> patterns = new ConcurrentHashMap<>();
+    private final LongAdder slowDisconnects = new LongAdder();
+    private volatile long outputBufferLimit = 32L << 20;
+
+    /** Bytes that may wait in one subscriber's queue before it is disconnected. */
+    long outputBufferLimit() {
+        return outputBufferLimit;
+    }
+
+    void outputBufferLimit(long bytes) {
+        if (bytes < 1) throw new IllegalArgumentException("pubsub output buffer limit must be positive");
+        this.outputBufferLimit = bytes;
+    }
+
+    /** Subscribers disconnected so far for not keeping up. */
+    long slowDisconnects() {
+        return slowDisconnects.sum();
+    }
+
+    void overflowed() {
+        slowDisconnects.increment();
+    }
+
+    void subscribe(ByteKey channel, Subscriber s) {
+        add(channels, channel, s);
+    }
+
+    void unsubscribe(ByteKey channel, Subscriber s) {
+        remove(channels, channel, s);
+    }
+
+    void psubscribe(ByteKey pattern, Subscriber s) {
+        add(patterns, pattern, s);
+    }
+
+    void punsubscribe(ByteKey pattern, Subscriber s) {
+        remove(patterns, pattern, s);
+    }
+
+    // under the map's bin lock, so an unsubscribe emptying the set cannot drop a concurrent add
+    private static void add(Map<ByteKey, Set<Subscriber>> map, ByteKey name, Subscriber s) {
+        map.compute(name, (k, set) -> {
+            if (set == null) set = ConcurrentHashMap.newKeySet();
+            set.add(s);
+            return set;
+        });
+    }
+
+    private static void remove(Map<ByteKey, Set<Subscriber>> map, ByteKey name, Subscriber s) {
+        map.computeIfPresent(name, (k, set) -> {
+            set.remove(s);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * Queue the message to every subscriber of the channel and of each matching pattern.
+     *
+     * @return number of subscriptions it was queued to
+     */
+    long publish(byte[] channel, byte[] message) {
+        long receivers = 0;
+        Set<Subscriber> subs = channels.get(ByteKey.of(channel));
+        if (subs != null) {
+            byte[] frame = RespWriter.encode(new RespArray(List.of(
+                    new RespBulkString(MESSAGE), new RespBulkString(channel), new RespBulkString(message))));
+            byte[] push = null;
+            for (Subscriber s : subs) {
+                if (s.protocol() == 2) s.deliver(frame);
+                else s.deliver(push != null ? push : (push = push(frame)));
+                receivers++;
+            }
+        }
+        if (patterns.isEmpty()) return receivers;
+        for (Map.Entry<ByteKey, Set<Subscriber>> e : patterns.entrySet()) {
+            byte[] pattern = e.getKey().bytes();
+            if (!Glob.matches(pattern, channel)) continue;
+            byte[] frame = RespWriter.encode(new RespArray(List.of(new RespBulkString(PMESSAGE),
+                    new RespBulkString(pattern), new RespBulkString(channel), new RespBulkString(message))));
+            byte[] push = null;
+            for (Subscriber s : e.getValue()) {
+                if (s.protocol() == 2) s.deliver(frame);
+                else s.deliver(push != null ? push : (push = push(frame)));
+                receivers++;
+            }
+        }
+        return receivers;
+    }
+
+    /** Channels with at least one subscriber, optionally filtered by a glob pattern. */
+    List<byte[]> channels(byte[] pattern) {
+        List<byte[]> out = new ArrayList<>();
+        for (ByteKey ch : channels.keySet()) {
+            if (pattern == null || Glob.matches(pattern, ch.bytes())) out.add(ch.bytes());
+        }
+        return out;
+    }
+
+    int subscribers(ByteKey channel) {
+        Set<Subscriber> subs = channels.get(channel);
+        return subs == null ? 0 : subs.size();
+    }
+
+    /** Number of distinct patterns subscribed to, as PUBSUB NUMPAT counts them. */
+    int patternCount() {
+        return patterns.size();
+    }
+
+    /** A RESP2 message array re-typed as a RESP3 push: only the leading type byte differs. */
+    private static byte[] push(byte[] frame) {
+        byte[] push = frame.clone();
+        push[0] = '>';
+        return push;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
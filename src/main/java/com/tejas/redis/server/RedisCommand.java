@@ -0,0 +1,119 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.RespCommand;
+import com.tejas.redis.resp.RespObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command metadata, in the shape Redis reports through COMMAND INFO: name, arity
+ * (positive = exact argument count, negative = minimum), flags and the key positions.
+ */
+public final class RedisCommand {
+
+    /** Modifies the keyspace. */
+    public static final int WRITE = 1;
+    /** Only reads data. */
+    public static final int READONLY = 1 << 1;
+    /** O(1) or O(log N); never blocks. */
+    public static final int FAST = 1 << 2;
+    /** May grow memory: refused with -OOM when over maxmemory and nothing can be evicted. */
+    public static final int DENYOOM = 1 << 3;
+    /** Refused inside MULTI: it waits for the propagator barrier, which EXEC itself holds. */
+    public static final int NOMULTI = 1 << 4;
+
+    /** Executes one parsed command; the arity has already been checked. */
+    @FunctionalInterface
+    public interface Handler {
+        RespObject handle(RespCommand cmd);
+    }
+
+    private final String name;
+    private final byte[] nameBytes;
+    private final int arity;
+    private final int flags;
+    private final int firstKey;
+    private final int lastKey;
+    private final int keyStep;
+    private final Handler handler;
+    private final CommandStats stats = new CommandStats();
+
+    /**
+     * @param name     lower-case command name
+     * @param firstKey index of the first key argument, 0 if the command takes no keys
+     * @param lastKey  index of the last key argument, -1 means the last argument
+     * @param keyStep  distance between key arguments
+     */
+    public RedisCommand(String name, int arity, int flags, int firstKey, int lastKey, int keyStep, Handler handler) {
+        this.name = name;
+        this.nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        this.arity = arity;
+        this.flags = flags;
+        this.firstKey = firstKey;
+        this.lastKey = lastKey;
+        this.keyStep = keyStep;
+        this.handler = handler;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    byte[] nameBytes() {
+        return nameBytes;
+    }
+
+    public int arity() {
+        return arity;
+    }
+
+    public int flags() {
+        return flags;
+    }
+
+    public boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    public int firstKey() {
+        return firstKey;
+    }
+
+    public int lastKey() {
+        return lastKey;
+    }
+
+    public int keyStep() {
+        return keyStep;
+    }
+
+    public Handler handler() {
+        return handler;
+    }
+
+    CommandStats stats() {
+        return stats;
+    }
+
+    /** True if argc (including the command name) satisfies the arity. */
+    public boolean acceptsArgc(int argc) {
+        return arity >= 0 ? argc == arity : argc >= -arity;
+    }
+
+    public List<String> flagNames() {
+        List<String> names = new ArrayList<>(4);
+        if (hasFlag(WRITE)) names.add("write");
+        if (hasFlag(READONLY)) names.add("readonly");
+        if (hasFlag(DENYOOM)) names.add("denyoom");
+        if (hasFlag(FAST)) names.add("fast");
+        if (hasFlag(NOMULTI)) names.add("no-multi");
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -1,5 +1,10 @@
 package com.tejas.redis.server;
 
+import com.tejas.redis.cluster.ClusterTopology;
+import com.tejas.redis.persistence.AppendOnlyFile;
+import com.tejas.redis.persistence.Propagator;
+import com.tejas.redis.persistence.SnapshotManager;
+import com.tejas.redis.replication.Replication;
 import com.tejas.redis.resp.*;
 import com.tejas.redis.store.DataStore;
 import org.slf4j.Logger;
@@ -9,37 +14,174 @@ import java.io.*;
 import java.net.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * Small RESP-aware TCP server. For now supports PING and ECHO commands over RESP.
+ * Small RESP-aware TCP server. Connections are served either thread-per-connection
+ * or by NIO event loops, depending on {@link ServerConfig#ioMode()}.
  */
 public class RedisServer {
 
     private static final Logger log = LoggerFactory.getLogger(RedisServer.class);
 
     private final int port;
+    private final ServerConfig config;
     private final ExecutorService clientPool;
+    private final ScheduledExecutorService cron;
     private volatile boolean running = true;
-    private ServerSocket serverSocket;
+    private volatile ServerSocket serverSocket;
+    private volatile NioServer nioServer;
     private final DataStore store;
+    private final SnapshotManager snapshots;
+    private final Propagator propagator = new Propagator();
+    private final AppendOnlyFile aof; // null unless appendonly is on
+    private final Replication replication;
+    private final CommandDispatcher dispatcher;
 
     public RedisServer(int port) {
-        this.port = port;
-        this.clientPool = Executors.newCachedThreadPool();
-        this.store = new DataStore(); // single shared store
+        this(new ServerConfig().port(port));
+    }
+
+    public RedisServer(ServerConfig config) {
+        this.config = config;
+        this.port = config.port();
+        this.clientPool = newClientPool(config.ioMode());
+        // single shared store
+        this.store = new DataStore(config.shards(), config.maxMemory(), config.maxMemoryPolicy(), config.maxMemorySamples(),
+                config.storage());
+        this.snapshots = new SnapshotManager(store, config.dir().resolve(config.dbFilename()));
+        this.aof = config.appendOnly()
+                ? new AppendOnlyFile(config.dir().resolve(config.appendFilename()), config.appendFsync())
+                : null;
+        this.replication = new Replication(store, propagator, aof, config.dir(), port, (int) config.replBacklogSize());
+        // stateless, shared by all connections
+        this.dispatcher = new CommandDispatcher(store, snapshots, propagator, aof, replication, loadCluster(config));
+        dispatcher.pubSub().outputBufferLimit(config.pubsubOutputBufferLimit());
+        dispatcher.slowLog().slowerThan(config.slowlogLogSlowerThan());
+        dispatcher.slowLog().maxLen(config.slowlogMaxLen());
+        dispatcher.latencyTracking(config.latencyTracking());
+        dispatcher.tracking().maxKeys(config.trackingTableMaxKeys());
+        dispatcher.stats().config(config);
+        int cronThreads = Math.min(store.shardCount(), Runtime.getRuntime().availableProcessors());
+        AtomicInteger cronId = new AtomicInteger();
+        this.cron = Executors.newScheduledThreadPool(cronThreads, r -> {
+            Thread t = new Thread(r, "redis-cron-" + cronId.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static ClusterTopology loadCluster(ServerConfig config) {
+        if (config.clusterConfigFile() == null) return null;
+        try {
+            ClusterTopology cluster = ClusterTopology.load(config.clusterConfigFile(), config.clusterNodeId(), config.port());
+            log.info("Cluster mode: node {} of {}, serving {} slot range(s)", cluster.myself().id(),
+                    cluster.nodes().size(), cluster.myself().ranges().size());
+            return cluster;
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot read cluster config " + config.clusterConfigFile(), e);
+        }
+    }
+
+    /**
+     * Virtual threads need Java 21; the build still targets 17, so the factory is looked up
+     * reflectively and we fall back to the cached pool on older runtimes.
+     */
+    private static ExecutorService newClientPool(IoMode mode) {
+        if (mode == IoMode.VIRTUAL) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Virtual threads need Java 21+ (running {}); using a cached thread pool",
+                        Runtime.version());
+            }
+        }
+        return Executors.newCachedThreadPool();
     }
 
     public void start() {
+        try {
+            loadData();
+        } catch (IOException e) {
+            // refuse to start rather than serve an empty keyspace and later overwrite the file
+            log.error("Failed to load data: {}", e.getMessage(), e);
+            shutdown();
+            return;
+        }
+        startCron();
+        if (config.replicaOfHost() != null) {
+            replication.replicaOf(config.replicaOfHost(), config.replicaOfPort(), dispatcher::dispatchFromMaster);
+        }
+        if (config.ioMode() == IoMode.NIO) startNio();
+        else startThreads();
+    }
+
+    /**
+     * Like Redis: the AOF wins when it is enabled and exists, since it is the more recent of
+     * the two. When AOF is turned on for a dataset loaded from a snapshot, a rewrite seeds
+     * the new log with that data.
+     */
+    private void loadData() throws IOException {
+        if (aof == null) {
+            snapshots.load();
+            return;
+        }
+        boolean replayed = aof.replay(dispatcher::dispatch) >= 0;
+        if (!replayed) snapshots.load();
+        aof.open();
+        propagator.addSink(aof);
+        if (!replayed && store.size() > 0) aof.rewrite(store, propagator);
+    }
+
+    /**
+     * Background maintenance, hz times per second and per shard, on a pool with up to one
+     * thread per core. Active expiry may use a quarter of each period per cron thread
+     * (Redis' ACTIVE_EXPIRE_CYCLE_SLOW_TIME_PERC), split over the shards; whatever is left
+     * over shows up as expiry lag and is resumed on the next run.
+     */
+    private void startCron() {
+        long periodMicros = 1_000_000L / config.hz();
+        int threads = Math.min(store.shardCount(), Runtime.getRuntime().availableProcessors());
+        long expireBudgetNanos = periodMicros * 1000 / 4 * threads / store.shardCount();
+        for (int i = 0; i < store.shardCount(); i++) {
+            int shard = i;
+            // staggered so the shards' cycles don't all start at once
+            long delay = periodMicros + periodMicros * shard / store.shardCount();
+            cron.scheduleAtFixedRate(() -> {
+                try {
+                    store.activeExpireCycle(shard, expireBudgetNanos);
+                } catch (RuntimeException e) {
+                    log.error("Active expiry cycle of shard {} failed: {}", shard, e.getMessage(), e);
+                }
+            }, delay, periodMicros, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    private void startNio() {
+        try {
+            nioServer = new NioServer(port, config.ioThreads(), dispatcher, replication);
+            if (running) nioServer.run();
+        } catch (IOException e) {
+            log.error("Failed to start server on port {}: {}", port, e.getMessage(), e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void startThreads() {
         try (ServerSocket ss = new ServerSocket(port)) {
             this.serverSocket = ss;
-            log.info("RESP server listening on port {}", port);
+            log.info("RESP server ({}) listening on port {}", config.ioMode().name().toLowerCase(Locale.ROOT), port);
 
             while (running) {
                 try {
                     Socket s = ss.accept();
                     s.setSoTimeout(30000);
+                    // as in nio mode: a reply right after a push (pub/sub, invalidation) must not wait for an ACK
+                    s.setTcpNoDelay(true);
                     log.info("Client connected: {}", s.getRemoteSocketAddress());
-                    clientPool.submit(new ClientHandler(s, store));
+                    clientPool.submit(new ClientHandler(s, dispatcher, replication, clientPool));
                 } catch (SocketException se) {
                     if (running) log.error("Socket exception: {}", se.getMessage(), se);
                     break;
@@ -52,10 +194,30 @@ public class RedisServer {
         }
     }
 
+    /**
+     * Stop accepting connections; {@link #start()} returns once shutdown completes.
+     */
+    public void stop() {
+        running = false;
+        try {
+            if (serverSocket != null) serverSocket.close();
+        } catch (IOException e) {
+            log.warn("Error closing server socket: {}", e.getMessage());
+        }
+        if (nioServer != null) nioServer.close();
+    }
+
     private void shutdown() {
         running = false;
         log.info("Shutting down RedisServer...");
         clientPool.shutdown();
+        cron.shutdownNow();
+        if (nioServer != null) nioServer.close();
+        replication.close();
+        if (aof != null) {
+            propagator.removeSink(aof);
+            aof.close();
+        }
         try {
             if (serverSocket != null && !serverSocket.isClosed()) serverSocket.close();
         } catch (IOException e) {
@@ -74,18 +236,29 @@ public class RedisServer {
         private static final Logger log = LoggerFactory.getLogger(ClientHandler.class);
         private final Socket socket;
         private final CommandDispatcher dispatcher;
+        private final Replication replication;
+        private final ExecutorService pool;  // runs the push loop in the server's I/O mode
+        private Subscriber subscriber;       // set by the first (P)SUBSCRIBE
+        private Transaction transaction;     // set by the first MULTI or WATCH; handed to the subscriber
+        private long id;                     // CLIENT ID
+        private volatile Thread pushThread; // writes the subscriber's queue out
 
-        // constructor receives DataStore
-        ClientHandler(Socket socket, DataStore store) {
+        ClientHandler(Socket socket, CommandDispatcher dispatcher, Replication replication, ExecutorService pool) {
             this.socket = socket;
-            this.dispatcher = new CommandDispatcher(store);
+            this.dispatcher = dispatcher;
+            this.replication = replication;
+            this.pool = pool;
         }
 
         @Override
         public void run() {
-            try (InputStream in = socket.getInputStream(); OutputStream out = socket.getOutputStream()) {
+            ServerStats stats = dispatcher.stats();
+            id = stats.clientConnected();
+            boolean counted = true;
+            try (InputStream in = stats.counting(socket.getInputStream());
+                 OutputStream out = stats.counting(socket.getOutputStream())) {
                 RespParser parser = new RespParser(in);
-                RespWriter writer = new RespWriter(out);
+                RespWriter writer = new RespWriter(new DurableOutput(out, dispatcher));
 
                 while (!socket.isClosed()) {
                     RespObject obj;
@@ -98,39 +271,130 @@ public class RedisServer {
 
                     if (!(obj instanceof RespArray arr)) {
                         writer.writeError("ERR expected array of bulk strings");
-                        continue;
-                    }
-
-                    List<RespObject> items = arr.items().orElse(null);
-                    if (items == null) {
+                    } else if (arr.items().isEmpty()) {
                         writer.writeError("ERR null array not supported");
-                        continue;
+                    } else if (transaction != null && transaction.isQueueing()) {
+                        writer.write(transaction(arr.items().get()));
+                    } else if (subscriber != null || Subscriber.isSubscribe(arr.items().get())) {
+                        if (subscriber == null) subscriber = startPush(writer);
+                        try {
+                            subscriber.execute(RespCommand.of(arr.items().get()), dispatcher);
+                        } catch (IllegalArgumentException iae) {
+                            subscriber.reply(new RespError("ERR " + iae.getMessage()));
+                        }
+                    } else if (Replication.isSyncCommand(arr.items().get())) {
+                        // this connection is a replica now and is fed until it goes away
+                        writer.flush();
+                        stats.clientDisconnected();
+                        counted = false;
+                        replication.serveReplica(socket, RespCommand.of(arr.items().get()));
+                        break;
+                    } else if (transaction != null || Transaction.isTransaction(arr.items().get())) {
+                        writer.write(transaction(arr.items().get()));
+                    } else if (CommandDispatcher.isConnectionCommand(arr.items().get())) {
+                        writer.write(dispatcher.connection(RespCommand.of(arr.items().get()), id, writer.protocol(),
+                                writer::protocol));
+                    } else {
+                        writer.write(dispatcher.dispatch(arr.items().get()));
                     }
 
-                    // Use dispatcher instance that references the shared DataStore
-                    RespObject resp = dispatcher.dispatch(items);
-
-                    // existing response mapping code here...
-                    if (resp instanceof RespSimpleString s) writer.writeSimpleString(s.value());
-                    else if (resp instanceof RespError e) writer.writeError(e.message());
-                    else if (resp instanceof RespInteger i) writer.writeInteger(i.value());
-                    else if (resp instanceof RespBulkString b) writer.writeBulkBytes(b.data());
-                    else writer.writeError("ERR unsupported response type");
+                    // pipelining: keep answering while the client has more commands in flight,
+                    // and only push the accumulated replies out once its input drains
+                    if (parser.available() == 0) {
+                        if (subscriber != null) subscriber.flush();
+                        else writer.flush();
+                    }
                 }
             } catch (IOException e) {
                 log.warn("IO error with client {}: {}", socket.getRemoteSocketAddress(), e.getMessage());
             } finally {
-                try {
-                    socket.close();
-                } catch (IOException ignored) {
+                if (counted) stats.clientDisconnected();
+                closeSocket();
+                if (subscriber != null) {
+                    subscriber.close();
+                    LockSupport.unpark(pushThread);
                 }
                 log.info("Client disconnected: {}", socket.getRemoteSocketAddress());
             }
         }
+
+        private RespObject transaction(List<RespObject> parts) {
+            if (transaction == null) transaction = new Transaction(dispatcher);
+            try {
+                return transaction.execute(RespCommand.of(parts));
+            } catch (IllegalArgumentException iae) {
+                return new RespError("ERR " + iae.getMessage());
+            }
+        }
+
+        /**
+         * Push mode for a subscribed connection: while this connection's thread is blocked reading
+         * commands, a second task on the client pool (a virtual thread in that mode) writes out
+         * what publishers queued for it. A client that stops reading is disconnected by its
+         * subscriber's queue limit, which also unblocks that thread.
+         */
+        private Subscriber startPush(RespWriter writer) throws IOException {
+            socket.setSoTimeout(0); // subscribers mostly listen; the idle timeout is for request/response clients
+            Subscriber sub = new Subscriber(dispatcher.pubSub(), dispatcher.tracking(), id, writer, transaction,
+                    () -> LockSupport.unpark(pushThread), this::closeSocket);
+            pool.submit(() -> push(sub));
+            return sub;
+        }
+
+        private void push(Subscriber sub) {
+            // a wakeup before this is lost, but the loop drains the queue before it first parks
+            pushThread = Thread.currentThread();
+            try {
+                while (!socket.isClosed()) {
+                    sub.push();
+                    LockSupport.park(this);
+                }
+            } catch (IOException e) {
+                log.debug("Push to subscriber {} failed: {}", socket.getRemoteSocketAddress(), e.getMessage());
+                closeSocket();
+            }
+        }
+
+        private void closeSocket() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Socket output of a threaded connection. Under fsync=always, reply bytes reach the socket
+     * only once the writes this thread dispatched are on disk, whether they are flushed when
+     * the pipeline drains or spill from a full buffer; so a pipeline waits once, not per write.
+     * If the writes cannot be made durable the connection is dropped instead of acknowledging them.
+     */
+    private static final class DurableOutput extends FilterOutputStream {
+        private final CommandDispatcher dispatcher;
+
+        DurableOutput(OutputStream out, CommandDispatcher dispatcher) {
+            super(out);
+            this.dispatcher = dispatcher;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            awaitDurable();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            awaitDurable();
+            out.write(b, off, len);
+        }
+
+        private void awaitDurable() throws IOException {
+            if (!dispatcher.awaitDurable()) throw new IOException("AOF write failed, closing the connection");
+        }
     }
 
     public static void main(String[] args) {
-        int port = 6379;
-        new RedisServer(port).start();
+        new RedisServer(ServerConfig.parse(args)).start();
     }
 }
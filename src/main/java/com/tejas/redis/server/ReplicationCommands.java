@@ -0,0 +1,84 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.replication.ReplicaLink;
+import com.tejas.redis.replication.Replication;
+import com.tejas.redis.resp.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * REPLICAOF / SLAVEOF / ROLE / REPLCONF. PSYNC and SYNC never get here on a real connection:
+ * the connection is handed to {@link Replication#serveReplica} before dispatch.
+ */
+final class ReplicationCommands {
+
+    private final Replication replication;
+    private final CommandDispatcher dispatcher;
+
+    ReplicationCommands(Replication replication, CommandDispatcher dispatcher) {
+        this.replication = replication;
+        this.dispatcher = dispatcher;
+    }
+
+    void registerAll() {
+        dispatcher.register("replicaof", 3, 0, 0, 0, 0, this::replicaof);
+        dispatcher.register("slaveof", 3, 0, 0, 0, 0, this::replicaof);
+        dispatcher.register("role", 1, RedisCommand.FAST, 0, 0, 0, this::role);
+        dispatcher.register("replconf", -1, 0, 0, 0, 0, cmd -> RespSimpleString.OK);
+        dispatcher.register("psync", -3, RedisCommand.NOMULTI, 0, 0, 0, this::psync);
+        dispatcher.register("sync", 1, RedisCommand.NOMULTI, 0, 0, 0, this::psync);
+    }
+
+    /**
+     * REPLICAOF host port | REPLICAOF NO ONE
+     */
+    private RespObject replicaof(RespCommand cmd) {
+        if (cmd.equalsIgnoreCase(1, "NO") && cmd.equalsIgnoreCase(2, "ONE")) {
+            replication.promote();
+            return RespSimpleString.OK;
+        }
+        String host = cmd.asString(1);
+        long port;
+        try {
+            port = cmd.parseLong(2);
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("Invalid master port");
+        }
+        if (port < 1 || port > 65535) throw new IllegalArgumentException("Invalid master port");
+        ReplicaLink link = replication.link();
+        if (link != null && link.host().equals(host) && link.port() == port) {
+            return new RespSimpleString("OK Already connected to specified master");
+        }
+        replication.replicaOf(host, (int) port, dispatcher::dispatchFromMaster);
+        return RespSimpleString.OK;
+    }
+
+    /**
+     * ROLE -> ["master", offset, [[ip, port, ack-offset] ...]]
+     * or ["slave", master-host, master-port, state, offset]
+     */
+    private RespObject role(RespCommand cmd) {
+        ReplicaLink link = replication.link();
+        if (link != null) {
+            return new RespArray(List.of(bulk("slave"), bulk(link.host()), RespInteger.of(link.port()),
+                    bulk(link.state().redisName()), RespInteger.of(link.masterOffset())));
+        }
+        List<RespObject> replicas = new ArrayList<>();
+        for (Replication.ReplicaFeed feed : replication.replicas()) {
+            replicas.add(new RespArray(List.of(bulk(feed.address()), bulk(Integer.toString(feed.listeningPort())),
+                    bulk(Long.toString(feed.ackOffset())))));
+        }
+        return new RespArray(List.of(bulk("master"), RespInteger.of(replication.offset()), new RespArray(replicas)));
+    }
+
+    private RespObject psync(RespCommand cmd) {
+        return new RespError("ERR " + cmd.asString(0).toUpperCase(Locale.ROOT) + " is only accepted as a replica's handshake");
+    }
+
+    private static RespObject bulk(String s) {
+        return new RespBulkString(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,353 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.persistence.FsyncPolicy;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.EvictionPolicy;
+import com.tejas.redis.store.StorageEngine;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Startup options for RedisServer. Parsed from redis-server style arguments,
+ * e.g. {@code --port 6380 --io-mode nio --io-threads 4}.
+ */
+public final class ServerConfig {
+
+    private int port = 6379;
+    private IoMode ioMode = IoMode.THREADS;
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    private int hz = 10;
+    private int shards = DataStore.defaultShards();
+    private long maxMemory;
+    private EvictionPolicy maxMemoryPolicy = EvictionPolicy.NOEVICTION;
+    private int maxMemorySamples = 5;
+    private StorageEngine storage = StorageEngine.HEAP;
+    private Path dir = Path.of(".");
+    private String dbFilename = "dump.rlite";
+    private boolean appendOnly;
+    private FsyncPolicy appendFsync = FsyncPolicy.EVERYSEC;
+    private String appendFilename = "appendonly.aof";
+    private String replicaOfHost; // null: start as a master
+    private int replicaOfPort;
+    private long replBacklogSize = 1L << 20;
+    private Path clusterConfigFile; // null: not clustered
+    private long pubsubOutputBufferLimit = 32L << 20;
+    private String clusterNodeId;
+    private long slowlogLogSlowerThan = 10_000;
+    private int slowlogMaxLen = 128;
+    private boolean latencyTracking = true;
+    private long trackingTableMaxKeys = 1_000_000;
+
+    public int port() {
+        return port;
+    }
+
+    public ServerConfig port(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public IoMode ioMode() {
+        return ioMode;
+    }
+
+    public ServerConfig ioMode(IoMode ioMode) {
+        this.ioMode = ioMode;
+        return this;
+    }
+
+    /** Number of NIO event loops (only used in {@link IoMode#NIO}). */
+    public int ioThreads() {
+        return ioThreads;
+    }
+
+    public ServerConfig ioThreads(int ioThreads) {
+        if (ioThreads < 1) throw new IllegalArgumentException("io-threads must be >= 1");
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    /** How many times per second background maintenance (active expiry) runs, like Redis' hz. */
+    public int hz() {
+        return hz;
+    }
+
+    public ServerConfig hz(int hz) {
+        if (hz < 1 || hz > 500) throw new IllegalArgumentException("hz must be between 1 and 500");
+        this.hz = hz;
+        return this;
+    }
+
+    /** Keyspace partitions (rounded up to a power of two); maintenance runs per shard. */
+    public int shards() {
+        return shards;
+    }
+
+    public ServerConfig shards(int shards) {
+        if (shards < 1 || shards > 1 << 16) throw new IllegalArgumentException("shards must be between 1 and 65536");
+        this.shards = shards;
+        return this;
+    }
+
+    /** Approximate limit for keys and values in bytes; 0 means unlimited. */
+    public long maxMemory() {
+        return maxMemory;
+    }
+
+    public ServerConfig maxMemory(long bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("maxmemory cannot be negative");
+        this.maxMemory = bytes;
+        return this;
+    }
+
+    public EvictionPolicy maxMemoryPolicy() {
+        return maxMemoryPolicy;
+    }
+
+    public ServerConfig maxMemoryPolicy(EvictionPolicy policy) {
+        this.maxMemoryPolicy = policy;
+        return this;
+    }
+
+    public int maxMemorySamples() {
+        return maxMemorySamples;
+    }
+
+    public ServerConfig maxMemorySamples(int samples) {
+        if (samples < 1) throw new IllegalArgumentException("maxmemory-samples must be >= 1");
+        this.maxMemorySamples = samples;
+        return this;
+    }
+
+    /** Where string values are kept: on the heap, or in off-heap slabs. */
+    public StorageEngine storage() {
+        return storage;
+    }
+
+    public ServerConfig storage(StorageEngine storage) {
+        this.storage = storage;
+        return this;
+    }
+
+    /** Directory for persistence files. */
+    public Path dir() {
+        return dir;
+    }
+
+    public ServerConfig dir(Path dir) {
+        this.dir = dir;
+        return this;
+    }
+
+    /** Snapshot file name inside {@link #dir()}. */
+    public String dbFilename() {
+        return dbFilename;
+    }
+
+    public ServerConfig dbFilename(String dbFilename) {
+        this.dbFilename = dbFilename;
+        return this;
+    }
+
+    /** Log write commands to an append-only file. */
+    public boolean appendOnly() {
+        return appendOnly;
+    }
+
+    public ServerConfig appendOnly(boolean appendOnly) {
+        this.appendOnly = appendOnly;
+        return this;
+    }
+
+    public FsyncPolicy appendFsync() {
+        return appendFsync;
+    }
+
+    public ServerConfig appendFsync(FsyncPolicy policy) {
+        this.appendFsync = policy;
+        return this;
+    }
+
+    /** Append-only file name inside {@link #dir()}. */
+    public String appendFilename() {
+        return appendFilename;
+    }
+
+    public ServerConfig appendFilename(String appendFilename) {
+        this.appendFilename = appendFilename;
+        return this;
+    }
+
+    /** Master to replicate from at startup, or null. */
+    public String replicaOfHost() {
+        return replicaOfHost;
+    }
+
+    public int replicaOfPort() {
+        return replicaOfPort;
+    }
+
+    public ServerConfig replicaOf(String host, int port) {
+        if (port < 1 || port > 65535) throw new IllegalArgumentException("replicaof port must be between 1 and 65535");
+        this.replicaOfHost = host;
+        this.replicaOfPort = port;
+        return this;
+    }
+
+    /** Bytes of recent writes kept for replicas that reconnect (partial resync). */
+    public long replBacklogSize() {
+        return replBacklogSize;
+    }
+
+    public ServerConfig replBacklogSize(long bytes) {
+        if (bytes < 1024 || bytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("repl-backlog-size must be between 1kb and 2gb");
+        this.replBacklogSize = bytes;
+        return this;
+    }
+
+    /** Static cluster topology; setting it enables cluster mode. */
+    public Path clusterConfigFile() {
+        return clusterConfigFile;
+    }
+
+    public ServerConfig clusterConfigFile(Path file) {
+        this.clusterConfigFile = file;
+        return this;
+    }
+
+    /** This node's id in the cluster config; null picks the node listed with our port. */
+    public String clusterNodeId() {
+        return clusterNodeId;
+    }
+
+    public ServerConfig clusterNodeId(String id) {
+        this.clusterNodeId = id;
+        return this;
+    }
+
+    /** Bytes of undelivered messages a subscriber may have queued before it is disconnected. */
+    public long pubsubOutputBufferLimit() {
+        return pubsubOutputBufferLimit;
+    }
+
+    public ServerConfig pubsubOutputBufferLimit(long bytes) {
+        if (bytes < 1) throw new IllegalArgumentException("client-output-buffer-limit-pubsub must be positive");
+        this.pubsubOutputBufferLimit = bytes;
+        return this;
+    }
+
+    /** Commands taking at least this many microseconds go to the SLOWLOG; negative disables it, 0 logs everything. */
+    public long slowlogLogSlowerThan() {
+        return slowlogLogSlowerThan;
+    }
+
+    public ServerConfig slowlogLogSlowerThan(long micros) {
+        this.slowlogLogSlowerThan = micros;
+        return this;
+    }
+
+    /** Entries the SLOWLOG keeps; the oldest are dropped first. */
+    public int slowlogMaxLen() {
+        return slowlogMaxLen;
+    }
+
+    public ServerConfig slowlogMaxLen(int entries) {
+        if (entries < 0) throw new IllegalArgumentException("slowlog-max-len cannot be negative");
+        this.slowlogMaxLen = entries;
+        return this;
+    }
+
+    /** Time every command for commandstats, latencystats and LATENCY HISTOGRAM (Redis' latency-tracking). */
+    public boolean latencyTracking() {
+        return latencyTracking;
+    }
+
+    public ServerConfig latencyTracking(boolean on) {
+        this.latencyTracking = on;
+        return this;
+    }
+
+    /** Keys CLIENT TRACKING remembers readers for before it invalidates some early to make room. */
+    public long trackingTableMaxKeys() {
+        return trackingTableMaxKeys;
+    }
+
+    public ServerConfig trackingTableMaxKeys(long keys) {
+        if (keys < 1) throw new IllegalArgumentException("tracking-table-max-keys must be positive");
+        this.trackingTableMaxKeys = keys;
+        return this;
+    }
+
+    /**
+     * Parse {@code --name value} pairs. Unknown options are rejected so typos don't go unnoticed.
+     */
+    public static ServerConfig parse(String[] args) {
+        ServerConfig cfg = new ServerConfig();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if (!name.startsWith("--")) throw new IllegalArgumentException("expected option, got '" + name + "'");
+            if (i + 1 >= args.length) throw new IllegalArgumentException("missing value for " + name);
+            String value = args[++i];
+            switch (name.substring(2).toLowerCase(Locale.ROOT)) {
+                case "port" -> cfg.port(Integer.parseInt(value));
+                case "io-mode" -> cfg.ioMode(IoMode.valueOf(value.toUpperCase(Locale.ROOT)));
+                case "io-threads" -> cfg.ioThreads(Integer.parseInt(value));
+                case "hz" -> cfg.hz(Integer.parseInt(value));
+                case "shards" -> cfg.shards(Integer.parseInt(value));
+                case "maxmemory" -> cfg.maxMemory(parseMemory(value));
+                case "maxmemory-policy" -> cfg.maxMemoryPolicy(EvictionPolicy.parse(value));
+                case "maxmemory-samples" -> cfg.maxMemorySamples(Integer.parseInt(value));
+                case "storage" -> cfg.storage(StorageEngine.parse(value));
+                case "dir" -> cfg.dir(Path.of(value));
+                case "dbfilename" -> cfg.dbFilename(value);
+                case "appendonly" -> cfg.appendOnly(parseYesNo(name, value));
+                case "appendfsync" -> cfg.appendFsync(FsyncPolicy.parse(value));
+                case "appendfilename" -> cfg.appendFilename(value);
+                case "replicaof" -> parseReplicaOf(cfg, value);
+                case "repl-backlog-size" -> cfg.replBacklogSize(parseMemory(value));
+                case "cluster-config-file" -> cfg.clusterConfigFile(Path.of(value));
+                case "cluster-node-id" -> cfg.clusterNodeId(value);
+                case "client-output-buffer-limit-pubsub" -> cfg.pubsubOutputBufferLimit(parseMemory(value));
+                case "slowlog-log-slower-than" -> cfg.slowlogLogSlowerThan(Long.parseLong(value));
+                case "slowlog-max-len" -> cfg.slowlogMaxLen(Integer.parseInt(value));
+                case "latency-tracking" -> cfg.latencyTracking(parseYesNo(name, value));
+                case "tracking-table-max-keys" -> cfg.trackingTableMaxKeys(Long.parseLong(value));
+                default -> throw new IllegalArgumentException("unknown option '" + name + "'");
+            }
+        }
+        return cfg;
+    }
+
+    /** {@code "host port"} as in redis.conf, or {@code host:port}. */
+    private static void parseReplicaOf(ServerConfig cfg, String value) {
+        String v = value.trim();
+        int sep = v.lastIndexOf(' ');
+        if (sep < 0) sep = v.lastIndexOf(':');
+        if (sep <= 0) throw new IllegalArgumentException("replicaof must be \"host port\"");
+        cfg.replicaOf(v.substring(0, sep).trim(), Integer.parseInt(v.substring(sep + 1)));
+    }
+
+    private static boolean parseYesNo(String name, String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "yes" -> true;
+            case "no" -> false;
+            default -> throw new IllegalArgumentException(name + " must be yes or no");
+        };
+    }
+
+    /**
+     * Redis-style memory size: plain bytes or with a k/kb/m/mb/g/gb suffix (powers of 1024).
+     */
+    static long parseMemory(String value) {
+        String v = value.trim().toLowerCase(Locale.ROOT);
+        long unit = 1;
+        if (v.endsWith("b")) v = v.substring(0, v.length() - 1);
+        if (v.endsWith("k")) unit = 1L << 10;
+        else if (v.endsWith("m")) unit = 1L << 20;
+        else if (v.endsWith("g")) unit = 1L << 30;
+        if (unit != 1) v = v.substring(0, v.length() - 1);
+        return Long.parseLong(v) * unit;
+    }
+}
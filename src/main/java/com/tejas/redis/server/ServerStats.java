@@ -0,0 +1,109 @@
+package com.tejas.redis.server;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide connection and traffic counters for INFO clients / stats, updated by both
+ * I/O models. Every connection thread or event loop adds to them, so they are LongAdders.
+ */
+final class ServerStats {
+
+    private final long startMillis = System.currentTimeMillis();
+    private final LongAdder connectedClients = new LongAdder();
+    private final LongAdder totalConnections = new LongAdder();
+    private final LongAdder netInput = new LongAdder();
+    private final LongAdder netOutput = new LongAdder();
+    private final AtomicLong lastClientId = new AtomicLong();
+    private volatile ServerConfig config; // set by RedisServer; null for a bare dispatcher
+
+    void config(ServerConfig config) {
+        this.config = config;
+    }
+
+    ServerConfig config() {
+        return config;
+    }
+
+    long startMillis() {
+        return startMillis;
+    }
+
+    /** Count a new client; returns its id (CLIENT ID), unique for the life of the server. */
+    long clientConnected() {
+        connectedClients.increment();
+        totalConnections.increment();
+        return lastClientId.incrementAndGet();
+    }
+
+    /** A client went away, or became a replication link (which INFO doesn't count as a client). */
+    void clientDisconnected() {
+        connectedClients.decrement();
+    }
+
+    void read(long bytes) {
+        netInput.add(bytes);
+    }
+
+    /** Where the NIO loops add the bytes they write. */
+    LongAdder netOutput() {
+        return netOutput;
+    }
+
+    long connectedClients() {
+        return connectedClients.sum();
+    }
+
+    long totalConnections() {
+        return totalConnections.sum();
+    }
+
+    long netInputBytes() {
+        return netInput.sum();
+    }
+
+    long netOutputBytes() {
+        return netOutput.sum();
+    }
+
+    /** A connection's socket input, counting what is read into total_net_input_bytes. */
+    InputStream counting(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) netInput.increment();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) netInput.add(n);
+                return n;
+            }
+        };
+    }
+
+    /** A connection's socket output, counting what is written into total_net_output_bytes. */
+    OutputStream counting(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                netOutput.increment();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                netOutput.add(len);
+            }
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.*;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.RedisSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.tejas.redis.server.CommandDispatcher.*;
+import static com.tejas.redis.server.RedisCommand.*;
+
+/**
+ * SADD / SREM / SISMEMBER / SMEMBERS / SCARD on {@link RedisSet} values.
+ */
+final class SetCommands {
+
+    private final DataStore store;
+    private final CommandDispatcher dispatcher;
+
+    SetCommands(DataStore store, CommandDispatcher dispatcher) {
+        this.store = store;
+        this.dispatcher = dispatcher;
+    }
+
+    void registerAll() {
+        dispatcher.register("sadd", -3, WRITE | DENYOOM | FAST, 1, 1, 1, this::sadd);
+        dispatcher.register("srem", -3, WRITE | FAST, 1, 1, 1, this::srem);
+        dispatcher.register("sismember", 3, READONLY | FAST, 1, 1, 1, this::sismember);
+        dispatcher.register("smembers", 2, READONLY, 1, 1, 1, this::smembers);
+        dispatcher.register("scard", 2, READONLY | FAST, 1, 1, 1, this::scard);
+    }
+
+    /**
+     * SADD key member [member ...] -> number of members added
+     */
+    private RespObject sadd(RespCommand cmd) {
+        byte[][] members = new byte[cmd.argc() - 2][];
+        for (int i = 2; i < cmd.argc(); i++) members[i - 2] = cmd.copy(i);
+        int added = store.modify(key(cmd, 1), RedisSet.class, RedisSet::new, set -> {
+            int n = 0;
+            for (byte[] m : members) if (set.add(m)) n++;
+            return n;
+        }, 0);
+        if (added > 0) dispatcher.propagate(cmd);
+        return RespInteger.of(added);
+    }
+
+    /**
+     * SREM key member [member ...] -> number of members removed
+     */
+    private RespObject srem(RespCommand cmd) {
+        byte[][] members = new byte[cmd.argc() - 2][];
+        for (int i = 2; i < cmd.argc(); i++) members[i - 2] = cmd.copy(i);
+        int removed = store.modify(key(cmd, 1), RedisSet.class, null, set -> {
+            int n = 0;
+            for (byte[] m : members) if (set.remove(m)) n++;
+            return n;
+        }, 0);
+        if (removed > 0) dispatcher.propagate(cmd);
+        return RespInteger.of(removed);
+    }
+
+    private RespObject sismember(RespCommand cmd) {
+        byte[] member = cmd.copy(2);
+        boolean found = store.read(key(cmd, 1), RedisSet.class, set -> set.contains(member), false);
+        return RespInteger.of(found ? 1 : 0);
+    }
+
+    private RespObject smembers(RespCommand cmd) {
+        List<RespObject> out = new ArrayList<>();
+        store.read(key(cmd, 1), RedisSet.class, set -> {
+            set.forEach(m -> out.add(new RespBulkString(m)));
+            return null;
+        }, null);
+        return new RespArray(out);
+    }
+
+    private RespObject scard(RespCommand cmd) {
+        return RespInteger.of(store.read(key(cmd, 1), RedisSet.class, RedisSet::size, 0));
+    }
+}
@@ -0,0 +1,107 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.RespCommand;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Commands that took longer than a threshold, newest first (SLOWLOG GET / LEN / RESET).
+ * <p>
+ * Like Redis, an entry keeps at most 32 arguments of at most 128 bytes each, so a huge MSET
+ * can't pin its arguments in memory. Fast commands only pay the threshold comparison; the
+ * list itself is touched by slow ones alone.
+ */
+final class SlowLog {
+
+    static final int MAX_ARGS = 32;
+    static final int MAX_ARG_LEN = 128;
+
+    /** One logged command. */
+    record Entry(long id, long timeSeconds, long micros, List<byte[]> args) {
+    }
+
+    private final ConcurrentLinkedDeque<Entry> entries = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong nextId = new AtomicLong();
+    private volatile long slowerThanMicros = 10_000;
+    private volatile int maxLen = 128;
+
+    /** Log commands taking at least this many microseconds; negative disables the log. */
+    void slowerThan(long micros) {
+        this.slowerThanMicros = micros;
+    }
+
+    long slowerThan() {
+        return slowerThanMicros;
+    }
+
+    void maxLen(int maxLen) {
+        if (maxLen < 0) throw new IllegalArgumentException("slowlog-max-len cannot be negative");
+        this.maxLen = maxLen;
+        trim();
+    }
+
+    int maxLen() {
+        return maxLen;
+    }
+
+    void record(RespCommand cmd, long tookNanos) {
+        long threshold = slowerThanMicros;
+        if (threshold < 0 || tookNanos / 1000 < threshold) return;
+        entries.addFirst(new Entry(nextId.getAndIncrement(), System.currentTimeMillis() / 1000, tookNanos / 1000, args(cmd)));
+        size.incrementAndGet();
+        trim();
+    }
+
+    private void trim() {
+        while (size.get() > maxLen && entries.pollLast() != null) size.decrementAndGet();
+    }
+
+    private static List<byte[]> args(RespCommand cmd) {
+        int n = Math.min(cmd.argc(), MAX_ARGS);
+        List<byte[]> args = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            if (i == MAX_ARGS - 1 && cmd.argc() > MAX_ARGS) {
+                args.add(ascii("... (" + (cmd.argc() - MAX_ARGS + 1) + " more arguments)"));
+            } else if (cmd.length(i) > MAX_ARG_LEN) {
+                byte[] head = new byte[MAX_ARG_LEN];
+                System.arraycopy(cmd.array(i), cmd.offset(i), head, 0, MAX_ARG_LEN);
+                byte[] more = ascii("... (" + (cmd.length(i) - MAX_ARG_LEN) + " more bytes)");
+                byte[] arg = new byte[head.length + more.length];
+                System.arraycopy(head, 0, arg, 0, head.length);
+                System.arraycopy(more, 0, arg, head.length, more.length);
+                args.add(arg);
+            } else {
+                args.add(cmd.copy(i));
+            }
+        }
+        return args;
+    }
+
+    /** Up to count entries, newest first; a negative count returns them all. */
+    List<Entry> get(int count) {
+        List<Entry> out = new ArrayList<>();
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext() && (count < 0 || out.size() < count); ) {
+            out.add(it.next());
+        }
+        return out;
+    }
+
+    int len() {
+        return Math.min(size.get(), maxLen);
+    }
+
+    void reset() {
+        while (entries.pollLast() != null) size.decrementAndGet();
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
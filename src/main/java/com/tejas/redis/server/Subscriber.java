@@ -0,0 +1,395 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.*;
+import com.tejas.redis.store.ByteKey;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Push side of one connection: pub/sub, created by its first (P)SUBSCRIBE, and client-side
+ * caching, created by CLIENT TRACKING ON.
+ * <p>
+ * Replies are written to the connection's own {@link RespWriter}, as before; only what
+ * other threads send (messages, invalidations) is queued, as encoded frames. Publishers only
+ * append and call {@code wake}, at most once until the connection drains again. A reply is
+ * written after the frames queued before it, so replies and messages reach the client in
+ * order. When the queued bytes exceed the hub's limit the subscriber is marked overflowed and
+ * {@code kill} runs; the connection then closes, and its subscriptions are dropped.
+ * <p>
+ * The subscription sets are only touched by the connection's thread.
+ * <p>
+ * A tracking connection is remembered for the keys of each read-only command before the
+ * command runs, and an invalidation that arrives while it runs is held back until its reply
+ * is queued. Otherwise a reply carrying the old value could follow the invalidation, and the
+ * client would cache a value that is already gone.
+ */
+final class Subscriber {
+
+    private static final byte[] SUBSCRIBE = bytes("subscribe");
+    private static final byte[] UNSUBSCRIBE = bytes("unsubscribe");
+    private static final byte[] PSUBSCRIBE = bytes("psubscribe");
+    private static final byte[] PUNSUBSCRIBE = bytes("punsubscribe");
+    private static final byte[] PONG = bytes("pong");
+
+    private final PubSub hub;
+    private final ClientTracking tracker;
+    private final long id;
+    private final Runnable wake;
+    private final Runnable kill;
+    private final RespWriter out;
+    private final Set<ByteKey> channels = new LinkedHashSet<>();
+    private final Set<ByteKey> patterns = new LinkedHashSet<>();
+    private final ConcurrentLinkedQueue<byte[]> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean overflowed;
+    private boolean replying; // guarded by out: replies written that the connection has not flushed
+    private volatile int protocol;
+    private Transaction transaction; // the connection's; null until its first MULTI or WATCH
+
+    // CLIENT TRACKING state; the flags are read by writing threads
+    private volatile boolean tracking;
+    private volatile boolean noloop;
+    private boolean bcast;
+    private final Set<ByteKey> prefixes = new LinkedHashSet<>();
+    // the thread running one of this connection's commands, and invalidations held back meanwhile
+    private Thread running;        // guarded by this
+    private List<byte[]> deferred; // guarded by this
+
+    /**
+     * @param id   the connection's client id
+     * @param out  the connection's writer, for replies; its protocol is the connection's so far
+     * @param transaction the connection's Transaction, with what it watches, or null if it has none yet
+     * @param wake called when frames were queued to an idle subscriber; must not block
+     * @param kill called once the queue overflowed; must not block
+     */
+    Subscriber(PubSub hub, ClientTracking tracker, long id, RespWriter out, Transaction transaction,
+               Runnable wake, Runnable kill) {
+        this.hub = hub;
+        this.tracker = tracker;
+        this.id = id;
+        this.out = out;
+        this.transaction = transaction;
+        this.protocol = out.protocol();
+        this.wake = wake;
+        this.kill = kill;
+    }
+
+    /** Whether the command makes a connection a subscriber: (P)SUBSCRIBE or CLIENT TRACKING ON. */
+    static boolean isSubscribe(RespCommand cmd) {
+        if (cmd.argc() >= 2 && (cmd.equalsIgnoreCase(0, "SUBSCRIBE") || cmd.equalsIgnoreCase(0, "PSUBSCRIBE")))
+            return true;
+        return cmd.argc() >= 3 && cmd.equalsIgnoreCase(0, "CLIENT") && cmd.equalsIgnoreCase(1, "TRACKING")
+                && cmd.equalsIgnoreCase(2, "ON");
+    }
+
+    static boolean isSubscribe(List<RespObject> parts) {
+        if (parts.size() < 2 || !(parts.get(0) instanceof RespBulkString name) || name.data() == null) return false;
+        String s = new String(name.data(), StandardCharsets.US_ASCII);
+        if (s.equalsIgnoreCase("SUBSCRIBE") || s.equalsIgnoreCase("PSUBSCRIBE")) return true;
+        return s.equalsIgnoreCase("CLIENT") && isSubscribe(RespCommand.of(parts));
+    }
+
+    /** In RESP2 subscribed mode, where only pub/sub commands and PING are accepted. */
+    boolean isSubscribed() {
+        return protocol == 2 && (!channels.isEmpty() || !patterns.isEmpty());
+    }
+
+    /** The protocol version this connection's frames are encoded for. */
+    int protocol() {
+        return protocol;
+    }
+
+    boolean overflowed() {
+        return overflowed;
+    }
+
+    /**
+     * Run a command of this connection, writing its replies. Commands other than pub/sub
+     * ones go to the dispatcher once the connection has left subscribed mode.
+     */
+    void execute(RespCommand cmd, CommandDispatcher dispatcher) throws IOException {
+        if (cmd.argc() == 0) {
+            reply(new RespError("ERR empty command"));
+        } else if (transaction != null && transaction.isQueueing()) {
+            run(cmd, dispatcher);
+        } else if (cmd.equalsIgnoreCase(0, "SUBSCRIBE") && cmd.argc() >= 2) {
+            // confirmed before the hub knows, so no message can get ahead of the confirmation
+            for (int i = 1; i < cmd.argc(); i++) {
+                ByteKey ch = ByteKey.copyOf(cmd.array(i), cmd.offset(i), cmd.length(i));
+                boolean added = channels.add(ch);
+                confirm(SUBSCRIBE, ch);
+                if (added) hub.subscribe(ch, this);
+            }
+        } else if (cmd.equalsIgnoreCase(0, "PSUBSCRIBE") && cmd.argc() >= 2) {
+            for (int i = 1; i < cmd.argc(); i++) {
+                ByteKey p = ByteKey.copyOf(cmd.array(i), cmd.offset(i), cmd.length(i));
+                boolean added = patterns.add(p);
+                confirm(PSUBSCRIBE, p);
+                if (added) hub.psubscribe(p, this);
+            }
+        } else if (cmd.equalsIgnoreCase(0, "UNSUBSCRIBE")) {
+            unsubscribe(cmd, channels, UNSUBSCRIBE, false);
+        } else if (cmd.equalsIgnoreCase(0, "PUNSUBSCRIBE")) {
+            unsubscribe(cmd, patterns, PUNSUBSCRIBE, true);
+        } else if (cmd.equalsIgnoreCase(0, "CLIENT") && cmd.argc() >= 2 && cmd.equalsIgnoreCase(1, "TRACKING")) {
+            reply(tracking(cmd));
+        } else if (CommandDispatcher.isConnectionCommand(cmd)) {
+            if (tracking && cmd.argc() >= 2 && cmd.equalsIgnoreCase(0, "HELLO") && !cmd.equalsIgnoreCase(1, "3")) {
+                reply(new RespError("ERR turn CLIENT TRACKING off before leaving RESP3"));
+            } else {
+                reply(dispatcher.connection(cmd, id, protocol, p -> {
+                    protocol = p;
+                    out.protocol(p);
+                }));
+            }
+        } else if (!isSubscribed()) {
+            run(cmd, dispatcher);
+        } else if (cmd.equalsIgnoreCase(0, "PING") && cmd.argc() <= 2) {
+            reply(new RespArray(List.of(new RespBulkString(PONG),
+                    new RespBulkString(cmd.argc() == 2 ? cmd.copy(1) : new byte[0]))));
+        } else {
+            reply(new RespError("ERR Can't execute '" + cmd.asString(0).toLowerCase(Locale.ROOT)
+                    + "': only (P)SUBSCRIBE / (P)UNSUBSCRIBE / PING are allowed in this context"));
+        }
+    }
+
+    /**
+     * A command outside pub/sub: dispatched, or run by the connection's Transaction once it
+     * has one. A tracking connection is remembered for the keys it reads first, which for EXEC
+     * are those of the queued commands.
+     */
+    private void run(RespCommand cmd, CommandDispatcher dispatcher) throws IOException {
+        boolean tx = transaction != null || Transaction.isTransaction(cmd);
+        if (tx && transaction == null) transaction = new Transaction(dispatcher);
+        if (!tracking) {
+            reply(tx ? transaction.execute(cmd) : dispatcher.dispatch(cmd));
+            return;
+        }
+        synchronized (this) {
+            running = Thread.currentThread();
+        }
+        try {
+            if (!bcast && tx && transaction.isQueueing()) {
+                if (cmd.equalsIgnoreCase(0, "EXEC")) for (RespCommand q : transaction.queued()) remember(q, dispatcher);
+            } else if (!bcast) {
+                remember(cmd, dispatcher);
+            }
+            reply(tx ? transaction.execute(cmd) : dispatcher.dispatch(cmd));
+        } finally {
+            List<byte[]> late;
+            synchronized (this) {
+                running = null;
+                late = deferred;
+                deferred = null;
+            }
+            if (late != null) for (byte[] frame : late) deliver(frame);
+        }
+    }
+
+    private void remember(RespCommand cmd, CommandDispatcher dispatcher) {
+        RedisCommand command = dispatcher.commands().lookup(cmd);
+        if (command == null || !command.hasFlag(RedisCommand.READONLY)) return;
+        int first = command.firstKey();
+        if (first == 0 || first >= cmd.argc()) return;
+        int last = command.lastKey() < 0 ? cmd.argc() + command.lastKey() : Math.min(command.lastKey(), cmd.argc() - 1);
+        for (int i = first; i <= last; i += Math.max(1, command.keyStep())) {
+            tracker.remember(CommandDispatcher.key(cmd, i), this);
+        }
+    }
+
+    /**
+     * CLIENT TRACKING ON|OFF [BCAST] [PREFIX prefix ...] [NOLOOP]. Invalidations are only
+     * sent as RESP3 pushes: REDIRECT to another connection, OPTIN and OPTOUT are not supported.
+     */
+    private RespObject tracking(RespCommand cmd) {
+        if (cmd.argc() < 3) return new RespError("ERR wrong number of arguments for 'client|tracking' command");
+        boolean on = cmd.equalsIgnoreCase(2, "ON");
+        if (!on && !cmd.equalsIgnoreCase(2, "OFF")) return new RespError("ERR syntax error");
+        boolean bcast = false, noloop = false;
+        List<ByteKey> add = new ArrayList<>();
+        for (int i = 3; i < cmd.argc(); i++) {
+            if (cmd.equalsIgnoreCase(i, "BCAST")) bcast = true;
+            else if (cmd.equalsIgnoreCase(i, "NOLOOP")) noloop = true;
+            else if (cmd.equalsIgnoreCase(i, "PREFIX") && i + 1 < cmd.argc()) add.add(CommandDispatcher.key(cmd, ++i));
+            else if (cmd.equalsIgnoreCase(i, "REDIRECT") || cmd.equalsIgnoreCase(i, "OPTIN") || cmd.equalsIgnoreCase(i, "OPTOUT"))
+                return new RespError("ERR CLIENT TRACKING " + cmd.asString(i).toUpperCase(Locale.ROOT) + " is not supported");
+            else return new RespError("ERR syntax error");
+        }
+        if (!on) {
+            stopTracking();
+            return RespSimpleString.OK;
+        }
+        if (protocol != 3) return new RespError("ERR CLIENT TRACKING needs RESP3 (HELLO 3): invalidations are sent as push messages");
+        if (!add.isEmpty() && !bcast) return new RespError("ERR PREFIX option requires BCAST mode to be enabled");
+        if (tracking && bcast != this.bcast)
+            return new RespError("ERR You can't switch BCAST mode on/off before disabling tracking for this client, "
+                    + "and then re-enabling it with a different mode.");
+        if (bcast && add.isEmpty() && prefixes.isEmpty()) add.add(ByteKey.of(new byte[0])); // every key
+        List<ByteKey> all = new ArrayList<>(prefixes);
+        for (ByteKey p : add) {
+            for (ByteKey q : all) {
+                if (!p.equals(q) && (ClientTracking.startsWith(p.bytes(), q.bytes()) || ClientTracking.startsWith(q.bytes(), p.bytes())))
+                    return new RespError("ERR Prefix '" + text(p) + "' overlaps with an existing prefix '" + text(q)
+                            + "'. Prefixes for a single client must not overlap.");
+            }
+            all.add(p);
+        }
+        this.bcast = bcast;
+        this.noloop = noloop;
+        if (!tracking) {
+            tracking = true;
+            tracker.enable();
+        }
+        for (ByteKey p : add) {
+            if (prefixes.add(p)) tracker.subscribe(p, this);
+        }
+        return RespSimpleString.OK;
+    }
+
+    private void stopTracking() {
+        if (!tracking) return;
+        tracking = false;
+        for (ByteKey p : prefixes) tracker.unsubscribe(p, this);
+        prefixes.clear();
+        bcast = false;
+        noloop = false;
+        tracker.disable();
+    }
+
+    /**
+     * Queue an invalidation push; called by writing threads. Held back while one of this
+     * connection's commands runs, and dropped for its own writes under NOLOOP.
+     */
+    void invalidate(byte[] frame) {
+        if (!tracking) return;
+        synchronized (this) {
+            if (running != null) {
+                if (noloop && running == Thread.currentThread()) return;
+                if (deferred == null) deferred = new ArrayList<>();
+                deferred.add(frame);
+                return;
+            }
+        }
+        deliver(frame);
+    }
+
+    private static String text(ByteKey key) {
+        return new String(key.bytes(), StandardCharsets.UTF_8);
+    }
+
+    private void unsubscribe(RespCommand cmd, Set<ByteKey> from, byte[] kind, boolean pattern) throws IOException {
+        List<ByteKey> names = new ArrayList<>();
+        if (cmd.argc() == 1) names.addAll(from);
+        else for (int i = 1; i < cmd.argc(); i++) names.add(ByteKey.copyOf(cmd.array(i), cmd.offset(i), cmd.length(i)));
+        if (names.isEmpty()) {
+            reply(new RespPush(List.of(new RespBulkString(kind), RespBulkString.NULL, RespInteger.of(count()))));
+            return;
+        }
+        for (ByteKey name : names) {
+            if (from.remove(name)) {
+                if (pattern) hub.punsubscribe(name, this);
+                else hub.unsubscribe(name, this);
+            }
+            confirm(kind, name);
+        }
+    }
+
+    private void confirm(byte[] kind, ByteKey name) throws IOException {
+        reply(new RespPush(List.of(new RespBulkString(kind), new RespBulkString(name.bytes()), RespInteger.of(count()))));
+    }
+
+    private int count() {
+        return channels.size() + patterns.size();
+    }
+
+    /** Drop every subscription and stop tracking; called when the connection closes. */
+    void close() {
+        stopTracking();
+        for (ByteKey ch : channels) hub.unsubscribe(ch, this);
+        for (ByteKey p : patterns) hub.punsubscribe(p, this);
+        channels.clear();
+        patterns.clear();
+        outbox.clear();
+    }
+
+    /**
+     * Write a reply of this connection, after the frames queued so far. Replies are not
+     * queued, so they cost no copy and do not count against the pub/sub output limit.
+     */
+    void reply(RespObject reply) throws IOException {
+        synchronized (out) {
+            moveQueued();
+            out.write(reply);
+            replying = true;
+        }
+    }
+
+    /** Flush the connection's replies and the frames queued so far; from the connection's thread. */
+    void flush() throws IOException {
+        synchronized (out) {
+            moveQueued();
+            out.flush();
+            replying = false;
+        }
+    }
+
+    /**
+     * Write out queued frames from another thread, the threaded connection's push task.
+     * While replies are waiting for the connection's flush (which waits for their writes to
+     * be durable) the frames are left to that flush, so this never sends the replies early.
+     */
+    void push() throws IOException {
+        synchronized (out) {
+            draining();
+            if (replying) return;
+            moveQueued();
+            out.flush();
+        }
+    }
+
+    private void moveQueued() throws IOException {
+        for (byte[] frame = next(); frame != null; frame = next()) out.writeRaw(frame);
+    }
+
+    /** Queue an encoded frame; never blocks. */
+    void deliver(byte[] frame) {
+        if (overflowed) return;
+        if (queuedBytes.addAndGet(frame.length) > hub.outputBufferLimit()) {
+            overflowed = true;
+            hub.overflowed();
+            kill.run();
+            return;
+        }
+        outbox.add(frame);
+        if (scheduled.compareAndSet(false, true)) wake.run();
+    }
+
+    /**
+     * Start draining: frames queued after this call wake the connection again. Call before
+     * polling with {@link #next()} until it returns null.
+     */
+    void draining() {
+        scheduled.set(false);
+    }
+
+    /** The next queued frame, or null if the queue is empty. */
+    byte[] next() {
+        byte[] frame = outbox.poll();
+        if (frame != null) queuedBytes.addAndGet(-frame.length);
+        return frame;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,126 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.*;
+import com.tejas.redis.store.ByteKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MULTI / EXEC / DISCARD / WATCH state of one connection, created by its first MULTI or
+ * WATCH and only touched by the connection's thread.
+ * <p>
+ * WATCH takes no lock: it remembers each key's {@link CommandDispatcher#version version},
+ * and EXEC runs the queued commands only if none of them moved meanwhile (optimistic
+ * concurrency, like Redis' touched-keys check). A transaction that nobody interferes with
+ * costs its commands plus one round of locking, about what the same commands cost pipelined.
+ */
+final class Transaction {
+
+    private static final RespObject QUEUED = new RespSimpleString("QUEUED");
+
+    private final CommandDispatcher dispatcher;
+    private List<RespCommand> queued; // null unless inside MULTI
+    private boolean aborted;          // a command was refused while queueing
+    private final List<ByteKey> watched = new ArrayList<>();
+    private long[] versions = new long[4];
+
+    Transaction(CommandDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /** Whether the command makes a connection need a Transaction. */
+    static boolean isTransaction(RespCommand cmd) {
+        return cmd.argc() > 0 && (cmd.equalsIgnoreCase(0, "MULTI") || cmd.equalsIgnoreCase(0, "WATCH"));
+    }
+
+    static boolean isTransaction(List<RespObject> parts) {
+        if (parts.isEmpty() || !(parts.get(0) instanceof RespBulkString name) || name.data() == null) return false;
+        String s = new String(name.data(), StandardCharsets.US_ASCII);
+        return s.equalsIgnoreCase("MULTI") || s.equalsIgnoreCase("WATCH");
+    }
+
+    /** Inside MULTI, where commands are queued rather than run. */
+    boolean isQueueing() {
+        return queued != null;
+    }
+
+    /** The commands queued since MULTI; empty outside it. */
+    List<RespCommand> queued() {
+        return queued == null ? List.of() : queued;
+    }
+
+    /**
+     * Run a command of this connection: transaction commands here, anything else queued
+     * inside MULTI or dispatched as usual outside it. The command is copied when queued.
+     */
+    RespObject execute(RespCommand cmd) {
+        if (cmd.argc() == 0) return new RespError("ERR empty command");
+        if (cmd.equalsIgnoreCase(0, "MULTI")) return multi(cmd);
+        if (cmd.equalsIgnoreCase(0, "EXEC")) return exec(cmd);
+        if (cmd.equalsIgnoreCase(0, "DISCARD")) return discard(cmd);
+        if (cmd.equalsIgnoreCase(0, "WATCH")) return watch(cmd);
+        if (queued == null) {
+            if (cmd.equalsIgnoreCase(0, "UNWATCH") && cmd.argc() == 1) watched.clear();
+            return dispatcher.dispatch(cmd);
+        }
+        RespError refused = dispatcher.checkQueued(cmd);
+        if (refused != null) {
+            aborted = true;
+            return refused;
+        }
+        queued.add(cmd.detach());
+        return QUEUED;
+    }
+
+    private RespObject multi(RespCommand cmd) {
+        if (cmd.argc() != 1) return new RespError("ERR wrong number of arguments for 'MULTI' command");
+        if (queued != null) return new RespError("ERR MULTI calls can not be nested");
+        queued = new ArrayList<>();
+        return RespSimpleString.OK;
+    }
+
+    private RespObject exec(RespCommand cmd) {
+        if (queued == null) return new RespError("ERR EXEC without MULTI");
+        if (cmd.argc() != 1) {
+            aborted = true;
+            return new RespError("ERR wrong number of arguments for 'EXEC' command");
+        }
+        try {
+            if (aborted) return new RespError("EXECABORT Transaction discarded because of previous errors.");
+            if (queued.isEmpty() && watched.isEmpty()) return new RespArray(List.of());
+            return dispatcher.exec(queued, watched, versions);
+        } finally {
+            reset();
+        }
+    }
+
+    private RespObject discard(RespCommand cmd) {
+        if (queued == null) return new RespError("ERR DISCARD without MULTI");
+        if (cmd.argc() != 1) return new RespError("ERR wrong number of arguments for 'DISCARD' command");
+        reset();
+        return RespSimpleString.OK;
+    }
+
+    private RespObject watch(RespCommand cmd) {
+        if (queued != null) return new RespError("ERR WATCH inside MULTI is not allowed");
+        if (cmd.argc() < 2) return new RespError("ERR wrong number of arguments for 'WATCH' command");
+        for (int i = 1; i < cmd.argc(); i++) {
+            ByteKey key = CommandDispatcher.key(cmd, i);
+            if (watched.contains(key)) continue;
+            if (watched.size() == versions.length) versions = Arrays.copyOf(versions, versions.length * 2);
+            versions[watched.size()] = dispatcher.version(key);
+            watched.add(key);
+        }
+        return RespSimpleString.OK;
+    }
+
+    /** After EXEC or DISCARD: out of MULTI, and nothing watched any more. */
+    private void reset() {
+        queued = null;
+        aborted = false;
+        watched.clear();
+    }
+}
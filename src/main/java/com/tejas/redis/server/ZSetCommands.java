@@ -0,0 +1,166 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.*;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.RedisZSet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.tejas.redis.server.CommandDispatcher.*;
+import static com.tejas.redis.server.RedisCommand.*;
+
+/**
+ * ZADD / ZREM / ZSCORE / ZCARD / ZRANGE / ZRANGEBYSCORE on {@link RedisZSet} values.
+ */
+final class ZSetCommands {
+
+    private final DataStore store;
+    private final CommandDispatcher dispatcher;
+
+    ZSetCommands(DataStore store, CommandDispatcher dispatcher) {
+        this.store = store;
+        this.dispatcher = dispatcher;
+    }
+
+    void registerAll() {
+        dispatcher.register("zadd", -4, WRITE | DENYOOM | FAST, 1, 1, 1, this::zadd);
+        dispatcher.register("zrem", -3, WRITE | FAST, 1, 1, 1, this::zrem);
+        dispatcher.register("zscore", 3, READONLY | FAST, 1, 1, 1, this::zscore);
+        dispatcher.register("zcard", 2, READONLY | FAST, 1, 1, 1, this::zcard);
+        dispatcher.register("zrange", -4, READONLY, 1, 1, 1, this::zrange);
+        dispatcher.register("zrangebyscore", -4, READONLY, 1, 1, 1, this::zrangebyscore);
+    }
+
+    /**
+     * ZADD key [NX|XX] [CH] score member [score member ...] -> members added (or changed, with CH)
+     */
+    private RespObject zadd(RespCommand cmd) {
+        boolean nx = false, xx = false, ch = false;
+        int i = 2;
+        for (; i < cmd.argc(); i++) {
+            if (cmd.equalsIgnoreCase(i, "NX")) nx = true;
+            else if (cmd.equalsIgnoreCase(i, "XX")) xx = true;
+            else if (cmd.equalsIgnoreCase(i, "CH")) ch = true;
+            else break;
+        }
+        if (nx && xx) return new RespError("ERR XX and NX options at the same time are not compatible");
+        int pairs = cmd.argc() - i;
+        if (pairs == 0 || pairs % 2 != 0) return new RespError("ERR syntax error");
+        double[] scores = new double[pairs / 2];
+        byte[][] members = new byte[pairs / 2][];
+        for (int p = 0; p < scores.length; p++, i += 2) {
+            try {
+                scores[p] = cmd.parseDouble(i);
+            } catch (NumberFormatException nfe) {
+                return new RespError("ERR value is not a valid float");
+            }
+            members[p] = cmd.copy(i + 1);
+        }
+        boolean onlyNew = nx, onlyExisting = xx;
+        int[] counts = store.modify(key(cmd, 1), RedisZSet.class, RedisZSet::new, zset -> {
+            int[] c = new int[2]; // added, updated
+            for (int p = 0; p < scores.length; p++) {
+                int r = zset.add(scores[p], members[p], onlyNew, onlyExisting);
+                if (r == RedisZSet.ADDED) c[0]++;
+                else if (r == RedisZSet.UPDATED) c[1]++;
+            }
+            return c;
+        }, new int[2]);
+        if (counts[0] + counts[1] > 0) dispatcher.propagate(cmd);
+        return RespInteger.of(ch ? counts[0] + counts[1] : counts[0]);
+    }
+
+    /**
+     * ZREM key member [member ...] -> number of members removed
+     */
+    private RespObject zrem(RespCommand cmd) {
+        byte[][] members = new byte[cmd.argc() - 2][];
+        for (int i = 2; i < cmd.argc(); i++) members[i - 2] = cmd.copy(i);
+        int removed = store.modify(key(cmd, 1), RedisZSet.class, null, zset -> {
+            int n = 0;
+            for (byte[] m : members) if (zset.remove(m)) n++;
+            return n;
+        }, 0);
+        if (removed > 0) dispatcher.propagate(cmd);
+        return RespInteger.of(removed);
+    }
+
+    private RespObject zscore(RespCommand cmd) {
+        byte[] member = cmd.copy(2);
+        Double score = store.read(key(cmd, 1), RedisZSet.class, zset -> zset.score(member), null);
+        return score == null ? RespBulkString.NULL : score(score);
+    }
+
+    private RespObject zcard(RespCommand cmd) {
+        return RespInteger.of(store.read(key(cmd, 1), RedisZSet.class, RedisZSet::size, 0));
+    }
+
+    /**
+     * ZRANGE key start stop [WITHSCORES]
+     */
+    private RespObject zrange(RespCommand cmd) {
+        boolean withScores = false;
+        for (int i = 4; i < cmd.argc(); i++) {
+            if (cmd.equalsIgnoreCase(i, "WITHSCORES")) withScores = true;
+            else return new RespError("ERR syntax error");
+        }
+        long start = integer(cmd, 2);
+        long stop = integer(cmd, 3);
+        List<RespObject> out = new ArrayList<>();
+        boolean scores = withScores;
+        store.read(key(cmd, 1), RedisZSet.class, zset -> {
+            zset.rangeByRank(start, stop, (m, s) -> emit(out, m, s, scores));
+            return null;
+        }, null);
+        return new RespArray(out);
+    }
+
+    /**
+     * ZRANGEBYSCORE key min max [WITHSCORES] [LIMIT offset count]; bounds may be -inf/+inf
+     * and are exclusive when prefixed with '('.
+     */
+    private RespObject zrangebyscore(RespCommand cmd) {
+        boolean withScores = false;
+        long offset = 0, count = -1;
+        for (int i = 4; i < cmd.argc(); i++) {
+            if (cmd.equalsIgnoreCase(i, "WITHSCORES")) {
+                withScores = true;
+            } else if (cmd.equalsIgnoreCase(i, "LIMIT") && i + 2 < cmd.argc()) {
+                offset = integer(cmd, i + 1);
+                count = integer(cmd, i + 2);
+                i += 2;
+            } else {
+                return new RespError("ERR syntax error");
+            }
+        }
+        boolean minEx = cmd.length(2) > 0 && cmd.byteAt(2, 0) == '(';
+        boolean maxEx = cmd.length(3) > 0 && cmd.byteAt(3, 0) == '(';
+        double min, max;
+        try {
+            min = cmd.parseDouble(2, minEx ? 1 : 0);
+            max = cmd.parseDouble(3, maxEx ? 1 : 0);
+        } catch (NumberFormatException nfe) {
+            return new RespError("ERR min or max is not a float");
+        }
+        List<RespObject> out = new ArrayList<>();
+        if (offset < 0) return new RespArray(out);
+        boolean scores = withScores;
+        long off = offset, cnt = count;
+        store.read(key(cmd, 1), RedisZSet.class, zset -> {
+            zset.rangeByScore(min, minEx, max, maxEx, off, cnt, (m, s) -> emit(out, m, s, scores));
+            return null;
+        }, null);
+        return new RespArray(out);
+    }
+
+    private static void emit(List<RespObject> out, byte[] member, double score, boolean withScores) {
+        out.add(new RespBulkString(member));
+        if (withScores) out.add(score(score));
+    }
+
+    private static RespObject score(double score) {
+        return new RespBulkString(RedisZSet.formatScore(score).getBytes(StandardCharsets.US_ASCII));
+    }
+}
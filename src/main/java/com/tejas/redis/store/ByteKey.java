@@ -0,0 +1,82 @@
+package com.tejas.redis.store;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Immutable, binary-safe key. The bytes are compared as-is (no charset decoding) and the
+ * hash is computed once, while copying, so map lookups never rehash the key.
+ */
+public final class ByteKey implements Comparable<ByteKey> {
+
+    private final byte[] bytes;
+    private final int hash;
+
+    private ByteKey(byte[] bytes, int hash) {
+        this.bytes = bytes;
+        this.hash = hash;
+    }
+
+    /**
+     * Copy a slice (e.g. an argument in a connection's read buffer) into a new key.
+     */
+    public static ByteKey copyOf(byte[] src, int off, int len) {
+        byte[] b = new byte[len];
+        int h = 1;
+        for (int i = 0; i < len; i++) {
+            byte c = src[off + i];
+            b[i] = c;
+            h = 31 * h + c;
+        }
+        return new ByteKey(b, h);
+    }
+
+    public static ByteKey of(byte[] bytes) {
+        return copyOf(bytes, 0, bytes.length);
+    }
+
+    public static ByteKey of(String key) {
+        byte[] b = key.getBytes(StandardCharsets.UTF_8);
+        return new ByteKey(b, Arrays.hashCode(b));
+    }
+
+    /**
+     * A key that sorts before every real key with this hash in hash order; only for
+     * searching, never stored.
+     */
+    static ByteKey probe(int hash) {
+        return new ByteKey(new byte[0], hash);
+    }
+
+    /** The key's bytes. Shared, not copied: callers must not modify them. */
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ByteKey other)) return false;
+        return hash == other.hash && Arrays.equals(bytes, other.bytes);
+    }
+
+    /** Unsigned lexicographic order, like memcmp. */
+    @Override
+    public int compareTo(ByteKey o) {
+        return Arrays.compareUnsigned(bytes, o.bytes);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
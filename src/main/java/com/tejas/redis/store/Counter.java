@@ -0,0 +1,54 @@
+package com.tejas.redis.store;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A string that holds a canonical 64-bit integer, kept as a number (Redis' "int" encoding)
+ * so INCR and friends update it in place instead of parsing and re-rendering text. To
+ * clients it is an ordinary string: GET renders it.
+ */
+public final class Counter implements RedisObject {
+
+    private long value;
+
+    Counter(long value) {
+        this.value = value;
+    }
+
+    public long get() {
+        return value;
+    }
+
+    void set(long value) {
+        this.value = value;
+    }
+
+    byte[] render() {
+        return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public ValueType type() {
+        return ValueType.STRING;
+    }
+
+    @Override
+    public String encoding() {
+        return "int";
+    }
+
+    @Override
+    public int size() {
+        return 1;
+    }
+
+    @Override
+    public long memoryUsage() {
+        return 16;
+    }
+
+    @Override
+    public Counter copy() {
+        return new Counter(value);
+    }
+}
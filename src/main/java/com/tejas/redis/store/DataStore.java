@@ -1,17 +1,95 @@
 package com.tejas.redis.store;
 
+import java.io.IOException;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Thread-safe key-value store with optional expiry (epoch ms).
- * Expired keys are removed lazily on access.
+ * Keys are binary-safe {@link ByteKey}s; values are strings or collections
+ * ({@link RedisList}, {@link RedisHash}, {@link RedisSet}, {@link RedisZSet}), which are only
+ * touched through {@link #read} and {@link #modify}. Expired keys are removed lazily on access, and
+ * actively by {@link #activeExpireCycle(long)} using a timing wheel of keys with a TTL.
+ * <p>
+ * The keyspace is split by key hash into a power-of-two number of {@link Shard}s, each with
+ * its own map, expiry wheel, memory accounting and evictor. Per-shard maintenance
+ * ({@link #activeExpireCycle(int, long)}) lets several threads share that work, and no
+ * single sweep ever has to walk the whole keyspace.
+ * <p>
+ * With a maxmemory limit, entries are accounted by an estimate of their heap cost and
+ * {@link #ensureMemory()} evicts sampled victims according to the {@link EvictionPolicy}.
+ * The limit applies to the store as a whole, however unevenly keys spread over the shards.
+ * <p>
+ * With the {@link StorageEngine#OFFHEAP} engine, string values are kept in a {@link SlabArena}
+ * outside the Java heap, so a large dataset costs the collector little more than its keys.
  */
 public final class DataStore {
 
-    private final ConcurrentHashMap<String, Value> map = new ConcurrentHashMap<>();
+    /** Shards compared when picking where to evict from. */
+    private static final int SHARD_SAMPLES = 4;
+
+    private final Shard[] shards;
+    private final int shardShift;
+    private final long maxMemory; // bytes; 0 means unlimited
+    private final LongAdder usedMemory = new LongAdder(); // kept by the shards, one sum to check
+    private final EvictionPolicy policy;
+    private final StorageEngine storage;
+    private final SlabArena arena; // shared by all shards; null for the heap engine
+    private final LazyFree lazyFree = new LazyFree();
 
     public DataStore() {
+        this(defaultShards(), 0, EvictionPolicy.NOEVICTION, 5);
+    }
+
+    public DataStore(long maxMemory, EvictionPolicy policy, int samples) {
+        this(defaultShards(), maxMemory, policy, samples);
+    }
+
+    public DataStore(int shards, long maxMemory, EvictionPolicy policy, int samples) {
+        this(shards, maxMemory, policy, samples, StorageEngine.HEAP);
+    }
+
+    /**
+     * @param shards    number of shards, rounded up to a power of two
+     * @param maxMemory approximate byte limit for keys and values, 0 for none
+     * @param samples   keys looked at per eviction (Redis' maxmemory-samples)
+     * @param storage   where string values are kept
+     */
+    public DataStore(int shards, long maxMemory, EvictionPolicy policy, int samples, StorageEngine storage) {
+        if (shards < 1 || shards > 1 << 16) throw new IllegalArgumentException("shards must be between 1 and 65536");
+        if (maxMemory < 0) throw new IllegalArgumentException("maxmemory cannot be negative");
+        if (samples < 1) throw new IllegalArgumentException("samples must be >= 1");
+        int n = Integer.highestOneBit(shards) == shards ? shards : Integer.highestOneBit(shards) << 1;
+        this.shards = new Shard[n];
+        this.shardShift = 32 - Integer.numberOfTrailingZeros(n);
+        this.maxMemory = maxMemory;
+        this.policy = policy;
+        this.storage = storage;
+        this.arena = storage == StorageEngine.OFFHEAP ? new SlabArena() : null;
+        for (int i = 0; i < n; i++) this.shards[i] = new Shard(i, usedMemory, policy, samples, arena);
+    }
+
+    /** One shard per core, rounded up to a power of two. */
+    public static int defaultShards() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        return Integer.highestOneBit(cpus) == cpus ? cpus : Integer.highestOneBit(cpus) << 1;
+    }
+
+    /**
+     * Shards are picked by the high bits of a multiplicative hash: each shard's map indexes
+     * its buckets by the low bits, which would otherwise be identical for all of its keys.
+     */
+    Shard shard(ByteKey key) {
+        if (shardShift == 32) return shards[0];
+        return shards[(key.hashCode() * 0x9E3779B9) >>> shardShift];
+    }
+
+    public int shardCount() {
+        return shards.length;
     }
 
     /**
@@ -19,69 +97,323 @@ public final class DataStore {
      * <p>
      * If expiresAtMs <= now the method will not store the value (immediate expiry).
      */
-    public void set(String key, byte[] value, long expiresAtMs) {
+    public void set(ByteKey key, byte[] value, long expiresAtMs) {
         if (key == null) throw new IllegalArgumentException("key cannot be null");
-        if (value == null) {
-            map.remove(key);
-            return;
-        }
-        long now = System.currentTimeMillis();
-        if (expiresAtMs > 0 && expiresAtMs <= now) {
-            // immediate expiry: do not store
-            map.remove(key);
-            return;
-        }
-        map.put(key, new Value(value, expiresAtMs));
+        shard(key).set(key, value, expiresAtMs);
     }
 
     /**
      * Get value if present and not expired. Removes expired key lazily.
      */
-    public Optional<byte[]> get(String key) {
+    public Optional<byte[]> get(ByteKey key) {
         if (key == null) return Optional.empty();
-        Value v = map.get(key);
-        if (v == null) return Optional.empty();
-        long now = System.currentTimeMillis();
-        if (v.isExpired(now)) {
-            map.remove(key, v);
-            return Optional.empty();
-        }
-        return Optional.of(v.data());
+        return shard(key).get(key);
     }
 
     /**
      * Return the raw Value object (for internal use), removing it if expired.
      */
-    public Optional<Value> getValue(String key) {
+    public Optional<Value> getValue(ByteKey key) {
         if (key == null) return Optional.empty();
-        Value v = map.get(key);
-        if (v == null) return Optional.empty();
-        long now = System.currentTimeMillis();
-        if (v.isExpired(now)) {
-            map.remove(key, v);
-            return Optional.empty();
-        }
-        return Optional.of(v);
+        return shard(key).getValue(key);
+    }
+
+    /** Type of the value under key, if any. */
+    public Optional<ValueType> type(ByteKey key) {
+        return getValue(key).map(Value::type);
+    }
+
+    /**
+     * Store a value read back from persistence, keeping its expiry. Expired values are
+     * dropped.
+     */
+    public void restore(ByteKey key, Value value) {
+        if (value.isExpired(System.currentTimeMillis())) return;
+        shard(key).restore(key, value);
+    }
+
+    /**
+     * Apply fn to the collection under key, under the key's lock.
+     *
+     * @return fn's result, or ifMissing if there is no such key
+     * @throws WrongTypeException if the key holds another type
+     */
+    public <T extends RedisObject, R> R read(ByteKey key, Class<T> kind, Function<T, R> fn, R ifMissing) {
+        return shard(key).read(key, kind, fn, ifMissing);
+    }
+
+    /**
+     * Change the collection under key in place, atomically for that key. A missing key is
+     * created with create, or left missing (returning ifMissing) if create is null; a
+     * collection that ends up empty is deleted.
+     *
+     * @throws WrongTypeException if the key holds another type
+     */
+    public <T extends RedisObject, R> R modify(ByteKey key, Class<T> kind, Supplier<T> create, Function<T, R> fn,
+                                               R ifMissing) {
+        return shard(key).modify(key, kind, create, fn, ifMissing);
+    }
+
+    /**
+     * Atomically add delta to the integer under key, treating a missing key as 0 and keeping
+     * any TTL (INCR / DECR / INCRBY / DECRBY).
+     *
+     * @return the new value
+     * @throws IllegalArgumentException if the value is not an integer or the result would overflow
+     * @throws WrongTypeException       if the key holds a collection
+     */
+    public long incrBy(ByteKey key, long delta) {
+        return shard(key).incrBy(key, delta);
+    }
+
+    /**
+     * Atomically add a float increment (INCRBYFLOAT); the result is stored as text.
+     *
+     * @return the stored value, whose data() is the new number and expiresAt() its kept TTL
+     */
+    public Value incrByFloat(ByteKey key, double incr) {
+        return shard(key).incrByFloat(key, incr);
     }
 
     /**
      * Delete a key; return true if existed.
      */
-    public boolean del(String key) {
-        return map.remove(key) != null;
+    public boolean del(ByteKey key) {
+        Value v = shard(key).del(key);
+        if (v == null) return false;
+        if (v.object() != null) v.object().release();
+        return true;
+    }
+
+    /**
+     * Delete every key (a replica about to load its master's data). Concurrent writers may
+     * recreate keys while this runs.
+     */
+    public void flushAll() {
+        for (Shard shard : shards) shard.clear();
+    }
+
+    /**
+     * Delete a key like {@link #del}, but release a large value on the lazy-free thread
+     * instead of the caller's (UNLINK). The key is gone from the keyspace when this returns.
+     */
+    public boolean unlink(ByteKey key) {
+        Value v = shard(key).del(key);
+        if (v == null) return false;
+        if (v.object() != null) lazyFree.free(v.object());
+        return true;
+    }
+
+    /**
+     * Make room for a write when over maxmemory. Each round evicts one sampled key from the
+     * fullest of a few randomly picked shards, so the keys go where most of the memory is
+     * without summing every shard's usage each time.
+     *
+     * @return false if still over the limit (noeviction, or nothing evictable was found),
+     * in which case the write should be refused
+     */
+    public boolean ensureMemory() {
+        if (maxMemory == 0) return true;
+        // misses are bounded so a keyspace with nothing eligible (e.g. volatile-ttl without TTLs) fails fast
+        for (int misses = 0; usedMemory.sum() > maxMemory; ) {
+            if (policy == EvictionPolicy.NOEVICTION || misses >= 64) return false;
+            if (!fullestSampledShard().evictOne()) misses++;
+        }
+        return true;
+    }
+
+    private Shard fullestSampledShard() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Shard fullest = shards[random.nextInt(shards.length)];
+        for (int i = 1; i < Math.min(SHARD_SAMPLES, shards.length); i++) {
+            Shard candidate = shards[random.nextInt(shards.length)];
+            if (candidate.usedMemory() > fullest.usedMemory()) fullest = candidate;
+        }
+        return fullest;
+    }
+
+    /**
+     * One step of an incremental walk over the keyspace (SCAN), visiting about count keys.
+     * The cursor is the shard in the high 32 bits and a hash position inside it in the low
+     * ones, so it carries all the state: every key that exists for the whole walk is visited
+     * at least once, however the maps are resized meanwhile. Visited keys may have expired
+     * since; callers that care look them up.
+     *
+     * @param cursor 0 to start, then the value returned by the previous call
+     * @return the cursor for the next call, or 0 when the walk is complete
+     */
+    public long scan(long cursor, int count, Consumer<ByteKey> visitor) {
+        if (count < 1) throw new IllegalArgumentException("count must be >= 1");
+        int shard = (int) (cursor >>> 32);
+        long pos = cursor & 0xFFFFFFFFL;
+        if (shard >= shards.length) return 0;
+        int[] seen = new int[1];
+        Consumer<ByteKey> counting = key -> {
+            seen[0]++;
+            visitor.accept(key);
+        };
+        while (true) {
+            // never 0 once a key was visited: the next position is above that key's hash
+            long next = shards[shard].scan(pos, count - seen[0], counting);
+            if (next >= 0) return (long) shard << 32 | next;
+            if (++shard == shards.length) return 0;
+            pos = 0;
+            if (seen[0] >= count) return (long) shard << 32;
+        }
+    }
+
+    /** Receives entries of a point-in-time walk. */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(ByteKey key, Value value) throws IOException;
     }
 
     /**
-     * Optional: background scan to remove expired keys (useful for long-lived idle keys).
-     * Not required, but can be scheduled by the server if desired.
+     * Walk the keyspace as it was when this call started, while other threads keep reading
+     * and writing. Writes that race with the start of the walk may land on either side of it.
      */
-    public void sweepExpired() {
-        long now = System.currentTimeMillis();
-        for (var entry : map.entrySet()) {
-            Value v = entry.getValue();
-            if (v != null && v.isExpired(now)) {
-                map.remove(entry.getKey(), v);
-            }
+    public void snapshot(EntryVisitor visitor) throws IOException {
+        try (PointInTimeView view = openView()) {
+            view.forEach(visitor);
         }
     }
+
+    /**
+     * Open a point-in-time view for a caller that needs to pin the exact moment, e.g. while
+     * holding a barrier against writers. Several views may be open at once; each costs
+     * writers one capture per key they change ahead of its walk, until it is closed.
+     */
+    public PointInTimeView openView() {
+        PointInTimeView pit = new PointInTimeView(this, shards);
+        for (Shard shard : shards) shard.addView(pit);
+        return pit;
+    }
+
+    void closeView(PointInTimeView pit) {
+        for (Shard shard : shards) shard.removeView(pit);
+    }
+
+    /**
+     * One step of active expiry over all shards, meant to be called periodically from a
+     * single maintenance thread: reclaims keys whose deadline has passed, spending at most
+     * budgetNanos in total. Keys that are left over are picked up by the next call.
+     *
+     * @return number of keys expired by this call
+     */
+    public int activeExpireCycle(long budgetNanos) {
+        long perShard = budgetNanos / shards.length;
+        int n = 0;
+        for (Shard shard : shards) n += shard.activeExpireCycle(perShard);
+        return n;
+    }
+
+    /**
+     * One step of active expiry for a single shard. Different shards may be maintained
+     * concurrently, but each shard by only one thread at a time.
+     */
+    public int activeExpireCycle(int shard, long budgetNanos) {
+        return shards[shard].activeExpireCycle(budgetNanos);
+    }
+
+    /** Total keys removed because their TTL passed (lazily or actively). */
+    public long expiredKeys() {
+        long n = 0;
+        for (Shard shard : shards) n += shard.expiredKeys();
+        return n;
+    }
+
+    /** Keys expired per second over the last measured window. */
+    public long expiredPerSecond() {
+        long n = 0;
+        for (Shard shard : shards) n += shard.expiredPerSecond();
+        return n;
+    }
+
+    /** How far active expiry is behind real time, in ms, in the shard that is furthest behind. */
+    public long expiryLagMs() {
+        long lag = 0;
+        for (Shard shard : shards) lag = Math.max(lag, shard.expiryLagMs());
+        return lag;
+    }
+
+    /** Estimated bytes used by keys and values. */
+    public long usedMemory() {
+        return usedMemory.sum();
+    }
+
+    public long maxMemory() {
+        return maxMemory;
+    }
+
+    public EvictionPolicy evictionPolicy() {
+        return policy;
+    }
+
+    public long evictedKeys() {
+        long n = 0;
+        for (Shard shard : shards) n += shard.evictedKeys();
+        return n;
+    }
+
+    public StorageEngine storage() {
+        return storage;
+    }
+
+    /** Direct memory the off-heap engine has taken for values, 0 for the heap engine. */
+    public long offHeapAllocated() {
+        return arena == null ? 0 : arena.allocated();
+    }
+
+    /** Bytes of off-heap slots currently holding values. */
+    public long offHeapUsed() {
+        return arena == null ? 0 : arena.used();
+    }
+
+    /** Values UNLINK has handed to the lazy-free thread that it has not released yet. */
+    public long lazyfreePendingObjects() {
+        return lazyFree.pending();
+    }
+
+    public long lazyfreedObjects() {
+        return lazyFree.freed();
+    }
+
+    /**
+     * A number that changes whenever the key is written, deleted, expired or evicted, for
+     * WATCH. Keys share counters, so an unrelated change may move it too, never the reverse.
+     * A key whose deadline has passed is reclaimed first, so its expiry counts as a change.
+     */
+    public long version(ByteKey key) {
+        return shard(key).version(key);
+    }
+
+    /**
+     * Call listener with every key that is written, deleted, expired or evicted, once the
+     * change is visible to readers; null stops. Runs on the changing thread and must not block.
+     */
+    public void keyListener(Consumer<ByteKey> listener) {
+        for (Shard shard : shards) shard.changes(listener);
+    }
+
+    /**
+     * Call listener with every key that {@link #ensureMemory()} evicts, while the key is
+     * being removed, so a log can record the eviction ahead of any later write to the key;
+     * null stops. Runs on the evicting thread under a map lock and must not block.
+     */
+    public void evictionListener(Consumer<ByteKey> listener) {
+        for (Shard shard : shards) shard.evictions(listener);
+    }
+
+    /** Keys that have a TTL, expired ones not yet reclaimed included (Redis' "expires"). */
+    public long expires() {
+        long n = 0;
+        for (Shard shard : shards) n += shard.volatileKeys();
+        return n;
+    }
+
+    public int size() {
+        int n = 0;
+        for (Shard shard : shards) n += shard.size();
+        return n;
+    }
 }
@@ -0,0 +1,26 @@
+package com.tejas.redis.store;
+
+import java.util.Locale;
+
+/**
+ * What DataStore does once maxmemory is reached (same names as Redis' maxmemory-policy).
+ */
+public enum EvictionPolicy {
+    /** Refuse writes that need memory. */
+    NOEVICTION,
+    /** Evict the least recently used key among all keys. */
+    ALLKEYS_LRU,
+    /** Evict the least frequently used key among all keys. */
+    ALLKEYS_LFU,
+    /** Evict the key with the nearest expiry among keys that have a TTL. */
+    VOLATILE_TTL;
+
+    /** Parse the Redis spelling, e.g. "allkeys-lru". */
+    public static EvictionPolicy parse(String name) {
+        return valueOf(name.replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+
+    public String redisName() {
+        return name().replace('_', '-').toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,129 @@
+package com.tejas.redis.store;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Approximate LRU / LFU / TTL victim selection by sampling, as Redis does.
+ * <p>
+ * Each thread walks the map with its own long-lived iterator and looks at the next
+ * {@code samples} entries; map order follows key hashes, so consecutive entries are an
+ * unbiased sample and no thread ever takes a lock. The per-value {@code access} field
+ * holds an LRU clock in seconds or, under LFU, Redis' 16-bit decay time in minutes plus an
+ * 8-bit logarithmic counter.
+ */
+final class Evictor {
+
+    private static final int LFU_INIT_VAL = 5;
+    private static final int LFU_LOG_FACTOR = 10;
+    private static final int LFU_DECAY_MINUTES = 1;
+
+    private final EvictionPolicy policy;
+    private final int samples;
+    private final ConcurrentHashMap<ByteKey, Value> map;
+    private final ThreadLocal<Iterator<Map.Entry<ByteKey, Value>>> cursors = new ThreadLocal<>();
+
+    Evictor(EvictionPolicy policy, int samples, ConcurrentHashMap<ByteKey, Value> map) {
+        this.policy = policy;
+        this.samples = samples;
+        this.map = map;
+    }
+
+    EvictionPolicy policy() {
+        return policy;
+    }
+
+    /** Access bookkeeping for a freshly written value. */
+    int initialAccess() {
+        return switch (policy) {
+            case ALLKEYS_LRU -> lruClock();
+            case ALLKEYS_LFU -> (lfuMinutes() << 8) | LFU_INIT_VAL;
+            default -> 0;
+        };
+    }
+
+    /** LFU keeps its history across overwrites, otherwise hot keys that are rewritten look cold. */
+    void overwritten(Value old, Value v) {
+        if (policy == EvictionPolicy.ALLKEYS_LFU) {
+            v.access(old.access());
+            touch(v);
+        }
+    }
+
+    /** Record a read of v. */
+    void touch(Value v) {
+        switch (policy) {
+            case ALLKEYS_LRU -> v.access(lruClock());
+            case ALLKEYS_LFU -> {
+                int counter = logIncr(decayedCounter(v.access()));
+                v.access((lfuMinutes() << 8) | counter);
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Best eviction candidate among the next few entries of this thread's walk, or null if
+     * the policy forbids eviction or nothing eligible was seen.
+     */
+    Map.Entry<ByteKey, Value> pickVictim(long nowMs) {
+        if (policy == EvictionPolicy.NOEVICTION || map.isEmpty()) return null;
+        Map.Entry<ByteKey, Value> best = null;
+        long bestScore = Long.MAX_VALUE;
+        for (int i = 0; i < samples; i++) {
+            Map.Entry<ByteKey, Value> e = nextSample();
+            if (e == null) break;
+            Value v = e.getValue();
+            long score = switch (policy) {
+                case ALLKEYS_LRU -> v.access();               // oldest clock first
+                case ALLKEYS_LFU -> decayedCounter(v.access()); // least used first
+                case VOLATILE_TTL -> v.expiresAt() > 0 ? v.expiresAt() : Long.MAX_VALUE;
+                default -> Long.MAX_VALUE;
+            };
+            if (score < bestScore) {
+                best = e;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private Map.Entry<ByteKey, Value> nextSample() {
+        Iterator<Map.Entry<ByteKey, Value>> it = cursors.get();
+        if (it == null || !it.hasNext()) {
+            it = map.entrySet().iterator();
+            cursors.set(it);
+            if (!it.hasNext()) return null;
+        }
+        return it.next();
+    }
+
+    private static int lruClock() {
+        return (int) (System.currentTimeMillis() / 1000);
+    }
+
+    private static int lfuMinutes() {
+        return (int) (System.currentTimeMillis() / 60_000) & 0xFFFF;
+    }
+
+    /** Counter after aging it by one per elapsed decay period since it was last touched. */
+    private static int decayedCounter(int access) {
+        int counter = access & 0xFF;
+        int last = access >>> 8;
+        int now = lfuMinutes();
+        int elapsed = now >= last ? now - last : 0xFFFF - last + now;
+        int periods = elapsed / LFU_DECAY_MINUTES;
+        return periods > counter ? 0 : counter - periods;
+    }
+
+    /** Redis' LFULogIncr: the higher the counter, the less likely it grows. */
+    private static int logIncr(int counter) {
+        if (counter == 255) return 255;
+        double baseval = Math.max(0, counter - LFU_INIT_VAL);
+        double p = 1.0 / (baseval * LFU_LOG_FACTOR + 1);
+        return ThreadLocalRandom.current().nextDouble() < p ? counter + 1 : counter;
+    }
+}
@@ -0,0 +1,105 @@
+package com.tejas.redis.store;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Index of keys that carry a TTL, bucketed by deadline on a hashed timing wheel.
+ * <p>
+ * Writers append (key, deadline) to the slot of the deadline's tick; deadlines further out
+ * than one revolution share slots and are skipped until their round comes; skipping costs
+ * budget like any other visit, and skipped entries move to the back of their slot so that
+ * a sweep cut short by the budget resumes with entries it has not seen. Entries are never
+ * updated in place: when a key is overwritten or deleted its old entry turns stale and is
+ * dropped the next time its slot is swept, whether it is due or not, so refreshing a TTL
+ * leaves at most one stale entry per revolution behind it.
+ * <p>
+ * {@link #advance} is only called from the single maintenance thread.
+ */
+final class ExpiryWheel {
+
+    /** Decides whether the key still expires at that deadline and removes it if so. */
+    interface ExpireAction {
+        boolean expire(ByteKey key, long expiresAtMs, long nowMs);
+    }
+
+    /** Whether the key still expires at that deadline; entries for which it does not are dropped. */
+    interface Deadline {
+        boolean current(ByteKey key, long expiresAtMs);
+    }
+
+    private record Entry(ByteKey key, long expiresAt) {
+    }
+
+    private final long tickMs;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Entry>[] slots;
+    // later-round entries passed by the current sweep of a slot; maintenance thread only
+    private final List<Entry> skipped = new ArrayList<>();
+    // first tick that has not been fully swept yet; maintenance thread only
+    private long cursor;
+    private volatile long lagMs;
+
+    @SuppressWarnings("unchecked")
+    ExpiryWheel(long tickMs, int slotCount, long nowMs) {
+        if (Integer.bitCount(slotCount) != 1) throw new IllegalArgumentException("slotCount must be a power of two");
+        this.tickMs = tickMs;
+        this.mask = slotCount - 1;
+        this.slots = (ConcurrentLinkedQueue<Entry>[]) new ConcurrentLinkedQueue<?>[slotCount];
+        for (int i = 0; i < slotCount; i++) slots[i] = new ConcurrentLinkedQueue<>();
+        this.cursor = nowMs / tickMs;
+    }
+
+    void schedule(ByteKey key, long expiresAtMs) {
+        slots[(int) (expiresAtMs / tickMs) & mask].add(new Entry(key, expiresAtMs));
+    }
+
+    /**
+     * Sweep every tick that has fully elapsed, oldest first, until the time budget runs out.
+     * Unfinished work stays in place and is resumed next time, which shows up as lag.
+     *
+     * @return number of keys expired
+     */
+    int advance(long nowMs, long budgetNanos, ExpireAction action, Deadline deadline) {
+        long start = System.nanoTime();
+        long lastDueTick = nowMs / tickMs - 1;
+        int expired = 0;
+        int checked = 0;
+
+        while (cursor <= lastDueTick) {
+            long tickEnd = (cursor + 1) * tickMs;
+            ConcurrentLinkedQueue<Entry> slot = slots[(int) cursor & mask];
+            Iterator<Entry> it = slot.iterator();
+            while (it.hasNext()) {
+                Entry e = it.next();
+                it.remove();
+                if (e.expiresAt >= tickEnd) { // a later round of the wheel
+                    if (deadline.current(e.key, e.expiresAt)) skipped.add(e);
+                } else if (action.expire(e.key, e.expiresAt, nowMs)) expired++;
+                if ((++checked & 63) == 0 && System.nanoTime() - start > budgetNanos) break;
+            }
+            boolean unfinished = it.hasNext(); // out of budget mid-slot
+            // re-added once the iterator is done, so this sweep does not visit them again
+            slot.addAll(skipped);
+            skipped.clear();
+            if (unfinished) break;
+            cursor++;
+        }
+        lagMs = Math.max(0, nowMs - (cursor + 1) * tickMs);
+        return expired;
+    }
+
+    /** Number of entries held, stale ones included; O(n), for tests. */
+    int size() {
+        int n = 0;
+        for (ConcurrentLinkedQueue<Entry> slot : slots) n += slot.size();
+        return n;
+    }
+
+    /** How far behind real time the sweep is, in ms (0 when caught up). */
+    long lagMs() {
+        return lagMs;
+    }
+}
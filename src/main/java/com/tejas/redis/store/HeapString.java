@@ -0,0 +1,44 @@
+package com.tejas.redis.store;
+
+/**
+ * An off-heap string copied onto the heap ({@link OffHeapString#copy()}), which stays
+ * readable after the slot it came from is freed. To clients it is an ordinary string.
+ */
+final class HeapString implements RedisObject {
+
+    private final byte[] bytes;
+
+    HeapString(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+
+    @Override
+    public ValueType type() {
+        return ValueType.STRING;
+    }
+
+    @Override
+    public String encoding() {
+        return "raw";
+    }
+
+    @Override
+    public int size() {
+        return 1;
+    }
+
+    @Override
+    public long memoryUsage() {
+        return 16 + bytes.length;
+    }
+
+    /** Immutable, so it is its own copy. */
+    @Override
+    public HeapString copy() {
+        return this;
+    }
+}
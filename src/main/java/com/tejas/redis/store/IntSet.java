@@ -0,0 +1,130 @@
+package com.tejas.redis.store;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Sorted set of integers packed at the smallest width (2, 4 or 8 bytes) that fits all of
+ * them, like Redis' intset. Used for small sets whose members are all canonical decimal
+ * integers; membership is a binary search.
+ */
+final class IntSet {
+
+    private byte[] contents = new byte[0];
+    private int width = 2;
+    private int length;
+
+    int size() {
+        return length;
+    }
+
+    int bytes() {
+        return contents.length;
+    }
+
+    long get(int i) {
+        int p = i * width;
+        long v = 0;
+        for (int b = width - 1; b >= 0; b--) v = (v << 8) | (contents[p + b] & 0xFF);
+        // sign-extend
+        int shift = 64 - width * 8;
+        return (v << shift) >> shift;
+    }
+
+    private void set(int i, long v) {
+        int p = i * width;
+        for (int b = 0; b < width; b++) {
+            contents[p + b] = (byte) v;
+            v >>= 8;
+        }
+    }
+
+    boolean contains(long v) {
+        return widthFor(v) <= width && search(v) >= 0;
+    }
+
+    /** @return false if already present */
+    boolean add(long v) {
+        int w = widthFor(v);
+        if (w > width) upgrade(w);
+        int idx = search(v);
+        if (idx >= 0) return false;
+        int at = -idx - 1;
+        contents = Arrays.copyOf(contents, (length + 1) * width);
+        System.arraycopy(contents, at * width, contents, (at + 1) * width, (length - at) * width);
+        length++;
+        set(at, v);
+        return true;
+    }
+
+    /** @return false if absent */
+    boolean remove(long v) {
+        if (widthFor(v) > width) return false;
+        int idx = search(v);
+        if (idx < 0) return false;
+        System.arraycopy(contents, (idx + 1) * width, contents, idx * width, (length - idx - 1) * width);
+        length--;
+        contents = Arrays.copyOf(contents, length * width);
+        return true;
+    }
+
+    IntSet copy() {
+        IntSet c = new IntSet();
+        c.contents = contents.clone();
+        c.width = width;
+        c.length = length;
+        return c;
+    }
+
+    private int search(long v) {
+        int lo = 0, hi = length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long m = get(mid);
+            if (m < v) lo = mid + 1;
+            else if (m > v) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    private void upgrade(int newWidth) {
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) values[i] = get(i);
+        width = newWidth;
+        contents = new byte[length * width];
+        for (int i = 0; i < length; i++) set(i, values[i]);
+    }
+
+    private static int widthFor(long v) {
+        if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) return 2;
+        if (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE) return 4;
+        return 8;
+    }
+
+    /**
+     * Whether s is an integer written the one way Long.toString would write it, so the
+     * member can be stored as a number and given back byte-for-byte.
+     */
+    static boolean isCanonical(byte[] s) {
+        int n = s.length;
+        if (n == 0 || n > 20) return false;
+        int p = s[0] == '-' ? 1 : 0;
+        if (p == n) return false;
+        if (s[p] == '0') return n == 1; // "0" only; no leading zeros, no "-0"
+        for (int i = p; i < n; i++) if (s[i] < '0' || s[i] > '9') return false;
+        try {
+            Long.parseLong(new String(s, 0, n, StandardCharsets.US_ASCII));
+            return true;
+        } catch (NumberFormatException overflow) {
+            return false;
+        }
+    }
+
+    static long parse(byte[] s) {
+        long v = 0;
+        boolean neg = s[0] == '-';
+        for (int i = neg ? 1 : 0; i < s.length; i++) v = v * 10 - (s[i] - '0');
+        return neg ? v : -v;
+    }
+}
@@ -0,0 +1,64 @@
+package com.tejas.redis.store;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background release of deleted values for UNLINK, like Redis' lazyfree thread. Small values
+ * are released on the caller's thread, since handing them over would cost more than the
+ * release itself; larger ones are queued to a daemon thread started on first use.
+ */
+final class LazyFree {
+
+    /** Elements above which a value is released in the background (Redis' LAZYFREE_THRESHOLD). */
+    static final int THRESHOLD = 64;
+
+    private final LinkedBlockingQueue<RedisObject> queue = new LinkedBlockingQueue<>();
+    private final LongAdder pending = new LongAdder();
+    private final LongAdder freed = new LongAdder();
+    private Thread worker;
+
+    void free(RedisObject obj) {
+        if (obj.size() <= THRESHOLD) {
+            obj.release();
+            return;
+        }
+        pending.increment();
+        queue.add(obj);
+        startWorker();
+    }
+
+    private synchronized void startWorker() {
+        if (worker != null) return;
+        worker = new Thread(this::run, "lazyfree");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void run() {
+        while (true) {
+            RedisObject obj;
+            try {
+                obj = queue.take();
+            } catch (InterruptedException ie) {
+                return;
+            }
+            try {
+                obj.release();
+            } finally {
+                pending.decrement();
+                freed.increment();
+            }
+        }
+    }
+
+    /** Values queued but not yet released. */
+    long pending() {
+        return pending.sum();
+    }
+
+    /** Values released by the background thread so far. */
+    long freed() {
+        return freed.sum();
+    }
+}
@@ -0,0 +1,177 @@
+package com.tejas.redis.store;
+
+import java.util.Arrays;
+
+/**
+ * Compact sequence of byte strings in one array, like Redis' listpack: each entry is a
+ * varint length followed by its bytes. Small collections live in a listpack instead of a
+ * hash table or skiplist, which saves the per-element object, array header and node
+ * overhead at the cost of linear scans; callers convert to a real structure once a
+ * listpack grows past a few hundred bytes or entries.
+ * <p>
+ * Entries are addressed by their byte offset ("pos"): {@link #head()} is the first entry
+ * and {@link #next(int)} moves on; {@link #end()} is one past the last.
+ */
+final class Listpack {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private byte[] buf = EMPTY;
+    private int used;
+    private int count;
+
+    Listpack() {
+    }
+
+    private Listpack(byte[] buf, int used, int count) {
+        this.buf = buf;
+        this.used = used;
+        this.count = count;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /** Bytes in use; this is what the encoding costs beyond a small fixed header. */
+    int bytes() {
+        return used;
+    }
+
+    int head() {
+        return 0;
+    }
+
+    int end() {
+        return used;
+    }
+
+    int next(int pos) {
+        return dataStart(pos) + length(pos);
+    }
+
+    /** Offset of the entry at index i (0-based), scanning from the head. */
+    int pos(int index) {
+        int pos = 0;
+        for (int i = 0; i < index; i++) pos = next(pos);
+        return pos;
+    }
+
+    /** Offset of the last entry, or end() if empty. */
+    int last() {
+        if (count == 0) return used;
+        int pos = 0;
+        for (int i = 1; i < count; i++) pos = next(pos);
+        return pos;
+    }
+
+    int length(int pos) {
+        int len = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buf[pos++];
+            len |= (b & 0x7F) << shift;
+            if (b >= 0) return len;
+        }
+    }
+
+    int dataStart(int pos) {
+        while (buf[pos] < 0) pos++;
+        return pos + 1;
+    }
+
+    byte[] get(int pos) {
+        int start = dataStart(pos);
+        return Arrays.copyOfRange(buf, start, start + length(pos));
+    }
+
+    /** Entry at pos read as an 8-byte big-endian double (see {@link #encodeDouble}). */
+    double doubleAt(int pos) {
+        int p = dataStart(pos);
+        long bits = 0;
+        for (int i = 0; i < 8; i++) bits = (bits << 8) | (buf[p + i] & 0xFF);
+        return Double.longBitsToDouble(bits);
+    }
+
+    static byte[] encodeDouble(double d) {
+        long bits = Double.doubleToLongBits(d);
+        byte[] b = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            b[i] = (byte) bits;
+            bits >>>= 8;
+        }
+        return b;
+    }
+
+    boolean matches(int pos, byte[] value) {
+        int len = length(pos);
+        if (len != value.length) return false;
+        int start = dataStart(pos);
+        return Arrays.equals(buf, start, start + len, value, 0, len);
+    }
+
+    /** Unsigned lexicographic comparison of the entry at pos with value. */
+    int compare(int pos, byte[] value) {
+        int start = dataStart(pos);
+        return Arrays.compareUnsigned(buf, start, start + length(pos), value, 0, value.length);
+    }
+
+    /**
+     * Find value among the entries at index 0, step, 2*step... (step 2 searches only the
+     * fields of field/value pairs).
+     *
+     * @return its offset, or -1
+     */
+    int find(byte[] value, int step) {
+        for (int pos = 0, i = 0; pos < used; pos = next(pos), i++) {
+            if (i % step == 0 && matches(pos, value)) return pos;
+        }
+        return -1;
+    }
+
+    /** Insert value before the entry at pos (pos == end() appends). */
+    void insert(int pos, byte[] value) {
+        int header = varintSize(value.length);
+        int need = header + value.length;
+        if (used + need > buf.length) buf = Arrays.copyOf(buf, Math.max(used + need, buf.length + (buf.length >> 1)));
+        System.arraycopy(buf, pos, buf, pos + need, used - pos);
+        writeVarint(pos, value.length);
+        System.arraycopy(value, 0, buf, pos + header, value.length);
+        used += need;
+        count++;
+    }
+
+    void delete(int pos) {
+        int next = next(pos);
+        System.arraycopy(buf, next, buf, pos, used - next);
+        used -= next - pos;
+        count--;
+        // give memory back once mostly empty
+        if (buf.length > 64 && used < buf.length / 4) buf = Arrays.copyOf(buf, Math.max(used * 2, 16));
+    }
+
+    void replace(int pos, byte[] value) {
+        delete(pos);
+        insert(pos, value);
+    }
+
+    Listpack copy() {
+        return new Listpack(Arrays.copyOf(buf, used), used, count);
+    }
+
+    private void writeVarint(int pos, int v) {
+        while ((v & ~0x7F) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos] = (byte) v;
+    }
+
+    private static int varintSize(int v) {
+        int n = 1;
+        while ((v & ~0x7F) != 0) {
+            v >>>= 7;
+            n++;
+        }
+        return n;
+    }
+}
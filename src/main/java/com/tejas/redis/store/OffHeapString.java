@@ -0,0 +1,88 @@
+package com.tejas.redis.store;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * A string whose bytes live in a {@link SlabArena} slot instead of a heap array: the heap
+ * only keeps this handle. To clients it is an ordinary string; GET copies it out.
+ * <p>
+ * The slot is freed as soon as the value leaves the keyspace (overwritten, deleted, expired
+ * or evicted), under the key's map lock, and may be reused right away. Commands read under
+ * their key locks, but active expiry and eviction don't take those, so a reader may still
+ * hold a handle whose slot was just freed: {@link #bytes()} checks afterwards whether that
+ * happened, the way an optimistic read of a StampedLock is validated, and fails rather than
+ * return someone else's bytes. Point-in-time views copy these values onto the heap before
+ * they can be freed (see {@link Value#detached()}).
+ */
+final class OffHeapString implements RedisObject {
+
+    /** Heap cost of this handle. */
+    private static final int HANDLE_OVERHEAD = 32;
+
+    private final SlabArena arena;
+    private final long address;
+    private final int length;
+    private volatile boolean released;
+
+    OffHeapString(SlabArena arena, long address, int length) {
+        this.arena = arena;
+        this.address = address;
+        this.length = length;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * A heap copy of the string.
+     *
+     * @throws IllegalStateException if the slot was freed before or while it was copied
+     */
+    byte[] bytes() {
+        byte[] out = arena.read(address, length);
+        // the copy must be complete before the flag is checked, as in StampedLock.validate
+        VarHandle.acquireFence();
+        if (released) throw new IllegalStateException("value was freed while it was read");
+        return out;
+    }
+
+    @Override
+    public ValueType type() {
+        return ValueType.STRING;
+    }
+
+    @Override
+    public String encoding() {
+        return "offheap";
+    }
+
+    @Override
+    public int size() {
+        return 1;
+    }
+
+    @Override
+    public long memoryUsage() {
+        return HANDLE_OVERHEAD + SlabArena.slotSize(length);
+    }
+
+    /**
+     * A heap copy, which outlives this slot. {@link Value#frozen()} makes a plain heap string
+     * instead.
+     *
+     * @throws IllegalStateException if the slot was freed before or while it was copied
+     */
+    @Override
+    public HeapString copy() {
+        return new HeapString(bytes());
+    }
+
+    /** Free the slot; later calls do nothing. Only called by whoever removed the value. */
+    @Override
+    public void release() {
+        if (released) return;
+        released = true;
+        arena.free(address, length);
+    }
+}
@@ -0,0 +1,116 @@
+package com.tejas.redis.store;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Consistent view of the keyspace as of the moment it was opened ({@link DataStore#openView()}),
+ * built without stopping writers (copy-on-write at key granularity).
+ * <p>
+ * The reader walks each shard in hash order ({@link ScanIndex}) and remembers the last key
+ * it passed. While the view is open, a writer about to change a key the walk has not passed
+ * yet first records the key's previous value with {@link #capture} (first capture wins);
+ * keys behind the walk are left alone, as they have been emitted already. When the walk
+ * reaches a key, a captured value is the one from the start of the view; otherwise the live
+ * value still is. Keys deleted before the walk reached them are emitted from the captures
+ * at the end, and keys created after the view was opened are skipped. So the captures only
+ * ever hold keys written during the walk, ahead of it.
+ * <p>
+ * A view can be walked once and must be closed so writers stop capturing.
+ */
+public final class PointInTimeView implements AutoCloseable {
+
+    /** Marks keys that did not exist when the view was opened. */
+    private static final Value ABSENT = new Value(new byte[0], 0);
+    /** Walk position of a shard that has been walked completely. */
+    private static final ByteKey DONE = ByteKey.of("");
+
+    // keys are unique across shards, so one map serves all of them
+    private final ConcurrentHashMap<ByteKey, Value> captured = new ConcurrentHashMap<>();
+    // per shard: the last key the walk has claimed, null before it starts, DONE after
+    private final AtomicReferenceArray<ByteKey> passed;
+    private final DataStore store;
+    private final Shard[] shards;
+
+    PointInTimeView(DataStore store, Shard[] shards) {
+        this.store = store;
+        this.shards = shards;
+        this.passed = new AtomicReferenceArray<>(shards.length);
+    }
+
+    /**
+     * Called by writers, under the key's map lock and before the mutation, with the value
+     * being replaced or removed.
+     */
+    void capture(int shard, ByteKey key, Value old) {
+        if (behindWalk(shard, key) || captured.containsKey(key)) return;
+        captured.putIfAbsent(key, old == null ? ABSENT : old.detached());
+    }
+
+    /**
+     * Called by writers that are about to change a collection in place, under the key's map
+     * lock: the view needs a frozen copy, but only the first time.
+     */
+    void captureInPlace(int shard, ByteKey key, Value old) {
+        if (!behindWalk(shard, key) && !captured.containsKey(key)) captured.putIfAbsent(key, old.frozen());
+    }
+
+    /**
+     * Whether the walk has claimed key already. The walk moves its position under the lock
+     * of the key it claims, so for that key the answer is exact; for any other it can only
+     * be too early, which costs a needless capture.
+     */
+    private boolean behindWalk(int shard, ByteKey key) {
+        ByteKey last = passed.get(shard);
+        if (last == null) return false;
+        return last == DONE || ScanIndex.HASH_ORDER.compare(key, last) <= 0;
+    }
+
+    /** Number of values held for the walk; keys written ahead of it, not yet reached. */
+    int capturedKeys() {
+        return captured.size();
+    }
+
+    /** Visit every key as it was when the view was opened, each exactly once. */
+    public void forEach(DataStore.EntryVisitor visitor) throws IOException {
+        for (Shard shard : shards) {
+            for (ByteKey key : shard.keysInHashOrder()) {
+                Value original = claim(shard, key);
+                if (original != null && original != ABSENT) visitor.visit(key, original);
+            }
+            passed.set(shard.index(), DONE);
+        }
+        // keys that existed at the start but were removed before the walk got to them
+        for (Map.Entry<ByteKey, Value> e : captured.entrySet()) {
+            if (e.getValue() != ABSENT) visitor.visit(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Move the walk past key and take its value from the start of the view: the captured
+     * one if a writer got there first, else the live one. Collections change in place and
+     * off-heap strings are freed once replaced, so that is done under the key's map lock,
+     * where no writer can be halfway through changing or removing the value.
+     *
+     * @return the original value, ABSENT, or null if the key is gone and any original is
+     * left in the captures
+     */
+    private Value claim(Shard shard, ByteKey key) {
+        Value[] original = new Value[1];
+        shard.map().computeIfPresent(key, (k, v) -> {
+            Value prev = captured.remove(k);
+            original[0] = prev != null ? prev : v.frozen();
+            passed.set(shard.index(), k);
+            return v;
+        });
+        if (original[0] == null) passed.set(shard.index(), key);
+        return original[0];
+    }
+
+    @Override
+    public void close() {
+        store.closeView(this);
+    }
+}
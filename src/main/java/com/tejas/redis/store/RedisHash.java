@@ -0,0 +1,125 @@
+package com.tejas.redis.store;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Hash value. Small hashes are a {@link Listpack} of alternating fields and values; past
+ * {@link #MAX_LISTPACK_ENTRIES} fields or a field or value longer than
+ * {@link #MAX_LISTPACK_VALUE} bytes they become a hash table for good.
+ */
+public final class RedisHash implements RedisObject {
+
+    /** Redis' hash-max-listpack-entries and hash-max-listpack-value. */
+    static final int MAX_LISTPACK_ENTRIES = 128;
+    static final int MAX_LISTPACK_VALUE = 64;
+    /** HashMap node and table slot, ByteKey and two array headers per field. */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private Listpack lp = new Listpack();
+    private HashMap<ByteKey, byte[]> table; // non-null once converted
+    private long tableBytes;
+
+    @Override
+    public ValueType type() {
+        return ValueType.HASH;
+    }
+
+    @Override
+    public String encoding() {
+        return table == null ? "listpack" : "hashtable";
+    }
+
+    @Override
+    public int size() {
+        return table == null ? lp.size() / 2 : table.size();
+    }
+
+    @Override
+    public long memoryUsage() {
+        return table == null ? lp.bytes() : tableBytes;
+    }
+
+    /** @return true if the field is new, false if an existing value was replaced */
+    public boolean put(byte[] field, byte[] value) {
+        if (table == null && (field.length > MAX_LISTPACK_VALUE || value.length > MAX_LISTPACK_VALUE)) convert();
+        if (table == null) {
+            int pos = lp.find(field, 2);
+            if (pos >= 0) {
+                lp.replace(lp.next(pos), value);
+                return false;
+            }
+            if (size() < MAX_LISTPACK_ENTRIES) {
+                lp.insert(lp.end(), field);
+                lp.insert(lp.end(), value);
+                return true;
+            }
+            convert();
+        }
+        byte[] old = table.put(ByteKey.of(field), value);
+        if (old == null) {
+            tableBytes += ENTRY_OVERHEAD + field.length + value.length;
+            return true;
+        }
+        tableBytes += value.length - old.length;
+        return false;
+    }
+
+    /** @return the value, or null if the field is absent */
+    public byte[] get(byte[] field) {
+        if (table != null) return table.get(ByteKey.of(field));
+        int pos = lp.find(field, 2);
+        return pos < 0 ? null : lp.get(lp.next(pos));
+    }
+
+    /** @return true if the field existed */
+    public boolean remove(byte[] field) {
+        if (table != null) {
+            byte[] old = table.remove(ByteKey.of(field));
+            if (old == null) return false;
+            tableBytes -= ENTRY_OVERHEAD + field.length + old.length;
+            return true;
+        }
+        int pos = lp.find(field, 2);
+        if (pos < 0) return false;
+        lp.delete(pos); // the value moves up to pos
+        lp.delete(pos);
+        return true;
+    }
+
+    public void forEach(BiConsumer<byte[], byte[]> visitor) {
+        if (table != null) {
+            for (Map.Entry<ByteKey, byte[]> e : table.entrySet()) visitor.accept(e.getKey().bytes(), e.getValue());
+            return;
+        }
+        for (int pos = lp.head(); pos < lp.end(); ) {
+            int value = lp.next(pos);
+            visitor.accept(lp.get(pos), lp.get(value));
+            pos = lp.next(value);
+        }
+    }
+
+    private void convert() {
+        HashMap<ByteKey, byte[]> converted = new HashMap<>();
+        forEach((f, v) -> {
+            converted.put(ByteKey.of(f), v);
+            tableBytes += ENTRY_OVERHEAD + f.length + v.length;
+        });
+        table = converted;
+        lp = null;
+    }
+
+    @Override
+    public RedisHash copy() {
+        RedisHash c = new RedisHash();
+        if (table == null) {
+            c.lp = lp.copy();
+        } else {
+            c.lp = null;
+            c.table = new HashMap<>(table);
+            c.tableBytes = tableBytes;
+        }
+        return c;
+    }
+}
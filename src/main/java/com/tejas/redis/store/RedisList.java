@@ -0,0 +1,124 @@
+package com.tejas.redis.store;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * List value. Small lists are a {@link Listpack}; past {@link #MAX_LISTPACK_ENTRIES}
+ * elements or an element longer than {@link #MAX_LISTPACK_VALUE} bytes the list is
+ * converted to a deque of arrays ("linkedlist") and stays that way.
+ */
+public final class RedisList implements RedisObject {
+
+    /** Like Redis' list-max-listpack-size, expressed as entries and element size. */
+    static final int MAX_LISTPACK_ENTRIES = 128;
+    static final int MAX_LISTPACK_VALUE = 64;
+    /** Deque slot plus array header per element. */
+    private static final int NODE_OVERHEAD = 24;
+
+    private Listpack lp = new Listpack();
+    private ArrayDeque<byte[]> deque; // non-null once converted
+    private long dequeBytes;
+
+    @Override
+    public ValueType type() {
+        return ValueType.LIST;
+    }
+
+    @Override
+    public String encoding() {
+        return deque == null ? "listpack" : "linkedlist";
+    }
+
+    @Override
+    public int size() {
+        return deque == null ? lp.size() : deque.size();
+    }
+
+    @Override
+    public long memoryUsage() {
+        return deque == null ? lp.bytes() : dequeBytes;
+    }
+
+    public void push(boolean left, byte[] element) {
+        if (deque == null && (lp.size() >= MAX_LISTPACK_ENTRIES || element.length > MAX_LISTPACK_VALUE)) convert();
+        if (deque == null) {
+            lp.insert(left ? lp.head() : lp.end(), element);
+            return;
+        }
+        if (left) deque.addFirst(element);
+        else deque.addLast(element);
+        dequeBytes += NODE_OVERHEAD + element.length;
+    }
+
+    /** @return the removed element, or null if empty */
+    public byte[] pop(boolean left) {
+        if (deque == null) {
+            if (lp.size() == 0) return null;
+            int pos = left ? lp.head() : lp.last();
+            byte[] v = lp.get(pos);
+            lp.delete(pos);
+            return v;
+        }
+        byte[] v = left ? deque.pollFirst() : deque.pollLast();
+        if (v != null) dequeBytes -= NODE_OVERHEAD + v.length;
+        return v;
+    }
+
+    /**
+     * Visit the elements from start to stop inclusive; negative indexes count from the end,
+     * as in LRANGE.
+     */
+    public void range(long start, long stop, Consumer<byte[]> visitor) {
+        int n = size();
+        if (start < 0) start = Math.max(0, n + start);
+        if (stop < 0) stop = n + stop;
+        if (stop >= n) stop = n - 1;
+        if (start > stop) return;
+        if (deque == null) {
+            int pos = lp.pos((int) start);
+            for (long i = start; i <= stop; i++, pos = lp.next(pos)) visitor.accept(lp.get(pos));
+            return;
+        }
+        if (start <= n / 2) {
+            Iterator<byte[]> it = deque.iterator();
+            for (long i = 0; i < start; i++) it.next();
+            for (long i = start; i <= stop; i++) visitor.accept(it.next());
+            return;
+        }
+        // nearer the tail, e.g. LRANGE key -10 -1: walk in from there and replay in order
+        Iterator<byte[]> it = deque.descendingIterator();
+        for (long i = n - 1; i > stop; i--) it.next();
+        byte[][] window = new byte[(int) (stop - start + 1)][];
+        for (int i = window.length - 1; i >= 0; i--) window[i] = it.next();
+        for (byte[] v : window) visitor.accept(v);
+    }
+
+    public void forEach(Consumer<byte[]> visitor) {
+        range(0, -1, visitor);
+    }
+
+    private void convert() {
+        deque = new ArrayDeque<>(Math.max(16, lp.size() * 2));
+        for (int pos = lp.head(); pos < lp.end(); pos = lp.next(pos)) {
+            byte[] v = lp.get(pos);
+            deque.addLast(v);
+            dequeBytes += NODE_OVERHEAD + v.length;
+        }
+        lp = null;
+    }
+
+    @Override
+    public RedisList copy() {
+        RedisList c = new RedisList();
+        if (deque == null) {
+            c.lp = lp.copy();
+        } else {
+            c.lp = null;
+            c.deque = new ArrayDeque<>(deque); // elements are never modified in place
+            c.dequeBytes = dequeBytes;
+        }
+        return c;
+    }
+}
@@ -0,0 +1,35 @@
+package com.tejas.redis.store;
+
+/**
+ * A value that is mutated in place: a collection (list, hash, set or sorted set) or an
+ * integer-encoded string ({@link Counter}); or one whose storage needs managing, an
+ * {@link OffHeapString}. Collections are only changed through
+ * {@link DataStore#read} and {@link DataStore#modify}, counters through the incr methods;
+ * all of these run under the key's map lock, and the objects are not thread-safe on their own.
+ */
+public interface RedisObject {
+
+    ValueType type();
+
+    /** Current encoding as reported by OBJECT ENCODING, e.g. "listpack" or "hashtable". */
+    String encoding();
+
+    /** Number of elements (for hashes: fields). */
+    int size();
+
+    /** Approximate heap used by the contents; kept up to date incrementally. */
+    long memoryUsage();
+
+    /** Deep copy, used to freeze the value for a point-in-time view before it is changed. */
+    RedisObject copy();
+
+    /**
+     * Called once the value has been deleted from the keyspace (by DEL, or later on the
+     * lazy-free thread for UNLINK) to give back anything the GC does not reclaim by itself.
+     * Off-heap strings are released by their shard however they leave, so this may run twice.
+     * Heap-only values have nothing to do. Copies frozen for point-in-time views must stay
+     * readable.
+     */
+    default void release() {
+    }
+}
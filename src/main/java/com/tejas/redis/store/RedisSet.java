@@ -0,0 +1,127 @@
+package com.tejas.redis.store;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.function.Consumer;
+
+/**
+ * Set value with three encodings, as in Redis: an {@link IntSet} while every member is an
+ * integer (up to {@link #MAX_INTSET_ENTRIES}), a {@link Listpack} while the set is small,
+ * and a hash set beyond that. Conversions only go towards the hash set.
+ */
+public final class RedisSet implements RedisObject {
+
+    /** Redis' set-max-intset-entries, set-max-listpack-entries and set-max-listpack-value. */
+    static final int MAX_INTSET_ENTRIES = 512;
+    static final int MAX_LISTPACK_ENTRIES = 128;
+    static final int MAX_LISTPACK_VALUE = 64;
+    /** HashMap node and table slot, ByteKey and array header per member. */
+    private static final int ENTRY_OVERHEAD = 72;
+
+    private IntSet ints = new IntSet();
+    private Listpack lp;
+    private HashSet<ByteKey> table;
+    private long tableBytes;
+
+    @Override
+    public ValueType type() {
+        return ValueType.SET;
+    }
+
+    @Override
+    public String encoding() {
+        return ints != null ? "intset" : lp != null ? "listpack" : "hashtable";
+    }
+
+    @Override
+    public int size() {
+        return ints != null ? ints.size() : lp != null ? lp.size() : table.size();
+    }
+
+    @Override
+    public long memoryUsage() {
+        return ints != null ? ints.bytes() : lp != null ? lp.bytes() : tableBytes;
+    }
+
+    /** @return true if the member was added */
+    public boolean add(byte[] member) {
+        if (ints != null) {
+            if (IntSet.isCanonical(member)) {
+                long v = IntSet.parse(member);
+                if (ints.contains(v)) return false;
+                if (ints.size() < MAX_INTSET_ENTRIES) return ints.add(v);
+            }
+            if (ints.size() < MAX_LISTPACK_ENTRIES && member.length <= MAX_LISTPACK_VALUE) toListpack();
+            else toTable();
+        }
+        if (lp != null) {
+            if (lp.find(member, 1) >= 0) return false;
+            if (lp.size() < MAX_LISTPACK_ENTRIES && member.length <= MAX_LISTPACK_VALUE) {
+                lp.insert(lp.end(), member);
+                return true;
+            }
+            toTable();
+        }
+        if (!table.add(ByteKey.of(member))) return false;
+        tableBytes += ENTRY_OVERHEAD + member.length;
+        return true;
+    }
+
+    /** @return true if the member was present */
+    public boolean remove(byte[] member) {
+        if (ints != null) return IntSet.isCanonical(member) && ints.remove(IntSet.parse(member));
+        if (lp != null) {
+            int pos = lp.find(member, 1);
+            if (pos < 0) return false;
+            lp.delete(pos);
+            return true;
+        }
+        if (!table.remove(ByteKey.of(member))) return false;
+        tableBytes -= ENTRY_OVERHEAD + member.length;
+        return true;
+    }
+
+    public boolean contains(byte[] member) {
+        if (ints != null) return IntSet.isCanonical(member) && ints.contains(IntSet.parse(member));
+        if (lp != null) return lp.find(member, 1) >= 0;
+        return table.contains(ByteKey.of(member));
+    }
+
+    public void forEach(Consumer<byte[]> visitor) {
+        if (ints != null) {
+            for (int i = 0; i < ints.size(); i++) visitor.accept(Long.toString(ints.get(i)).getBytes(StandardCharsets.US_ASCII));
+        } else if (lp != null) {
+            for (int pos = lp.head(); pos < lp.end(); pos = lp.next(pos)) visitor.accept(lp.get(pos));
+        } else {
+            for (ByteKey k : table) visitor.accept(k.bytes());
+        }
+    }
+
+    private void toListpack() {
+        Listpack converted = new Listpack();
+        forEach(m -> converted.insert(converted.end(), m));
+        lp = converted;
+        ints = null;
+    }
+
+    private void toTable() {
+        HashSet<ByteKey> converted = new HashSet<>();
+        forEach(m -> {
+            converted.add(ByteKey.of(m));
+            tableBytes += ENTRY_OVERHEAD + m.length;
+        });
+        table = converted;
+        ints = null;
+        lp = null;
+    }
+
+    @Override
+    public RedisSet copy() {
+        RedisSet c = new RedisSet();
+        c.ints = ints == null ? null : ints.copy();
+        c.lp = lp == null ? null : lp.copy();
+        c.table = table == null ? null : new HashSet<>(table);
+        c.tableBytes = tableBytes;
+        return c;
+    }
+}
@@ -0,0 +1,226 @@
+package com.tejas.redis.store;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sorted set value, ordered by score and then member bytes. Small sorted sets are a
+ * {@link Listpack} of member/score pairs kept in order; past {@link #MAX_LISTPACK_ENTRIES}
+ * members or a member longer than {@link #MAX_LISTPACK_VALUE} bytes they become a
+ * {@link ZSkipList} plus a member-to-score map, as in Redis.
+ */
+public final class RedisZSet implements RedisObject {
+
+    /** Redis' zset-max-listpack-entries and zset-max-listpack-value. */
+    static final int MAX_LISTPACK_ENTRIES = 128;
+    static final int MAX_LISTPACK_VALUE = 64;
+    /** Skiplist node with ~1.33 levels, map node, ByteKey, boxed score and array header. */
+    private static final int ENTRY_OVERHEAD = 160;
+
+    /** What {@link #add} did. */
+    public static final int NOT_CHANGED = 0, ADDED = 1, UPDATED = 2;
+
+    /** Receives members of a range in order. */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(byte[] member, double score);
+    }
+
+    /**
+     * Score as replied to clients and logged: integers without a fraction, inf/-inf, and
+     * otherwise Java's shortest round-trip decimal form, so it parses back to the same double.
+     */
+    public static String formatScore(double score) {
+        if (score == Double.POSITIVE_INFINITY) return "inf";
+        if (score == Double.NEGATIVE_INFINITY) return "-inf";
+        if (score == Math.rint(score) && Math.abs(score) < 1e15) return Long.toString((long) score);
+        return Double.toString(score);
+    }
+
+    private Listpack lp = new Listpack();
+    private ZSkipList list; // non-null once converted
+    private HashMap<ByteKey, Double> scores;
+    private long listBytes;
+
+    @Override
+    public ValueType type() {
+        return ValueType.ZSET;
+    }
+
+    @Override
+    public String encoding() {
+        return list == null ? "listpack" : "skiplist";
+    }
+
+    @Override
+    public int size() {
+        return list == null ? lp.size() / 2 : scores.size();
+    }
+
+    @Override
+    public long memoryUsage() {
+        return list == null ? lp.bytes() : listBytes;
+    }
+
+    /**
+     * Set member's score.
+     *
+     * @param nx only add new members
+     * @param xx only update existing members
+     * @return {@link #ADDED}, {@link #UPDATED} or {@link #NOT_CHANGED}
+     */
+    public int add(double score, byte[] member, boolean nx, boolean xx) {
+        if (score == 0) score = 0.0; // one zero, so -0 and 0 order and print the same
+        if (list == null && member.length > MAX_LISTPACK_VALUE) convert();
+        if (list == null) {
+            int pos = lp.find(member, 2);
+            if (pos >= 0) {
+                if (nx) return NOT_CHANGED;
+                if (lp.doubleAt(lp.next(pos)) == score) return NOT_CHANGED;
+                lp.delete(pos);
+                lp.delete(pos);
+                insertSorted(score, member);
+                return UPDATED;
+            }
+            if (xx) return NOT_CHANGED;
+            if (size() < MAX_LISTPACK_ENTRIES) {
+                insertSorted(score, member);
+                return ADDED;
+            }
+            convert();
+        }
+        ByteKey key = ByteKey.of(member);
+        Double old = scores.get(key);
+        if (old != null) {
+            if (nx || old == score) return NOT_CHANGED;
+            list.delete(old, member);
+            list.insert(score, member);
+            scores.put(key, score);
+            return UPDATED;
+        }
+        if (xx) return NOT_CHANGED;
+        list.insert(score, member);
+        scores.put(key, score);
+        listBytes += ENTRY_OVERHEAD + member.length;
+        return ADDED;
+    }
+
+    private void insertSorted(double score, byte[] member) {
+        int pos = lp.head();
+        while (pos < lp.end()) {
+            int scorePos = lp.next(pos);
+            double s = lp.doubleAt(scorePos);
+            if (s > score || (s == score && lp.compare(pos, member) > 0)) break;
+            pos = lp.next(scorePos);
+        }
+        lp.insert(pos, member);
+        lp.insert(lp.next(pos), Listpack.encodeDouble(score));
+    }
+
+    /** @return the score, or null if member is absent */
+    public Double score(byte[] member) {
+        if (list != null) return scores.get(ByteKey.of(member));
+        int pos = lp.find(member, 2);
+        return pos < 0 ? null : lp.doubleAt(lp.next(pos));
+    }
+
+    /** @return true if the member was present */
+    public boolean remove(byte[] member) {
+        if (list == null) {
+            int pos = lp.find(member, 2);
+            if (pos < 0) return false;
+            lp.delete(pos);
+            lp.delete(pos);
+            return true;
+        }
+        Double old = scores.remove(ByteKey.of(member));
+        if (old == null) return false;
+        list.delete(old, member);
+        listBytes -= ENTRY_OVERHEAD + member.length;
+        return true;
+    }
+
+    /** Members by rank from start to stop inclusive; negative ranks count from the end, as in ZRANGE. */
+    public void rangeByRank(long start, long stop, EntryVisitor visitor) {
+        int n = size();
+        if (start < 0) start = Math.max(0, n + start);
+        if (stop < 0) stop = n + stop;
+        if (stop >= n) stop = n - 1;
+        if (start > stop) return;
+        if (list == null) {
+            int pos = lp.pos((int) start * 2);
+            for (long i = start; i <= stop; i++) {
+                int scorePos = lp.next(pos);
+                visitor.visit(lp.get(pos), lp.doubleAt(scorePos));
+                pos = lp.next(scorePos);
+            }
+            return;
+        }
+        ZSkipList.Node node = list.byRank(start + 1);
+        for (long i = start; i <= stop; i++, node = node.next()) visitor.visit(node.member, node.score);
+    }
+
+    /**
+     * Members with min <= score <= max (bounds optionally exclusive), skipping offset of
+     * them and visiting at most count (negative: all), as in ZRANGEBYSCORE ... LIMIT.
+     */
+    public void rangeByScore(double min, boolean minExclusive, double max, boolean maxExclusive,
+                             long offset, long count, EntryVisitor visitor) {
+        if (list == null) {
+            for (int pos = lp.head(); pos < lp.end() && count != 0; ) {
+                int scorePos = lp.next(pos);
+                double s = lp.doubleAt(scorePos);
+                if (maxExclusive ? s >= max : s > max) break;
+                if (minExclusive ? s > min : s >= min) {
+                    if (offset > 0) offset--;
+                    else {
+                        visitor.visit(lp.get(pos), s);
+                        count--;
+                    }
+                }
+                pos = lp.next(scorePos);
+            }
+            return;
+        }
+        for (ZSkipList.Node node = list.firstFrom(min, minExclusive); node != null && count != 0; node = node.next()) {
+            if (maxExclusive ? node.score >= max : node.score > max) break;
+            if (offset > 0) offset--;
+            else {
+                visitor.visit(node.member, node.score);
+                count--;
+            }
+        }
+    }
+
+    public void forEach(EntryVisitor visitor) {
+        rangeByRank(0, -1, visitor);
+    }
+
+    private void convert() {
+        ZSkipList converted = new ZSkipList();
+        HashMap<ByteKey, Double> map = new HashMap<>();
+        forEach((m, s) -> {
+            converted.insert(s, m);
+            map.put(ByteKey.of(m), s);
+            listBytes += ENTRY_OVERHEAD + m.length;
+        });
+        list = converted;
+        scores = map;
+        lp = null;
+    }
+
+    @Override
+    public RedisZSet copy() {
+        RedisZSet c = new RedisZSet();
+        if (list == null) {
+            c.lp = lp.copy();
+            return c;
+        }
+        c.lp = null;
+        c.list = new ZSkipList();
+        c.scores = new HashMap<>(scores);
+        for (Map.Entry<ByteKey, Double> e : scores.entrySet()) c.list.insert(e.getValue(), e.getKey().bytes());
+        c.listBytes = listBytes;
+        return c;
+    }
+}
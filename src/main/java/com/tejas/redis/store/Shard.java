@@ -0,0 +1,521 @@
+package com.tejas.redis.store;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * One partition of the keyspace. A shard owns its map, its expiry wheel, its memory
+ * accounting and its evictor, so maintenance (active expiry, eviction) only ever touches
+ * one shard and different shards can be maintained in parallel by different threads.
+ */
+final class Shard {
+
+    /** Wheel resolution and size: 100 ms ticks, ~100 s per revolution. */
+    private static final long EXPIRY_TICK_MS = 100;
+    private static final int EXPIRY_SLOTS = 1024;
+    private static final PointInTimeView[] NO_VIEWS = new PointInTimeView[0];
+    private static final int VERSION_STRIPES = 1024;
+
+    private final int index;
+    private final SlabArena arena; // null unless string values are kept off-heap
+    private final ConcurrentHashMap<ByteKey, Value> map = new ConcurrentHashMap<>();
+    private final ScanIndex scanIndex = new ScanIndex();
+    private final ExpiryWheel expiry = new ExpiryWheel(EXPIRY_TICK_MS, EXPIRY_SLOTS, System.currentTimeMillis());
+    private final LongAdder expiredKeys = new LongAdder();
+    // expired-per-second rate, recomputed by this shard's maintenance about once a second
+    private long rateWindowStartMs = System.currentTimeMillis();
+    private long rateWindowStartCount;
+    private volatile long expiredPerSecond;
+
+    private final Evictor evictor;
+    private final LongAdder usedMemory = new LongAdder();
+    private final LongAdder storeMemory; // all shards' total, checked against maxmemory
+    private final LongAdder evictedKeys = new LongAdder();
+    private final LongAdder volatileKeys = new LongAdder(); // keys with a TTL, for INFO keyspace
+    // change counters for WATCH, striped by key hash: a collision can only abort a transaction needlessly
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    // point-in-time views of snapshots in progress; copy-on-write, usually empty
+    private volatile PointInTimeView[] views = NO_VIEWS;
+    // told about every changed key while set, e.g. for client-side caching; usually null
+    private volatile Consumer<ByteKey> changes;
+    // told about every evicted key while set, to log a DEL for it; usually null
+    private volatile Consumer<ByteKey> evictions;
+
+    Shard(int index, LongAdder storeMemory, EvictionPolicy policy, int samples, SlabArena arena) {
+        this.index = index;
+        this.arena = arena;
+        this.storeMemory = storeMemory;
+        this.evictor = new Evictor(policy, samples, map);
+    }
+
+    int index() {
+        return index;
+    }
+
+    ConcurrentHashMap<ByteKey, Value> map() {
+        return map;
+    }
+
+    void set(ByteKey key, byte[] value, long expiresAtMs) {
+        if (value == null) {
+            remove(key);
+            return;
+        }
+        if (expiresAtMs > 0 && expiresAtMs <= System.currentTimeMillis()) {
+            // immediate expiry: do not store
+            remove(key);
+            return;
+        }
+        Value v = stored(Value.ofString(value, expiresAtMs));
+        v.access(evictor.initialAccess());
+        Value old = put(key, v);
+        if (old != null) evictor.overwritten(old, v);
+        // an unchanged deadline (KEEPTTL) still has its entry in the wheel
+        if (expiresAtMs > 0 && (old == null || old.expiresAt() != expiresAtMs)) expiry.schedule(key, expiresAtMs);
+    }
+
+    Optional<byte[]> get(ByteKey key) {
+        while (true) {
+            Value v = live(key);
+            if (v == null) return Optional.empty();
+            evictor.touch(v);
+            try {
+                return Optional.of(v.data());
+            } catch (IllegalStateException freed) {
+                // an off-heap value expired or was evicted under us: look again
+            }
+        }
+    }
+
+    Optional<Value> getValue(ByteKey key) {
+        return Optional.ofNullable(live(key));
+    }
+
+    /** The key's value if present and not expired, removing it lazily if it has expired. */
+    private Value live(ByteKey key) {
+        Value v = map.get(key);
+        if (v == null) return null;
+        if (v.isExpired(System.currentTimeMillis())) {
+            if (remove(key, v)) expiredKeys.increment();
+            return null;
+        }
+        return v;
+    }
+
+    /** Store a fully built value, e.g. one read from a snapshot. */
+    void restore(ByteKey key, Value value) {
+        Value v = stored(value);
+        v.access(evictor.initialAccess());
+        put(key, v);
+        if (v.expiresAt() > 0) expiry.schedule(key, v.expiresAt());
+    }
+
+    /** Run fn on the collection under key while holding the key's map lock. */
+    <T extends RedisObject, R> R read(ByteKey key, Class<T> kind, Function<T, R> fn, R ifMissing) {
+        Value v = live(key);
+        if (v == null) return ifMissing;
+        if (!kind.isInstance(v.object())) throw new WrongTypeException();
+        Object[] out = {ifMissing};
+        map.computeIfPresent(key, (k, cur) -> {
+            if (!kind.isInstance(cur.object())) throw new WrongTypeException();
+            out[0] = fn.apply(kind.cast(cur.object()));
+            return cur;
+        });
+        evictor.touch(v);
+        @SuppressWarnings("unchecked") R r = (R) out[0];
+        return r;
+    }
+
+    /**
+     * Change the collection under key in place, atomically with respect to every other
+     * access to the key. A missing key is created with create (or fn is skipped and
+     * ifMissing returned when create is null); a collection left empty is deleted.
+     */
+    <T extends RedisObject, R> R modify(ByteKey key, Class<T> kind, Supplier<T> create, Function<T, R> fn, R ifMissing) {
+        PointInTimeView[] pits = views;
+        Object[] out = {ifMissing};
+        long[] delta = new long[1];
+        boolean[] expired = new boolean[1];
+        compute(key, (k, cur) -> {
+            if (cur != null && cur.isExpired(System.currentTimeMillis())) {
+                for (PointInTimeView pit : pits) pit.capture(index, k, cur);
+                delta[0] -= cur.memoryUsage(k);
+                expired[0] = true;
+                cur = null;
+            }
+            if (cur == null) {
+                if (create == null) return null;
+                T obj = create.get();
+                out[0] = fn.apply(obj);
+                if (obj.size() == 0) return null;
+                for (PointInTimeView pit : pits) pit.capture(index, k, null);
+                Value v = new Value(obj, 0);
+                v.access(evictor.initialAccess());
+                delta[0] += v.memoryUsage(k);
+                return v;
+            }
+            if (!kind.isInstance(cur.object())) throw new WrongTypeException();
+            for (PointInTimeView pit : pits) pit.captureInPlace(index, k, cur);
+            long before = cur.memoryUsage(k);
+            out[0] = fn.apply(kind.cast(cur.object()));
+            if (cur.object().size() == 0) {
+                delta[0] -= before;
+                return null;
+            }
+            delta[0] += cur.memoryUsage(k) - before;
+            evictor.touch(cur);
+            return cur;
+        });
+        account(delta[0]);
+        if (expired[0]) expiredKeys.increment();
+        @SuppressWarnings("unchecked") R r = (R) out[0];
+        return r;
+    }
+
+    /**
+     * Add delta to the integer under key (0 if missing), keeping its TTL. An int-encoded
+     * value is updated in place; a textual one is parsed once and converted.
+     *
+     * @return the new value
+     * @throws IllegalArgumentException if the value is not an integer or the result overflows
+     */
+    long incrBy(ByteKey key, long delta) {
+        PointInTimeView[] pits = views;
+        long[] out = new long[1];
+        long[] mem = new long[1];
+        boolean[] expired = new boolean[1];
+        compute(key, (k, cur) -> {
+            if (cur != null && cur.isExpired(System.currentTimeMillis())) {
+                for (PointInTimeView pit : pits) pit.capture(index, k, cur);
+                mem[0] -= cur.memoryUsage(k);
+                expired[0] = true;
+                cur = null;
+            }
+            if (cur == null) {
+                for (PointInTimeView pit : pits) pit.capture(index, k, null);
+                Value v = new Value(new Counter(delta), 0);
+                v.access(evictor.initialAccess());
+                mem[0] += v.memoryUsage(k);
+                out[0] = delta;
+                return v;
+            }
+            if (cur.object() instanceof Counter c) {
+                out[0] = add(c.get(), delta);
+                for (PointInTimeView pit : pits) pit.captureInPlace(index, k, cur);
+                c.set(out[0]);
+                evictor.touch(cur);
+                return cur;
+            }
+            byte[] text = cur.data(); // WRONGTYPE for collections
+            if (text.length > 20 || !IntSet.isCanonical(text))
+                throw new IllegalArgumentException("value is not an integer or out of range");
+            out[0] = add(IntSet.parse(text), delta);
+            for (PointInTimeView pit : pits) pit.capture(index, k, cur);
+            Value v = new Value(new Counter(out[0]), cur.expiresAt());
+            v.access(cur.access());
+            mem[0] += v.memoryUsage(k) - cur.memoryUsage(k);
+            return v;
+        });
+        account(mem[0]);
+        if (expired[0]) expiredKeys.increment();
+        return out[0];
+    }
+
+    private static long add(long a, long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException overflow) {
+            throw new IllegalArgumentException("increment or decrement would overflow");
+        }
+    }
+
+    /**
+     * Add a float increment to the number under key (0 if missing), keeping its TTL. The
+     * result is stored as text, as in Redis.
+     *
+     * @return the new value
+     */
+    Value incrByFloat(ByteKey key, double incr) {
+        PointInTimeView[] pits = views;
+        Value[] out = new Value[1];
+        long[] mem = new long[1];
+        boolean[] expired = new boolean[1];
+        compute(key, (k, prev) -> {
+            Value cur = prev;
+            if (cur != null && cur.isExpired(System.currentTimeMillis())) {
+                expired[0] = true;
+                cur = null;
+            }
+            double base = 0;
+            if (cur != null) {
+                if (cur.object() instanceof Counter c) base = c.get();
+                else base = parseFloat(cur.data());
+            }
+            double result = base + incr;
+            if (Double.isNaN(result) || Double.isInfinite(result))
+                throw new IllegalArgumentException("increment would produce NaN or Infinity");
+            for (PointInTimeView pit : pits) pit.capture(index, k, prev);
+            Value v = new Value(formatFloat(result), cur == null ? 0 : cur.expiresAt());
+            v.access(cur == null ? evictor.initialAccess() : cur.access());
+            mem[0] += v.memoryUsage(k) - (prev == null ? 0 : prev.memoryUsage(k));
+            out[0] = v;
+            return v;
+        });
+        account(mem[0]);
+        if (expired[0]) expiredKeys.increment();
+        return out[0];
+    }
+
+    private static double parseFloat(byte[] text) {
+        String s = new String(text, StandardCharsets.US_ASCII);
+        // no spaces, hex, NaN/Infinity or d/f suffixes, which Double.parseDouble would accept
+        if (s.isEmpty() || s.length() > 64 || !s.chars().allMatch(c -> (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '+' || c == 'e' || c == 'E'))
+            throw new IllegalArgumentException("value is not a valid float");
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("value is not a valid float");
+        }
+    }
+
+    /** Plain decimal without exponent or trailing zeros, like Redis' INCRBYFLOAT output. */
+    private static byte[] formatFloat(double d) {
+        String s = d == Math.rint(d) && Math.abs(d) < 1e17
+                ? Long.toString((long) d)
+                : BigDecimal.valueOf(d).stripTrailingZeros().toPlainString();
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Remove key; returns its value, or null if it was missing or already expired. */
+    Value del(ByteKey key) {
+        Value v = remove(key);
+        return v == null || v.isExpired(System.currentTimeMillis()) ? null : v;
+    }
+
+    void clear() {
+        for (ByteKey key : map.keySet()) remove(key);
+    }
+
+    /**
+     * Evict one sampled key of this shard, for {@link DataStore#ensureMemory()}.
+     *
+     * @return false if the sample held nothing evictable (or the shard is empty)
+     */
+    boolean evictOne() {
+        Map.Entry<ByteKey, Value> victim = evictor.pickVictim(System.currentTimeMillis());
+        if (victim == null) return false;
+        if (remove(victim.getKey(), victim.getValue(), evictions)) evictedKeys.increment();
+        return true;
+    }
+
+    private void account(long bytes) {
+        usedMemory.add(bytes);
+        storeMemory.add(bytes);
+    }
+
+    /*
+     * Every mutation of the map goes through put/remove below (or compute, for in-place
+     * changes): they keep the memory accounting and the scan index right and, while a
+     * point-in-time view is open, capture the previous value atomically with the change
+     * (inside the map's per-bin lock).
+     */
+
+    private Value put(ByteKey key, Value v) {
+        PointInTimeView[] pits = views;
+        Value[] prev = new Value[1];
+        compute(key, (k, o) -> {
+            for (PointInTimeView pit : pits) pit.capture(index, k, o);
+            prev[0] = o;
+            return v;
+        });
+        Value old = prev[0];
+        account(v.memoryUsage(key) - (old == null ? 0 : old.memoryUsage(key)));
+        return old;
+    }
+
+    private Value remove(ByteKey key) {
+        PointInTimeView[] pits = views;
+        Value[] prev = new Value[1];
+        compute(key, (k, o) -> {
+            if (o == null) return null;
+            for (PointInTimeView pit : pits) pit.capture(index, k, o);
+            prev[0] = o;
+            return null;
+        });
+        Value old = prev[0];
+        if (old != null) account(-old.memoryUsage(key));
+        return old;
+    }
+
+    private boolean remove(ByteKey key, Value expected) {
+        return remove(key, expected, null);
+    }
+
+    /**
+     * Remove key if it still maps to expected. then, if given, is told under the key's bin
+     * lock, so whatever it logs comes before the log entry of a write that re-creates the key.
+     */
+    private boolean remove(ByteKey key, Value expected, Consumer<ByteKey> then) {
+        PointInTimeView[] pits = views;
+        boolean[] hit = new boolean[1];
+        compute(key, (k, o) -> {
+            if (o != expected) return o;
+            for (PointInTimeView pit : pits) pit.capture(index, k, o);
+            if (then != null) then.accept(k);
+            hit[0] = true;
+            return null;
+        });
+        if (hit[0]) account(-expected.memoryUsage(key));
+        return hit[0];
+    }
+
+    /**
+     * map.compute that also keeps the scan index in step: a key entering or leaving the map
+     * enters or leaves the index under the same bin lock, so a concurrent re-insert can never
+     * leave them disagreeing. The count of keys with a TTL and the key's version are kept here
+     * for the same reason.
+     * An off-heap string that is replaced or removed is freed under
+     * that lock too, once views have captured it.
+     * <p>
+     * The change listener, if any, runs after the lock is released: by then every reader
+     * sees the new value, so a client told to drop the key cannot read the old one again.
+     */
+    private void compute(ByteKey key, BiFunction<ByteKey, Value, Value> fn) {
+        Consumer<ByteKey> listener = changes;
+        if (listener == null) {
+            map.compute(key, (k, before) -> change(k, before, fn.apply(k, before)));
+            return;
+        }
+        boolean[] changed = new boolean[1];
+        map.compute(key, (k, before) -> {
+            Value after = fn.apply(k, before);
+            changed[0] = before != null || after != null;
+            return change(k, before, after);
+        });
+        if (changed[0]) listener.accept(key);
+    }
+
+    private Value change(ByteKey k, Value before, Value after) {
+        if (before == null && after != null) scanIndex.add(k);
+        else if (before != null && after == null) scanIndex.remove(k);
+        int ttlDelta = (after != null && after.expiresAt() > 0 ? 1 : 0) - (before != null && before.expiresAt() > 0 ? 1 : 0);
+        if (ttlDelta != 0) volatileKeys.add(ttlDelta);
+        if (before != null || after != null) versions.incrementAndGet(k.hashCode() & (VERSION_STRIPES - 1));
+        if (before != after && before != null && before.object() instanceof OffHeapString s) s.release();
+        return after;
+    }
+
+    void changes(Consumer<ByteKey> listener) {
+        this.changes = listener;
+    }
+
+    void evictions(Consumer<ByteKey> listener) {
+        this.evictions = listener;
+    }
+
+    /** A plain string moved into the arena when values are kept off-heap, else v itself. */
+    private Value stored(Value v) {
+        if (arena == null || v.object() != null) return v;
+        byte[] data = v.data();
+        return SlabArena.fits(data.length) ? new Value(arena.store(data), v.expiresAt()) : v;
+    }
+
+    synchronized void addView(PointInTimeView pit) {
+        PointInTimeView[] next = Arrays.copyOf(views, views.length + 1);
+        next[views.length] = pit;
+        views = next;
+    }
+
+    synchronized void removeView(PointInTimeView pit) {
+        views = Arrays.stream(views).filter(v -> v != pit).toArray(PointInTimeView[]::new);
+    }
+
+    /**
+     * One step of active expiry for this shard, from one thread at a time: reclaims keys
+     * whose deadline has passed, spending at most budgetNanos.
+     */
+    int activeExpireCycle(long budgetNanos) {
+        long now = System.currentTimeMillis();
+        int n = expiry.advance(now, budgetNanos, this::expireIfDue, this::hasDeadline);
+        if (now - rateWindowStartMs >= 1000) {
+            long total = expiredKeys.sum();
+            expiredPerSecond = (total - rateWindowStartCount) * 1000 / (now - rateWindowStartMs);
+            rateWindowStartCount = total;
+            rateWindowStartMs = now;
+        }
+        return n;
+    }
+
+    /** Only removes the key if it still carries the deadline the wheel entry was made for. */
+    private boolean expireIfDue(ByteKey key, long expiresAtMs, long nowMs) {
+        Value v = map.get(key);
+        if (v == null || v.expiresAt() != expiresAtMs || !v.isExpired(nowMs)) return false;
+        if (!remove(key, v)) return false;
+        expiredKeys.increment();
+        return true;
+    }
+
+    private boolean hasDeadline(ByteKey key, long expiresAtMs) {
+        Value v = map.get(key);
+        return v != null && v.expiresAt() == expiresAtMs;
+    }
+
+    long expiredKeys() {
+        return expiredKeys.sum();
+    }
+
+    long expiredPerSecond() {
+        return expiredPerSecond;
+    }
+
+    long expiryLagMs() {
+        return expiry.lagMs();
+    }
+
+    /** Entries in the expiry wheel, stale ones included; for tests. */
+    int expiryEntries() {
+        return expiry.size();
+    }
+
+    long usedMemory() {
+        return usedMemory.sum();
+    }
+
+    long evictedKeys() {
+        return evictedKeys.sum();
+    }
+
+    /** Changes whenever the key is written, deleted, expired or evicted; reclaims it first if it is due. */
+    long version(ByteKey key) {
+        live(key);
+        return versions.get(key.hashCode() & (VERSION_STRIPES - 1));
+    }
+
+    long volatileKeys() {
+        return volatileKeys.sum();
+    }
+
+    /** This shard's keys in hash order, see {@link ScanIndex#keys()}. */
+    Iterable<ByteKey> keysInHashOrder() {
+        return scanIndex.keys();
+    }
+
+    /** See {@link ScanIndex#scan}. */
+    long scan(long from, int count, Consumer<ByteKey> visitor) {
+        return scanIndex.scan(from, count, visitor);
+    }
+
+    int size() {
+        return map.size();
+    }
+}
@@ -0,0 +1,134 @@
+package com.tejas.redis.store;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Off-heap memory for string values, handed out by a slab allocator like memcached's.
+ * <p>
+ * Memory comes in 1 MB pages of direct memory, each dedicated to one size class and cut into
+ * equal slots; the classes grow by a factor of 1.25 from 32 bytes to a whole page, so a value
+ * wastes at most a fifth of its slot. Freed slots go onto their class's free list and are
+ * reused before the class takes a new page. Pages are never given back, as in memcached: a
+ * dataset that shrinks keeps its peak footprint, but nothing is ever moved or compacted.
+ * <p>
+ * A slot is addressed by a long: the page index in the high 32 bits, the byte offset in the
+ * low ones. Allocation and free lock only their size class; reads and writes of a slot take
+ * no lock at all, since a slot has one owner at a time (see {@link OffHeapString}).
+ */
+final class SlabArena {
+
+    static final int PAGE_SIZE = 1 << 20;
+    private static final int MIN_SLOT = 32;
+    private static final double GROWTH = 1.25;
+    private static final int[] SLOT_SIZES = slotSizes();
+
+    private final SizeClass[] classes = new SizeClass[SLOT_SIZES.length];
+    // copy-on-write; a page is published here before any of its slots is handed out
+    private volatile ByteBuffer[] pages = new ByteBuffer[0];
+    private final LongAdder used = new LongAdder();
+
+    SlabArena() {
+        for (int i = 0; i < classes.length; i++) classes[i] = new SizeClass(SLOT_SIZES[i]);
+    }
+
+    private static int[] slotSizes() {
+        int[] sizes = new int[64];
+        int n = 0;
+        for (double size = MIN_SLOT; size < PAGE_SIZE; size *= GROWTH) {
+            int slot = ((int) Math.ceil(size) + 7) & ~7; // 8-byte aligned slots
+            if (n == 0 || slot > sizes[n - 1]) sizes[n++] = slot;
+        }
+        sizes[n++] = PAGE_SIZE;
+        return Arrays.copyOf(sizes, n);
+    }
+
+    /** Whether a value of this many bytes fits in a slot; larger ones stay on the heap. */
+    static boolean fits(int length) {
+        return length <= PAGE_SIZE;
+    }
+
+    /** Size of the slot a value of this many bytes occupies. */
+    static int slotSize(int length) {
+        return SLOT_SIZES[classOf(length)];
+    }
+
+    private static int classOf(int length) {
+        int i = Arrays.binarySearch(SLOT_SIZES, length);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    /** Copy data into a fresh slot. */
+    OffHeapString store(byte[] data) {
+        long address = allocate(data.length);
+        pages[(int) (address >>> 32)].put((int) address, data, 0, data.length);
+        return new OffHeapString(this, address, data.length);
+    }
+
+    /** Copy length bytes out of the slot at address. */
+    byte[] read(long address, int length) {
+        byte[] out = new byte[length];
+        pages[(int) (address >>> 32)].get((int) address, out, 0, length);
+        return out;
+    }
+
+    private long allocate(int length) {
+        SizeClass c = classes[classOf(length)];
+        long address;
+        synchronized (c) {
+            if (c.freeCount > 0) {
+                address = c.free[--c.freeCount];
+            } else {
+                if (c.next + c.slotSize > PAGE_SIZE) {
+                    c.page = newPage();
+                    c.next = 0;
+                }
+                address = (long) c.page << 32 | c.next;
+                c.next += c.slotSize;
+            }
+        }
+        used.add(c.slotSize);
+        return address;
+    }
+
+    /** Give a slot back; the caller must make sure nobody can reach it any more. */
+    void free(long address, int length) {
+        SizeClass c = classes[classOf(length)];
+        synchronized (c) {
+            if (c.freeCount == c.free.length) c.free = Arrays.copyOf(c.free, c.free.length * 2);
+            c.free[c.freeCount++] = address;
+        }
+        used.add(-c.slotSize);
+    }
+
+    private synchronized int newPage() {
+        ByteBuffer page = ByteBuffer.allocateDirect(PAGE_SIZE);
+        ByteBuffer[] next = Arrays.copyOf(pages, pages.length + 1);
+        next[pages.length] = page;
+        pages = next;
+        return pages.length - 1;
+    }
+
+    /** Direct memory taken by pages so far. */
+    long allocated() {
+        return (long) pages.length * PAGE_SIZE;
+    }
+
+    /** Bytes of slots currently holding values. */
+    long used() {
+        return used.sum();
+    }
+
+    private static final class SizeClass {
+        final int slotSize;
+        int page = -1;
+        int next = PAGE_SIZE; // bump pointer in the current page; full until the first page
+        long[] free = new long[16];
+        int freeCount;
+
+        SizeClass(int slotSize) {
+            this.slotSize = slotSize;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.tejas.redis.store;
+
+import java.util.Locale;
+
+/**
+ * Where DataStore keeps string values (the --storage option).
+ */
+public enum StorageEngine {
+    /** Each value's bytes in its own heap array. */
+    HEAP,
+    /**
+     * Value bytes in a {@link SlabArena} outside the Java heap; the heap only holds the keys
+     * and a small handle per value.
+     */
+    OFFHEAP;
+
+    public static StorageEngine parse(String name) {
+        return valueOf(name.replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+
+    public String configName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -5,21 +5,64 @@ import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 /**
- * Value container: stores bytes and expiry timestamp (ms since epoch).
+ * Value container: stores bytes (a string) or a collection, and expiry timestamp (ms since epoch).
  * expiresAt == 0 means no expiry.
  */
 public final class Value implements Serializable {
     private static final long serialVersionUID = 1L;
+
+    /**
+     * Rough per-entry heap cost on top of key and value bytes: ByteKey + its array header,
+     * this object + the data array header, and the ConcurrentHashMap node and table slot.
+     */
+    static final int ENTRY_OVERHEAD = 128;
+
     private final byte[] data;
+    private final RedisObject object; // null for plain strings
     private final long expiresAt; // epoch ms; 0 means no expiry
+    // eviction bookkeeping, meaning depends on the policy (see Evictor.touch); updated
+    // racily by readers, which is fine for an approximation
+    private transient int access;
 
     public Value(byte[] data, long expiresAt) {
         this.data = data;
+        this.object = null;
+        this.expiresAt = expiresAt;
+    }
+
+    public Value(RedisObject object, long expiresAt) {
+        this.data = null;
+        this.object = object;
         this.expiresAt = expiresAt;
     }
 
+    /** A string value, int-encoded when it is a canonical integer (like Redis' tryObjectEncoding). */
+    public static Value ofString(byte[] data, long expiresAt) {
+        if (data.length <= 20 && IntSet.isCanonical(data)) return new Value(new Counter(IntSet.parse(data)), expiresAt);
+        return new Value(data, expiresAt);
+    }
+
+    public ValueType type() {
+        return object == null ? ValueType.STRING : object.type();
+    }
+
+    /**
+     * The string's bytes (rendered, for an int-encoded string; copied out of the arena, for
+     * an off-heap one).
+     *
+     * @throws WrongTypeException if this is a collection
+     */
     public byte[] data() {
-        return data;
+        if (object == null) return data;
+        if (object instanceof Counter c) return c.render();
+        if (object instanceof OffHeapString s) return s.bytes();
+        if (object instanceof HeapString s) return s.bytes();
+        throw new WrongTypeException();
+    }
+
+    /** The collection, counter or off-heap string, or null for a plain string. */
+    public RedisObject object() {
+        return object;
     }
 
     public long expiresAt() {
@@ -27,7 +70,45 @@ public final class Value implements Serializable {
     }
 
     public Optional<String> asString() {
-        return data == null ? Optional.empty() : Optional.of(new String(data, StandardCharsets.UTF_8));
+        if (type() != ValueType.STRING) return Optional.empty();
+        return Optional.of(new String(data(), StandardCharsets.UTF_8));
+    }
+
+    int access() {
+        return access;
+    }
+
+    void access(int access) {
+        this.access = access;
+    }
+
+    /** Approximate heap used by this value stored under key. */
+    long memoryUsage(ByteKey key) {
+        return ENTRY_OVERHEAD + key.length() + (object == null ? data.length : object.memoryUsage());
+    }
+
+    /**
+     * This value frozen as it is now: strings are immutable and returned as is, collections
+     * are copied since they change in place, and off-heap strings are {@link #detached()}.
+     */
+    Value frozen() {
+        if (object == null) return this;
+        if (object instanceof OffHeapString) return detached();
+        Value copy = new Value(object.copy(), expiresAt);
+        copy.access = access;
+        return copy;
+    }
+
+    /**
+     * This value as it can be kept after it leaves the keyspace: an off-heap string's slot is
+     * freed then, so it is copied onto the heap; everything else is returned as is. Must be
+     * called while the value is still in place, under its key's map lock.
+     */
+    Value detached() {
+        if (!(object instanceof OffHeapString s)) return this;
+        Value copy = new Value(s.bytes(), expiresAt);
+        copy.access = access;
+        return copy;
     }
 
     public boolean isExpired(long nowMs) {
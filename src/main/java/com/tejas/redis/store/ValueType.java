@@ -0,0 +1,22 @@
+package com.tejas.redis.store;
+
+/**
+ * Kind of value stored under a key, as reported by TYPE.
+ */
+public enum ValueType {
+    STRING("string"),
+    LIST("list"),
+    HASH("hash"),
+    SET("set"),
+    ZSET("zset");
+
+    private final String redisName;
+
+    ValueType(String redisName) {
+        this.redisName = redisName;
+    }
+
+    public String redisName() {
+        return redisName;
+    }
+}
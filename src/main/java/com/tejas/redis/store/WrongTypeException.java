@@ -0,0 +1,13 @@
+package com.tejas.redis.store;
+
+/**
+ * A command was run against a key holding a different kind of value; replied as WRONGTYPE.
+ */
+public final class WrongTypeException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public WrongTypeException() {
+        super("Operation against a key holding the wrong kind of value", null, false, false);
+    }
+}
@@ -0,0 +1,165 @@
+package com.tejas.redis.store;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Skiplist ordered by (score, member), with spans for rank queries; a port of Redis'
+ * zskiplist. Members are compared as unsigned bytes.
+ */
+final class ZSkipList {
+
+    static final int MAX_LEVEL = 32;
+    private static final double P = 0.25;
+
+    static final class Node {
+        final byte[] member;
+        double score;
+        Node backward;
+        final Node[] forward;
+        final long[] span;
+
+        Node(int level, double score, byte[] member) {
+            this.member = member;
+            this.score = score;
+            this.forward = new Node[level];
+            this.span = new long[level];
+        }
+
+        Node next() {
+            return forward[0];
+        }
+    }
+
+    private final Node header = new Node(MAX_LEVEL, 0, null);
+    private Node tail;
+    private long length;
+    private int level = 1;
+
+    long length() {
+        return length;
+    }
+
+    Node first() {
+        return header.forward[0];
+    }
+
+    Node last() {
+        return tail;
+    }
+
+    private static int randomLevel() {
+        int lvl = 1;
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        while (lvl < MAX_LEVEL && r.nextDouble() < P) lvl++;
+        return lvl;
+    }
+
+    private static int compare(double s1, byte[] m1, double s2, byte[] m2) {
+        int c = Double.compare(s1, s2);
+        return c != 0 ? c : Arrays.compareUnsigned(m1, m2);
+    }
+
+    /** Insert a member that is known not to be present. */
+    Node insert(double score, byte[] member) {
+        Node[] update = new Node[MAX_LEVEL];
+        long[] rank = new long[MAX_LEVEL];
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.forward[i] != null && compare(x.forward[i].score, x.forward[i].member, score, member) < 0) {
+                rank[i] += x.span[i];
+                x = x.forward[i];
+            }
+            update[i] = x;
+        }
+        int lvl = randomLevel();
+        if (lvl > level) {
+            for (int i = level; i < lvl; i++) {
+                rank[i] = 0;
+                update[i] = header;
+                update[i].span[i] = length;
+            }
+            level = lvl;
+        }
+        x = new Node(lvl, score, member);
+        for (int i = 0; i < lvl; i++) {
+            x.forward[i] = update[i].forward[i];
+            update[i].forward[i] = x;
+            x.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = (rank[0] - rank[i]) + 1;
+        }
+        for (int i = lvl; i < level; i++) update[i].span[i]++;
+        x.backward = update[0] == header ? null : update[0];
+        if (x.forward[0] != null) x.forward[0].backward = x;
+        else tail = x;
+        length++;
+        return x;
+    }
+
+    /** @return false if (score, member) was not present */
+    boolean delete(double score, byte[] member) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.forward[i] != null && compare(x.forward[i].score, x.forward[i].member, score, member) < 0) {
+                x = x.forward[i];
+            }
+            update[i] = x;
+        }
+        x = x.forward[0];
+        if (x == null || x.score != score || !Arrays.equals(x.member, member)) return false;
+        for (int i = 0; i < level; i++) {
+            if (update[i].forward[i] == x) {
+                update[i].span[i] += x.span[i] - 1;
+                update[i].forward[i] = x.forward[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        if (x.forward[0] != null) x.forward[0].backward = x.backward;
+        else tail = x.backward;
+        while (level > 1 && header.forward[level - 1] == null) level--;
+        length--;
+        return true;
+    }
+
+    /** 1-based rank of (score, member), or 0 if absent. */
+    long rank(double score, byte[] member) {
+        long rank = 0;
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.forward[i] != null && compare(x.forward[i].score, x.forward[i].member, score, member) <= 0) {
+                rank += x.span[i];
+                x = x.forward[i];
+            }
+            if (x.member != null && x.score == score && Arrays.equals(x.member, member)) return rank;
+        }
+        return 0;
+    }
+
+    /** Node at the 1-based rank, or null. */
+    Node byRank(long rank) {
+        long traversed = 0;
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.forward[i] != null && traversed + x.span[i] <= rank) {
+                traversed += x.span[i];
+                x = x.forward[i];
+            }
+            if (traversed == rank) return x;
+        }
+        return null;
+    }
+
+    /** First node with score above min (or at min unless minExclusive), or null. */
+    Node firstFrom(double min, boolean minExclusive) {
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.forward[i] != null && (minExclusive ? x.forward[i].score <= min : x.forward[i].score < min)) {
+                x = x.forward[i];
+            }
+        }
+        return x.forward[0];
+    }
+}
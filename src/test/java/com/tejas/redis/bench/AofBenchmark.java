@@ -0,0 +1,158 @@
+package com.tejas.redis.bench;
+
+import com.tejas.redis.persistence.AppendOnlyFile;
+import com.tejas.redis.persistence.FsyncPolicy;
+import com.tejas.redis.persistence.Propagator;
+import com.tejas.redis.resp.RespBulkString;
+import com.tejas.redis.resp.RespObject;
+import com.tejas.redis.server.CommandDispatcher;
+import com.tejas.redis.server.IoMode;
+import com.tejas.redis.server.RedisServer;
+import com.tejas.redis.server.ServerConfig;
+import com.tejas.redis.store.DataStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * SET throughput through the dispatcher with the AOF off and with each fsync policy, from
+ * T threads (default 8). Under {@code always} the threads share fsyncs through group
+ * commit, so throughput should grow with the thread count rather than being capped at one
+ * fsync per command.
+ * <p>
+ * Then the same under {@code always} through an in-process server in each connection mode,
+ * with T clients sending pipelines of P SETs (default 16): a connection waits for durability
+ * once per pipeline, so the pipeline shares an fsync as well.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.tejas.redis.bench.AofBenchmark -Dexec.args="8 200000 16"}
+ */
+public class AofBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int pipeline = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        System.out.printf("threads=%d opsPerThread=%d pipeline=%d%n", threads, opsPerThread, pipeline);
+        run("off", null, threads, opsPerThread);
+        run("no", FsyncPolicy.NO, threads, opsPerThread);
+        run("everysec", FsyncPolicy.EVERYSEC, threads, opsPerThread);
+        // always is bounded by the disk; use fewer ops so the run stays short
+        run("always", FsyncPolicy.ALWAYS, threads, Math.max(1, opsPerThread / 20));
+        int port = 7470;
+        for (IoMode mode : IoMode.values()) {
+            runServer(mode, port++, threads, Math.max(pipeline, opsPerThread / 20), pipeline);
+        }
+    }
+
+    private static void run(String label, FsyncPolicy policy, int threads, int ops) throws Exception {
+        Path file = Files.createTempFile("aof-bench", ".aof");
+        try {
+            DataStore store = new DataStore();
+            Propagator propagator = new Propagator();
+            AppendOnlyFile aof = null;
+            if (policy != null) {
+                aof = new AppendOnlyFile(file, policy);
+                aof.open();
+                propagator.addSink(aof);
+            }
+            CommandDispatcher dispatcher = new CommandDispatcher(store, null, propagator, aof);
+            RespObject value = bulk("v".repeat(32));
+
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                workers[t] = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    RespObject set = bulk("SET");
+                    for (int i = 0; i < ops; i++) {
+                        dispatcher.dispatch(List.of(set, bulk("key:" + id + ":" + (i % 10_000)), value));
+                        dispatcher.awaitDurable(); // what a connection does before replying
+                    }
+                });
+                workers[t].start();
+            }
+            long t0 = System.nanoTime();
+            start.countDown();
+            for (Thread w : workers) w.join();
+            double secs = (System.nanoTime() - t0) / 1e9;
+            if (aof != null) aof.close();
+
+            long total = (long) threads * ops;
+            System.out.printf("%-9s %10.0f ops/s  (%d ops in %.2f s)%n", label, total / secs, total, secs);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void runServer(IoMode mode, int port, int clients, int ops, int pipeline) throws Exception {
+        Path dir = Files.createTempDirectory("aof-bench");
+        RedisServer server = new RedisServer(new ServerConfig().port(port).ioMode(mode).dir(dir)
+                .appendOnly(true).appendFsync(FsyncPolicy.ALWAYS));
+        Thread serverThread = new Thread(server::start, "bench-server-" + mode);
+        serverThread.start();
+        try {
+            BenchServer.awaitListening(port);
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] workers = new Thread[clients];
+            for (int c = 0; c < clients; c++) {
+                int id = c;
+                workers[c] = new Thread(() -> {
+                    try (Socket s = new Socket("localhost", port)) {
+                        s.setTcpNoDelay(true);
+                        OutputStream out = s.getOutputStream();
+                        InputStream in = s.getInputStream();
+                        start.await();
+                        for (int i = 0; i + pipeline <= ops; i += pipeline) {
+                            StringBuilder batch = new StringBuilder();
+                            for (int j = 0; j < pipeline; j++) {
+                                String key = "key:" + id + ":" + ((i + j) % 10_000);
+                                batch.append("*3\r\n$3\r\nSET\r\n$").append(key.length()).append("\r\n").append(key)
+                                        .append("\r\n$32\r\n").append("v".repeat(32)).append("\r\n");
+                            }
+                            out.write(batch.toString().getBytes(StandardCharsets.US_ASCII));
+                            // "+OK\r\n" per command
+                            for (int j = 0; j < pipeline * 5; j++) {
+                                if (in.read() == -1) throw new IOException("server closed connection");
+                            }
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                workers[c].start();
+            }
+            long t0 = System.nanoTime();
+            start.countDown();
+            for (Thread w : workers) w.join();
+            double secs = (System.nanoTime() - t0) / 1e9;
+
+            long total = (long) clients * (ops / pipeline) * pipeline;
+            System.out.printf("%-9s %10.0f ops/s  (%d ops in %.2f s, always, %s server)%n", "server", total / secs,
+                    total, secs, mode.name().toLowerCase());
+        } finally {
+            server.stop();
+            serverThread.join(5000);
+            try (var files = Files.list(dir)) {
+                for (Path f : (Iterable<Path>) files::iterator) Files.deleteIfExists(f);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static RespObject bulk(String s) {
+        return new RespBulkString(s.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,25 @@
+package com.tejas.redis.bench;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/** Helpers for benchmarks that start an in-process RedisServer. */
+final class BenchServer {
+
+    private BenchServer() {
+    }
+
+    /** Wait until something accepts connections on the local port, for up to five seconds. */
+    static void awaitListening(int port) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            try (Socket probe = new Socket()) {
+                probe.connect(new InetSocketAddress("localhost", port));
+                return;
+            } catch (IOException notYet) {
+                Thread.sleep(50);
+            }
+        }
+        throw new IllegalStateException("server did not start on port " + port);
+    }
+}
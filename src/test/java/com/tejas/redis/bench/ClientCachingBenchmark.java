@@ -0,0 +1,250 @@
+package com.tejas.redis.bench;
+
+import com.tejas.redis.server.IoMode;
+import com.tejas.redis.server.RedisServer;
+import com.tejas.redis.server.ServerConfig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reads of a hot key set with and without a client-side near-cache kept coherent by CLIENT
+ * TRACKING: every thread mixes GETs with a small share of SETs on the same keys.
+ * <ul>
+ *   <li>direct: every GET is a round trip;</li>
+ *   <li>tracking: HELLO 3 + CLIENT TRACKING ON; a GET is answered from the thread's local map
+ *       unless an invalidation push removed the key, which is then fetched (and tracked) again;</li>
+ *   <li>bcast: the same with CLIENT TRACKING ON BCAST PREFIX hot:, where the server keeps no
+ *       per-key state but every client hears about every write.</li>
+ * </ul>
+ * After the writes stop, each cache is compared with the server: a stale entry would be a
+ * coherence bug, so the expected count is 0.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.tejas.redis.bench.ClientCachingBenchmark -Dexec.args="8 200000 1000 1 nio"}
+ * (threads, operations per thread, hot keys, percent of operations that are SETs, io mode).
+ */
+public class ClientCachingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int ops = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int keys = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int writePercent = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        IoMode mode = args.length > 4 ? IoMode.valueOf(args[4].toUpperCase(Locale.ROOT)) : IoMode.NIO;
+        int port = 7461;
+
+        RedisServer server = new RedisServer(new ServerConfig().port(port).ioMode(mode));
+        Thread serverThread = new Thread(server::start, "bench-server");
+        serverThread.start();
+        BenchServer.awaitListening(port);
+        try (Client loader = new Client(port, null)) {
+            for (int k = 0; k < keys; k++) loader.send("SET", "hot:" + k, "v0");
+            loader.out.flush();
+            for (int k = 0; k < keys; k++) loader.read();
+        }
+        try {
+            System.out.printf("%d threads, %d operations each, %d hot keys, %d%% writes, io mode %s%n", threads, ops,
+                    keys, writePercent, mode.name().toLowerCase(Locale.ROOT));
+            // first round warms up the JIT; the second is the one to read
+            for (int round = 0; round < 2; round++) {
+                run("direct", null, threads, ops, keys, writePercent, port);
+                run("tracking", "ON", threads, ops, keys, writePercent, port);
+                run("bcast", "ON BCAST PREFIX hot:", threads, ops, keys, writePercent, port);
+            }
+        } finally {
+            server.stop();
+            serverThread.join(5000);
+        }
+    }
+
+    private static void run(String name, String tracking, int threads, int ops, int keys, int writePercent,
+                            int port) throws Exception {
+        Client[] clients = new Client[threads];
+        for (int t = 0; t < threads; t++) clients[t] = new Client(port, tracking);
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Client c = clients[t];
+            workers[t] = new Thread(() -> {
+                try {
+                    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                    for (int i = 0; i < ops; i++) {
+                        String key = "hot:" + rnd.nextInt(keys);
+                        if (rnd.nextInt(100) < writePercent) c.set(key, Long.toString(rnd.nextLong()));
+                        else c.get(key);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, "bench-" + name + "-" + t);
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+        double secs = (System.nanoTime() - start) / 1e9;
+
+        long hits = 0, reads = 0, stale = 0;
+        Thread.sleep(200); // let the last invalidations arrive
+        for (Client c : clients) {
+            hits += c.hits;
+            reads += c.reads;
+            stale += c.stale();
+            c.close();
+        }
+        System.out.printf(Locale.ROOT, "%-9s %10.0f ops/s (%.2f s), %.1f%% of reads local, %d stale entries%n", name,
+                threads * (double) ops / secs, secs, reads == 0 ? 0 : 100.0 * hits / reads, stale);
+    }
+
+    /** One connection with a minimal RESP3-aware reader and, when tracking, a local cache. */
+    private static final class Client implements AutoCloseable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+        private final Map<String, String> cache; // null unless tracking
+        private long hits;
+        private long reads;
+
+        Client(int port, String tracking) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setTcpNoDelay(true);
+            out = new BufferedOutputStream(socket.getOutputStream(), 16 * 1024);
+            in = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+            cache = tracking == null ? null : new HashMap<>();
+            if (tracking == null) return;
+            send("HELLO", "3");
+            String[] words = tracking.split(" ");
+            String[] cmd = new String[words.length + 2];
+            cmd[0] = "CLIENT";
+            cmd[1] = "TRACKING";
+            System.arraycopy(words, 0, cmd, 2, words.length);
+            send(cmd);
+            out.flush();
+            read();
+            String ok = read();
+            if (!"+OK".equals(ok)) throw new IOException("CLIENT TRACKING failed: " + ok);
+        }
+
+        void get(String key) throws IOException {
+            reads++;
+            if (cache != null) {
+                poll();
+                if (cache.containsKey(key)) {
+                    hits++;
+                    return;
+                }
+            }
+            send("GET", key);
+            out.flush();
+            String v = read();
+            // an invalidation read along with the reply came before it, so the value is current
+            if (cache != null) cache.put(key, v);
+        }
+
+        void set(String key, String value) throws IOException {
+            send("SET", key, value);
+            out.flush();
+            read();
+        }
+
+        /** Cached entries that disagree with the server once the writes stopped. */
+        long stale() throws IOException {
+            if (cache == null) return 0;
+            poll();
+            long stale = 0;
+            for (Map.Entry<String, String> e : Map.copyOf(cache).entrySet()) {
+                send("GET", e.getKey());
+                out.flush();
+                if (!Objects.equals(read(), e.getValue())) stale++;
+            }
+            return stale;
+        }
+
+        /** Apply invalidations that already arrived, without waiting for more. */
+        private void poll() throws IOException {
+            while (in.available() > 0) {
+                String line = readLine();
+                if (line.charAt(0) != '>') throw new IOException("unexpected reply: " + line);
+                push(line);
+            }
+        }
+
+        private void send(String... args) throws IOException {
+            StringBuilder sb = new StringBuilder().append('*').append(args.length).append("\r\n");
+            for (String a : args) sb.append('$').append(a.length()).append("\r\n").append(a).append("\r\n");
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        /** One whole reply, applying any invalidation pushes that come first. */
+        private String read() throws IOException {
+            while (true) {
+                String line = readLine();
+                if (line.charAt(0) == '>') {
+                    push(line);
+                    continue;
+                }
+                return value(line);
+            }
+        }
+
+        /** A bulk string's data, null for a null, an aggregate's header line, or the line. */
+        private String value(String line) throws IOException {
+            switch (line.charAt(0)) {
+                case '$' -> {
+                    int len = Integer.parseInt(line.substring(1));
+                    if (len < 0) return null;
+                    byte[] data = in.readNBytes(len + 2);
+                    return new String(data, 0, len, StandardCharsets.UTF_8);
+                }
+                case '_' -> {
+                    return null;
+                }
+                case '*', '%' -> {
+                    int n = Integer.parseInt(line.substring(1)) * (line.charAt(0) == '%' ? 2 : 1);
+                    for (int i = 0; i < n; i++) value(readLine());
+                    return line;
+                }
+                case '-' -> throw new IOException("server error: " + line);
+                default -> {
+                    return line;
+                }
+            }
+        }
+
+        /** An invalidate push ({@code >2 invalidate [keys]}), whose header line was read. */
+        private void push(String header) throws IOException {
+            if (!header.equals(">2") || !"invalidate".equals(value(readLine())))
+                throw new IOException("unexpected push: " + header);
+            String keys = readLine();
+            if (keys.charAt(0) == '_') {
+                cache.clear();
+                return;
+            }
+            int n = Integer.parseInt(keys.substring(1));
+            for (int i = 0; i < n; i++) cache.remove(value(readLine()));
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            for (int c = in.read(); c != '\n'; c = in.read()) {
+                if (c == -1) throw new IOException("server closed connection");
+                if (c != '\r') sb.append((char) c);
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.tejas.redis.bench;
+
+import com.tejas.redis.store.ByteKey;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.RedisHash;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Heap used by N small hashes (default 200k hashes of 10 short fields) in the listpack
+ * encoding, against the same data held as plain nested HashMaps (what the hashtable
+ * encoding costs). Heap is measured after System.gc(), so run with a fixed heap, e.g.
+ * {@code MAVEN_OPTS="-Xms2g -Xmx2g"}.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.tejas.redis.bench.CollectionMemoryBenchmark -Dexec.args="200000 10"}
+ */
+public class CollectionMemoryBenchmark {
+
+    public static void main(String[] args) {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int fields = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        System.out.printf("hashes=%d fields=%d%n", keys, fields);
+
+        long base = usedHeap();
+        DataStore store = new DataStore();
+        for (int k = 0; k < keys; k++) {
+            store.modify(ByteKey.of("user:" + k), RedisHash.class, RedisHash::new, h -> {
+                for (int f = 0; f < fields; f++) h.put(bytes("field" + f), bytes("value" + f));
+                return null;
+            }, null);
+        }
+        long listpack = usedHeap() - base;
+        report("listpack", listpack, keys, store.usedMemory());
+        store = null;
+
+        base = usedHeap();
+        Map<ByteKey, Map<ByteKey, byte[]>> plain = new HashMap<>();
+        for (int k = 0; k < keys; k++) {
+            Map<ByteKey, byte[]> h = new HashMap<>();
+            for (int f = 0; f < fields; f++) h.put(ByteKey.of("field" + f), bytes("value" + f));
+            plain.put(ByteKey.of("user:" + k), h);
+        }
+        long table = usedHeap() - base;
+        report("hashtable", table, keys, -1);
+        System.out.printf("listpack saves %.0f%%%n", 100.0 * (table - listpack) / table);
+        if (plain.size() != keys) throw new AssertionError(); // keep it reachable until measured
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static void report(String encoding, long heap, int keys, long estimate) {
+        System.out.printf("%-10s %8.1f MB  %6d bytes/hash%s%n", encoding, heap / 1e6, heap / keys,
+                estimate < 0 ? "" : String.format("  (accounted %.1f MB)", estimate / 1e6));
+    }
+}
@@ -0,0 +1,87 @@
+package com.tejas.redis.bench;
+
+import com.tejas.redis.server.IoMode;
+import com.tejas.redis.server.RedisServer;
+import com.tejas.redis.server.ServerConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares connection modes: opens many idle connections against an in-process server,
+ * then measures PING round-trip latency from one active client while the idle ones are held.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.tejas.redis.bench.ConnectionModeBenchmark -Dexec.args="5000 20000"}
+ * (idle connections, pings). Raise {@code ulimit -n} for large connection counts.
+ */
+public class ConnectionModeBenchmark {
+
+    private static final byte[] PING = "*1\r\n$4\r\nPING\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    public static void main(String[] args) throws Exception {
+        int idle = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int pings = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int port = 7400;
+        System.out.printf("%-8s %12s %10s %10s %10s %10s%n", "mode", "connections", "threads", "p50(us)", "p99(us)", "p999(us)");
+        for (IoMode mode : IoMode.values()) {
+            run(mode, port++, idle, pings);
+        }
+    }
+
+    private static void run(IoMode mode, int port, int idle, int pings) throws Exception {
+        RedisServer server = new RedisServer(new ServerConfig().port(port).ioMode(mode));
+        Thread serverThread = new Thread(server::start, "bench-server-" + mode);
+        serverThread.start();
+        BenchServer.awaitListening(port);
+
+        List<Socket> held = new ArrayList<>(idle);
+        try {
+            for (int i = 0; i < idle; i++) {
+                Socket s = new Socket("localhost", port);
+                ping(s.getOutputStream(), s.getInputStream()); // make sure the server really serves it
+                held.add(s);
+            }
+            int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+            long[] samples = new long[pings];
+            try (Socket s = new Socket("localhost", port)) {
+                s.setTcpNoDelay(true);
+                OutputStream out = s.getOutputStream();
+                InputStream in = s.getInputStream();
+                for (int i = 0; i < pings; i++) {
+                    long t0 = System.nanoTime();
+                    ping(out, in);
+                    samples[i] = System.nanoTime() - t0;
+                }
+            }
+            Arrays.sort(samples);
+            System.out.printf("%-8s %12d %10d %10.1f %10.1f %10.1f%n", mode.name().toLowerCase(), held.size(), threads,
+                    pct(samples, 0.50), pct(samples, 0.99), pct(samples, 0.999));
+        } finally {
+            for (Socket s : held) s.close();
+            server.stop();
+            serverThread.join(5000);
+        }
+    }
+
+    private static void ping(OutputStream out, InputStream in) throws IOException {
+        out.write(PING);
+        out.flush();
+        // "+PONG\r\n"
+        for (int i = 0; i < 7; i++) {
+            if (in.read() == -1) throw new IOException("server closed connection");
+        }
+    }
+
+    private static double pct(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))] / 1000.0;
+    }
+}
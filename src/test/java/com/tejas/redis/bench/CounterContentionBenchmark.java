@@ -0,0 +1,105 @@
+package com.tejas.redis.bench;
+
+import com.tejas.redis.server.IoMode;
+import com.tejas.redis.server.RedisServer;
+import com.tejas.redis.server.ServerConfig;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Many connections hammering a few hot counters: C client threads (default 64) each send
+ * INCR to one of K keys (default 4) in pipelined batches of 16, against an in-process NIO
+ * server. Reports INCR/s and checks that the counters add up, i.e. that no increment was
+ * lost under contention.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.tejas.redis.bench.CounterContentionBenchmark -Dexec.args="64 4 20000"}
+ * (connections, hot keys, INCRs per connection).
+ */
+public class CounterContentionBenchmark {
+
+    private static final int PIPELINE = 16;
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int keys = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int perConnection = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+        int port = 7410;
+
+        RedisServer server = new RedisServer(new ServerConfig().port(port).ioMode(IoMode.NIO));
+        Thread serverThread = new Thread(server::start, "bench-server");
+        serverThread.start();
+        BenchServer.awaitListening(port);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicLong errors = new AtomicLong();
+            Thread[] clients = new Thread[connections];
+            for (int c = 0; c < connections; c++) {
+                int id = c;
+                clients[c] = new Thread(() -> {
+                    try (Socket s = new Socket("localhost", port)) {
+                        s.setTcpNoDelay(true);
+                        OutputStream out = s.getOutputStream();
+                        InputStream in = new BufferedInputStream(s.getInputStream());
+                        start.await();
+                        for (int sent = 0; sent < perConnection; sent += PIPELINE) {
+                            int batch = Math.min(PIPELINE, perConnection - sent);
+                            StringBuilder sb = new StringBuilder();
+                            for (int i = 0; i < batch; i++) {
+                                String key = "hot:" + ((id + sent + i) % keys);
+                                sb.append("*2\r\n$4\r\nINCR\r\n$").append(key.length()).append("\r\n").append(key).append("\r\n");
+                            }
+                            out.write(sb.toString().getBytes(StandardCharsets.US_ASCII));
+                            out.flush();
+                            for (int i = 0; i < batch; i++) if (readLine(in).charAt(0) != ':') errors.incrementAndGet();
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        errors.incrementAndGet();
+                    }
+                });
+                clients[c].start();
+            }
+            long t0 = System.nanoTime();
+            start.countDown();
+            for (Thread t : clients) t.join();
+            double secs = (System.nanoTime() - t0) / 1e9;
+
+            long total = 0;
+            try (Socket s = new Socket("localhost", port)) {
+                OutputStream out = s.getOutputStream();
+                InputStream in = new BufferedInputStream(s.getInputStream());
+                for (int k = 0; k < keys; k++) {
+                    String key = "hot:" + k;
+                    out.write(("*2\r\n$3\r\nGET\r\n$" + key.length() + "\r\n" + key + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    readLine(in); // $len
+                    total += Long.parseLong(readLine(in));
+                }
+            }
+            long expected = (long) connections * perConnection;
+            System.out.printf("connections=%d keys=%d  %,.0f INCR/s  total=%d expected=%d errors=%d%n",
+                    connections, keys, expected / secs, total, expected, errors.get());
+            if (total != expected) throw new AssertionError("lost increments");
+        } finally {
+            server.stop();
+            serverThread.join(5000);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) throw new IOException("server closed connection");
+            if (b != '\r') sb.append((char) b);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,395 @@
+package com.tejas.redis.bench;
+
+import com.tejas.redis.server.LatencyHistogram;
+import com.tejas.redis.server.RedisServer;
+import com.tejas.redis.server.ServerConfig;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * End-to-end load generator, like redis-benchmark: N client connections, each a thread that
+ * sends a batch of pipeline-depth commands drawn from a weighted mix, waits for all replies
+ * and records each command's latency from the moment its batch was sent. It measures the
+ * whole path (sockets, parser, dispatcher, store, writer), unlike the JMH microbenchmarks.
+ * <p>
+ * Unless {@code --host} names a running server, it starts a {@link RedisServer} in this JVM;
+ * options after {@code --} go to that server, in {@link ServerConfig#parse} syntax. Keys are
+ * picked uniformly from the key space, which is filled with SETs first so GETs hit.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.tejas.redis.bench.LoadGenerator
+ * -Dexec.args="--connections 50 --pipeline 16 --mix get=80,set=20 --duration 10 -- --io-mode nio"}
+ * <p>
+ * Generator options (defaults in brackets): {@code --connections} [50], {@code --pipeline} [1],
+ * {@code --mix} of get, set, incr, del, mget (4 keys) and ping weights [get=80,set=20],
+ * {@code --keyspace} [100000], {@code --value-size} [64], {@code --ttl-ratio}, the fraction of
+ * SETs sent with {@code EX} [0], {@code --ttl} seconds [60], {@code --duration} seconds [10],
+ * {@code --warmup} seconds [2], {@code --host} [none], {@code --port} [7470].
+ * <p>
+ * Connections wait for their replies before sending more (a closed loop), so when the server
+ * stalls the commands that would have been sent meanwhile are never timed: high percentiles
+ * understate what an open-loop client with a fixed arrival rate would see.
+ */
+public class LoadGenerator {
+
+    // 128 sub-buckets per power of two: latencies are reported to within 1%
+    private static final int HISTOGRAM_SUB_BITS = 7;
+
+    enum Op { GET, SET, INCR, DEL, MGET, PING }
+
+    public static void main(String[] args) throws Exception {
+        Options o = Options.parse(args);
+        RedisServer server = null;
+        Thread serverThread = null;
+        String host = o.host == null ? "localhost" : o.host;
+        if (o.host == null) {
+            server = new RedisServer(ServerConfig.parse(o.serverArgs).port(o.port));
+            serverThread = new Thread(server::start, "load-server");
+            serverThread.start();
+            BenchServer.awaitListening(o.port);
+        }
+        try {
+            Commands commands = new Commands(o);
+            preload(host, o, commands);
+            System.out.printf("%d connections, pipeline %d, mix %s, %d keys, %d-byte values, ttl ratio %.2f, %d s (+%d s warmup)%n",
+                    o.connections, o.pipeline, o.mixSpec, o.keyspace, o.valueSize, o.ttlRatio, o.duration, o.warmup);
+            run(host, o, commands);
+        } finally {
+            if (server != null) {
+                server.stop();
+                serverThread.join(5000);
+            }
+        }
+    }
+
+    private static void run(String host, Options o, Commands commands) throws Exception {
+        Phase phase = new Phase();
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < o.connections; i++) {
+            Worker w = new Worker(new Socket(host, o.port), o, commands, phase, i);
+            workers.add(w);
+        }
+        for (Worker w : workers) w.thread.start();
+        Thread.sleep(o.warmup * 1000L);
+        phase.measuring = true;
+        long start = System.nanoTime();
+        Thread.sleep(o.duration * 1000L);
+        phase.stopped = true;
+        long elapsed = System.nanoTime() - start;
+        for (Worker w : workers) w.thread.join();
+
+        LatencyHistogram all = new LatencyHistogram(HISTOGRAM_SUB_BITS);
+        LatencyHistogram[] byOp = new LatencyHistogram[Op.values().length];
+        long errors = 0;
+        int failed = 0;
+        for (int i = 0; i < byOp.length; i++) byOp[i] = new LatencyHistogram(HISTOGRAM_SUB_BITS);
+        for (Worker w : workers) {
+            for (int i = 0; i < byOp.length; i++) {
+                byOp[i].add(w.latency[i]);
+                all.add(w.latency[i]);
+            }
+            errors += w.errors;
+            if (w.failure != null) {
+                failed++;
+                System.out.printf("connection %d failed: %s%n", w.id, w.failure);
+            }
+        }
+        System.out.printf("throughput %.0f ops/s (%d ops, %d error replies, %d connections failed)%n",
+                all.count() / (elapsed / 1e9), all.count(), errors, failed);
+        System.out.printf("%-6s %10s %10s %10s %10s %10s %10s%n", "", "ops", "mean(us)", "p50(us)", "p99(us)", "p999(us)", "max(us)");
+        report("all", all);
+        for (Op op : Op.values()) {
+            if (byOp[op.ordinal()].count() > 0) report(op.name().toLowerCase(Locale.ROOT), byOp[op.ordinal()]);
+        }
+    }
+
+    private static void report(String name, LatencyHistogram h) {
+        System.out.printf("%-6s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", name, h.count(), h.mean() / 1000,
+                h.percentile(0.50) / 1000.0, h.percentile(0.99) / 1000.0, h.percentile(0.999) / 1000.0, h.max() / 1000.0);
+    }
+
+    /** SET every key once, in pipelined batches over one connection. */
+    private static void preload(String host, Options o, Commands commands) throws IOException {
+        long t0 = System.nanoTime();
+        try (Socket s = new Socket(host, o.port)) {
+            OutputStream out = new BufferedOutputStream(s.getOutputStream(), 1 << 16);
+            Replies in = new Replies(s.getInputStream());
+            for (int from = 0; from < o.keyspace; from += 1000) {
+                int to = Math.min(o.keyspace, from + 1000);
+                for (int k = from; k < to; k++) commands.set(out, k, false);
+                out.flush();
+                for (int k = from; k < to; k++) {
+                    if (!in.read()) throw new IOException("preload SET failed");
+                }
+            }
+        }
+        System.out.printf("preloaded %d keys in %d ms%n", o.keyspace, (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    private static final class Phase {
+        volatile boolean measuring;
+        volatile boolean stopped;
+    }
+
+    /** One connection and its thread. */
+    private static final class Worker implements Runnable {
+        final int id;
+        final Thread thread;
+        final LatencyHistogram[] latency = new LatencyHistogram[Op.values().length];
+        long errors;
+        volatile Exception failure;
+        private final Socket socket;
+        private final Options o;
+        private final Commands commands;
+        private final Phase phase;
+        private final SplittableRandom rnd;
+
+        Worker(Socket socket, Options o, Commands commands, Phase phase, int id) throws IOException {
+            this.socket = socket;
+            this.o = o;
+            this.commands = commands;
+            this.phase = phase;
+            this.id = id;
+            this.rnd = new SplittableRandom(id);
+            socket.setTcpNoDelay(true);
+            for (int i = 0; i < latency.length; i++) latency[i] = new LatencyHistogram(HISTOGRAM_SUB_BITS);
+            this.thread = new Thread(this, "load-client-" + id);
+        }
+
+        @Override
+        public void run() {
+            Op[] batch = new Op[o.pipeline];
+            try (socket) {
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+                Replies in = new Replies(socket.getInputStream());
+                while (!phase.stopped) {
+                    for (int i = 0; i < batch.length; i++) batch[i] = commands.write(out, rnd);
+                    boolean measured = phase.measuring;
+                    long sent = System.nanoTime();
+                    out.flush();
+                    for (Op op : batch) {
+                        boolean ok = in.read();
+                        if (!measured) continue;
+                        latency[op.ordinal()].record(System.nanoTime() - sent);
+                        if (!ok) errors++;
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    /** Pre-encoded keys, value and command headers, and the weighted mix to draw from. */
+    private static final class Commands {
+        private static final byte[] GET = ascii("*2\r\n$3\r\nGET\r\n");
+        private static final byte[] SET = ascii("*3\r\n$3\r\nSET\r\n");
+        private static final byte[] SET_EX = ascii("*5\r\n$3\r\nSET\r\n");
+        private static final byte[] INCR = ascii("*2\r\n$4\r\nINCR\r\n");
+        private static final byte[] DEL = ascii("*2\r\n$3\r\nDEL\r\n");
+        private static final byte[] MGET = ascii("*5\r\n$4\r\nMGET\r\n");
+        private static final byte[] PING = ascii("*1\r\n$4\r\nPING\r\n");
+
+        private final byte[][] keys;     // "$len\r\nkey:n\r\n"
+        private final byte[][] counters; // "$len\r\ncounter:n\r\n", so INCR never hits a string value
+        private final byte[] value;
+        private final byte[] ex;
+        private final double ttlRatio;
+        private final Op[] wheel = new Op[1000]; // ops repeated in proportion to their weight
+
+        Commands(Options o) {
+            keys = new byte[o.keyspace][];
+            counters = new byte[o.keyspace][];
+            for (int i = 0; i < o.keyspace; i++) {
+                keys[i] = bulk(ascii("key:" + i));
+                counters[i] = bulk(ascii("counter:" + i));
+            }
+            byte[] v = new byte[o.valueSize];
+            Arrays.fill(v, (byte) 'x');
+            value = bulk(v);
+            ex = ascii("$2\r\nEX\r\n" + new String(bulk(ascii(Integer.toString(o.ttl))), StandardCharsets.US_ASCII));
+            ttlRatio = o.ttlRatio;
+            int total = o.mix.values().stream().mapToInt(Integer::intValue).sum();
+            int n = 0;
+            double acc = 0;
+            for (Map.Entry<Op, Integer> e : o.mix.entrySet()) {
+                acc += 1000.0 * e.getValue() / total;
+                while (n < Math.round(acc)) wheel[n++] = e.getKey();
+            }
+        }
+
+        /** Write a random command of the mix; returns its kind. */
+        Op write(OutputStream out, SplittableRandom rnd) throws IOException {
+            Op op = wheel[rnd.nextInt(wheel.length)];
+            int k = rnd.nextInt(keys.length);
+            switch (op) {
+                case GET -> {
+                    out.write(GET);
+                    out.write(keys[k]);
+                }
+                case SET -> set(out, k, rnd.nextDouble() < ttlRatio);
+                case INCR -> {
+                    out.write(INCR);
+                    out.write(counters[k]);
+                }
+                case DEL -> {
+                    out.write(DEL);
+                    out.write(keys[k]);
+                }
+                case MGET -> {
+                    out.write(MGET);
+                    out.write(keys[k]);
+                    for (int i = 0; i < 3; i++) out.write(keys[rnd.nextInt(keys.length)]);
+                }
+                case PING -> out.write(PING);
+            }
+            return op;
+        }
+
+        void set(OutputStream out, int k, boolean withTtl) throws IOException {
+            out.write(withTtl ? SET_EX : SET);
+            out.write(keys[k]);
+            out.write(value);
+            if (withTtl) out.write(ex);
+        }
+
+        private static byte[] bulk(byte[] b) {
+            byte[] head = ascii("$" + b.length + "\r\n");
+            byte[] out = Arrays.copyOf(head, head.length + b.length + 2);
+            System.arraycopy(b, 0, out, head.length, b.length);
+            out[out.length - 2] = '\r';
+            out[out.length - 1] = '\n';
+            return out;
+        }
+    }
+
+    /** Reads and discards RESP replies, telling errors apart. */
+    private static final class Replies {
+        private final InputStream in;
+
+        Replies(InputStream in) {
+            this.in = new BufferedInputStream(in, 1 << 16);
+        }
+
+        /** Consume one reply; false if it was an error reply. */
+        boolean read() throws IOException {
+            int type = in.read();
+            switch (type) {
+                case '+', ':' -> skipLine();
+                case '-' -> {
+                    skipLine();
+                    return false;
+                }
+                case '$' -> {
+                    long n = readLong();
+                    if (n >= 0) skip(n + 2);
+                }
+                case '*' -> {
+                    long n = readLong();
+                    for (long i = 0; i < n; i++) read();
+                }
+                case -1 -> throw new EOFException("server closed the connection");
+                default -> throw new IOException("unexpected reply type '" + (char) type + "'");
+            }
+            return true;
+        }
+
+        private long readLong() throws IOException {
+            long n = 0;
+            boolean negative = false;
+            for (int c = in.read(); c != '\r'; c = in.read()) {
+                if (c == -1) throw new EOFException("server closed the connection");
+                if (c == '-') negative = true;
+                else n = n * 10 + (c - '0');
+            }
+            in.read(); // \n
+            return negative ? -n : n;
+        }
+
+        private void skipLine() throws IOException {
+            for (int c = in.read(); c != '\n'; c = in.read()) {
+                if (c == -1) throw new EOFException("server closed the connection");
+            }
+        }
+
+        private void skip(long n) throws IOException {
+            while (n > 0) {
+                long s = in.skip(n);
+                if (s <= 0) {
+                    if (in.read() == -1) throw new EOFException("server closed the connection");
+                    s = 1;
+                }
+                n -= s;
+            }
+        }
+    }
+
+    /** Generator options; see the class comment. */
+    private static final class Options {
+        int connections = 50;
+        int pipeline = 1;
+        String mixSpec = "get=80,set=20";
+        Map<Op, Integer> mix;
+        int keyspace = 100_000;
+        int valueSize = 64;
+        double ttlRatio;
+        int ttl = 60;
+        int duration = 10;
+        int warmup = 2;
+        String host;
+        int port = 7470;
+        String[] serverArgs = new String[0];
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--")) {
+                    o.serverArgs = Arrays.copyOfRange(args, i + 1, args.length);
+                    break;
+                }
+                String name = args[i];
+                if (!name.startsWith("--") || i + 1 >= args.length) throw new IllegalArgumentException("expected --option value, got '" + name + "'");
+                String value = args[++i];
+                switch (name.substring(2)) {
+                    case "connections" -> o.connections = positive(name, Integer.parseInt(value));
+                    case "pipeline" -> o.pipeline = positive(name, Integer.parseInt(value));
+                    case "mix" -> o.mixSpec = value;
+                    case "keyspace" -> o.keyspace = positive(name, Integer.parseInt(value));
+                    case "value-size" -> o.valueSize = Integer.parseInt(value);
+                    case "ttl-ratio" -> o.ttlRatio = Double.parseDouble(value);
+                    case "ttl" -> o.ttl = positive(name, Integer.parseInt(value));
+                    case "duration" -> o.duration = positive(name, Integer.parseInt(value));
+                    case "warmup" -> o.warmup = Integer.parseInt(value);
+                    case "host" -> o.host = value;
+                    case "port" -> o.port = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("unknown option '" + name + "'");
+                }
+            }
+            o.mix = parseMix(o.mixSpec);
+            return o;
+        }
+
+        /** {@code get=80,set=20}: relative weights, any scale. */
+        private static Map<Op, Integer> parseMix(String spec) {
+            Map<Op, Integer> mix = new EnumMap<>(Op.class);
+            for (String part : spec.split(",")) {
+                String[] kv = part.trim().split("=");
+                if (kv.length != 2) throw new IllegalArgumentException("mix entries look like get=80, got '" + part + "'");
+                mix.put(Op.valueOf(kv[0].trim().toUpperCase(Locale.ROOT)), positive("--mix", Integer.parseInt(kv[1].trim())));
+            }
+            return mix;
+        }
+
+        private static int positive(String name, int v) {
+            if (v < 1) throw new IllegalArgumentException(name + " must be positive");
+            return v;
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
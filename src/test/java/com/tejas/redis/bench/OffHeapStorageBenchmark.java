@@ -0,0 +1,138 @@
+package com.tejas.redis.bench;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.tejas.redis.store.ByteKey;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.EvictionPolicy;
+import com.tejas.redis.store.StorageEngine;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Heap footprint and GC pauses of the heap and off-heap storage engines: loads N string
+ * values, then overwrites and reads random keys (half SETs, half GETs), reporting the heap
+ * left after a full GC, the direct memory taken, and every collection the collector
+ * reported during each phase.
+ * <p>
+ * Run each engine in its own JVM with the same fixed heap, so one's garbage is not billed to
+ * the other; direct memory is limited by -XX:MaxDirectMemorySize, which defaults to the heap
+ * size, e.g. {@code MAVEN_OPTS="-Xms4g -Xmx4g -XX:MaxDirectMemorySize=8g"}.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.tejas.redis.bench.OffHeapStorageBenchmark -Dexec.args="1000000 1024 2000000 offheap"}
+ * (keys, value bytes, churn operations, engine).
+ */
+public class OffHeapStorageBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        int ops = args.length > 2 ? Integer.parseInt(args[2]) : 2 * keys;
+        StorageEngine engine = args.length > 3 ? StorageEngine.parse(args[3]) : StorageEngine.OFFHEAP;
+        System.out.printf("engine=%s keys=%d value=%d bytes churn=%d ops, max heap %d MB%n", engine.configName(),
+                keys, size, ops, Runtime.getRuntime().maxMemory() >> 20);
+
+        Pauses pauses = new Pauses();
+        DataStore store = new DataStore(DataStore.defaultShards(), 0, EvictionPolicy.NOEVICTION, 5, engine);
+        ByteKey[] names = new ByteKey[keys];
+        for (int i = 0; i < keys; i++) names[i] = ByteKey.of("key:" + i);
+        // the keys are on the heap with either engine, and here they are also held by names[]
+        long base = usedHeap();
+
+        pauses.reset();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < keys; i++) store.set(names[i], value(size), 0);
+        pauses.report("load", System.nanoTime() - t0, keys);
+
+        long heap = usedHeap() - base;
+        System.out.printf("heap %.1f MB (%d bytes/key), off-heap %.1f MB allocated, %.1f MB in use%n",
+                heap / 1e6, heap / keys, store.offHeapAllocated() / 1e6, store.offHeapUsed() / 1e6);
+
+        pauses.reset();
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        long read = 0;
+        t0 = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            ByteKey key = names[rnd.nextInt(keys)];
+            if ((i & 1) == 0) store.set(key, value(size), 0);
+            else read += store.get(key).map(v -> v.length).orElse(0);
+        }
+        pauses.report("churn", System.nanoTime() - t0, ops);
+        if (read == 0 && ops > 1) throw new AssertionError(); // keep the reads from being optimized away
+        pauses.close();
+    }
+
+    private static byte[] value(int size) {
+        byte[] v = new byte[size];
+        ThreadLocalRandom.current().nextBytes(v);
+        return v;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /** Collects the duration of every collection reported by the JVM's collectors. */
+    private static final class Pauses implements NotificationListener, AutoCloseable {
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+        private final List<Long> millis = new ArrayList<>();
+
+        Pauses() {
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (gc instanceof NotificationEmitter e) {
+                    e.addNotificationListener(this, null, null);
+                    emitters.add(e);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void handleNotification(Notification n, Object handback) {
+            if (!n.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) return;
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) n.getUserData());
+            // concurrent cycles run alongside the application; only count stop-the-world work
+            if (info.getGcName().contains("Concurrent")) return;
+            millis.add(info.getGcInfo().getDuration());
+        }
+
+        synchronized void reset() {
+            millis.clear();
+        }
+
+        void report(String phase, long nanos, int ops) throws InterruptedException {
+            Thread.sleep(200); // notifications arrive asynchronously
+            List<Long> d;
+            synchronized (this) {
+                d = new ArrayList<>(millis);
+            }
+            d.sort(null);
+            long total = d.stream().mapToLong(Long::longValue).sum();
+            System.out.printf(Locale.ROOT, "%-6s %6d ms, %9.0f ops/s; %d GC pauses, %d ms total, p99 %d ms, max %d ms%n",
+                    phase, nanos / 1_000_000, ops / (nanos / 1e9), d.size(), total,
+                    d.isEmpty() ? 0 : d.get((int) Math.min(d.size() - 1, Math.floor(0.99 * d.size()))),
+                    d.isEmpty() ? 0 : d.get(d.size() - 1));
+        }
+
+        @Override
+        public void close() {
+            for (NotificationEmitter e : emitters) {
+                try {
+                    e.removeNotificationListener(this);
+                } catch (ListenerNotFoundException alreadyRemoved) {
+                }
+            }
+        }
+    }
+}
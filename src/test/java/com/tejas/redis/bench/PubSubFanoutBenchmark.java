@@ -0,0 +1,191 @@
+package com.tejas.redis.bench;
+
+import com.tejas.redis.server.IoMode;
+import com.tejas.redis.server.RedisServer;
+import com.tejas.redis.server.ServerConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * One publisher, many subscribers of one channel: how long PUBLISH takes for the publisher
+ * while the server fans each message out, and how fast all subscribers receive everything.
+ * Subscribers are read by a single client-side selector thread.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.tejas.redis.bench.PubSubFanoutBenchmark -Dexec.args="10000 1000 64 nio"}
+ * (subscribers, messages, payload bytes, io mode). Client and server share the process, so
+ * {@code ulimit -n} must allow two descriptors per subscriber.
+ */
+public class PubSubFanoutBenchmark {
+
+    private static final String CHANNEL = "bench";
+
+    public static void main(String[] args) throws Exception {
+        int subscribers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int messages = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int payload = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        IoMode mode = args.length > 3 ? IoMode.valueOf(args[3].toUpperCase()) : IoMode.NIO;
+        int port = 7450;
+
+        RedisServer server = new RedisServer(new ServerConfig().port(port).ioMode(mode));
+        Thread serverThread = new Thread(server::start, "bench-server");
+        serverThread.start();
+        BenchServer.awaitListening(port);
+
+        byte[] confirm = ascii("*3\r\n$9\r\nsubscribe\r\n$" + CHANNEL.length() + "\r\n" + CHANNEL + "\r\n:1\r\n");
+        byte[] body = new byte[payload];
+        Arrays.fill(body, (byte) 'x');
+        long frame = ascii("*3\r\n$7\r\nmessage\r\n$" + CHANNEL.length() + "\r\n" + CHANNEL + "\r\n$" + payload + "\r\n").length
+                + payload + 2;
+        long expected = confirm.length + frame * messages;
+
+        List<SocketChannel> subs = new ArrayList<>(subscribers);
+        Selector selector = Selector.open();
+        try {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < subscribers; i++) {
+                SocketChannel ch = SocketChannel.open(new InetSocketAddress("localhost", port));
+                ch.write(ByteBuffer.wrap(command("SUBSCRIBE", ascii(CHANNEL))));
+                subs.add(ch);
+            }
+            // subscriptions are confirmed as part of each subscriber's byte count
+            for (SocketChannel ch : subs) {
+                ch.configureBlocking(false);
+                ch.register(selector, SelectionKey.OP_READ, new long[1]);
+            }
+            Reader reader = new Reader(selector, subscribers, expected);
+            Thread readerThread = new Thread(reader, "bench-subscribers");
+            readerThread.start();
+            System.out.printf("%d subscribers connected in %d ms (%s)%n", subscribers,
+                    (System.nanoTime() - t0) / 1_000_000, mode.name().toLowerCase());
+
+            try (Socket pub = new Socket("localhost", port)) {
+                pub.setTcpNoDelay(true);
+                OutputStream out = pub.getOutputStream();
+                InputStream in = pub.getInputStream();
+                // wait until every subscription is registered before timing anything
+                while (subscribed(out, in) < subscribers) Thread.sleep(10);
+
+                long[] latency = new long[messages];
+                byte[] publish = command("PUBLISH", ascii(CHANNEL), body);
+                long start = System.nanoTime();
+                for (int i = 0; i < messages; i++) {
+                    long s = System.nanoTime();
+                    out.write(publish);
+                    out.flush();
+                    readLine(in);
+                    latency[i] = System.nanoTime() - s;
+                }
+                long published = System.nanoTime() - start;
+                readerThread.join();
+                long delivered = reader.doneAt - start;
+                Arrays.sort(latency);
+                System.out.printf("PUBLISH latency p50 %.1f us, p99 %.1f us, max %.1f us; %d messages in %d ms%n",
+                        pct(latency, 0.50), pct(latency, 0.99), latency[messages - 1] / 1000.0, messages, published / 1_000_000);
+                System.out.printf("all %d deliveries received after %d ms: %.0f deliveries/s, %d subscribers disconnected%n",
+                        (long) subscribers * messages, delivered / 1_000_000,
+                        (double) subscribers * messages / (delivered / 1e9), reader.closed);
+            }
+        } finally {
+            for (SocketChannel ch : subs) ch.close();
+            selector.close();
+            server.stop();
+            serverThread.join(5000);
+        }
+    }
+
+    /** Counts bytes per subscriber until each has seen everything or has been disconnected. */
+    private static final class Reader implements Runnable {
+        private final Selector selector;
+        private final long expected;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024);
+        private int remaining;
+        private int closed;
+        private volatile long doneAt;
+
+        Reader(Selector selector, int subscribers, long expected) {
+            this.selector = selector;
+            this.remaining = subscribers;
+            this.expected = expected;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (remaining > 0) {
+                    selector.select(100);
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        long[] got = (long[]) key.attachment();
+                        buf.clear();
+                        int n = ((SocketChannel) key.channel()).read(buf);
+                        if (n < 0) {
+                            key.cancel();
+                            closed++;
+                            remaining--;
+                        } else if ((got[0] += n) >= expected) {
+                            key.cancel();
+                            remaining--;
+                        }
+                    }
+                }
+                doneAt = System.nanoTime();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /** PUBSUB NUMSUB of the bench channel. */
+    private static long subscribed(OutputStream out, InputStream in) throws IOException {
+        out.write(command("PUBSUB", ascii("NUMSUB"), ascii(CHANNEL)));
+        out.flush();
+        readLine(in); // *2
+        readLine(in); // $len
+        readLine(in); // channel
+        return Long.parseLong(readLine(in).substring(1));
+    }
+
+    private static byte[] command(String name, byte[]... args) {
+        StringBuilder head = new StringBuilder().append('*').append(args.length + 1).append("\r\n")
+                .append('$').append(name.length()).append("\r\n").append(name).append("\r\n");
+        byte[] h = ascii(head.toString());
+        int len = h.length;
+        for (byte[] a : args) len += ascii("$" + a.length + "\r\n").length + a.length + 2;
+        ByteBuffer b = ByteBuffer.allocate(len).put(h);
+        for (byte[] a : args) b.put(ascii("$" + a.length + "\r\n")).put(a).put(ascii("\r\n"));
+        return b.array();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c == -1) throw new IOException("server closed connection");
+            if (c != '\r') sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static double pct(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))] / 1000.0;
+    }
+}
@@ -0,0 +1,60 @@
+package com.tejas.redis.bench;
+
+import com.tejas.redis.persistence.SnapshotFile;
+import com.tejas.redis.store.ByteKey;
+import com.tejas.redis.store.DataStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Snapshot write and load time for N keys (default 10M with 32-byte values; needs a large
+ * heap, e.g. {@code MAVEN_OPTS=-Xmx12g}). Also measures a save taken while a writer thread
+ * keeps overwriting keys, to show the cost of copy-on-write capture.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.tejas.redis.bench.SnapshotBenchmark -Dexec.args="10000000 32"}
+ */
+public class SnapshotBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int valueSize = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        Path file = Files.createTempFile("snapshot-bench", ".rlite");
+        try {
+            DataStore store = new DataStore();
+            byte[] value = new byte[valueSize];
+            for (int i = 0; i < keys; i++) store.set(ByteKey.of("key:" + i), value, 0);
+            System.out.printf("keys=%d valueSize=%d%n", keys, valueSize);
+
+            long t0 = System.nanoTime();
+            SnapshotFile.write(store, file);
+            report("save (idle)", t0, Files.size(file));
+
+            Thread writer = new Thread(() -> {
+                int i = 0;
+                while (!Thread.currentThread().isInterrupted()) {
+                    store.set(ByteKey.of("key:" + (i++ % keys)), value, 0);
+                }
+            });
+            writer.start();
+            t0 = System.nanoTime();
+            SnapshotFile.write(store, file);
+            report("save (concurrent writes)", t0, Files.size(file));
+            writer.interrupt();
+            writer.join();
+
+            DataStore loaded = new DataStore();
+            t0 = System.nanoTime();
+            long n = SnapshotFile.load(file, loaded);
+            report("load " + n + " keys", t0, Files.size(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void report(String what, long t0, long bytes) {
+        double secs = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("%-28s %8.2f s  %8.1f MB  %8.1f MB/s%n", what, secs, bytes / 1e6, bytes / 1e6 / secs);
+    }
+}
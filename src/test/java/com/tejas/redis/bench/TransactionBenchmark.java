@@ -0,0 +1,182 @@
+package com.tejas.redis.bench;
+
+import com.tejas.redis.server.IoMode;
+import com.tejas.redis.server.RedisServer;
+import com.tejas.redis.server.ServerConfig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What a transaction costs over a plain pipeline, and how often WATCH aborts under contention.
+ * <ul>
+ *   <li>pipeline: batches of INCRs on the thread's own keys, sent pipelined;</li>
+ *   <li>multi: the same batches wrapped in MULTI ... EXEC, still one round trip each;</li>
+ *   <li>watch: check-and-set increments (WATCH k, GET k | MULTI, SET k v+1, EXEC: two round
+ *       trips) on keys picked from a hot set shared by all threads; fewer hot keys means more
+ *       aborts, each retried until it commits.</li>
+ * </ul>
+ * ops/s counts batches for pipeline and multi, and committed increments for watch.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.tejas.redis.bench.TransactionBenchmark -Dexec.args="8 20000 10 1,16,1024 nio"}
+ * (threads, operations per thread, commands per batch, hot key counts, io mode).
+ */
+public class TransactionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int ops = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int batch = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        String[] hot = (args.length > 3 ? args[3] : "1,16,1024").split(",");
+        IoMode mode = args.length > 4 ? IoMode.valueOf(args[4].toUpperCase(Locale.ROOT)) : IoMode.NIO;
+        int port = 7460;
+
+        RedisServer server = new RedisServer(new ServerConfig().port(port).ioMode(mode));
+        Thread serverThread = new Thread(server::start, "bench-server");
+        serverThread.start();
+        BenchServer.awaitListening(port);
+        try {
+            System.out.printf("%d threads, %d batches of %d commands each, io mode %s%n", threads, ops, batch,
+                    mode.name().toLowerCase(Locale.ROOT));
+            // first round warms up the JIT; the second is the one to read
+            for (int round = 0; round < 2; round++) {
+                run("pipeline", threads, ops, port, (c, t) -> c.batch(t, batch, false));
+                run("multi", threads, ops, port, (c, t) -> c.batch(t, batch, true));
+            }
+            for (String h : hot) {
+                int keys = Integer.parseInt(h.trim());
+                AtomicLong aborts = new AtomicLong();
+                long commits = (long) threads * ops;
+                run("watch/" + keys, threads, ops, port, (c, t) -> aborts.addAndGet(c.checkAndSet(keys)));
+                System.out.printf(Locale.ROOT, "  %d hot keys: %d aborts, %.1f%% of EXECs%n", keys, aborts.get(),
+                        100.0 * aborts.get() / (aborts.get() + commits));
+            }
+        } finally {
+            server.stop();
+            serverThread.join(5000);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Op {
+        void run(Client c, int thread) throws IOException;
+    }
+
+    private static void run(String name, int threads, int ops, int port, Op op) throws Exception {
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                try (Client c = new Client(port)) {
+                    for (int i = 0; i < ops; i++) op.run(c, id);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, "bench-" + name + "-" + t);
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+        double secs = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT, "%-12s %10.0f ops/s (%.2f s)%n", name, threads * (double) ops / secs, secs);
+    }
+
+    /** One connection with a minimal RESP reader. */
+    private static final class Client implements AutoCloseable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+
+        Client(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setTcpNoDelay(true);
+            out = new BufferedOutputStream(socket.getOutputStream(), 16 * 1024);
+            in = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+        }
+
+        /** INCR of batch own keys, pipelined, optionally as one transaction. */
+        void batch(int thread, int batch, boolean multi) throws IOException {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            if (multi) send("MULTI");
+            for (int i = 0; i < batch; i++) send("INCR", "bench:" + thread + ":" + rnd.nextInt(1000));
+            if (multi) send("EXEC");
+            out.flush();
+            int replies = multi ? batch + 2 : batch;
+            for (int i = 0; i < replies; i++) read();
+        }
+
+        /** Increment a random hot key with WATCH until it commits; returns the aborted attempts. */
+        int checkAndSet(int hotKeys) throws IOException {
+            String key = "hot:" + ThreadLocalRandom.current().nextInt(hotKeys);
+            for (int aborts = 0; ; aborts++) {
+                send("WATCH", key);
+                send("GET", key);
+                out.flush();
+                read();
+                String v = read();
+                long next = v == null ? 1 : Long.parseLong(v) + 1;
+                send("MULTI");
+                send("SET", key, Long.toString(next));
+                send("EXEC");
+                out.flush();
+                read();
+                read();
+                if (!"*-1".equals(read())) return aborts;
+            }
+        }
+
+        private void send(String... args) throws IOException {
+            StringBuilder sb = new StringBuilder().append('*').append(args.length).append("\r\n");
+            for (String a : args) sb.append('$').append(a.length()).append("\r\n").append(a).append("\r\n");
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        /** One whole reply: a bulk string's data, null for a null bulk, an array's header line, or the line. */
+        private String read() throws IOException {
+            String line = readLine();
+            switch (line.charAt(0)) {
+                case '$' -> {
+                    int len = Integer.parseInt(line.substring(1));
+                    if (len < 0) return null;
+                    byte[] data = in.readNBytes(len + 2);
+                    return new String(data, 0, len, StandardCharsets.UTF_8);
+                }
+                case '*' -> {
+                    int n = Integer.parseInt(line.substring(1));
+                    for (int i = 0; i < n; i++) read();
+                    return line;
+                }
+                case '-' -> {
+                    if (!line.startsWith("-WRONGTYPE")) throw new IOException("server error: " + line);
+                    return line;
+                }
+                default -> {
+                    return line;
+                }
+            }
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            for (int c = in.read(); c != '\n'; c = in.read()) {
+                if (c == -1) throw new IOException("server closed connection");
+                if (c != '\r') sb.append((char) c);
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
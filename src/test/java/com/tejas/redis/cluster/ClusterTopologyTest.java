@@ -0,0 +1,73 @@
+package com.tejas.redis.cluster;
+
+import com.tejas.redis.persistence.Propagator;
+import com.tejas.redis.resp.*;
+import com.tejas.redis.server.CommandDispatcher;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.EvictionPolicy;
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ClusterTopologyTest extends TestCase {
+
+    private static final List<String> CONFIG = List.of(
+            "# three nodes",
+            "a 127.0.0.1:7000 0-5460",
+            "b 127.0.0.1:7001 5461-10922",
+            "c 127.0.0.1:7002 10923-16000 16001 16002-16383");
+
+    private static int slot(String key) {
+        return HashSlot.of(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void testSlotsMatchRedisIncludingHashTags() {
+        assertEquals(0x31C3, HashSlot.crc16("123456789".getBytes(StandardCharsets.US_ASCII), 0, 9));
+        assertEquals(12182, slot("foo"));
+        assertEquals(5061, slot("bar"));
+        assertEquals(slot("user1000"), slot("{user1000}.following"));
+        assertEquals(slot("{user1000}.following"), slot("{user1000}.followers"));
+        assertEquals(slot("bar"), slot("foo{bar}{zap}"));
+        // an empty tag means the whole key is hashed
+        assertFalse(slot("foo{}{bar}") == slot("bar"));
+        assertEquals(slot("{bar"), slot("foo{{bar}}zap"));
+    }
+
+    public void testParseMergesRangesAndFindsMyself() {
+        ClusterTopology t = ClusterTopology.parse(CONFIG, null, 7001);
+        assertEquals("b", t.myself().id());
+        assertEquals(HashSlot.SLOTS, t.assignedSlots());
+        ClusterTopology.Node c = t.owner(16383);
+        assertEquals("c", c.id());
+        assertEquals(1, c.ranges().size());
+        assertEquals(10923, c.ranges().get(0)[0]);
+        assertEquals(16383, c.ranges().get(0)[1]);
+
+        assertEquals("a", ClusterTopology.parse(CONFIG, "a", 9999).myself().id());
+        try {
+            ClusterTopology.parse(List.of("a h:1 0-10", "b h:2 10"), "a", 0);
+            fail("overlapping slots accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testDispatcherRedirectsKeysOfOtherNodes() {
+        ClusterTopology t = ClusterTopology.parse(CONFIG, "a", 0);
+        CommandDispatcher d = new CommandDispatcher(new DataStore(8, 0, EvictionPolicy.NOEVICTION, 5), null,
+                new Propagator(), null, null, t);
+
+        assertEquals("OK", ((RespSimpleString) call(d, "SET", "bar", "1")).value());
+        assertEquals("MOVED 12182 127.0.0.1:7002", ((RespError) call(d, "GET", "foo")).message());
+        assertTrue(((RespError) call(d, "MGET", "bar", "foo")).message().startsWith("CROSSSLOT"));
+        assertTrue(call(d, "MSET", "{bar}x", "1", "{bar}y", "2") instanceof RespSimpleString);
+        assertEquals(12182, ((RespInteger) call(d, "CLUSTER", "KEYSLOT", "foo")).value());
+    }
+
+    private static RespObject call(CommandDispatcher d, String... args) {
+        List<RespObject> parts = new ArrayList<>();
+        for (String a : args) parts.add(new RespBulkString(a.getBytes(StandardCharsets.UTF_8)));
+        return d.dispatch(parts);
+    }
+}
@@ -0,0 +1,195 @@
+package com.tejas.redis.persistence;
+
+import com.tejas.redis.resp.RespBulkString;
+import com.tejas.redis.resp.RespError;
+import com.tejas.redis.resp.RespObject;
+import com.tejas.redis.resp.RespSimpleString;
+import com.tejas.redis.server.CommandDispatcher;
+import com.tejas.redis.store.ByteKey;
+import com.tejas.redis.store.DataStore;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AppendOnlyFileTest extends TestCase {
+
+    private Path file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = Files.createTempFile("appendonly", ".aof");
+        Files.delete(file);
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static byte[] b(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String get(DataStore store, String key) {
+        return store.get(ByteKey.of(key)).map(v -> new String(v, StandardCharsets.US_ASCII)).orElse(null);
+    }
+
+    private static DataStore replay(Path file) throws IOException {
+        DataStore store = new DataStore();
+        CommandDispatcher dispatcher = new CommandDispatcher(store);
+        new AppendOnlyFile(file, FsyncPolicy.NO).replay(dispatcher::dispatch);
+        return store;
+    }
+
+    public void testReplayAndTruncatedTail() throws IOException {
+        AppendOnlyFile aof = new AppendOnlyFile(file, FsyncPolicy.ALWAYS);
+        aof.open();
+        for (int i = 0; i < 100; i++) aof.append(new byte[][]{b("SET"), b("k" + i), b("v" + i)});
+        aof.append(new byte[][]{b("SET"), b("k0"), b("last")});
+        aof.close();
+
+        // simulate a crash in the middle of the last command
+        long size = Files.size(file);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(size - 3);
+        }
+        DataStore store = replay(file);
+        assertEquals(100, store.size());
+        assertEquals("v0", get(store, "k0"));
+        assertEquals("v99", get(store, "k99"));
+        assertTrue(Files.size(file) < size - 3);
+    }
+
+    public void testRewriteKeepsWritesMadeDuringIt() throws Exception {
+        DataStore store = new DataStore();
+        Propagator propagator = new Propagator();
+        CommandDispatcher dispatcher = new CommandDispatcher(store, null, propagator, null);
+        AppendOnlyFile aof = new AppendOnlyFile(file, FsyncPolicy.EVERYSEC);
+        aof.open();
+        propagator.addSink(aof);
+        for (int i = 0; i < 20_000; i++) dispatch(dispatcher, "SET", "k" + i, "old");
+
+        assertTrue(aof.rewrite(store, propagator));
+        int i = 0;
+        while (aof.isRewriting()) dispatch(dispatcher, "SET", "k" + (i++ % 20_000), "new" + i);
+        for (int j = 0; j < 100; j++) dispatch(dispatcher, "SET", "after" + j, "x");
+        propagator.removeSink(aof);
+        aof.close();
+
+        DataStore replayed = replay(file);
+        assertEquals(store.size(), replayed.size());
+        for (int j = 0; j < 20_000; j++) assertEquals(get(store, "k" + j), get(replayed, "k" + j));
+        assertEquals("x", get(replayed, "after99"));
+    }
+
+    public void testWriteErrorsRefuseWritesUntilTheFileRecovers() throws Exception {
+        FailingChannel[] channel = new FailingChannel[1];
+        AppendOnlyFile aof = new AppendOnlyFile(file, FsyncPolicy.ALWAYS, f -> channel[0] = new FailingChannel(
+                FileChannel.open(f, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+        DataStore store = new DataStore();
+        Propagator propagator = new Propagator();
+        CommandDispatcher dispatcher = new CommandDispatcher(store, null, propagator, aof);
+        aof.open();
+        propagator.addSink(aof);
+        assertTrue(dispatch(dispatcher, "SET", "a", "1") instanceof RespSimpleString);
+
+        assertTrue(dispatcher.awaitDurable());
+
+        // the command has run, but its client must not be told it is durable
+        channel[0].failing = true;
+        assertTrue(dispatch(dispatcher, "SET", "b", "2") instanceof RespSimpleString);
+        assertFalse(dispatcher.awaitDurable());
+        assertNotNull(aof.writeError());
+        assertEquals("2", get(store, "b"));
+        // later writes are refused, reads still served
+        assertMisconf(dispatch(dispatcher, "SET", "c", "3"));
+        assertNull(get(store, "c"));
+        assertTrue(dispatch(dispatcher, "GET", "a") instanceof RespBulkString);
+
+        // the queued batch is retried and writes are accepted again once it gets through
+        channel[0].failing = false;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (aof.writeError() != null && System.currentTimeMillis() < deadline) Thread.sleep(50);
+        assertNull(aof.writeError());
+        assertTrue(dispatch(dispatcher, "SET", "d", "4") instanceof RespSimpleString);
+        assertTrue(dispatcher.awaitDurable());
+        propagator.removeSink(aof);
+        aof.close();
+
+        DataStore replayed = replay(file);
+        assertEquals("1", get(replayed, "a"));
+        assertEquals("2", get(replayed, "b"));
+        assertNull(get(replayed, "c"));
+        assertEquals("4", get(replayed, "d"));
+    }
+
+    public void testIdleFileIsNotSynced() throws Exception {
+        FailingChannel[] channel = new FailingChannel[1];
+        AppendOnlyFile aof = new AppendOnlyFile(file, FsyncPolicy.ALWAYS, f -> channel[0] = new FailingChannel(
+                FileChannel.open(f, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+        aof.open();
+        aof.append(new byte[][]{b("SET"), b("k"), b("v")});
+        assertTrue(aof.awaitDurable());
+        int forces = channel[0].forces;
+        assertTrue(forces > 0);
+
+        Thread.sleep(700); // a few of the writer's idle wakeups
+        assertEquals(forces, channel[0].forces);
+        aof.close();
+    }
+
+    private static void assertMisconf(RespObject reply) {
+        assertTrue(reply.toString(), reply instanceof RespError e && e.message().startsWith("MISCONF"));
+    }
+
+    private static RespObject dispatch(CommandDispatcher dispatcher, String... args) {
+        List<RespObject> parts = new ArrayList<>();
+        for (String a : args) parts.add(new RespBulkString(b(a)));
+        return dispatcher.dispatch(parts);
+    }
+
+    /** A file channel whose writes and syncs fail while {@link #failing} is set, as on a full disk. */
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        volatile boolean failing;
+        volatile int forces;
+
+        FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        private void check() throws IOException {
+            if (failing) throw new IOException("No space left on device");
+        }
+
+        @Override public int write(ByteBuffer src) throws IOException { check(); return delegate.write(src); }
+        @Override public long write(ByteBuffer[] srcs, int offset, int length) throws IOException { check(); return delegate.write(srcs, offset, length); }
+        @Override public int write(ByteBuffer src, long position) throws IOException { check(); return delegate.write(src, position); }
+        @Override public void force(boolean metaData) throws IOException { check(); forces++; delegate.force(metaData); }
+        @Override public int read(ByteBuffer dst) throws IOException { return delegate.read(dst); }
+        @Override public long read(ByteBuffer[] dsts, int offset, int length) throws IOException { return delegate.read(dsts, offset, length); }
+        @Override public int read(ByteBuffer dst, long position) throws IOException { return delegate.read(dst, position); }
+        @Override public long position() throws IOException { return delegate.position(); }
+        @Override public FileChannel position(long newPosition) throws IOException { delegate.position(newPosition); return this; }
+        @Override public long size() throws IOException { return delegate.size(); }
+        @Override public FileChannel truncate(long size) throws IOException { delegate.truncate(size); return this; }
+        @Override public long transferTo(long position, long count, WritableByteChannel target) throws IOException { return delegate.transferTo(position, count, target); }
+        @Override public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException { return delegate.transferFrom(src, position, count); }
+        @Override public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException { return delegate.map(mode, position, size); }
+        @Override public FileLock lock(long position, long size, boolean shared) throws IOException { return delegate.lock(position, size, shared); }
+        @Override public FileLock tryLock(long position, long size, boolean shared) throws IOException { return delegate.tryLock(position, size, shared); }
+        @Override protected void implCloseChannel() throws IOException { delegate.close(); }
+    }
+}
@@ -0,0 +1,81 @@
+package com.tejas.redis.persistence;
+
+import com.tejas.redis.store.*;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class SnapshotFileTest extends TestCase {
+
+    private Path file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = Files.createTempFile("snapshot", ".rlite");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    public void testRoundTripKeepsBinaryKeysAndAbsoluteExpiry() throws IOException {
+        DataStore store = new DataStore();
+        long deadline = System.currentTimeMillis() + 60_000;
+        byte[] binaryKey = {0, (byte) 0xFF, (byte) 0xC3, 10};
+        store.set(ByteKey.of(binaryKey), new byte[300], 0);
+        store.set(ByteKey.of("ttl"), "v".getBytes(StandardCharsets.US_ASCII), deadline);
+        for (int i = 0; i < 1000; i++) store.set(ByteKey.of("k" + i), ("v" + i).getBytes(StandardCharsets.US_ASCII), 0);
+
+        assertEquals(1002, SnapshotFile.write(store, file));
+
+        DataStore loaded = new DataStore();
+        assertEquals(1002, SnapshotFile.load(file, loaded));
+        assertEquals(300, loaded.get(ByteKey.of(binaryKey)).orElseThrow().length);
+        assertEquals(deadline, loaded.getValue(ByteKey.of("ttl")).orElseThrow().expiresAt());
+        assertEquals("v999", new String(loaded.get(ByteKey.of("k999")).orElseThrow(), StandardCharsets.US_ASCII));
+    }
+
+    public void testCollectionsRoundTrip() throws IOException {
+        DataStore store = new DataStore();
+        byte[] v = "v".getBytes(StandardCharsets.US_ASCII);
+        store.modify(ByteKey.of("list"), RedisList.class, RedisList::new, l -> {
+            for (int i = 0; i < 300; i++) l.push(false, ("e" + i).getBytes(StandardCharsets.US_ASCII));
+            return null;
+        }, null);
+        store.modify(ByteKey.of("hash"), RedisHash.class, RedisHash::new, h -> h.put(v, v), null);
+        store.modify(ByteKey.of("set"), RedisSet.class, RedisSet::new, s -> s.add("42".getBytes(StandardCharsets.US_ASCII)), null);
+        store.modify(ByteKey.of("zset"), RedisZSet.class, RedisZSet::new, z -> z.add(Double.NEGATIVE_INFINITY, v, false, false), null);
+
+        assertEquals(4, SnapshotFile.write(store, file));
+        DataStore loaded = new DataStore();
+        assertEquals(4, SnapshotFile.load(file, loaded));
+        assertEquals(300, (int) loaded.read(ByteKey.of("list"), RedisList.class, RedisList::size, 0));
+        assertEquals("linkedlist", loaded.read(ByteKey.of("list"), RedisList.class, RedisList::encoding, null));
+        assertEquals("v", new String(loaded.read(ByteKey.of("hash"), RedisHash.class, h -> h.get(v), null), StandardCharsets.US_ASCII));
+        assertEquals("intset", loaded.read(ByteKey.of("set"), RedisSet.class, RedisSet::encoding, null));
+        assertEquals(Double.NEGATIVE_INFINITY, loaded.read(ByteKey.of("zset"), RedisZSet.class, z -> z.score(v), null));
+        assertEquals(store.usedMemory(), loaded.usedMemory());
+    }
+
+    public void testCorruptionIsDetected() throws IOException {
+        DataStore store = new DataStore();
+        for (int i = 0; i < 100; i++) store.set(ByteKey.of("k" + i), "value".getBytes(StandardCharsets.US_ASCII), 0);
+        SnapshotFile.write(store, file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(raf.length() / 2);
+            int b = raf.read();
+            raf.seek(raf.length() / 2);
+            raf.write(b ^ 0x01);
+        }
+        try {
+            SnapshotFile.load(file, new DataStore());
+            fail("expected checksum failure");
+        } catch (IOException expected) {
+        }
+    }
+}
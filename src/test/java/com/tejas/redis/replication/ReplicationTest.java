@@ -0,0 +1,169 @@
+package com.tejas.redis.replication;
+
+import com.tejas.redis.persistence.Propagator;
+import com.tejas.redis.resp.*;
+import com.tejas.redis.server.CommandDispatcher;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.EvictionPolicy;
+import junit.framework.TestCase;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+public class ReplicationTest extends TestCase {
+
+    /** A node without a client listener: commands go straight to its dispatcher. */
+    private static final class Node {
+        final DataStore store;
+        final Propagator propagator = new Propagator();
+        final Replication replication;
+        final CommandDispatcher dispatcher;
+
+        Node(Path dir, int backlogSize) {
+            this(dir, backlogSize, new DataStore(8, 0, EvictionPolicy.NOEVICTION, 5));
+        }
+
+        Node(Path dir, int backlogSize, DataStore store) {
+            this.store = store;
+            replication = new Replication(store, propagator, null, dir, 0, backlogSize);
+            dispatcher = new CommandDispatcher(store, null, propagator, null, replication);
+        }
+
+        RespObject call(String... args) {
+            List<RespObject> parts = new ArrayList<>();
+            for (String a : args) parts.add(new RespBulkString(a.getBytes(StandardCharsets.UTF_8)));
+            return dispatcher.dispatch(parts);
+        }
+
+        String get(String key) {
+            RespObject r = call("GET", key);
+            return r instanceof RespBulkString b && b.data() != null ? new String(b.data(), StandardCharsets.UTF_8) : null;
+        }
+    }
+
+    private Path dir;
+    private ServerSocket listener;
+    private volatile Socket replicaConnection;
+    private Node master;
+    private Node replica;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("repl-test");
+        master = new Node(dir, 4096);
+        replica = new Node(dir, 4096);
+        listener = new ServerSocket(0);
+        Thread acceptor = new Thread(this::acceptReplicas, "test-master");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        replica.replication.close();
+        master.replication.close();
+        listener.close();
+        try (var files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) Files.delete(p);
+        }
+        Files.delete(dir);
+    }
+
+    /** Just enough of a server for the replica's handshake: PING, then PSYNC. */
+    private void acceptReplicas() {
+        while (!listener.isClosed()) {
+            try {
+                Socket s = listener.accept();
+                replicaConnection = s;
+                new Thread(() -> {
+                    try (s) {
+                        RespParser in = new RespParser(s.getInputStream());
+                        in.parse();
+                        s.getOutputStream().write("+PONG\r\n".getBytes(StandardCharsets.US_ASCII));
+                        RespArray psync = (RespArray) in.parse();
+                        master.replication.serveReplica(s, RespCommand.of(psync.items().orElseThrow()));
+                    } catch (IOException ignored) {
+                    }
+                }).start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private static void await(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) fail("timed out waiting for " + what);
+            Thread.sleep(10);
+        }
+    }
+
+    private void startReplica() throws InterruptedException {
+        replica.replication.replicaOf("127.0.0.1", listener.getLocalPort(), replica.dispatcher::dispatchFromMaster);
+        await("the replica to connect",
+                () -> replica.replication.link().state() == ReplicaLink.State.CONNECTED);
+    }
+
+    public void testFullSyncThenStreamedWritesAndReadOnlyReplica() throws Exception {
+        master.call("SET", "before", "1");
+        master.call("RPUSH", "list", "a", "b");
+        startReplica();
+        assertEquals("1", replica.get("before"));
+
+        master.call("SET", "after", "2");
+        master.call("INCR", "before");
+        await("streamed writes", () -> "2".equals(replica.get("before")));
+        assertEquals("2", replica.get("after"));
+        assertEquals(2, ((RespInteger) replica.call("LLEN", "list")).value());
+
+        RespObject refused = replica.call("SET", "x", "y");
+        assertTrue(refused instanceof RespError e && e.message().startsWith("READONLY"));
+
+        await("the replica's ack", () -> master.replication.replicas().size() == 1
+                && master.replication.replicas().get(0).ackOffset() == master.replication.offset());
+
+        replica.call("REPLICAOF", "NO", "ONE");
+        assertEquals(RespSimpleString.OK, replica.call("SET", "x", "y"));
+    }
+
+    public void testKeysEvictedOnTheMasterAreDeletedOnTheReplica() throws Exception {
+        master.replication.close();
+        master = new Node(dir, 1 << 20, new DataStore(8, 64 * 1024, EvictionPolicy.ALLKEYS_LRU, 5));
+        startReplica();
+
+        for (int i = 0; i < 2000; i++) master.call("SET", "key:" + i, "x".repeat(100));
+        assertTrue(master.store.evictedKeys() > 0);
+        await("the evictions to reach the replica", () -> master.replication.replicas().size() == 1
+                && master.replication.replicas().get(0).ackOffset() == master.replication.offset());
+        assertEquals(master.store.size(), replica.store.size());
+        for (int i = 0; i < 2000; i++) {
+            String key = "key:" + i;
+            assertEquals(key, master.get(key), replica.get(key));
+        }
+    }
+
+    public void testShortDisconnectResumesFromTheBacklog() throws Exception {
+        master.call("SET", "k", "0");
+        startReplica();
+        String replicaHistory = replica.replication.replid();
+
+        replicaConnection.close();
+        master.call("SET", "k", "1");
+        await("the partial resync", () -> "1".equals(replica.get("k")));
+        // a full sync would have started a new history on the replica
+        assertEquals(replicaHistory, replica.replication.replid());
+
+        replicaConnection.close();
+        for (int i = 0; i < 200; i++) master.call("SET", "k", Integer.toString(i)); // overflows the 4kb backlog
+        await("the full resync", () -> "199".equals(replica.get("k")));
+        assertFalse(replicaHistory.equals(replica.replication.replid()));
+    }
+}
@@ -0,0 +1,78 @@
+package com.tejas.redis.resp;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class RespBufferParserTest extends TestCase {
+
+    private final RespBufferParser parser = new RespBufferParser();
+    private final RespCommand cmd = new RespCommand();
+
+    public void testParsesPipelinedCommandsAsSlices() throws IOException {
+        ByteBuffer buf = wrap("*3\r\n$3\r\nSET\r\n$3\r\nfoo\r\n$3\r\nbar\r\n*2\r\n$3\r\nget\r\n$3\r\nfoo\r\n");
+
+        assertTrue(parser.parse(buf, cmd));
+        assertEquals(3, cmd.argc());
+        assertTrue(cmd.equalsIgnoreCase(0, "SET"));
+        assertSame(buf.array(), cmd.array(2));
+        assertEquals("bar", cmd.asString(2));
+
+        assertTrue(parser.parse(buf, cmd));
+        assertEquals(2, cmd.argc());
+        assertTrue(cmd.equalsIgnoreCase(0, "GET"));
+        assertFalse(buf.hasRemaining());
+        assertFalse(parser.parse(buf, cmd));
+    }
+
+    public void testCommandSplitAtEveryByteIsRetried() throws IOException {
+        byte[] full = "*2\r\n$4\r\nECHO\r\n$11\r\nhello world\r\n".getBytes(StandardCharsets.US_ASCII);
+        for (int cut = 0; cut < full.length; cut++) {
+            ByteBuffer buf = ByteBuffer.allocate(full.length);
+            buf.put(full, 0, cut).flip();
+            assertFalse("cut at " + cut, parser.parse(buf, cmd));
+            assertEquals(0, buf.position());
+
+            buf.limit(full.length);
+            buf.position(cut);
+            buf.put(full, cut, full.length - cut).flip();
+            assertTrue(parser.parse(buf, cmd));
+            assertEquals("hello world", cmd.asString(1));
+        }
+    }
+
+    public void testRejectsMalformedInput() {
+        assertProtocolError("+OK\r\n");
+        assertProtocolError("*1\r\n$x\r\n");
+        assertProtocolError("*1\r\n$-1\r\n");
+        assertProtocolError("*1\r\n$3\r\nfooXY");
+    }
+
+    public void testParseLongWithoutStrings() throws IOException {
+        ByteBuffer buf = wrap("*4\r\n$2\r\n42\r\n$20\r\n-9223372036854775808\r\n$19\r\n9223372036854775808\r\n$2\r\n1a\r\n");
+        assertTrue(parser.parse(buf, cmd));
+        assertEquals(42L, cmd.parseLong(0));
+        assertEquals(Long.MIN_VALUE, cmd.parseLong(1));
+        for (int i = 2; i < 4; i++) {
+            try {
+                cmd.parseLong(i);
+                fail("expected NumberFormatException for arg " + i);
+            } catch (NumberFormatException expected) {
+            }
+        }
+    }
+
+    private void assertProtocolError(String input) {
+        try {
+            parser.parse(wrap(input), cmd);
+            fail("expected protocol error for " + input);
+        } catch (IOException expected) {
+        }
+    }
+
+    private static ByteBuffer wrap(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,84 @@
+package com.tejas.redis.resp;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class RespWriterTest extends TestCase {
+
+    public void testEncodesReplies() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RespWriter w = new RespWriter(bytes);
+        w.write(RespSimpleString.OK);
+        w.write(RespSimpleString.PONG);
+        w.write(RespBulkString.NULL);
+        w.writeInteger(7);
+        w.writeInteger(123456);
+        w.writeInteger(Long.MIN_VALUE);
+        w.writeBulkBytes("bar".getBytes(StandardCharsets.US_ASCII));
+        w.writeBulkBytes(new byte[40]);
+        w.flush();
+        String expected = "+OK\r\n+PONG\r\n$-1\r\n:7\r\n:123456\r\n:-9223372036854775808\r\n$3\r\nbar\r\n$40\r\n"
+                + new String(new byte[40], StandardCharsets.US_ASCII) + "\r\n";
+        assertEquals(expected, bytes.toString(StandardCharsets.US_ASCII));
+    }
+
+    public void testResp3TypesAndTheirResp2Fallbacks() throws IOException {
+        RespObject reply = new RespArray(List.of(
+                new RespMap(List.of(new RespBulkString(bytes("proto")), RespInteger.of(3))),
+                new RespPush(List.of(new RespBulkString(bytes("invalidate")), new RespArray(null))),
+                RespBulkString.NULL, RespNull.NULL));
+        assertEquals("*4\r\n%1\r\n$5\r\nproto\r\n:3\r\n>2\r\n$10\r\ninvalidate\r\n_\r\n_\r\n_\r\n",
+                new String(RespWriter.encode(reply, 3), StandardCharsets.US_ASCII));
+        assertEquals("*4\r\n*2\r\n$5\r\nproto\r\n:3\r\n*2\r\n$10\r\ninvalidate\r\n*-1\r\n$-1\r\n$-1\r\n",
+                new String(RespWriter.encode(reply), StandardCharsets.US_ASCII));
+
+        RespParser parser = new RespParser(new ByteArrayInputStream(RespWriter.encode(reply, 3)));
+        List<RespObject> items = ((RespArray) parser.parse()).items().orElseThrow();
+        assertEquals(1, ((RespMap) items.get(0)).size());
+        assertEquals(2, ((RespPush) items.get(1)).items().size());
+        assertSame(RespNull.NULL, items.get(3));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * The GET/SET reply path (OK, nil, integers, bulk values) must not allocate once warm.
+     */
+    public void testReplyEncodingDoesNotAllocate() throws IOException {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!mx.isThreadAllocatedMemorySupported()) return;
+        mx.setThreadAllocatedMemoryEnabled(true);
+
+        RespWriter w = new RespWriter(OutputStream.nullOutputStream());
+        byte[] value = new byte[100];
+        RespBulkString hit = new RespBulkString(value);
+        RespInteger big = new RespInteger(987654321L);
+        for (int i = 0; i < 50_000; i++) encodeBatch(w, hit, big, i);
+
+        long tid = Thread.currentThread().getId();
+        long before = mx.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < 100_000; i++) encodeBatch(w, hit, big, i);
+        long allocated = mx.getThreadAllocatedBytes(tid) - before;
+
+        // a little slack for the measurement call itself
+        assertTrue("reply encoding allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static void encodeBatch(RespWriter w, RespBulkString hit, RespInteger big, long i) throws IOException {
+        w.write(RespSimpleString.OK);
+        w.write(RespBulkString.NULL);
+        w.write(hit);
+        w.write(big);
+        w.writeInteger(i);
+        w.flush();
+    }
+}
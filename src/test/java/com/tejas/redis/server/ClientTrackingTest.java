@@ -0,0 +1,122 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.*;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.EvictionPolicy;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ClientTrackingTest extends TestCase {
+
+    private final CommandDispatcher dispatcher = new CommandDispatcher(new DataStore(8, 0, EvictionPolicy.NOEVICTION, 5));
+
+    private final Map<Subscriber, ByteArrayOutputStream> outputs = new IdentityHashMap<>();
+
+    private Subscriber client() {
+        return client(null);
+    }
+
+    private Subscriber client(Transaction transaction) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Subscriber s = new Subscriber(dispatcher.pubSub(), dispatcher.tracking(), 7, new RespWriter(out), transaction,
+                () -> { }, () -> { });
+        outputs.put(s, out);
+        return s;
+    }
+
+    private static RespCommand cmd(String... args) {
+        List<RespObject> parts = new ArrayList<>();
+        for (String a : args) parts.add(new RespBulkString(a.getBytes(StandardCharsets.UTF_8)));
+        return RespCommand.of(parts);
+    }
+
+    /** What the connection has been sent since the last drain: its replies and the queued frames. */
+    private String drain(Subscriber s) throws IOException {
+        s.flush();
+        ByteArrayOutputStream out = outputs.get(s);
+        String sent = out.toString(StandardCharsets.UTF_8);
+        out.reset();
+        return sent;
+    }
+
+    private static String invalidate(String key) {
+        return ">2\r\n$10\r\ninvalidate\r\n*1\r\n$" + key.length() + "\r\n" + key + "\r\n";
+    }
+
+    public void testReadKeysAreInvalidatedOnceWhenWrittenOrExpired() throws InterruptedException, IOException {
+        Subscriber c = client();
+        c.execute(cmd("CLIENT", "TRACKING", "ON"), dispatcher);
+        assertTrue(drain(c).startsWith("-ERR CLIENT TRACKING needs RESP3"));
+        c.execute(cmd("HELLO", "3"), dispatcher);
+        assertTrue(drain(c).startsWith("%7\r\n$6\r\nserver\r\n$5\r\nredis\r\n"));
+        c.execute(cmd("CLIENT", "TRACKING", "ON"), dispatcher);
+        c.execute(cmd("GET", "k"), dispatcher);
+        assertEquals("+OK\r\n_\r\n", drain(c));
+
+        dispatcher.dispatch(cmd("SET", "k", "v1"));
+        dispatcher.dispatch(cmd("SET", "k", "v2")); // forgotten after the first change until read again
+        assertEquals(invalidate("k"), drain(c));
+
+        c.execute(cmd("GET", "k"), dispatcher);
+        c.execute(cmd("SET", "k", "v3"), dispatcher); // the connection's own write, told after its reply
+        assertEquals("$2\r\nv2\r\n+OK\r\n" + invalidate("k"), drain(c));
+
+        dispatcher.dispatch(cmd("SET", "t", "v", "PX", "20"));
+        c.execute(cmd("MGET", "t", "k"), dispatcher);
+        drain(c);
+        Thread.sleep(40);
+        dispatcher.dispatch(cmd("EXISTS", "t")); // reclaims the expired key
+        assertEquals(invalidate("t"), drain(c));
+
+        assertEquals(1, dispatcher.tracking().clients());
+        c.close();
+        assertEquals(0, dispatcher.tracking().clients());
+        assertEquals(0, dispatcher.tracking().trackedKeys());
+    }
+
+    public void testWatchBeforeTrackingStillGuardsExec() throws IOException {
+        // the connection's WATCH ran before it became a subscriber
+        Transaction tx = new Transaction(dispatcher);
+        assertEquals(RespSimpleString.OK, tx.execute(cmd("WATCH", "k")));
+        Subscriber c = client(tx);
+        c.execute(cmd("HELLO", "3"), dispatcher);
+        c.execute(cmd("CLIENT", "TRACKING", "ON"), dispatcher);
+        drain(c);
+
+        dispatcher.dispatch(cmd("SET", "k", "theirs"));
+        c.execute(cmd("MULTI"), dispatcher);
+        c.execute(cmd("SET", "k", "mine"), dispatcher);
+        c.execute(cmd("EXEC"), dispatcher);
+        assertEquals("+OK\r\n+QUEUED\r\n_\r\n", drain(c));
+        assertEquals("theirs", new String(((RespBulkString) dispatcher.dispatch(cmd("GET", "k"))).data(), StandardCharsets.UTF_8));
+    }
+
+    public void testBroadcastPrefixesAndNoloop() throws IOException {
+        Subscriber c = client();
+        c.execute(cmd("HELLO", "3"), dispatcher);
+        c.execute(cmd("CLIENT", "TRACKING", "ON", "PREFIX", "user:"), dispatcher);
+        c.execute(cmd("CLIENT", "TRACKING", "ON", "BCAST", "PREFIX", "user:", "PREFIX", "user:1"), dispatcher);
+        c.execute(cmd("CLIENT", "TRACKING", "ON", "BCAST", "PREFIX", "user:", "NOLOOP"), dispatcher);
+        String replies = drain(c);
+        assertTrue(replies.contains("-ERR PREFIX option requires BCAST mode to be enabled\r\n-ERR Prefix 'user:1' overlaps"));
+        assertTrue(replies.endsWith("\r\n+OK\r\n"));
+
+        dispatcher.dispatch(cmd("SET", "user:1", "a"));
+        dispatcher.dispatch(cmd("SET", "order:1", "b"));
+        dispatcher.dispatch(cmd("HSET", "user:2", "f", "v"));
+        c.execute(cmd("DEL", "user:1"), dispatcher); // own write under NOLOOP
+        assertEquals(invalidate("user:1") + invalidate("user:2") + ":1\r\n", drain(c));
+
+        c.execute(cmd("CLIENT", "TRACKING", "OFF"), dispatcher);
+        dispatcher.dispatch(cmd("SET", "user:3", "c"));
+        assertEquals("+OK\r\n", drain(c));
+        assertEquals(0, dispatcher.tracking().prefixCount());
+    }
+}
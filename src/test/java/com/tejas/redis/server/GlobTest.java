@@ -0,0 +1,27 @@
+package com.tejas.redis.server;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+
+public class GlobTest extends TestCase {
+
+    private static boolean matches(String pattern, String s) {
+        return Glob.matches(pattern.getBytes(StandardCharsets.US_ASCII), s.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public void testRedisGlobSyntax() {
+        assertTrue(matches("*", ""));
+        assertTrue(matches("user:*:name", "user:42:name"));
+        assertFalse(matches("user:*:name", "user:42:email"));
+        assertTrue(matches("h?llo", "hello"));
+        assertFalse(matches("h?llo", "hllo"));
+        assertTrue(matches("h[ae]llo", "hallo"));
+        assertFalse(matches("h[^e]llo", "hello"));
+        assertTrue(matches("k[0-9][z-a]", "k7q"));
+        assertTrue(matches("a\\*b", "a*b"));
+        assertFalse(matches("a\\*b", "axb"));
+        assertTrue(matches("*a*a*a*b", "aaaaaaaaaaaaaaaaaaaaaaab"));
+        assertFalse(matches("*a*a*a*b", "aaaaaaaaaaaaaaaaaaaaaaaa"));
+    }
+}
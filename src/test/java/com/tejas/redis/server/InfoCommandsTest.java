@@ -0,0 +1,93 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.*;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.EvictionPolicy;
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class InfoCommandsTest extends TestCase {
+
+    private final CommandDispatcher dispatcher = new CommandDispatcher(new DataStore(8, 0, EvictionPolicy.NOEVICTION, 5));
+
+    private RespObject run(String... args) {
+        List<RespObject> parts = new ArrayList<>();
+        for (String a : args) parts.add(new RespBulkString(a.getBytes(StandardCharsets.UTF_8)));
+        return dispatcher.dispatch(parts);
+    }
+
+    private String info(String... sections) {
+        String[] args = new String[sections.length + 1];
+        args[0] = "INFO";
+        System.arraycopy(sections, 0, args, 1, sections.length);
+        return new String(((RespBulkString) run(args)).data(), StandardCharsets.UTF_8);
+    }
+
+    public void testCommandStatsAndKeyspace() {
+        run("SET", "a", "1", "PX", "100000");
+        run("SET", "b", "2");
+        run("GET", "a");
+        run("GET");             // wrong arity: rejected
+        run("INCR", "a", "x");  // rejected
+        run("LPUSH", "a", "x"); // WRONGTYPE: failed
+
+        String stats = info("commandstats");
+        assertTrue(stats, stats.contains("cmdstat_set:calls=2,"));
+        assertTrue(stats, stats.contains("cmdstat_get:calls=1,") && stats.contains("rejected_calls=1,failed_calls=0"));
+        assertTrue(stats, stats.contains("cmdstat_lpush:calls=1,") && stats.contains("rejected_calls=0,failed_calls=1"));
+        assertTrue(info().contains("db0:keys=2,expires=1,avg_ttl=0\r\n"));
+        assertFalse(info().contains("cmdstat_"));
+        assertTrue(info("everything").contains("latency_percentiles_usec_get:p50="));
+
+        run("DEL", "a");
+        assertTrue(info("keyspace").contains("db0:keys=1,expires=0,"));
+    }
+
+    public void testSlowLogKeepsNewestAndTruncatesArguments() {
+        dispatcher.slowLog().slowerThan(0);
+        dispatcher.slowLog().maxLen(2);
+        run("SET", "k", "x".repeat(200));
+        run("GET", "k");
+        run("ECHO", "hi");
+
+        assertEquals(2, ((RespInteger) run("SLOWLOG", "LEN")).value());
+        List<RespObject> entries = ((RespArray) run("SLOWLOG", "GET", "-1")).items().get();
+        assertEquals(2, entries.size()); // ECHO and the LEN just before; SET and GET were dropped
+        List<RespObject> newest = ((RespArray) entries.get(0)).items().get();
+        List<RespObject> args = ((RespArray) newest.get(3)).items().get();
+        assertEquals("SLOWLOG", new String(((RespBulkString) args.get(0)).data(), StandardCharsets.UTF_8));
+
+        dispatcher.slowLog().maxLen(10);
+        run("SLOWLOG", "RESET");
+        run("SET", "k", "x".repeat(200));
+        List<RespObject> set = ((RespArray) ((RespArray) run("SLOWLOG", "GET", "1")).items().get().get(0)).items().get();
+        String value = new String(((RespBulkString) ((RespArray) set.get(3)).items().get().get(2)).data(), StandardCharsets.UTF_8);
+        assertEquals("x".repeat(128) + "... (72 more bytes)", value);
+    }
+
+    public void testHistogramBucketsBoundTheirValues() {
+        for (int bits : new int[]{3, 7}) {
+            for (long v : new long[]{0, 1, 15, 16, 17, 255, 256, 1000, 123_456, 10_000_000_000L, Long.MAX_VALUE}) {
+                int i = LatencyHistogram.index(bits, v);
+                long highest = LatencyHistogram.highestInBucket(bits, i);
+                assertTrue(v + " <= " + highest, v <= highest);
+                assertTrue(i == 0 || v > LatencyHistogram.highestInBucket(bits, i - 1));
+                assertTrue(highest - v <= v >> bits);
+                assertTrue(i < LatencyHistogram.buckets(bits));
+            }
+        }
+        LatencyHistogram h = new LatencyHistogram(3);
+        for (int n = 1; n <= 100; n++) h.record(n * 1000L);
+        assertEquals(LatencyHistogram.highestInBucket(3, LatencyHistogram.index(3, 50_000)), h.percentile(0.5));
+        assertEquals(100_000, h.percentile(1.0));
+
+        // buckets counted elsewhere (CommandStats' stripes) read back the same, to bucket precision
+        LatencyHistogram counted = new LatencyHistogram(3);
+        for (int n = 1; n <= 100; n++) counted.add(LatencyHistogram.index(3, n * 1000L), 1);
+        assertEquals(h.percentile(0.5), counted.percentile(0.5));
+        assertEquals(100, counted.countBelow(Long.MAX_VALUE));
+    }
+}
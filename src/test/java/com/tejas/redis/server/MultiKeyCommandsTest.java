@@ -0,0 +1,68 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.RespArray;
+import com.tejas.redis.resp.RespBulkString;
+import com.tejas.redis.resp.RespInteger;
+import com.tejas.redis.resp.RespObject;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.EvictionPolicy;
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MultiKeyCommandsTest extends TestCase {
+
+    private final CommandDispatcher dispatcher = new CommandDispatcher(new DataStore(8, 0, EvictionPolicy.NOEVICTION, 5));
+
+    private RespObject dispatch(String... args) {
+        List<RespObject> parts = new ArrayList<>();
+        for (String a : args) parts.add(new RespBulkString(a.getBytes(StandardCharsets.US_ASCII)));
+        return dispatcher.dispatch(parts);
+    }
+
+    private static long integer(RespObject reply) {
+        return ((RespInteger) reply).value();
+    }
+
+    public void testDelUnlinkAndExistsCountKeys() {
+        dispatch("MSET", "a", "1", "b", "2", "c", "3");
+        dispatch("RPUSH", "list", "x");
+        assertEquals(4, integer(dispatch("EXISTS", "a", "a", "b", "missing", "list")));
+        assertEquals(2, integer(dispatch("DEL", "a", "b", "missing")));
+        assertEquals(2, integer(dispatch("UNLINK", "c", "list", "a")));
+        assertEquals(0, integer(dispatch("EXISTS", "a", "b", "c", "list")));
+    }
+
+    public void testMgetNeverSeesHalfAnMset() throws InterruptedException {
+        String[] keys = new String[16];
+        for (int i = 0; i < keys.length; i++) keys[i] = "key:" + i;
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (int round = 0; !stop.get(); round++) {
+                String[] args = new String[1 + keys.length * 2];
+                args[0] = "MSET";
+                for (int i = 0; i < keys.length; i++) {
+                    args[1 + 2 * i] = keys[i];
+                    args[2 + 2 * i] = Integer.toString(round);
+                }
+                dispatch(args);
+            }
+        });
+        writer.start();
+        try {
+            String[] mget = new String[1 + keys.length];
+            mget[0] = "MGET";
+            System.arraycopy(keys, 0, mget, 1, keys.length);
+            for (int n = 0; n < 20_000; n++) {
+                List<RespObject> values = ((RespArray) dispatch(mget)).items().orElseThrow();
+                for (RespObject v : values) assertEquals(values.get(0).toString(), v.toString());
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+    }
+}
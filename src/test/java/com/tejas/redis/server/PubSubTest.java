@@ -0,0 +1,100 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.*;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.EvictionPolicy;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PubSubTest extends TestCase {
+
+    private final CommandDispatcher dispatcher = new CommandDispatcher(new DataStore(8, 0, EvictionPolicy.NOEVICTION, 5));
+    private final AtomicInteger wakes = new AtomicInteger();
+    private final AtomicInteger kills = new AtomicInteger();
+
+    private final Map<Subscriber, ByteArrayOutputStream> outputs = new IdentityHashMap<>();
+
+    private Subscriber subscriber() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Subscriber s = new Subscriber(dispatcher.pubSub(), dispatcher.tracking(), 1, new RespWriter(out), null,
+                wakes::incrementAndGet, kills::incrementAndGet);
+        outputs.put(s, out);
+        return s;
+    }
+
+    private static RespCommand cmd(String... args) {
+        List<RespObject> parts = new ArrayList<>();
+        for (String a : args) parts.add(new RespBulkString(a.getBytes(StandardCharsets.UTF_8)));
+        return RespCommand.of(parts);
+    }
+
+    /** What the connection has been sent since the last drain: its replies and the queued frames. */
+    private String drain(Subscriber s) throws IOException {
+        s.flush();
+        ByteArrayOutputStream out = outputs.get(s);
+        String sent = out.toString(StandardCharsets.UTF_8);
+        out.reset();
+        return sent;
+    }
+
+    public void testMessagesFollowRepliesInOrderAndWakeOnce() throws IOException {
+        Subscriber a = subscriber();
+        Subscriber b = subscriber();
+        a.execute(cmd("SUBSCRIBE", "news"), dispatcher);
+        b.execute(cmd("PSUBSCRIBE", "n*"), dispatcher);
+        assertEquals(2, ((RespInteger) dispatcher.dispatch(cmd("PUBLISH", "news", "hi"))).value());
+        dispatcher.dispatch(cmd("PUBLISH", "news", "again"));
+
+        assertEquals("*3\r\n$9\r\nsubscribe\r\n$4\r\nnews\r\n:1\r\n"
+                + "*3\r\n$7\r\nmessage\r\n$4\r\nnews\r\n$2\r\nhi\r\n"
+                + "*3\r\n$7\r\nmessage\r\n$4\r\nnews\r\n$5\r\nagain\r\n", drain(a));
+        assertTrue(drain(b).endsWith("*4\r\n$8\r\npmessage\r\n$2\r\nn*\r\n$4\r\nnews\r\n$2\r\nhi\r\n"
+                + "*4\r\n$8\r\npmessage\r\n$2\r\nn*\r\n$4\r\nnews\r\n$5\r\nagain\r\n"));
+        // one wake per subscriber until it drains, however many frames were queued
+        assertEquals(2, wakes.get());
+
+        a.execute(cmd("GET", "k"), dispatcher);
+        assertTrue(drain(a).startsWith("-ERR Can't execute 'get'"));
+        a.execute(cmd("UNSUBSCRIBE"), dispatcher);
+        a.execute(cmd("GET", "k"), dispatcher);
+        assertEquals("*3\r\n$11\r\nunsubscribe\r\n$4\r\nnews\r\n:0\r\n$-1\r\n", drain(a));
+        assertEquals(0, dispatcher.pubSub().subscribers(CommandDispatcher.key(cmd("x", "news"), 1)));
+    }
+
+    public void testSlowSubscriberIsCutOffWithoutBlockingThePublisher() throws IOException {
+        dispatcher.pubSub().outputBufferLimit(4096);
+        Subscriber slow = subscriber();
+        Subscriber fast = subscriber();
+        slow.execute(cmd("SUBSCRIBE", "ch"), dispatcher);
+        fast.execute(cmd("SUBSCRIBE", "ch"), dispatcher);
+        String payload = "x".repeat(100);
+        for (int i = 0; i < 100; i++) {
+            dispatcher.dispatch(cmd("PUBLISH", "ch", payload));
+            drain(fast);
+        }
+        assertTrue(slow.overflowed());
+        assertFalse(fast.overflowed());
+        assertEquals(1, kills.get());
+        assertEquals(1, dispatcher.pubSub().slowDisconnects());
+    }
+
+    public void testRepliesDoNotCountAgainstTheOutputLimit() throws IOException {
+        dispatcher.pubSub().outputBufferLimit(4096);
+        dispatcher.dispatch(cmd("SET", "big", "x".repeat(10_000)));
+        Subscriber s = subscriber();
+        s.execute(cmd("HELLO", "3"), dispatcher);
+        s.execute(cmd("SUBSCRIBE", "ch"), dispatcher);
+        for (int i = 0; i < 10; i++) s.execute(cmd("GET", "big"), dispatcher);
+        assertFalse(s.overflowed());
+        assertEquals(0, kills.get());
+        assertEquals(10, drain(s).split("x{10000}", -1).length - 1);
+    }
+}
@@ -0,0 +1,180 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.resp.*;
+import junit.framework.TestCase;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The server over real sockets, in both connection modes: commands that arrive in pieces,
+ * arguments larger than a read buffer, pipelines and replies the client is slow to read,
+ * and connections that get pub/sub messages or invalidations between their replies.
+ */
+public class RedisServerTest extends TestCase {
+
+    private Path dir;
+    private RedisServer server;
+    private Thread serverThread;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("redis-server-test");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (server != null) {
+            server.stop();
+            serverThread.join(5000);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    public void testThreadsMode() throws Exception {
+        try (Socket s = start(IoMode.THREADS, 7480)) {
+            exercise(s);
+        }
+        pushes(7480);
+    }
+
+    public void testNioMode() throws Exception {
+        try (Socket s = start(IoMode.NIO, 7481)) {
+            exercise(s);
+
+            // a malformed command is answered with an error, then the connection is closed
+            s.getOutputStream().write(b("$3\r\nfoo\r\n"));
+            RespParser in = new RespParser(s.getInputStream());
+            RespObject reply = in.parse();
+            assertTrue(reply.toString(), reply instanceof RespError e && e.message().startsWith("ERR Protocol error"));
+            try {
+                in.parse();
+                fail("connection should be closed after a protocol error");
+            } catch (EOFException expected) {
+            }
+        }
+        pushes(7481);
+    }
+
+    private void exercise(Socket s) throws Exception {
+        OutputStream out = s.getOutputStream();
+        RespParser in = new RespParser(s.getInputStream());
+
+        // one command split inside a length line and inside an argument
+        for (String part : new String[]{"*3\r\n$3\r\nSET\r\n$", "5\r\nsplit\r\n$5\r\nva", "lue\r\n"}) {
+            out.write(b(part));
+            out.flush();
+            Thread.sleep(20);
+        }
+        assertEquals("OK", simple(in.parse()));
+        out.write(command("GET", "split"));
+        assertEquals("value", bulk(in.parse()));
+
+        // an argument several times larger than the 16KB read buffer
+        byte[] big = new byte[100 * 1024];
+        Arrays.fill(big, (byte) 'x');
+        big[big.length - 1] = 'y';
+        out.write(command("SET", "big", new String(big, StandardCharsets.US_ASCII)));
+        assertEquals("OK", simple(in.parse()));
+
+        // a pipelined batch sent in one write
+        StringBuilder batch = new StringBuilder();
+        for (int i = 0; i < 1000; i++) batch.append("*2\r\n$4\r\nINCR\r\n$7\r\ncounter\r\n");
+        out.write(b(batch.toString()));
+        for (int i = 1; i <= 1000; i++) assertEquals(i, ((RespInteger) in.parse()).value());
+
+        // more replies than the socket buffers hold while the client is not reading
+        int gets = 200;
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < gets; i++) out.write(command("GET", "big"));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        writer.start();
+        Thread.sleep(300);
+        for (int i = 0; i < gets; i++) assertTrue(Arrays.equals(big, ((RespBulkString) in.parse()).data()));
+        writer.join();
+
+        out.write(command("PING"));
+        assertEquals("PONG", simple(in.parse()));
+    }
+
+    private void pushes(int port) throws Exception {
+        try (Socket sub = connect(port); Socket other = connect(port)) {
+            RespParser in = new RespParser(sub.getInputStream());
+            RespParser otherIn = new RespParser(other.getInputStream());
+
+            sub.getOutputStream().write(command("SUBSCRIBE", "ch"));
+            assertEquals("subscribe", bulk(((RespArray) in.parse()).items().get().get(0)));
+            other.getOutputStream().write(command("PUBLISH", "ch", "hi"));
+            assertEquals(1, ((RespInteger) otherIn.parse()).value());
+            assertEquals("hi", bulk(((RespArray) in.parse()).items().get().get(2)));
+
+            // a tracking connection gets its replies, then the invalidation of a key it read
+            sub.getOutputStream().write(command("UNSUBSCRIBE"));
+            in.parse();
+            sub.getOutputStream().write(command("HELLO", "3"));
+            assertTrue(in.parse() instanceof RespMap);
+            sub.getOutputStream().write(b(new String(command("CLIENT", "TRACKING", "ON"), StandardCharsets.US_ASCII)
+                    + new String(command("GET", "split"), StandardCharsets.US_ASCII)));
+            assertEquals("OK", simple(in.parse()));
+            assertEquals("value", bulk(in.parse()));
+            other.getOutputStream().write(command("SET", "split", "changed"));
+            assertEquals("OK", simple(otherIn.parse()));
+            RespPush push = (RespPush) in.parse();
+            assertEquals("invalidate", bulk(push.items().get(0)));
+            sub.getOutputStream().write(command("PING"));
+            assertEquals("PONG", simple(in.parse()));
+        }
+    }
+
+    private Socket start(IoMode mode, int port) throws Exception {
+        server = new RedisServer(new ServerConfig().port(port).ioMode(mode).ioThreads(1).dir(dir));
+        serverThread = new Thread(server::start, "test-server-" + mode);
+        serverThread.start();
+        return connect(port);
+    }
+
+    private static Socket connect(int port) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            Socket s = new Socket();
+            try {
+                s.connect(new InetSocketAddress("localhost", port));
+                s.setTcpNoDelay(true);
+                return s;
+            } catch (IOException notYet) {
+                s.close();
+                Thread.sleep(50);
+            }
+        }
+        throw new IllegalStateException("server did not start on port " + port);
+    }
+
+    private static byte[] command(String... args) {
+        StringBuilder sb = new StringBuilder().append('*').append(args.length).append("\r\n");
+        for (String a : args) sb.append('$').append(a.length()).append("\r\n").append(a).append("\r\n");
+        return b(sb.toString());
+    }
+
+    private static String simple(RespObject reply) {
+        assertTrue(reply.toString(), reply instanceof RespSimpleString);
+        return ((RespSimpleString) reply).value();
+    }
+
+    private static String bulk(RespObject reply) {
+        return new String(((RespBulkString) reply).data(), StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] b(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,127 @@
+package com.tejas.redis.server;
+
+import com.tejas.redis.persistence.AppendOnlyFile;
+import com.tejas.redis.persistence.FsyncPolicy;
+import com.tejas.redis.persistence.Propagator;
+import com.tejas.redis.resp.*;
+import com.tejas.redis.store.DataStore;
+import com.tejas.redis.store.EvictionPolicy;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TransactionTest extends TestCase {
+
+    private final CommandDispatcher dispatcher = new CommandDispatcher(new DataStore(8, 0, EvictionPolicy.NOEVICTION, 5));
+
+    private static RespCommand cmd(String... args) {
+        List<RespObject> parts = new ArrayList<>();
+        for (String a : args) parts.add(new RespBulkString(a.getBytes(StandardCharsets.UTF_8)));
+        return RespCommand.of(parts);
+    }
+
+    private static String text(RespObject o) {
+        return new String(((RespBulkString) o).data(), StandardCharsets.UTF_8);
+    }
+
+    public void testQueuedCommandsRunTogetherAndErrorsStayPerCommand() {
+        Transaction tx = new Transaction(dispatcher);
+        assertEquals(RespSimpleString.OK, tx.execute(cmd("MULTI")));
+        assertEquals("QUEUED", ((RespSimpleString) tx.execute(cmd("SET", "k", "1"))).value());
+        tx.execute(cmd("INCR", "k"));
+        tx.execute(cmd("LPUSH", "k", "x"));
+        // nothing has run yet
+        assertSame(RespBulkString.NULL, dispatcher.dispatch(cmd("GET", "k")));
+
+        List<RespObject> replies = ((RespArray) tx.execute(cmd("EXEC"))).items().get();
+        assertEquals(3, replies.size());
+        assertEquals(2, ((RespInteger) replies.get(1)).value());
+        assertTrue(((RespError) replies.get(2)).message().startsWith("WRONGTYPE"));
+        assertEquals("2", text(dispatcher.dispatch(cmd("GET", "k"))));
+
+        tx.execute(cmd("MULTI"));
+        tx.execute(cmd("SET", "k", "3"));
+        assertTrue(tx.execute(cmd("GET")) instanceof RespError);
+        assertTrue(((RespError) tx.execute(cmd("EXEC"))).message().startsWith("EXECABORT"));
+        assertEquals("2", text(dispatcher.dispatch(cmd("GET", "k"))));
+        assertEquals("ERR EXEC without MULTI", ((RespError) tx.execute(cmd("EXEC"))).message());
+    }
+
+    public void testCommandsThatWaitForTheBarrierAreRefusedInMulti() throws IOException {
+        // EXEC holds the propagator barrier, so a queued rewrite would wait for itself
+        Path file = Files.createTempFile("multi", ".aof");
+        Propagator propagator = new Propagator();
+        AppendOnlyFile aof = new AppendOnlyFile(file, FsyncPolicy.NO);
+        aof.open();
+        propagator.addSink(aof);
+        try {
+            CommandDispatcher withAof = new CommandDispatcher(new DataStore(8, 0, EvictionPolicy.NOEVICTION, 5), null,
+                    propagator, aof);
+            Transaction tx = new Transaction(withAof);
+            tx.execute(cmd("MULTI"));
+            tx.execute(cmd("SET", "k", "1"));
+            assertEquals("ERR Command not allowed inside a transaction",
+                    ((RespError) tx.execute(cmd("BGREWRITEAOF"))).message());
+            assertTrue(((RespError) tx.execute(cmd("EXEC"))).message().startsWith("EXECABORT"));
+            assertSame(RespBulkString.NULL, withAof.dispatch(cmd("GET", "k")));
+            assertFalse(aof.isRewriting());
+        } finally {
+            propagator.removeSink(aof);
+            aof.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+        public void testWatchedKeyChangedOrExpiredAbortsExec() throws InterruptedException {
+        Transaction tx = new Transaction(dispatcher);
+        dispatcher.dispatch(cmd("SET", "a", "1"));
+        tx.execute(cmd("WATCH", "a", "missing"));
+        dispatcher.dispatch(cmd("SET", "a", "2"));
+        tx.execute(cmd("MULTI"));
+        tx.execute(cmd("SET", "a", "3"));
+        assertNull(((RespArray) tx.execute(cmd("EXEC"))).items().orElse(null));
+        assertEquals("2", text(dispatcher.dispatch(cmd("GET", "a"))));
+
+        // EXEC unwatched everything, so the same transaction now goes through
+        tx.execute(cmd("MULTI"));
+        tx.execute(cmd("SET", "a", "3"));
+        assertTrue(((RespArray) tx.execute(cmd("EXEC"))).items().isPresent());
+
+        dispatcher.dispatch(cmd("SET", "t", "1", "PX", "20"));
+        tx.execute(cmd("WATCH", "t"));
+        Thread.sleep(40);
+        tx.execute(cmd("MULTI"));
+        tx.execute(cmd("SET", "t", "2"));
+        assertNull(((RespArray) tx.execute(cmd("EXEC"))).items().orElse(null));
+    }
+
+    public void testOptimisticIncrementsNeverLoseUpdates() throws InterruptedException {
+        dispatcher.dispatch(cmd("SET", "counter", "0"));
+        AtomicInteger committed = new AtomicInteger();
+        AtomicInteger aborted = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                Transaction tx = new Transaction(dispatcher);
+                for (int i = 0; i < 500; i++) {
+                    tx.execute(cmd("WATCH", "counter"));
+                    long v = Long.parseLong(text(tx.execute(cmd("GET", "counter"))));
+                    tx.execute(cmd("MULTI"));
+                    tx.execute(cmd("SET", "counter", Long.toString(v + 1)));
+                    if (((RespArray) tx.execute(cmd("EXEC"))).items().isPresent()) committed.incrementAndGet();
+                    else aborted.incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) t.join();
+        assertEquals(2000, committed.get() + aborted.get());
+        assertEquals(Integer.toString(committed.get()), text(dispatcher.dispatch(cmd("GET", "counter"))));
+    }
+}
@@ -0,0 +1,115 @@
+package com.tejas.redis.store;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CollectionEncodingTest extends TestCase {
+
+    private static byte[] b(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String s(byte[] b) {
+        return new String(b, StandardCharsets.US_ASCII);
+    }
+
+    public void testListConvertsPastThresholdAndKeepsOrder() {
+        RedisList list = new RedisList();
+        for (int i = 0; i < RedisList.MAX_LISTPACK_ENTRIES; i++) list.push(false, b("e" + i));
+        assertEquals("listpack", list.encoding());
+        list.push(true, b("head"));
+        assertEquals("linkedlist", list.encoding());
+
+        List<String> range = new ArrayList<>();
+        list.range(0, 2, e -> range.add(s(e)));
+        assertEquals(List.of("head", "e0", "e1"), range);
+        range.clear();
+        list.range(-3, -2, e -> range.add(s(e)));
+        assertEquals(List.of("e125", "e126"), range);
+        assertEquals("e127", s(list.pop(false)));
+        assertEquals(RedisList.MAX_LISTPACK_ENTRIES, list.size());
+    }
+
+    public void testHashListpackAndTableAgree() {
+        RedisHash hash = new RedisHash();
+        assertTrue(hash.put(b("f"), b("1")));
+        assertFalse(hash.put(b("f"), b("2")));
+        assertEquals("2", s(hash.get(b("f"))));
+        assertEquals("listpack", hash.encoding());
+        long small = hash.memoryUsage();
+
+        hash.put(b("big"), new byte[RedisHash.MAX_LISTPACK_VALUE + 1]);
+        assertEquals("hashtable", hash.encoding());
+        assertEquals("2", s(hash.get(b("f"))));
+        assertTrue(hash.memoryUsage() > small);
+        assertTrue(hash.remove(b("f")));
+        assertNull(hash.get(b("f")));
+        assertEquals(1, hash.size());
+    }
+
+    public void testSetMovesFromIntsetToListpackToTable() {
+        RedisSet set = new RedisSet();
+        for (int i = -5; i < 100; i++) set.add(b(Integer.toString(i * 1000)));
+        set.add(b("70000")); // widens the intset to 4 bytes
+        assertEquals("intset", set.encoding());
+        assertTrue(set.contains(b("-5000")));
+        assertTrue(set.contains(b("70000")));
+        assertFalse("not canonical, so not the same member", set.contains(b("070000")));
+
+        set.add(b("name"));
+        assertEquals("listpack", set.encoding());
+        assertTrue(set.contains(b("70000")));
+        for (int i = 0; i < RedisSet.MAX_LISTPACK_ENTRIES; i++) set.add(b("m" + i));
+        assertEquals("hashtable", set.encoding());
+        assertTrue(set.contains(b("-5000")) && set.contains(b("name")) && set.contains(b("m0")));
+    }
+
+    public void testZSetOrdersByScoreThenMemberInBothEncodings() {
+        for (int n : new int[]{10, RedisZSet.MAX_LISTPACK_ENTRIES * 4}) {
+            RedisZSet zset = new RedisZSet();
+            for (int i = n - 1; i >= 0; i--) zset.add(i / 2, b(String.format("m%05d", i)), false, false);
+            assertEquals(n > RedisZSet.MAX_LISTPACK_ENTRIES ? "skiplist" : "listpack", zset.encoding());
+
+            List<String> all = new ArrayList<>();
+            zset.forEach((m, score) -> all.add(s(m)));
+            for (int i = 0; i < n; i++) assertEquals(String.format("m%05d", i), all.get(i));
+
+            assertEquals(RedisZSet.UPDATED, zset.add(-1, b("m00003"), false, false));
+            List<String> top = new ArrayList<>();
+            zset.rangeByRank(0, 0, (m, score) -> top.add(s(m) + "=" + score));
+            assertEquals(List.of("m00003=-1.0"), top);
+
+            List<String> window = new ArrayList<>();
+            zset.rangeByScore(1, true, 3, false, 1, 2, (m, score) -> window.add(s(m)));
+            assertEquals(List.of("m00005", "m00006"), window);
+            assertTrue(zset.remove(b("m00003")));
+            assertNull(zset.score(b("m00003")));
+            assertEquals(n - 1, zset.size());
+        }
+    }
+
+    public void testStoreDeletesEmptiedCollectionsAndRejectsWrongType() {
+        DataStore store = new DataStore();
+        ByteKey key = ByteKey.of("h");
+        store.modify(key, RedisHash.class, RedisHash::new, h -> h.put(b("f"), b("v")), false);
+        assertEquals(ValueType.HASH, store.type(key).orElseThrow());
+        long used = store.usedMemory();
+        assertTrue(used > 0);
+        try {
+            store.get(key);
+            fail("GET on a hash");
+        } catch (WrongTypeException expected) {
+        }
+        try {
+            store.modify(key, RedisList.class, RedisList::new, l -> l.size(), 0);
+            fail("list op on a hash");
+        } catch (WrongTypeException expected) {
+        }
+        store.modify(key, RedisHash.class, null, h -> h.remove(b("f")), false);
+        assertFalse(store.type(key).isPresent());
+        assertEquals(0, store.usedMemory());
+    }
+}
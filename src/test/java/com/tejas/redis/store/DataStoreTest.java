@@ -0,0 +1,332 @@
+package com.tejas.redis.store;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class DataStoreTest extends TestCase {
+
+    private static final byte[] V = "v".getBytes(StandardCharsets.US_ASCII);
+
+    public void testActiveExpiryReclaimsKeysNobodyReads() throws InterruptedException {
+        DataStore store = new DataStore(8, 0, EvictionPolicy.NOEVICTION, 5);
+        // far enough out that no key is already expired when it is set, even on a slow machine
+        long deadline = System.currentTimeMillis() + 500;
+        for (int i = 0; i < 1000; i++) store.set(ByteKey.of("session:" + i), V, deadline);
+        // overwritten without a TTL: its wheel entry turns stale and must not delete it
+        store.set(ByteKey.of("session:7"), V, 0);
+        store.set(ByteKey.of("forever"), V, 0);
+
+        Thread.sleep(deadline + 200 - System.currentTimeMillis());
+        int expired = store.activeExpireCycle(Long.MAX_VALUE);
+
+        assertEquals(999, expired);
+        assertEquals(999, store.expiredKeys());
+        assertEquals(2, store.size());
+        assertTrue(store.get(ByteKey.of("session:7")).isPresent());
+        assertEquals(0, store.expiryLagMs());
+    }
+
+    public void testZeroBudgetLeavesWorkForLater() throws InterruptedException {
+        DataStore store = new DataStore(8, 0, EvictionPolicy.NOEVICTION, 5);
+        long deadline = System.currentTimeMillis() + 500;
+        for (int i = 0; i < 2000; i++) store.set(ByteKey.of("k" + i), V, deadline);
+        Thread.sleep(deadline + 200 - System.currentTimeMillis());
+
+        int first = store.activeExpireCycle(0);
+        assertTrue(first < 2000);
+        int rest = store.activeExpireCycle(Long.MAX_VALUE);
+        assertEquals(2000, first + rest);
+        assertEquals(0, store.size());
+    }
+
+    public void testLaterRoundEntriesCountAgainstTheBudget() {
+        ExpiryWheel wheel = new ExpiryWheel(100, 4, 0);
+        // 1000 keys four revolutions out, all in the slot of tick 0, ahead of one that is due
+        for (int i = 0; i < 1000; i++) wheel.schedule(ByteKey.of("far" + i), 1650);
+        wheel.schedule(ByteKey.of("due"), 50);
+        AtomicBoolean expired = new AtomicBoolean();
+        ExpiryWheel.ExpireAction action = (key, at, now) -> {
+            expired.set(true);
+            return true;
+        };
+
+        assertEquals(0, wheel.advance(150, 0, action, (key, at) -> true));
+        assertFalse(expired.get());
+        int calls = 1;
+        while (!expired.get()) {
+            wheel.advance(150, 0, action, (key, at) -> true);
+            assertTrue("each sweep must pick up where the last one stopped", ++calls <= 1000 / 64 + 1);
+        }
+    }
+
+    public void testRefreshedDeadlinesDoNotPileUpInTheWheel() {
+        ExpiryWheel wheel = new ExpiryWheel(100, 4, 0);
+        ByteKey key = ByteKey.of("session");
+        // a sliding TTL: every refresh lands a revolution or more out, in the slot of tick 0
+        long live = 0;
+        for (int i = 1; i <= 10_000; i++) {
+            live = i * 400L;
+            wheel.schedule(key, live);
+        }
+        long current = live;
+        ExpiryWheel.ExpireAction action = (k, at, now) -> false;
+
+        wheel.advance(150, Long.MAX_VALUE, action, (k, at) -> at == current);
+        assertEquals(1, wheel.size());
+    }
+
+    public void testOverwritingWithTheSameDeadlineSchedulesOnce() {
+        DataStore store = new DataStore(1, 0, EvictionPolicy.NOEVICTION, 5);
+        long deadline = System.currentTimeMillis() + 3_600_000;
+        ByteKey key = ByteKey.of("k");
+        for (int i = 0; i < 1000; i++) store.set(key, new byte[] {(byte) i}, deadline);
+        assertEquals(1, store.shard(key).expiryEntries());
+    }
+
+    public void testEvictionKeepsUsedMemoryUnderLimit() {
+        long limit = 64 * 1024;
+        DataStore store = new DataStore(8, limit, EvictionPolicy.ALLKEYS_LRU, 5);
+        byte[] value = new byte[100];
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(store.ensureMemory());
+            store.set(ByteKey.of("key:" + i), value, 0);
+        }
+        assertTrue(store.evictedKeys() > 0);
+        assertTrue(store.usedMemory() <= limit + 512);
+        assertEquals(store.size(), store.usedMemory() / (Value.ENTRY_OVERHEAD + 100 + "key:0000".length()), 100);
+    }
+
+    public void testNoEvictionRefusesWritesOverLimit() {
+        DataStore store = new DataStore(1024, EvictionPolicy.NOEVICTION, 5);
+        for (int i = 0; i < 20; i++) store.set(ByteKey.of("k" + i), new byte[100], 0);
+        assertFalse(store.ensureMemory());
+        assertEquals(0, store.evictedKeys());
+
+        DataStore ttl = new DataStore(1024, EvictionPolicy.VOLATILE_TTL, 5);
+        for (int i = 0; i < 20; i++) ttl.set(ByteKey.of("k" + i), new byte[100], 0);
+        assertFalse("nothing has a TTL, so nothing is evictable", ttl.ensureMemory());
+    }
+
+    public void testMemoryLimitIsStoreWideWhenKeysAreSkewed() {
+        long limit = 64 * 1024;
+        DataStore store = new DataStore(8, limit, EvictionPolicy.NOEVICTION, 5);
+        // all keys in one shard, which may hold far more than an eighth of the limit
+        int i = 0;
+        while (store.usedMemory() <= limit) {
+            ByteKey key = ByteKey.of("key:" + i++);
+            if (store.shard(key).index() != 0) continue;
+            assertTrue("refused at " + store.usedMemory() + " bytes", store.ensureMemory());
+            store.set(key, new byte[100], 0);
+        }
+        assertFalse(store.ensureMemory());
+        assertEquals(0, store.evictedKeys());
+    }
+
+    public void testSnapshotSeesStateAtStartDespiteConcurrentWrites() throws Exception {
+        DataStore store = new DataStore(8, 0, EvictionPolicy.NOEVICTION, 5);
+        byte[] before = "before".getBytes(StandardCharsets.US_ASCII);
+        byte[] after = "after".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < 5000; i++) store.set(ByteKey.of("k" + i), before, 0);
+
+        Map<ByteKey, byte[]> seen = new HashMap<>();
+        boolean[] mutated = new boolean[1];
+        store.snapshot((key, value) -> {
+            if (!mutated[0]) {
+                // rewrite, delete and add keys while the walk is under way
+                mutated[0] = true;
+                for (int i = 0; i < 5000; i++) {
+                    if (i % 3 == 0) store.del(ByteKey.of("k" + i));
+                    else store.set(ByteKey.of("k" + i), after, 0);
+                    store.set(ByteKey.of("new" + i), after, 0);
+                }
+            }
+            assertNull("emitted twice: " + key, seen.put(key, value.data()));
+        });
+
+        assertEquals(5000, seen.size());
+        for (byte[] v : seen.values()) assertTrue(Arrays.equals(before, v));
+        assertEquals(10000 - 5000 / 3 - 1, store.size());
+    }
+
+    public void testViewOnlyHoldsKeysWrittenAheadOfTheWalk() throws Exception {
+        DataStore store = new DataStore(8, 0, EvictionPolicy.NOEVICTION, 5);
+        byte[] after = "after".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < 1000; i++) store.set(ByteKey.of("k" + i), V, 0);
+
+        try (PointInTimeView view = store.openView()) {
+            int[] emitted = new int[1];
+            view.forEach((key, value) -> {
+                // a key the walk has just emitted needs no copy when it changes
+                store.set(key, after, 0);
+                assertEquals(0, view.capturedKeys());
+                emitted[0]++;
+            });
+            assertEquals(1000, emitted[0]);
+        }
+
+        try (PointInTimeView view = store.openView()) {
+            boolean[] mutated = new boolean[1];
+            view.forEach((key, value) -> {
+                if (mutated[0]) return;
+                mutated[0] = true;
+                for (int i = 0; i < 1000; i++) store.set(ByteKey.of("k" + i), V, 0);
+                assertEquals(999, view.capturedKeys());
+            });
+            // each copy is dropped once the walk reaches its key
+            assertEquals(0, view.capturedKeys());
+        }
+    }
+
+    public void testSnapshotFreezesCollectionsChangedInPlace() throws Exception {
+        DataStore store = new DataStore(8, 0, EvictionPolicy.NOEVICTION, 5);
+        for (int i = 0; i < 100; i++) {
+            int n = i;
+            store.modify(ByteKey.of("h" + i), RedisHash.class, RedisHash::new, h -> h.put(V, ("" + n).getBytes(StandardCharsets.US_ASCII)), null);
+        }
+        Map<ByteKey, String> seen = new HashMap<>();
+        boolean[] mutated = new boolean[1];
+        store.snapshot((key, value) -> {
+            if (!mutated[0]) {
+                mutated[0] = true;
+                for (int i = 0; i < 100; i++) {
+                    store.modify(ByteKey.of("h" + i), RedisHash.class, null, h -> h.put(V, V), null);
+                }
+            }
+            byte[] f = ((RedisHash) value.object()).get(V);
+            seen.put(key, new String(f, StandardCharsets.US_ASCII));
+        });
+        assertEquals(100, seen.size());
+        for (int i = 0; i < 100; i++) assertEquals("" + i, seen.get(ByteKey.of("h" + i)));
+        assertEquals("v", new String(store.read(ByteKey.of("h5"), RedisHash.class, h -> h.get(V), null), StandardCharsets.US_ASCII));
+    }
+
+    public void testOffHeapSlotsAreReusedAndSnapshotsKeepOldBytes() throws Exception {
+        DataStore store = new DataStore(8, 0, EvictionPolicy.NOEVICTION, 5, StorageEngine.OFFHEAP);
+        byte[] before = "b".repeat(100).getBytes(StandardCharsets.US_ASCII);
+        byte[] after = "a".repeat(100).getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < 1000; i++) store.set(ByteKey.of("k" + i), before, 0);
+        store.set(ByteKey.of("n"), "42".getBytes(StandardCharsets.US_ASCII), 0);
+        long used = store.offHeapUsed();
+        long allocated = store.offHeapAllocated();
+        assertEquals(1000L * SlabArena.slotSize(100), used);
+        assertEquals("offheap", store.getValue(ByteKey.of("k1")).get().object().encoding());
+        assertEquals("int", store.getValue(ByteKey.of("n")).get().object().encoding());
+        Value copy = new Value(store.getValue(ByteKey.of("k0")).get().object().copy(), 0);
+
+        // overwrites free the old slots and take them straight back, while the walk still
+        // has to emit the old bytes
+        Map<ByteKey, byte[]> seen = new HashMap<>();
+        boolean[] mutated = new boolean[1];
+        store.snapshot((key, value) -> {
+            if (!mutated[0]) {
+                mutated[0] = true;
+                for (int i = 0; i < 1000; i++) store.set(ByteKey.of("k" + i), after, 0);
+            }
+            seen.put(key, value.data());
+        });
+        assertEquals(1001, seen.size());
+        for (int i = 0; i < 1000; i++) assertTrue(Arrays.equals(before, seen.get(ByteKey.of("k" + i))));
+        assertTrue(Arrays.equals(after, store.get(ByteKey.of("k7")).get()));
+        assertEquals(used, store.offHeapUsed());
+        assertEquals(allocated, store.offHeapAllocated());
+
+        for (int i = 0; i < 1000; i++) store.del(ByteKey.of("k" + i));
+        assertEquals(0, store.offHeapUsed());
+        // a copy taken off the arena stays readable once the slot is gone
+        assertTrue(Arrays.equals(before, copy.data()));
+    }
+
+    public void testConcurrentIncrementsAreNotLost() throws InterruptedException {
+        DataStore store = new DataStore();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) store.incrBy(ByteKey.of("counter:" + (i % 4)), 1);
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) t.join();
+        for (int k = 0; k < 4; k++) {
+            Value v = store.getValue(ByteKey.of("counter:" + k)).orElseThrow();
+            assertEquals("int", v.object().encoding());
+            assertEquals("20000", new String(v.data(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    public void testIncrKeepsTtlAndRejectsNonIntegers() {
+        DataStore store = new DataStore();
+        long deadline = System.currentTimeMillis() + 60_000;
+        store.set(ByteKey.of("n"), "41".getBytes(StandardCharsets.US_ASCII), deadline);
+        assertEquals(42, store.incrBy(ByteKey.of("n"), 1));
+        assertEquals(deadline, store.getValue(ByteKey.of("n")).orElseThrow().expiresAt());
+
+        store.set(ByteKey.of("text"), "abc".getBytes(StandardCharsets.US_ASCII), 0);
+        try {
+            store.incrBy(ByteKey.of("text"), 1);
+            fail("incremented a non-integer");
+        } catch (IllegalArgumentException expected) {
+        }
+        store.set(ByteKey.of("max"), Long.toString(Long.MAX_VALUE).getBytes(StandardCharsets.US_ASCII), 0);
+        try {
+            store.incrBy(ByteKey.of("max"), 1);
+            fail("overflowed");
+        } catch (IllegalArgumentException expected) {
+        }
+        Value f = store.incrByFloat(ByteKey.of("n"), 0.5);
+        assertEquals("42.5", new String(f.data(), StandardCharsets.US_ASCII));
+        assertEquals(deadline, f.expiresAt());
+    }
+
+    public void testKeysSpreadOverShardsAndShardsExpireIndependently() throws InterruptedException {
+        DataStore store = new DataStore(4, 0, EvictionPolicy.NOEVICTION, 5);
+        long deadline = System.currentTimeMillis() + 500;
+        for (int i = 0; i < 4000; i++) store.set(ByteKey.of("k" + i), V, deadline);
+        Thread.sleep(deadline + 200 - System.currentTimeMillis());
+
+        int total = 0;
+        for (int s = 0; s < store.shardCount(); s++) {
+            int n = store.activeExpireCycle(s, Long.MAX_VALUE);
+            assertTrue("shard " + s + " expired " + n, n > 500 && n < 1500);
+            total += n;
+        }
+        assertEquals(4000, total);
+        assertEquals(0, store.size());
+    }
+
+    public void testScanReturnsEveryKeyThatStaysDespiteChurn() throws InterruptedException {
+        DataStore store = new DataStore(8, 0, EvictionPolicy.NOEVICTION, 5);
+        for (int i = 0; i < 20_000; i++) store.set(ByteKey.of("stable:" + i), V, 0);
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread churn = new Thread(() -> {
+            for (int i = 0; !stop.get(); i++) {
+                store.set(ByteKey.of("churn:" + i), V, 0);
+                if (i >= 1000) store.del(ByteKey.of("churn:" + (i - 1000)));
+            }
+        });
+        churn.start();
+        Set<ByteKey> seen = new HashSet<>();
+        int calls = 0;
+        try {
+            long cursor = 0;
+            do {
+                int before = seen.size();
+                cursor = store.scan(cursor, 100, seen::add);
+                calls++;
+                // bounded work: about COUNT keys per call, a few more when hashes collide
+                assertTrue(seen.size() - before < 200);
+            } while (cursor != 0);
+        } finally {
+            stop.set(true);
+            churn.join();
+        }
+        for (int i = 0; i < 20_000; i++) assertTrue("missed stable:" + i, seen.contains(ByteKey.of("stable:" + i)));
+        assertTrue(calls > 20_000 / 200);
+    }
+}